@@ -0,0 +1,128 @@
+package com.github.dimitryivaniuta.gateway.proxy.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes {@code META-INF/proxy-toolkit.idx}: which classes of a compilation carry proxy-toolkit annotations.
+ *
+ * <p>Format, one entry per line ({@code #} starts a comment):
+ * <pre>
+ * package com.example.orders                    every package compiled with this processor
+ * type    com.example.orders.OrderService       type with a toolkit annotation on itself or a public method
+ * method  com.example.orders.OrderService#place annotated public method
+ * </pre>
+ *
+ * <p>Annotations count directly or through a composed annotation (meta-annotated with a toolkit one), the same
+ * way the post-processor's reflective check sees them. Types are listed by binary name ({@code Outer$Inner}).
+ *
+ * <p>The processor sees every root element ({@code *}) to list packages and claims no annotation, so other
+ * processors still run. It is not incremental: Gradle recompiles the source set fully when a source changes.
+ */
+@SupportedAnnotationTypes("*")
+public class ProxyToolkitIndexProcessor extends AbstractProcessor {
+
+    static final String LOCATION = "META-INF/proxy-toolkit.idx";
+
+    private static final String ANNOTATIONS = "com.github.dimitryivaniuta.gateway.proxy.annotations.";
+
+    private static final Set<String> TOOLKIT_ANNOTATIONS = Set.of(
+            ANNOTATIONS + "ProxyAudit",
+            ANNOTATIONS + "ProxyIdempotent",
+            ANNOTATIONS + "ProxyCache",
+            ANNOTATIONS + "ProxyRateLimit",
+            ANNOTATIONS + "ProxyConcurrencyLimit",
+            ANNOTATIONS + "ProxyRetry"
+    );
+
+    private final Set<String> packages = new TreeSet<>();
+    private final Set<String> types = new TreeSet<>();
+    private final Set<String> methods = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) {
+            if (root instanceof TypeElement type) {
+                packages.add(processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString());
+                scan(type);
+            }
+        }
+        if (roundEnv.processingOver()) {
+            write();
+        }
+        return false;
+    }
+
+    private void scan(TypeElement type) {
+        String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        boolean annotated = hasToolkitAnnotation(type);
+
+        for (Element member : type.getEnclosedElements()) {
+            if (member instanceof TypeElement nested) {
+                scan(nested);
+            } else if (member.getKind() == ElementKind.METHOD
+                    && member.getModifiers().contains(Modifier.PUBLIC)
+                    && hasToolkitAnnotation(member)) {
+                methods.add(name + "#" + member.getSimpleName());
+                annotated = true;
+            }
+        }
+
+        if (annotated) types.add(name);
+    }
+
+    private boolean hasToolkitAnnotation(Element element) {
+        return isToolkit(element.getAnnotationMirrors(), new HashSet<>());
+    }
+
+    // direct or meta-present (composed annotations), guarding against annotation cycles
+    private boolean isToolkit(List<? extends AnnotationMirror> mirrors, Set<String> visited) {
+        for (AnnotationMirror mirror : mirrors) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            String name = annotationType.getQualifiedName().toString();
+            if (TOOLKIT_ANNOTATIONS.contains(name)) return true;
+            if (name.startsWith("java.lang.annotation.") || !visited.add(name)) continue;
+            if (isToolkit(annotationType.getAnnotationMirrors(), visited)) return true;
+        }
+        return false;
+    }
+
+    private void write() {
+        if (packages.isEmpty()) return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+            try (Writer w = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                w.write("# generated by " + getClass().getName() + "\n");
+                for (String p : packages) w.write("package " + p + "\n");
+                for (String t : types) w.write("type " + t + "\n");
+                for (String m : methods) w.write("method " + m + "\n");
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "proxy-toolkit index not written (" + ex.getMessage() + "); beans will be checked reflectively");
+        }
+    }
+}
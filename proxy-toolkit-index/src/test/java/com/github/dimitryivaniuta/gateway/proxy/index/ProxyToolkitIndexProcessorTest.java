@@ -0,0 +1,106 @@
+package com.github.dimitryivaniuta.gateway.proxy.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProxyToolkitIndexProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldIndexAnnotatedTypesAndMethods() throws IOException {
+        List<String> index = compile(
+                source("com.github.dimitryivaniuta.gateway.proxy.annotations", "ProxyRetry", """
+                        package com.github.dimitryivaniuta.gateway.proxy.annotations;
+                        public @interface ProxyRetry {}
+                        """),
+                source("com.github.dimitryivaniuta.gateway.proxy.annotations", "ProxyAudit", """
+                        package com.github.dimitryivaniuta.gateway.proxy.annotations;
+                        public @interface ProxyAudit {}
+                        """),
+                source("demo", "Retried", """
+                        package demo;
+                        import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+                        @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+                        @ProxyRetry
+                        public @interface Retried {}
+                        """),
+                source("demo", "Services", """
+                        package demo;
+                        import com.github.dimitryivaniuta.gateway.proxy.annotations.*;
+                        public class Services {
+                            public static class Direct {
+                                @ProxyRetry public void call() {}
+                                public void plain() {}
+                            }
+                            @ProxyAudit
+                            public static class Audited {
+                                public void call() {}
+                            }
+                            public static class Composed {
+                                @Retried public void call() {}
+                            }
+                            public static class PrivateOnly {
+                                @ProxyRetry private void hidden() {}
+                            }
+                            public interface Api {
+                                @ProxyRetry String get();
+                            }
+                        }
+                        """),
+                source("other", "Plain", """
+                        package other;
+                        public class Plain {
+                            public void call() {}
+                        }
+                        """));
+
+        assertThat(index).contains(
+                "package demo",
+                "package other",
+                "type demo.Services$Direct",
+                "method demo.Services$Direct#call",
+                "type demo.Services$Audited",
+                "type demo.Services$Composed",
+                "method demo.Services$Composed#call",
+                "type demo.Services$Api",
+                "method demo.Services$Api#get");
+        assertThat(index).doesNotContain(
+                "type demo.Services",
+                "type demo.Services$PrivateOnly",
+                "type other.Plain",
+                "method demo.Services$Direct#plain");
+    }
+
+    private Path source(String pkg, String name, String code) throws IOException {
+        Path file = dir.resolve("src").resolve(pkg.replace('.', '/')).resolve(name + ".java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, code);
+        return file;
+    }
+
+    private List<String> compile(Path... sources) throws IOException {
+        Path out = Files.createDirectories(dir.resolve("out"));
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        StringWriter err = new StringWriter();
+        try (StandardJavaFileManager files = javac.getStandardFileManager(null, null, null)) {
+            JavaCompiler.CompilationTask task = javac.getTask(err, files, null,
+                    List.of("-d", out.toString()), null, files.getJavaFileObjects(sources));
+            task.setProcessors(List.of(new ProxyToolkitIndexProcessor()));
+            assertThat(task.call()).as(err.toString()).isTrue();
+        }
+        return Files.readAllLines(out.resolve(ProxyToolkitIndexProcessor.LOCATION));
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.cache.CacheMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetrySpecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context refresh with {@code beans} beans, of which one in twenty is a proxy candidate - the usual shape of an
+ * application where most beans (repositories, controllers, mappers) carry no toolkit annotation.
+ *
+ * <ul>
+ *   <li>{@code useIndex=true}: candidates come from {@code META-INF/proxy-toolkit.idx} (this source set runs
+ *       the {@code proxy-toolkit-index} processor); other beans are skipped without reflection.</li>
+ *   <li>{@code useIndex=false}: previous check - {@code getMethods()} plus six merged-annotation lookups per
+ *       class and per public method, for every bean.</li>
+ * </ul>
+ *
+ * Interceptor dependencies are null: nothing is invoked.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ProxyCandidateBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ProxyCandidateBenchmark {
+
+    // public surface of a typical data-access bean, inherited by the plain beans below
+    public abstract static class CrudSupport<T> {
+        public T findById(long id) { return null; }
+        public List<T> findAll() { return List.of(); }
+        public List<T> findAllById(Iterable<Long> ids) { return List.of(); }
+        public T save(T entity) { return entity; }
+        public List<T> saveAll(Iterable<T> entities) { return List.of(); }
+        public boolean existsById(long id) { return false; }
+        public long count() { return 0; }
+        public void deleteById(long id) { }
+        public void delete(T entity) { }
+        public void deleteAll() { }
+        public T getReferenceById(long id) { return null; }
+        public void flush() { }
+    }
+
+    public static class CustomerStore extends CrudSupport<String> {
+        public String byEmail(String email) { return email; }
+    }
+
+    public static class OrderStore extends CrudSupport<Long> {
+        public List<Long> byCustomer(long customerId) { return List.of(); }
+    }
+
+    public static class InvoiceMapper {
+        public String toDto(Object invoice) { return String.valueOf(invoice); }
+        public Object fromDto(String dto) { return dto; }
+        public List<String> toDtos(List<Object> invoices) { return List.of(); }
+    }
+
+    public static class PricingService {
+        public long price(String sku) { return 1; }
+        public long discount(String sku, long qty) { return 0; }
+    }
+
+    public static class CatalogService {
+        @ProxyCache(cacheName = "catalog")
+        public String item(long id) { return "item-" + id; }
+
+        public String name(long id) { return "n" + id; }
+    }
+
+    public static class PaymentClient {
+        @ProxyRetry(maxAttempts = 3, backoffMs = 20)
+        public String charge(String order) { return order; }
+    }
+
+    private static final List<Class<?>> PLAIN =
+            List.of(CustomerStore.class, OrderStore.class, InvoiceMapper.class, PricingService.class);
+    private static final List<Class<?>> CANDIDATES = List.of(CatalogService.class, PaymentClient.class);
+
+    @Param({"5000"})
+    public int beans;
+
+    @Param({"true", "false"})
+    public boolean useIndex;
+
+    private GenericApplicationContext context;
+
+    @Setup(Level.Invocation)
+    public void createContext() {
+        context = new GenericApplicationContext();
+        for (int i = 0; i < beans; i++) {
+            Class<?> type = (i % 20 == 0)
+                    ? CANDIDATES.get((i / 20) % CANDIDATES.size())
+                    : PLAIN.get(i % PLAIN.size());
+            registerBean(context, "bean" + i, type);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public GenericApplicationContext refresh() {
+        var props = new ProxyToolkitProperties();
+        props.setUseIndex(useIndex);
+        var plans = new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        context.getBeanFactory().addBeanPostProcessor(new ProxyToolkitBeanPostProcessor(props, plans,
+                new AuditMethodInterceptor(null, null, null, null, props, plans, null),
+                new IdempotencyMethodInterceptor(null, null, null, null, null, props, plans, null),
+                new CacheMethodInterceptor(null, plans, null, props),
+                new RateLimitMethodInterceptor(null, plans, null),
+                new ConcurrencyLimitMethodInterceptor(plans, null),
+                new RetryMethodInterceptor(props, plans, null, new RetrySpecRegistry(props))));
+        context.refresh();
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void registerBean(GenericApplicationContext context, String name, Class<?> type) {
+        context.registerBean(name, (Class<Object>) type);
+    }
+}
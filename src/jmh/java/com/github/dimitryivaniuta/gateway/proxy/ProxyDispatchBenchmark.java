@@ -0,0 +1,98 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.cache.CacheMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetrySpecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of an unannotated method on a proxied bean (the bean has one annotated method, so it is
+ * proxied).
+ *
+ * <ul>
+ *   <li>{@code direct}: no proxy.</li>
+ *   <li>{@code legacyChain}: previous wiring - all six interceptors added as plain advice, each looking the
+ *       plan up and calling {@code proceed()}.</li>
+ *   <li>{@code stageAdvisors}: {@link ProxyToolkitBeanPostProcessor#stageAdvisors} on a frozen proxy, as built
+ *       by the post-processor: the method has no advisor and is dispatched to the target.</li>
+ * </ul>
+ *
+ * Interceptor dependencies are null: no stage gets past its plan check for {@code plain}.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ProxyDispatchBenchmark -PjmhProfilers=gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProxyDispatchBenchmark {
+
+    public static class MixedService {
+        @ProxyRateLimit(permitsPerSecond = 1_000)
+        public long limited(long x) {
+            return x + 1;
+        }
+
+        public long plain(long x) {
+            return x * 31;
+        }
+    }
+
+    private MixedService direct;
+    private MixedService legacy;
+    private MixedService advised;
+    private long x;
+
+    @Setup
+    public void setup() {
+        var props = new ProxyToolkitProperties();
+        var plans = new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+
+        List<MethodInterceptor> stages = List.of(
+                new AuditMethodInterceptor(null, null, null, null, props, plans, null),
+                new IdempotencyMethodInterceptor(null, null, null, null, null, props, plans, null),
+                new CacheMethodInterceptor(null, plans, null, props),
+                new RateLimitMethodInterceptor(null, plans, null),
+                new ConcurrencyLimitMethodInterceptor(plans, null),
+                new RetryMethodInterceptor(props, plans, null, new RetrySpecRegistry(props))
+        );
+
+        direct = new MixedService();
+
+        ProxyFactory pf = new ProxyFactory(new MixedService());
+        pf.setProxyTargetClass(true);
+        stages.forEach(pf::addAdvice);
+        legacy = (MixedService) pf.getProxy();
+
+        advised = (MixedService) ProxyToolkitBeanPostProcessor.attach(new MixedService(),
+                ProxyToolkitBeanPostProcessor.stageAdvisors(plans, stages.get(0), stages.get(1), stages.get(2),
+                        stages.get(3), stages.get(4), stages.get(5)));
+    }
+
+    @Benchmark
+    public long direct() {
+        return direct.plain(x++);
+    }
+
+    @Benchmark
+    public long legacyChain() {
+        return legacy.plain(x++);
+    }
+
+    @Benchmark
+    public long stageAdvisors() {
+        return advised.plain(x++);
+    }
+}
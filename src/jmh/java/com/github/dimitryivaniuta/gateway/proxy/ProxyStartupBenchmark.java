@@ -0,0 +1,164 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.cache.CacheMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetrySpecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context refresh with {@code beans} proxied beans (spread over four annotated classes).
+ *
+ * <ul>
+ *   <li>{@code sharedInterceptors}: {@link ProxyToolkitBeanPostProcessor} - one set of interceptors and
+ *       advisors for the whole context; beans of a class share one CGLIB proxy class.</li>
+ *   <li>{@code perBeanInterceptors}: previous wiring - six interceptors and six advisors created per bean, so
+ *       CGLIB cannot reuse a proxy class either.</li>
+ * </ul>
+ *
+ * After each refresh the benchmark prints the heap retained by the context (after GC). Interceptor
+ * dependencies are null: nothing is invoked.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ProxyStartupBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ProxyStartupBenchmark {
+
+    public static class OrderService {
+        @ProxyAudit
+        @ProxyIdempotent
+        public String place(String order) {
+            return order;
+        }
+
+        public String status(String id) {
+            return id;
+        }
+    }
+
+    public static class CatalogService {
+        @ProxyCache(cacheName = "catalog")
+        public String item(long id) {
+            return "item-" + id;
+        }
+
+        @ProxyRateLimit(permitsPerSecond = 100)
+        public String search(String q) {
+            return q;
+        }
+    }
+
+    public static class InventoryService {
+        @ProxyRetry(maxAttempts = 3, backoffMs = 20)
+        public int stock(String sku) {
+            return 1;
+        }
+
+        @ProxyConcurrencyLimit
+        public int reserve(String sku) {
+            return 1;
+        }
+    }
+
+    public static class ReportService {
+        @ProxyAudit
+        @ProxyRetry
+        public String render(String name) {
+            return name;
+        }
+    }
+
+    private static final List<Class<?>> TYPES =
+            List.of(OrderService.class, CatalogService.class, InventoryService.class, ReportService.class);
+
+    @Param({"1000"})
+    public int beans;
+
+    private GenericApplicationContext context;
+    private long heapBefore;
+
+    @Setup(Level.Invocation)
+    public void createContext() {
+        context = new GenericApplicationContext();
+        for (int i = 0; i < beans; i++) {
+            registerBean(context, "bean" + i, TYPES.get(i % TYPES.size()));
+        }
+        heapBefore = usedHeap();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeContext() {
+        long retained = usedHeap() - heapBefore;
+        System.out.printf("%n  retained heap: %.1f MB%n", retained / (1024d * 1024d));
+        context.close();
+    }
+
+    @Benchmark
+    public GenericApplicationContext sharedInterceptors() {
+        var props = new ProxyToolkitProperties();
+        var plans = new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        context.getBeanFactory().addBeanPostProcessor(new ProxyToolkitBeanPostProcessor(props, plans,
+                new AuditMethodInterceptor(null, null, null, null, props, plans, null),
+                new IdempotencyMethodInterceptor(null, null, null, null, null, props, plans, null),
+                new CacheMethodInterceptor(null, plans, null, props),
+                new RateLimitMethodInterceptor(null, plans, null),
+                new ConcurrencyLimitMethodInterceptor(plans, null),
+                new RetryMethodInterceptor(props, plans, null, new RetrySpecRegistry(props))));
+        context.refresh();
+        return context;
+    }
+
+    @Benchmark
+    public GenericApplicationContext perBeanInterceptors() {
+        var props = new ProxyToolkitProperties();
+        var plans = new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                plans.forClass(ClassUtils.getUserClass(bean));
+                return ProxyToolkitBeanPostProcessor.attach(bean, ProxyToolkitBeanPostProcessor.stageAdvisors(plans,
+                        new AuditMethodInterceptor(null, null, null, null, props, plans, null),
+                        new IdempotencyMethodInterceptor(null, null, null, null, null, props, plans, null),
+                        new CacheMethodInterceptor(null, plans, null, props),
+                        new RateLimitMethodInterceptor(null, plans, null),
+                        new ConcurrencyLimitMethodInterceptor(plans, null),
+                        new RetryMethodInterceptor(props, plans, null, new RetrySpecRegistry(props))));
+            }
+        });
+        context.refresh();
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void registerBean(GenericApplicationContext context, String name, Class<?> type) {
+        context.registerBean(name, (Class<Object>) type);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Audit payload capture of large results at the default 20 000 char limit.
+ *
+ * <ul>
+ *   <li>{@code legacy}: previous implementation - writeValueAsString of the whole value, then cut to a preview.</li>
+ *   <li>{@code streaming}: {@link AuditPayloads} - bounded writer, serialization aborted at the limit.</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=AuditCaptureBenchmark -PjmhProfilers=gc} (gc.alloc.rate.norm = bytes per op)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuditCaptureBenchmark {
+
+    public record Order(long id, String customer, String status, List<String> lines) {}
+
+    private static final int MAX_CHARS = 20_000;
+
+    @Param({"100", "10000", "200000"})
+    public int size;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private List<Order> orders;
+
+    @Setup
+    public void setup() {
+        orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            orders.add(new Order(i, "customer-" + i, (i % 3 == 0) ? "SHIPPED" : "OPEN", List.of("sku-" + i, "sku-" + (i + 1))));
+        }
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        String json = mapper.writeValueAsString(orders);
+        if (json.length() <= MAX_CHARS) return json;
+        ObjectNode node = mapper.createObjectNode();
+        node.put("_truncated", true);
+        node.put("_originalLength", json.length());
+        node.put("_preview", json.substring(0, Math.min(MAX_CHARS, 10_000)));
+        return mapper.writeValueAsString(node);
+    }
+
+    @Benchmark
+    public String streaming() {
+        return AuditPayloads.capture(mapper, orders, MAX_CHARS);
+    }
+}
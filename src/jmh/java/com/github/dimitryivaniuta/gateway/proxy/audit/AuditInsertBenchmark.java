@@ -0,0 +1,139 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Audit insert throughput: the V1 heap layout (bigserial PK + btree on created_at) vs the V7 layout (daily range
+ * partitions on created_at + BRIN), against PostgreSQL in a container (Testcontainers, needs Docker).
+ *
+ * <p>One op is one JDBC batch of {@code batchSize} rows as written by {@link AuditWriter} (multi-row INSERT through
+ * reWriteBatchedInserts). Both tables are pre-filled with {@code prefillRows} rows spread over the last 30 days, so
+ * index depth matches a table that has been running for a while. Rows/s = ops/s x batchSize.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=AuditInsertBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AuditInsertBenchmark {
+
+    private static final String COLUMNS = """
+                correlation_id varchar(64),
+                trace_id varchar(128),
+                bean_name varchar(255) not null,
+                target_class varchar(512) not null,
+                method_signature varchar(1024) not null,
+                args jsonb,
+                result jsonb,
+                status varchar(32) not null,
+                duration_ms bigint not null,
+                error_message text,
+                error_stack text
+            """;
+
+    private static final String PREFILL_SQL = """
+            insert into %s (created_at, correlation_id, bean_name, target_class, method_signature, args, result,
+                status, duration_ms)
+            select now() - (random() * interval '30 days'), md5(g::text), 'demoService', 'DemoService', 'work(int)',
+                '[1]'::jsonb, '{"ok":true}'::jsonb, 'OK', 3
+            from generate_series(1, ?) g
+            """;
+
+    /** One container per JVM (JMH forks per trial). */
+    private static PostgreSQLContainer<?> postgres;
+
+    @Param({"heap", "partitioned"})
+    public String layout;
+
+    @Param({"256"})
+    public int batchSize;
+
+    @Param({"1000000"})
+    public int prefillRows;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private String insertSql;
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (postgres == null) {
+            postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+            postgres.start();
+        }
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+        jdbc = new JdbcTemplate(dataSource);
+
+        String table = "bench_audit_" + layout;
+        jdbc.execute("drop table if exists " + table + " cascade");
+        if ("heap".equals(layout)) {
+            jdbc.execute("create table " + table + " (id bigserial primary key, created_at timestamptz not null default now(), "
+                    + COLUMNS + ")");
+            jdbc.execute("create index on " + table + " (created_at desc)");
+        } else {
+            jdbc.execute("create table " + table + " (id bigserial, created_at timestamptz not null default now(), "
+                    + COLUMNS + ", primary key (id, created_at)) partition by range (created_at)");
+            jdbc.execute("create index on " + table + " using brin (created_at)");
+            jdbc.execute("""
+                    do $$
+                    declare d date;
+                    begin
+                      for d in select generate_series(current_date - 31, current_date + 2, interval '1 day')::date loop
+                        execute format('create table %%I partition of %%I for values from (%%L) to (%%L)',
+                                       '%1$s_p' || to_char(d, 'YYYYMMDD'), '%1$s', d, d + 1);
+                      end loop;
+                    end$$;
+                    """.formatted(table));
+        }
+        jdbc.execute("create index on " + table + " (correlation_id)");
+        jdbc.update(PREFILL_SQL.formatted(table), prefillRows);
+        jdbc.execute("vacuum analyze " + table);
+
+        insertSql = """
+                insert into %s (
+                    created_at, correlation_id, trace_id, bean_name, target_class, method_signature,
+                    args, result, status, duration_ms, error_message, error_stack
+                ) values (?, ?, ?, ?, ?, ?, cast(? as jsonb), cast(? as jsonb), ?, ?, ?, ?)
+                """.formatted(table);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public int[][] insertBatch() {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Long> rows = LongStream.range(seq, seq + batchSize).boxed().toList();
+        seq += batchSize;
+        return jdbc.batchUpdate(insertSql, rows, batchSize, (ps, n) -> {
+            ps.setTimestamp(1, now);
+            ps.setString(2, "corr-" + n);
+            ps.setString(3, null);
+            ps.setString(4, "demoService");
+            ps.setString(5, "DemoService");
+            ps.setString(6, "work(int)");
+            ps.setString(7, "[" + n + "]");
+            ps.setString(8, "{\"ok\":true}");
+            ps.setString(9, "OK");
+            ps.setLong(10, 3);
+            ps.setString(11, null);
+            ps.setString(12, null);
+        });
+    }
+}
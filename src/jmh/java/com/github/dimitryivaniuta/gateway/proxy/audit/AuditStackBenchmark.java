@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stack capture cost of one audited failure, exception creation included (as in a failing call).
+ *
+ * <ul>
+ *   <li>{@code printStackTrace}: previous capture - full trace through PrintWriter / StringWriter, cut to 20 000 chars.</li>
+ *   <li>{@code compactDuplicate}: {@link AuditStackTraces#record} in an error storm - fingerprint seen in the window,
+ *       nothing rendered.</li>
+ *   <li>{@code compactFirst}: fingerprint plus frame-limited rendering (first failure of a window).</li>
+ *   <li>{@code baseline}: creating and filling the exception only.</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=AuditStackBenchmark -PjmhProfilers=gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuditStackBenchmark {
+
+    private static final int MAX_CHARS = 20_000;
+
+    /** frames below the throw site, on top of the JMH harness frames */
+    @Param({"20", "150"})
+    public int depth;
+
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+    private AuditStackTraces stacks;
+
+    @Setup
+    public void setup() {
+        stacks = new AuditStackTraces(null, props, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public Throwable baseline() {
+        return failAt(depth);
+    }
+
+    @Benchmark
+    public String printStackTrace() {
+        StringWriter sw = new StringWriter();
+        failAt(depth).printStackTrace(new PrintWriter(sw));
+        String s = sw.toString();
+        return (s.length() <= MAX_CHARS) ? s : s.substring(0, MAX_CHARS);
+    }
+
+    @Benchmark
+    public long compactDuplicate() {
+        return stacks.record(failAt(depth), MAX_CHARS);
+    }
+
+    @Benchmark
+    public String compactFirst() {
+        var cfg = props.getAudit().getStacktrace();
+        Throwable ex = failAt(depth);
+        AuditStackTraces.fingerprint(ex, cfg.getMaxFrames(), cfg.getMaxCauses());
+        return AuditStackTraces.render(ex, cfg.getMaxFrames(), cfg.getMaxCauses(), MAX_CHARS);
+    }
+
+    private static Throwable failAt(int depth) {
+        if (depth > 0) return failAt(depth - 1);
+        return new IllegalStateException("order 42 failed", new IllegalArgumentException("bad sku"));
+    }
+}
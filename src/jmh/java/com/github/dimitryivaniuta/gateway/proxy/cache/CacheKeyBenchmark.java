@@ -0,0 +1,96 @@
+package com.github.dimitryivaniuta.gateway.proxy.cache;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache key construction + lookup, previous record key vs {@link CacheKey}.
+ *
+ * <ul>
+ *   <li>{@code legacy*}: {@code (methodKey, Arrays.deepHashCode(args), clientKey)} record (collision-prone).</li>
+ *   <li>{@code compact*}: {@link CacheKey#of} for a long id and for a (String, int) pair.</li>
+ * </ul>
+ *
+ * The trial setup also prints the retained heap per entry for {@value #ENTRIES} keys of each kind.
+ * Run: {@code ./gradlew jmh -PjmhIncludes=CacheKeyBenchmark -PjmhProfilers=gc} for bytes allocated per op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheKeyBenchmark {
+
+    static final int ENTRIES = 200_000;
+
+    record LegacyKey(String methodKey, int argsHash, String clientKey) {}
+
+    private static final String METHOD_KEY = "com.example.OrderService#find(long)";
+    private static final int METHOD_ID = 17;
+
+    private String subject;
+    private Map<Object, Object> legacyMap;
+    private Map<Object, Object> compactMap;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        subject = "apiKey:" + "ab12".repeat(16);
+        legacyMap = new HashMap<>();
+        compactMap = new HashMap<>();
+        for (long i = 0; i < 10_000; i++) {
+            Object[] args = {i};
+            legacyMap.put(new LegacyKey(METHOD_KEY, Arrays.deepHashCode(args), subject), Boolean.TRUE);
+            compactMap.put(CacheKey.of(METHOD_ID, subject, args), Boolean.TRUE);
+        }
+
+        System.out.printf("%nretained bytes/key: legacy=%d compact(long)=%d compact(String,int)=%d%n",
+                retainedPerKey(i -> new LegacyKey(METHOD_KEY, Arrays.deepHashCode(new Object[]{(long) i}), subject)),
+                retainedPerKey(i -> CacheKey.of(METHOD_ID, subject, new Object[]{(long) i})),
+                retainedPerKey(i -> CacheKey.of(METHOD_ID, subject, new Object[]{"sku-" + (i & 1023), i})));
+    }
+
+    @Benchmark
+    public Object legacyLongLookup() {
+        long i = (id++) % 10_000;
+        return legacyMap.get(new LegacyKey(METHOD_KEY, Arrays.deepHashCode(new Object[]{i}), subject));
+    }
+
+    @Benchmark
+    public Object compactLongLookup() {
+        long i = (id++) % 10_000;
+        return compactMap.get(CacheKey.of(METHOD_ID, subject, new Object[]{i}));
+    }
+
+    @Benchmark
+    public Object legacyStringIntKey() {
+        return new LegacyKey(METHOD_KEY, Arrays.deepHashCode(new Object[]{"sku-42", 3}), subject);
+    }
+
+    @Benchmark
+    public Object compactStringIntKey() {
+        return CacheKey.of(METHOD_ID, subject, new Object[]{"sku-42", 3});
+    }
+
+    /**
+     * Rough heap delta per key (keys only; shared subject / method strings are not counted).
+     * The boxed argument values are garbage for the compact key but retained by nothing either way.
+     */
+    private static long retainedPerKey(java.util.function.IntFunction<Object> factory) {
+        Object[] keep = new Object[ENTRIES];
+        long before = usedAfterGc();
+        for (int i = 0; i < ENTRIES; i++) keep[i] = factory.apply(i);
+        long after = usedAfterGc();
+        long perKey = (after - before) / ENTRIES;
+        if (keep[ENTRIES - 1] == null) throw new IllegalStateException(); // keep alive
+        return perKey;
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API key hashing cost per request.
+ *
+ * <ul>
+ *   <li>{@code legacy}: previous implementation (getInstance per call, String concat, String.format hex).</li>
+ *   <li>{@code engineCold}: ApiKeyHashService with memo disabled (pooled digest + table hex).</li>
+ *   <li>{@code engineMemoHit}: repeat caller served from the SipHash-keyed memo (no SHA-256).</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ApiKeyHashBenchmark}; set {@code profilers = ['gc']} in the
+ * jmh block to see bytes allocated per op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiKeyHashBenchmark {
+
+    private static final String PEPPER = "bench-pepper";
+
+    private String rawApiKey;
+    private ApiKeyHashService cold;
+    private ApiKeyHashService memo;
+
+    @Setup
+    public void setup() {
+        cold = new ApiKeyHashService(PEPPER, "SHA-256", 0);
+        memo = new ApiKeyHashService(PEPPER, "SHA-256", 10_000);
+        rawApiKey = cold.generateRawApiKey();
+        memo.hash(rawApiKey); // warm the memo entry
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] digest = md.digest((rawApiKey + ":" + PEPPER).getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte x : digest) sb.append(String.format("%02x", x));
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String engineCold() {
+        return cold.hash(rawApiKey);
+    }
+
+    @Benchmark
+    public String engineMemoHit() {
+        return memo.hash(rawApiKey);
+    }
+}
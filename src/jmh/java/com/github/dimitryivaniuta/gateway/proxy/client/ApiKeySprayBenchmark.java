@@ -0,0 +1,127 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Is this X-Api-Key hash an active credential?" under a key-spray workload: {@code sprayRatio} of the lookups
+ * use a hash never seen before (a client sending random keys), the rest one of {@code knownKeys} real hashes.
+ *
+ * <ul>
+ *   <li>{@code legacy}: previous implementation - 60s TTL Caffeine cache (50 000 entries, as in CacheConfig)
+ *       of Optional results, negative ones included, with a PostgreSQL query (Testcontainers, needs Docker) per
+ *       miss. Every sprayed key costs a query and evicts a useful entry.</li>
+ *   <li>{@code index}: {@link ApiKeyIndex} - Bloom filter + open-addressing table, no DB access.</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ApiKeySprayBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ApiKeySprayBenchmark {
+
+    private static final String LOOKUP_SQL = """
+            select count(*) from api_client_credential c
+            join api_client cl on cl.id = c.api_client_id
+            where c.api_key_hash = ? and c.enabled and cl.enabled
+            """;
+
+    /** One container per JVM (JMH forks per trial). */
+    private static PostgreSQLContainer<?> postgres;
+
+    @Param({"10000"})
+    public int knownKeys;
+
+    @Param({"0.0", "0.5", "0.99"})
+    public double sprayRatio;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private Cache<String, Optional<Boolean>> legacyCache;
+    private ApiKeyIndex index;
+    private String[] known;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (postgres == null) {
+            postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+            postgres.start();
+        }
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        dataSource.setMaximumPoolSize(8);
+        jdbc = new JdbcTemplate(dataSource);
+
+        jdbc.execute("drop table if exists api_client_credential, api_client cascade");
+        jdbc.execute("create table api_client (id bigserial primary key, enabled boolean not null default true)");
+        jdbc.execute("""
+                create table api_client_credential (id bigserial primary key,
+                    api_client_id bigint not null references api_client(id),
+                    api_key_hash varchar(128) not null unique, enabled boolean not null default true)
+                """);
+        jdbc.update("insert into api_client (enabled) values (true)");
+
+        known = new String[knownKeys];
+        List<Object[]> rows = new ArrayList<>(knownKeys);
+        for (int i = 0; i < knownKeys; i++) {
+            known[i] = randomHash();
+            rows.add(new Object[]{known[i]});
+        }
+        jdbc.batchUpdate("insert into api_client_credential (api_client_id, api_key_hash) values (1, ?)", rows);
+        jdbc.execute("analyze api_client_credential");
+
+        legacyCache = Caffeine.newBuilder()
+                .maximumSize(50_000)
+                .expireAfterWrite(Duration.ofSeconds(60))
+                .build();
+        index = ApiKeyIndex.of(List.of(known));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String hash = nextHash();
+        Optional<Boolean> cached = legacyCache.getIfPresent(hash);
+        if (cached != null) return cached.isPresent();
+        Integer n = jdbc.queryForObject(LOOKUP_SQL, Integer.class, hash);
+        Optional<Boolean> loaded = (n != null && n > 0) ? Optional.of(Boolean.TRUE) : Optional.empty();
+        legacyCache.put(hash, loaded);
+        return loaded.isPresent();
+    }
+
+    @Benchmark
+    public boolean index() {
+        return index.contains(nextHash());
+    }
+
+    private String nextHash() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return (rnd.nextDouble() < sprayRatio) ? randomHash() : known[rnd.nextInt(known.length)];
+    }
+
+    private static String randomHash() {
+        byte[] b = new byte[32];
+        ThreadLocalRandom.current().nextBytes(b);
+        return HexFormat.of().formatHex(b);
+    }
+}
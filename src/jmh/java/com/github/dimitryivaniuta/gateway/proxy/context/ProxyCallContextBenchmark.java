@@ -0,0 +1,189 @@
+package com.github.dimitryivaniuta.gateway.proxy.context;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitBeanPostProcessor;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditCallLog;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditCallLogService;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditSampler;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditStackTraces;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditWriter;
+import com.github.dimitryivaniuta.gateway.proxy.cache.CacheMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.client.ApiClientCredentialLookupService;
+import com.github.dimitryivaniuta.gateway.proxy.client.ApiKeyHashService;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyCompletions;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyL1Cache;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyFingerprinter;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyResponseCodec;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyService;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitExceededException;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.TokenBucketRateLimiter;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetrySpecRegistry;
+import com.github.dimitryivaniuta.gateway.sample.DemoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of client / policy resolution through the real proxy chain (built by ProxyToolkitBeanPostProcessor).
+ *
+ * <p>Persistence is stubbed out; hashing is the real SHA-256 path (memo disabled). After each iteration the benchmark prints
+ * how many API-key hashes and policy lookups one proxied call cost. Before ProxyCallContext every
+ * client-aware stage (idempotency, cache, rate limit, retry) resolved on its own, so {@code stacked}
+ * (rate limit + retry) paid 2 hashes + 2 lookups per call; it now pays 1 + 1. The DemoService methods use one
+ * client-aware stage each ({@code retryDemo} additionally resolves the client in its own business code).
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ProxyCallContextBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProxyCallContextBenchmark {
+
+    private long calls;
+    private long hashes;
+    private long policyLookups;
+
+    private DemoService demo;
+    private StackedService stacked;
+
+    public static class StackedService {
+        @ProxyRateLimit(permitsPerSecond = 10_000_000)
+        @ProxyRetry(maxAttempts = 2)
+        public long work(long x) {
+            return x * 31;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var hashService = new ApiKeyHashService("bench-pepper", "SHA-256", 0) {
+            @Override
+            public String hash(String rawApiKey) {
+                hashes++;
+                return super.hash(rawApiKey);
+            }
+        };
+        var credentialLookup = new ApiClientCredentialLookupService(null, null, Duration.ZERO) {
+            @Override
+            public boolean isActive(String apiKeyHash) {
+                return false;
+            }
+        };
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                policyLookups++;
+                return Optional.empty();
+            }
+        };
+        var auditService = new AuditCallLogService(null, null) {
+            @Override
+            public void save(AuditCallLog log) {
+                // no DB in micro-benchmarks
+            }
+        };
+
+        var props = new ProxyToolkitProperties();
+        var metrics = new ProxyToolkitMetrics(new SimpleMeterRegistry());
+        var keyResolver = new RateLimitKeyResolver(hashService, credentialLookup);
+
+        var auditWriter = new AuditWriter(auditService, props, metrics);
+        var mapper = new ObjectMapper().findAndRegisterModules();
+        var plans = new MethodPlanRegistry(props, metrics);
+        var contexts = new ProxyCallContexts(keyResolver, policyService);
+        var bpp = new ProxyToolkitBeanPostProcessor(
+                props,
+                plans,
+                new AuditMethodInterceptor(
+                        auditWriter, // not started => synchronous stub save
+                        new AuditSampler(auditWriter, props, metrics),
+                        new AuditStackTraces(null, props, metrics), // never flushed here
+                        mapper, props, plans, contexts),
+                new IdempotencyMethodInterceptor(
+                        new IdempotencyService(null, null),
+                        new IdempotencyL1Cache(props, metrics),
+                        new IdempotencyCompletions(),
+                        new IdempotencyResponseCodec(mapper, props),
+                        new IdempotencyFingerprinter(mapper),
+                        props, plans, contexts),
+                new CacheMethodInterceptor(new ConcurrentMapCacheManager(), plans, contexts, props),
+                new RateLimitMethodInterceptor(new TokenBucketRateLimiter(props), plans, contexts),
+                new ConcurrencyLimitMethodInterceptor(plans, contexts),
+                new RetryMethodInterceptor(props, plans, contexts, new RetrySpecRegistry(props))
+        );
+
+        demo = (DemoService) bpp.postProcessAfterInitialization(new DemoService(keyResolver), "demoService");
+        stacked = (StackedService) bpp.postProcessAfterInitialization(new StackedService(), "stackedService");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Api-Key", "bench-api-key");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        calls = 0;
+        hashes = 0;
+        policyLookups = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        if (calls == 0) return;
+        System.out.printf("%n  per call: apiKey hashes=%.2f, policy lookups=%.2f%n",
+                (double) hashes / calls, (double) policyLookups / calls);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public Object cachedCustomerView() {
+        calls++;
+        return demo.cachedCustomerView(42L);
+    }
+
+    @Benchmark
+    public Object rateLimitedPing() {
+        calls++;
+        try {
+            return demo.rateLimitedPing();
+        } catch (RateLimitExceededException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Object retryDemo() {
+        calls++;
+        return demo.retryDemo(0);
+    }
+
+    @Benchmark
+    public long stacked() {
+        calls++;
+        return stacked.work(calls);
+    }
+}
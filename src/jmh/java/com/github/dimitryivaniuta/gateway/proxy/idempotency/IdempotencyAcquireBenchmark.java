@@ -0,0 +1,196 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyService.STATUS_PENDING;
+
+/**
+ * Acquire + complete throughput against a real PostgreSQL (Testcontainers, needs Docker).
+ *
+ * <ul>
+ *   <li>{@code upsert}: {@link IdempotencyService} - one INSERT ... ON CONFLICT DO UPDATE ... RETURNING to acquire,
+ *   one UPDATE ... RETURNING (+ pg_notify) to complete.</li>
+ *   <li>{@code selectForUpdate}: the statements the previous JPA path issued - SELECT ... FOR UPDATE, then
+ *   INSERT or UPDATE; SELECT ... FOR UPDATE + UPDATE + pg_notify to complete.</li>
+ * </ul>
+ *
+ * {@code duplicates} consecutive calls (spread over 8 threads) share one idempotency key. Each call runs in its own
+ * transaction like the REQUIRES_NEW service methods. After each iteration the benchmark prints statements per call
+ * and unique violations per call: two first-time acquirers both miss the SELECT ... FOR UPDATE (there is no row to
+ * lock yet) and the loser's INSERT fails, which the previous path surfaced as an error.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=IdempotencyAcquireBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class IdempotencyAcquireBenchmark {
+
+    private static final String METHOD_KEY = "com.example.PaymentService#pay(int)";
+    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final byte[] RESPONSE = IdempotencyResponseCodec.legacyJson("\"ok\"");
+
+    private static final String LOCK_SQL = """
+            select id, request_hash, status, expires_at, locked_by from idempotency_record
+            where idempotency_key = ? and method_key = ? for update
+            """;
+    private static final String INSERT_SQL = """
+            insert into idempotency_record (idempotency_key, method_key, request_hash, status, expires_at,
+                locked_at, locked_by, created_at, updated_at)
+            values (?, ?, ?, 'PENDING', ?, ?, ?, ?, ?)
+            returning id
+            """;
+    private static final String LOCK_UPDATE_SQL = """
+            update idempotency_record set locked_at = ?, locked_by = ?, updated_at = ? where id = ?
+            """;
+    private static final String COMPLETE_UPDATE_SQL = """
+            update idempotency_record set status = 'COMPLETED', response_json = cast(? as jsonb),
+                locked_at = null, locked_by = null, updated_at = ? where id = ?
+            """;
+    private static final String NOTIFY_SQL = "select pg_notify(?, ?)";
+
+    /** One container per JVM (JMH forks per trial). */
+    private static PostgreSQLContainer<?> postgres;
+
+    @Param({"upsert", "selectForUpdate"})
+    public String path;
+
+    @Param({"1", "8"})
+    public int duplicates;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private IdempotencyService service;
+
+    private final AtomicLong seq = new AtomicLong();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder uniqueViolations = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (postgres == null) {
+            postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+            postgres.start();
+        }
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        dataSource.setMaximumPoolSize(16);
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("truncate table idempotency_record");
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        service = new IdempotencyService(null, jdbc);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        calls.reset();
+        statements.reset();
+        uniqueViolations.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long n = calls.sum();
+        if (n == 0) return;
+        System.out.printf("%n  per call: statements=%.2f unique violations=%.4f%n",
+                (double) statements.sum() / n, (double) uniqueViolations.sum() / n);
+    }
+
+    @Benchmark
+    public boolean acquireAndComplete() {
+        long n = seq.getAndIncrement();
+        String key = "key-" + (n / duplicates);
+        String owner = "owner-" + n;
+        calls.increment();
+        return "upsert".equals(path) ? viaUpsert(key, owner) : viaSelectForUpdate(key, owner);
+    }
+
+    private boolean viaUpsert(String key, String owner) {
+        IdempotencyRecord rec = tx.execute(s -> service.acquireOrGet(key, METHOD_KEY, "hash", TTL, owner));
+        statements.increment();
+        if (!owner.equals(rec.getLockedBy())) return false;
+
+        tx.executeWithoutResult(s -> service.markCompleted(key, METHOD_KEY, "hash", RESPONSE));
+        statements.increment();
+        return true;
+    }
+
+    private boolean viaSelectForUpdate(String key, String owner) {
+        Long ownedId;
+        try {
+            ownedId = tx.execute(s -> lockingAcquire(key, owner));
+        } catch (DuplicateKeyException e) {
+            uniqueViolations.increment();
+            return false;
+        }
+        if (ownedId == null) return false;
+
+        tx.executeWithoutResult(s -> {
+            jdbc.query(LOCK_SQL, (ResultSetExtractor<Void>) rs -> null, key, METHOD_KEY);
+            jdbc.update(COMPLETE_UPDATE_SQL, "\"ok\"", now(), ownedId);
+            jdbc.query(NOTIFY_SQL, (ResultSetExtractor<Void>) rs -> null,
+                    IdempotencyNotificationListener.CHANNEL, IdempotencyNotificationListener.payload(key, METHOD_KEY));
+            statements.add(3);
+        });
+        return true;
+    }
+
+    /**
+     * @return id of the record if this call now owns it
+     */
+    private Long lockingAcquire(String key, String owner) {
+        Timestamp now = now();
+        statements.increment();
+        List<Object[]> rows = jdbc.query(LOCK_SQL, (rs, i) -> new Object[]{
+                rs.getLong("id"), rs.getString("status"), rs.getTimestamp("expires_at"), rs.getString("locked_by")
+        }, key, METHOD_KEY);
+
+        if (rows.isEmpty()) {
+            statements.increment();
+            // Hibernate IDENTITY insert: one statement with RETURNING id
+            return jdbc.queryForObject(INSERT_SQL, Long.class, key, METHOD_KEY, "hash",
+                    Timestamp.from(now.toInstant().plus(TTL)), now, owner, now, now);
+        }
+
+        Object[] row = rows.get(0);
+        if (STATUS_PENDING.equals(row[1]) && row[3] == null) {
+            statements.increment();
+            jdbc.update(LOCK_UPDATE_SQL, now, owner, now, row[0]);
+            return (Long) row[0];
+        }
+        return null;
+    }
+
+    private static Timestamp now() {
+        return Timestamp.from(Instant.now());
+    }
+}
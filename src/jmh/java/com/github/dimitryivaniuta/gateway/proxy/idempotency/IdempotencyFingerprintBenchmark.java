@@ -0,0 +1,100 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request fingerprint of an idempotent call by payload size.
+ *
+ * <ul>
+ *   <li>{@code legacy}: previous implementation - {@code writeValueAsString(args)}, then a new MessageDigest
+ *       over {@code getBytes(UTF_8)} and hex via {@code String.format} per byte.</li>
+ *   <li>{@code sha256}: {@link IdempotencyFingerprinter}, Jackson streaming into SHA-256 (same result).</li>
+ *   <li>{@code fast128}: {@link IdempotencyFingerprinter}, Jackson streaming into MurmurHash3 x64 128.</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=IdempotencyFingerprintBenchmark -PjmhProfilers=gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdempotencyFingerprintBenchmark {
+
+    public record Line(String sku, int qty, String note) {}
+
+    public record Order(String customer, String currency, List<Line> lines) {}
+
+    public static class OrderService {
+        @ProxyIdempotent
+        public String place(Order order, String channel) {
+            return "";
+        }
+
+        @ProxyIdempotent(fingerprint = ProxyIdempotent.Fingerprint.FAST128)
+        public String placeFast(Order order, String channel) {
+            return "";
+        }
+    }
+
+    // ~60 B, ~5 KB, ~500 KB of JSON
+    @Param({"1", "100", "10000"})
+    public int lines;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private IdempotencyFingerprinter fingerprinter;
+    private MethodPlan sha256Plan;
+    private MethodPlan fast128Plan;
+    private Object[] args;
+
+    @Setup
+    public void setup() throws Exception {
+        fingerprinter = new IdempotencyFingerprinter(mapper);
+        var plans = new MethodPlanRegistry(new ProxyToolkitProperties(), new ProxyToolkitMetrics(new SimpleMeterRegistry()))
+                .forClass(OrderService.class);
+        sha256Plan = plans.get(OrderService.class.getMethod("place", Order.class, String.class));
+        fast128Plan = plans.get(OrderService.class.getMethod("placeFast", Order.class, String.class));
+
+        List<Line> l = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) l.add(new Line("sku-" + i, i % 7 + 1, (i % 3 == 0) ? "gift wrap" : null));
+        args = new Object[]{new Order("customer-42", "EUR", l), "web"};
+
+        if (!legacy().equals(sha256())) throw new IllegalStateException("sha256 fingerprint differs from legacy");
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        String json;
+        try {
+            json = mapper.writeValueAsString(args);
+        } catch (Exception e) {
+            json = "[]";
+        }
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] dig = md.digest(json.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(dig.length * 2);
+        for (byte b : dig) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String sha256() {
+        return fingerprinter.fingerprint(sha256Plan, args);
+    }
+
+    @Benchmark
+    public String fast128() {
+        return fingerprinter.fingerprint(fast128Plan, args);
+    }
+}
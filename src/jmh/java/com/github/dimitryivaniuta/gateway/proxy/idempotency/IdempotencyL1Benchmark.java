@@ -0,0 +1,163 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import com.github.dimitryivaniuta.gateway.web.IdempotencyKeyFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.MDC;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.github.dimitryivaniuta.gateway.web.RequestContextKeys.CORRELATION_ID_MDC_KEY;
+
+/**
+ * DB round trips and latency of {@code @ProxyIdempotent} calls with and without the L1 tier.
+ *
+ * <p>The DB is an in-memory stub that parks for {@code dbLatencyMicros} per statement (roughly one
+ * REQUIRES_NEW transaction). After each iteration the benchmark prints DB round trips per call:
+ * a replay of a COMPLETED key costs 1 round trip without L1 and 0 with it; a first execution costs 2 either way.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=IdempotencyL1Benchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdempotencyL1Benchmark {
+
+    public static class PaymentService {
+        @ProxyIdempotent
+        public String pay(int amount) {
+            return "payment-" + amount;
+        }
+    }
+
+    @Param({"true", "false"})
+    public boolean l1Enabled;
+
+    @Param({"200"})
+    public long dbLatencyMicros;
+
+    private long calls;
+    private long dbCalls;
+    private long seq;
+    private PaymentService proxy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var props = new ProxyToolkitProperties();
+        props.getIdempotency().setL1Enabled(l1Enabled);
+        var metrics = new ProxyToolkitMetrics(new SimpleMeterRegistry());
+
+        var service = new IdempotencyService(null, null) {
+            private final Map<String, IdempotencyRecord> rows = new ConcurrentHashMap<>();
+
+            @Override
+            public Optional<IdempotencyRecord> read(String key, String methodKey) {
+                roundTrip();
+                return Optional.ofNullable(rows.get(key));
+            }
+
+            @Override
+            public IdempotencyRecord acquireOrGet(String key, String methodKey, String requestHash, Duration ttl, String lockOwner) {
+                roundTrip();
+                return rows.computeIfAbsent(key, k -> IdempotencyRecord.builder()
+                        .idempotencyKey(key).methodKey(methodKey).requestHash(requestHash)
+                        .status(STATUS_PENDING).expiresAt(Instant.now().plus(ttl)).lockedBy(lockOwner)
+                        .build());
+            }
+
+            @Override
+            public void markCompleted(String key, String methodKey, String requestHash, byte[] responseBody) {
+                roundTrip();
+                IdempotencyRecord rec = rows.get(key);
+                rec.setStatus(STATUS_COMPLETED);
+                rec.setResponseBody(responseBody);
+                rec.setLockedBy(null);
+            }
+
+            @Override
+            public void markFailed(String key, String methodKey, String requestHash, String errorMessage) {
+                roundTrip();
+                rows.get(key).setStatus(STATUS_FAILED);
+            }
+        };
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+
+        var interceptor = new IdempotencyMethodInterceptor(
+                service,
+                new IdempotencyL1Cache(props, metrics),
+                new IdempotencyCompletions(),
+                new IdempotencyResponseCodec(new ObjectMapper(), props),
+                new IdempotencyFingerprinter(new ObjectMapper()),
+                props,
+                new MethodPlanRegistry(props, metrics),
+                new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService)
+        );
+        ProxyFactory pf = new ProxyFactory(new PaymentService());
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(interceptor);
+        proxy = (PaymentService) pf.getProxy();
+
+        // the replayed key
+        call("replayed-key", 100);
+    }
+
+    private void roundTrip() {
+        dbCalls++;
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(dbLatencyMicros));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        calls = 0;
+        dbCalls = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        if (calls == 0) return;
+        System.out.printf("%n  per call: DB round trips=%.2f%n", (double) dbCalls / calls);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MDC.clear();
+    }
+
+    @Benchmark
+    public String replayCompleted() {
+        return call("replayed-key", 100);
+    }
+
+    @Benchmark
+    public String firstExecution() {
+        return call("key-" + (seq++), 100);
+    }
+
+    private String call(String idemKey, int amount) {
+        calls++;
+        MDC.put(IdempotencyKeyFilter.MDC_KEY, idemKey);
+        MDC.put(CORRELATION_ID_MDC_KEY, "corr-" + calls);
+        return proxy.pay(amount);
+    }
+}
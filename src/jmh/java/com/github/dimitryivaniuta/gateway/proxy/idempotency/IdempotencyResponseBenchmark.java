@@ -0,0 +1,97 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotent response store (encode) and replay (decode) by payload size.
+ *
+ * <ul>
+ *   <li>{@code legacy}: previous implementation - JSON text for the jsonb column, replay through
+ *       {@code readValue} with a JavaType built per call.</li>
+ *   <li>{@code codec}: {@link IdempotencyResponseCodec} in the given {@code format}, deflate from 2 KB,
+ *       cached reader per method.</li>
+ * </ul>
+ *
+ * The stored size per variant is printed once per trial.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=IdempotencyResponseBenchmark -PjmhProfilers=gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdempotencyResponseBenchmark {
+
+    public record Order(long id, String customer, String status, List<String> lines) {}
+
+    public static class OrderService {
+        @ProxyIdempotent
+        public List<Order> place(int n) {
+            return List.of();
+        }
+    }
+
+    @Param({"1", "100", "10000"})
+    public int orders;
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public ProxyToolkitProperties.Idempotency.ResponseFormat format;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private IdempotencyResponseCodec codec;
+    private MethodPlan plan;
+    private List<Order> value;
+    private String storedJson;
+    private byte[] stored;
+
+    @Setup
+    public void setup() throws Exception {
+        var props = new ProxyToolkitProperties();
+        props.getIdempotency().setResponseFormat(format);
+        codec = new IdempotencyResponseCodec(mapper, props);
+        plan = new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()))
+                .forClass(OrderService.class)
+                .get(OrderService.class.getMethod("place", int.class));
+
+        value = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            value.add(new Order(i, "customer-" + i, (i % 3 == 0) ? "SHIPPED" : "OPEN", List.of("sku-" + i, "sku-" + (i + 1))));
+        }
+        storedJson = mapper.writeValueAsString(value);
+        stored = codec.encode(value);
+        System.out.printf("%n[orders=%d] legacy json: %d chars, %s codec: %d bytes%n",
+                orders, storedJson.length(), format, stored.length);
+    }
+
+    @Benchmark
+    public String legacyStore() throws Exception {
+        return mapper.writeValueAsString(value);
+    }
+
+    @Benchmark
+    public Object legacyReplay() throws Exception {
+        JavaType type = mapper.getTypeFactory().constructType(plan.method().getGenericReturnType());
+        return mapper.readValue(storedJson, type);
+    }
+
+    @Benchmark
+    public byte[] codecStore() {
+        return codec.encode(value);
+    }
+
+    @Benchmark
+    public Object codecReplay() throws Exception {
+        return codec.decode(plan, stored);
+    }
+}
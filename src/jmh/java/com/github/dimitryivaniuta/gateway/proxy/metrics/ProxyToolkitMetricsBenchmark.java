@@ -0,0 +1,85 @@
+package com.github.dimitryivaniuta.gateway.proxy.metrics;
+
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver.SubjectType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call metric overhead on the interceptor hot path.
+ *
+ * <ul>
+ *   <li>{@code legacy*}: previous code, {@code Counter.builder(..).tag(..).register(registry).increment()} per call.</li>
+ *   <li>{@code cached*}: handles held by the method plan, a single {@code increment()}.</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=ProxyToolkitMetricsBenchmark -PjmhProfilers=gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProxyToolkitMetricsBenchmark {
+
+    private static final String METHOD = "DemoService#find";
+    private static final String CACHE = "demo:ttl=60";
+
+    private MeterRegistry registry;
+    private ProxyToolkitMetrics.RateLimitMeters rateLimitMeters;
+    private ProxyToolkitMetrics.CacheMeters cacheMeters;
+
+    @Setup
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        var metrics = new ProxyToolkitMetrics(registry);
+        rateLimitMeters = metrics.rateLimitMeters(METHOD);
+        cacheMeters = metrics.cacheMeters(METHOD, CACHE);
+
+        // a realistic registry: a few hundred other series
+        for (int i = 0; i < 300; i++) {
+            Counter.builder("proxy_toolkit_cache_hits_total").tag("cache", "c" + i).tag("method", "M#" + i).register(registry);
+        }
+    }
+
+    @Benchmark
+    public void legacyRateLimitAllowed() {
+        Counter.builder("proxy_toolkit_ratelimit_allowed_total")
+                .tag("method", METHOD)
+                .tag("subject", SubjectType.API_KEY.tag())
+                .register(registry)
+                .increment();
+    }
+
+    @Benchmark
+    public void cachedRateLimitAllowed() {
+        rateLimitMeters.allowed(SubjectType.API_KEY).increment();
+    }
+
+    @Benchmark
+    public void legacyCacheHit() {
+        Counter.builder("proxy_toolkit_cache_hits_total")
+                .tag("cache", CACHE)
+                .tag("method", METHOD)
+                .register(registry)
+                .increment();
+    }
+
+    @Benchmark
+    public void cachedCacheHit() {
+        cacheMeters.forCache(CACHE).hits().increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void legacyCacheHitContended() {
+        legacyCacheHit();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void cachedCacheHitContended() {
+        cachedCacheHit();
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.dimitryivaniuta.gateway.proxy.plan;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport;
+import com.github.dimitryivaniuta.gateway.sample.DemoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of resolving "what does this method need" in the interceptor chain.
+ *
+ * <ul>
+ *   <li>{@code legacyPerCall}: what the five interceptors did on every call
+ *       (five merged-annotation lookups + method-key building in every active stage).</li>
+ *   <li>{@code planLookup}: one {@link MethodPlans#get} per stage (five map hits, no allocation).</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=MethodPlanBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MethodPlanBenchmark {
+
+    private final Class<?> targetClass = DemoService.class;
+    private Method method;
+    private MethodPlans plans;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        // a fresh Method copy, like the one the proxy hands to interceptors
+        method = DemoService.class.getMethod("cachedCustomerView", Long.class);
+
+        var registry = new MethodPlanRegistry(new ProxyToolkitProperties(), new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        plans = registry.forClass(targetClass);
+    }
+
+    @Benchmark
+    public void legacyPerCall(Blackhole bh) {
+        bh.consume(find(ProxyAudit.class));
+        bh.consume(MethodKeySupport.signature(targetClass, method));
+
+        bh.consume(find(ProxyIdempotent.class));
+
+        bh.consume(find(ProxyCache.class));
+        bh.consume(MethodKeySupport.signature(targetClass, method));
+        bh.consume(MethodKeySupport.metricMethodKey(targetClass, method));
+
+        bh.consume(find(ProxyRateLimit.class));
+
+        bh.consume(find(ProxyRetry.class));
+    }
+
+    @Benchmark
+    public void planLookup(Blackhole bh) {
+        // one lookup per stage, as in the current chain
+        bh.consume(plans.get(method).audit());
+        bh.consume(plans.get(method).idempotent());
+        bh.consume(plans.get(method).cache());
+        bh.consume(plans.get(method).rateLimit());
+        bh.consume(plans.get(method).retry());
+    }
+
+    private <A extends Annotation> A find(Class<A> type) {
+        A onMethod = AnnotatedElementUtils.findMergedAnnotation(method, type);
+        return (onMethod != null) ? onMethod : AnnotatedElementUtils.findMergedAnnotation(targetClass, type);
+    }
+}
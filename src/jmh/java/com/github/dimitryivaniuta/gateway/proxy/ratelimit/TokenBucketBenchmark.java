@@ -0,0 +1,68 @@
+package com.github.dimitryivaniuta.gateway.proxy.ratelimit;
+
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended permit acquisition: {@link TokenBucketRateLimiter} vs the previous Resilience4j path
+ * (ConcurrentHashMap of limiters + acquirePermission, fail fast).
+ *
+ * <p>{@code subjects=1} puts all threads on one hot bucket (worst-case CAS contention);
+ * {@code subjects=10000} spreads them like real per-client traffic. The Resilience4j map is unbounded,
+ * which is why the old interceptor could only key by subject type.
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=TokenBucketBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class TokenBucketBenchmark {
+
+    private static final String METHOD = "DemoService#rateLimitedPing()";
+    private static final int PPS = 50_000;
+
+    @Param({"1", "10000"})
+    public int subjects;
+
+    private String[] subjectKeys;
+    private TokenBucketRateLimiter tokenBuckets;
+    private final ConcurrentHashMap<String, RateLimiter> r4j = new ConcurrentHashMap<>();
+    private RateLimiterConfig r4jConfig;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+    }
+
+    @Setup
+    public void setup() {
+        subjectKeys = new String[subjects];
+        for (int i = 0; i < subjects; i++) subjectKeys[i] = "ip:10.0." + (i >>> 8) + "." + (i & 0xff);
+
+        tokenBuckets = new TokenBucketRateLimiter(1_000_000, Duration.ofMinutes(5), System::nanoTime);
+        r4jConfig = RateLimiterConfig.custom()
+                .limitForPeriod(PPS)
+                .limitRefreshPeriod(Duration.ofSeconds(1))
+                .timeoutDuration(Duration.ZERO)
+                .build();
+    }
+
+    @Benchmark
+    public boolean tokenBucket(Cursor c) {
+        String subject = subjectKeys[c.i++ % subjects];
+        return tokenBuckets.tryAcquire(METHOD, subject, PPS, PPS).allowed();
+    }
+
+    @Benchmark
+    public boolean resilience4j(Cursor c) {
+        String subject = subjectKeys[c.i++ % subjects];
+        RateLimiter limiter = r4j.computeIfAbsent(METHOD + ":" + subject, n -> RateLimiter.of(n, r4jConfig));
+        return limiter.acquirePermission();
+    }
+}
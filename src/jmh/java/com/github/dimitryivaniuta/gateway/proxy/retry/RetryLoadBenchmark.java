@@ -0,0 +1,144 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry under load: a burst of {@code requests} calls where every other attempt fails (50 ms backoff),
+ * served by a request pool of {@code workers} platform threads (like Tomcat's) or by virtual threads. One op = the
+ * whole burst drained.
+ *
+ * <ul>
+ *   <li>{@code platformBlocking}: sync method, backoff sleeps the worker - the pool saturates, the burst takes
+ *       about (requests / workers) x backoff.</li>
+ *   <li>{@code virtualBlocking}: same sync method on virtual request threads
+ *       ({@code spring.threads.virtual.enabled}) - the sleep parks only the virtual thread, ~1 backoff.</li>
+ *   <li>{@code platformAsync}: CompletableFuture method on the platform pool - the worker returns the future
+ *       immediately and the re-attempt is scheduled, ~1 backoff with the pool free meanwhile.</li>
+ * </ul>
+ *
+ * Run: {@code ./gradlew jmh -PjmhIncludes=RetryLoadBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RetryLoadBenchmark {
+
+    public static class Backend {
+        private final AtomicLong calls = new AtomicLong();
+
+        // every other attempt fails: on average each request needs one retry
+        @ProxyRetry(maxAttempts = 3, backoffMs = 50)
+        public String fetch(int id) {
+            if ((calls.incrementAndGet() & 1) == 1) throw new IllegalStateException("transient");
+            return "ok-" + id;
+        }
+
+        @ProxyRetry(maxAttempts = 3, backoffMs = 50)
+        public CompletableFuture<String> fetchAsync(int id) {
+            if ((calls.incrementAndGet() & 1) == 1) {
+                return CompletableFuture.failedFuture(new IllegalStateException("transient"));
+            }
+            return CompletableFuture.completedFuture("ok-" + id);
+        }
+    }
+
+    @Param({"200", "1000"})
+    public int requests;
+
+    @Param({"16"})
+    public int workers;
+
+    private Backend backend;
+    private ExecutorService platformPool;
+    private ExecutorService virtualThreads;
+
+    @Setup
+    public void setup() {
+        var props = new ProxyToolkitProperties();
+        var metrics = new ProxyToolkitMetrics(new SimpleMeterRegistry());
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+        var retry = new RetryMethodInterceptor(
+                props,
+                new MethodPlanRegistry(props, metrics),
+                new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService),
+                new RetrySpecRegistry(props)
+        );
+        ProxyFactory pf = new ProxyFactory(new Backend());
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(retry);
+        backend = (Backend) pf.getProxy();
+
+        platformPool = Executors.newFixedThreadPool(workers);
+        virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        platformPool.shutdownNow();
+        virtualThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public int platformBlocking() throws Exception {
+        return drain(platformPool);
+    }
+
+    @Benchmark
+    public int virtualBlocking() throws Exception {
+        return drain(virtualThreads);
+    }
+
+    @Benchmark
+    public int platformAsync() throws Exception {
+        List<Future<CompletableFuture<String>>> submitted = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            int id = i;
+            submitted.add(platformPool.submit(() -> backend.fetchAsync(id)));
+        }
+        int ok = 0;
+        for (Future<CompletableFuture<String>> f : submitted) {
+            if (f.get().get() != null) ok++;
+        }
+        return ok;
+    }
+
+    private int drain(ExecutorService requestThreads) throws Exception {
+        List<Future<String>> submitted = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            int id = i;
+            submitted.add(requestThreads.submit(() -> backend.fetch(id)));
+        }
+        int ok = 0;
+        for (Future<String> f : submitted) {
+            if (f.get() != null) ok++;
+        }
+        return ok;
+    }
+}
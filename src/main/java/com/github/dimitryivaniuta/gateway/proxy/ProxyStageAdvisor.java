@@ -0,0 +1,38 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.function.Predicate;
+
+/**
+ * One interceptor stage, applied only to the methods whose {@link MethodPlan} has that stage.
+ *
+ * <p>Spring AOP evaluates the matcher once per method and caches the resulting chain: a method runs only the
+ * interceptors it is annotated for, and a method without any stage has an empty chain (on a frozen CGLIB
+ * proxy it is dispatched straight to the target).
+ *
+ * <p>Advisors are created once and shared by all proxied beans, so CGLIB sees equal advisor lists and reuses
+ * the generated proxy class of a target class.
+ */
+final class ProxyStageAdvisor extends StaticMethodMatcherPointcutAdvisor {
+
+    private final transient MethodPlanRegistry registry;
+    private final transient Predicate<MethodPlan> stage;
+
+    ProxyStageAdvisor(MethodInterceptor interceptor, MethodPlanRegistry registry, Predicate<MethodPlan> stage) {
+        super(interceptor);
+        this.registry = registry;
+        this.stage = stage;
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        Class<?> userClass = (targetClass != null) ? ClassUtils.getUserClass(targetClass) : method.getDeclaringClass();
+        return stage.test(registry.forClass(userClass).get(method));
+    }
+}
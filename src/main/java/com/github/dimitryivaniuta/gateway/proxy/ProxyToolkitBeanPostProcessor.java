@@ -1,29 +1,26 @@
 package com.github.dimitryivaniuta.gateway.proxy;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.dimitryivaniuta.gateway.proxy.audit.AuditCallLogService;
 import com.github.dimitryivaniuta.gateway.proxy.audit.AuditMethodInterceptor;
 import com.github.dimitryivaniuta.gateway.proxy.cache.CacheMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
 import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyMethodInterceptor;
-import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyService;
-import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
-import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
-import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
 import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitMethodInterceptor;
 import com.github.dimitryivaniuta.gateway.proxy.retry.RetryMethodInterceptor;
-import lombok.RequiredArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
 import org.springframework.aop.framework.Advised;
 import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
-import org.springframework.cache.CacheManager;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
 import java.lang.reflect.Method;
+import java.util.List;
 
 import static com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitSupport.hasAnyProxyAnnotation;
 
@@ -32,103 +29,118 @@ import static com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitSupport.hasAn
  *
  * <p>This is NOT @Aspect-based AOP. It is a custom proxy wiring via BeanPostProcessor.
  *
+ * <p>Each stage is attached as a {@link ProxyStageAdvisor} matching only the methods annotated for it;
+ * methods without toolkit annotations bypass the chain. Interceptors and advisors are singletons shared by all
+ * proxied beans: per-bean cost is the proxy itself plus the method plans.
+ *
+ * <p>Whether a bean needs a proxy is answered by the build-time {@link ProxyToolkitIndex} when it covers the
+ * bean's classes; other beans are scanned reflectively.
+ *
  * <p>Advice order (outer -> inner):
  * <ol>
  *   <li>Audit: logs also short-circuits and failures</li>
  *   <li>Idempotency: short-circuit duplicate requests</li>
  *   <li>Cache: short-circuit read operations</li>
  *   <li>RateLimit: defense-in-depth (primary RL should be in API Gateway)</li>
+ *   <li>ConcurrencyLimit: adaptive in-flight limit, sheds load before retries multiply it</li>
  *   <li>Retry: retries only the actual backend execution</li>
  * </ol>
  */
 @Component
 @Order(Ordered.LOWEST_PRECEDENCE)
-@RequiredArgsConstructor
 @EnableConfigurationProperties(ProxyToolkitProperties.class)
 public final class ProxyToolkitBeanPostProcessor implements BeanPostProcessor {
 
     private final ProxyToolkitProperties props;
-
-    private final ObjectMapper objectMapper;
-    private final CacheManager cacheManager;
-
-    private final AuditCallLogService auditService;
-    private final IdempotencyService idempotencyService;
-
-    private final RateLimitKeyResolver rateLimitKeyResolver;
-    private final ApiClientPolicyService apiClientPolicyService;
-
-    private final ProxyToolkitMetrics metrics;
+    private final MethodPlanRegistry planRegistry;
+    private final List<Advisor> advisors;
+    private final ProxyToolkitIndex index;
+
+    public ProxyToolkitBeanPostProcessor(ProxyToolkitProperties props,
+                                         MethodPlanRegistry planRegistry,
+                                         AuditMethodInterceptor audit,
+                                         IdempotencyMethodInterceptor idempotency,
+                                         CacheMethodInterceptor cache,
+                                         RateLimitMethodInterceptor rateLimit,
+                                         ConcurrencyLimitMethodInterceptor concurrency,
+                                         RetryMethodInterceptor retry) {
+        this.props = props;
+        this.planRegistry = planRegistry;
+        this.advisors = stageAdvisors(planRegistry, audit, idempotency, cache, rateLimit, concurrency, retry);
+        this.index = props.isUseIndex()
+                ? ProxyToolkitIndex.load(ClassUtils.getDefaultClassLoader())
+                : ProxyToolkitIndex.EMPTY;
+    }
 
     @Override
     public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
         if (!props.isEnabled()) return bean;
 
         Class<?> targetClass = ClassUtils.getUserClass(bean);
-        if (isExcluded(targetClass)) return bean;
+        if (planRegistry.isExcluded(targetClass)) return bean;
         if (!needsProxy(targetClass)) return bean;
 
-        // Build advices once per bean
-        var audit = new AuditMethodInterceptor(auditService, objectMapper, props);
-
-        // NOTE: ensure your IdempotencyMethodInterceptor constructor matches
-        // (recommended signature: (IdempotencyService, ObjectMapper, ProxyToolkitMetrics))
-        var idem = new IdempotencyMethodInterceptor(idempotencyService, objectMapper, rateLimitKeyResolver, apiClientPolicyService, metrics);
-
-        // NOTE: ensure your CacheMethodInterceptor constructor matches
-        // (recommended signature: (CacheManager, RateLimitKeyResolver, ProxyToolkitMetrics))
-        var cache = new CacheMethodInterceptor(cacheManager, rateLimitKeyResolver, apiClientPolicyService, metrics);
+        // Annotations, method keys and meters are resolved here once; interceptors only look plans up
+        planRegistry.forClass(targetClass);
 
-        var rateLimit = new RateLimitMethodInterceptor(rateLimitKeyResolver, apiClientPolicyService, metrics);
+        return attach(bean, advisors);
+    }
 
-        var retry = new RetryMethodInterceptor(rateLimitKeyResolver, apiClientPolicyService, metrics);
+    /**
+     * One advisor per stage, outer -> inner. Each matches only the methods whose plan has the stage, so
+     * a method pays for its own stages only.
+     */
+    static List<Advisor> stageAdvisors(MethodPlanRegistry plans,
+                                       MethodInterceptor audit,
+                                       MethodInterceptor idempotency,
+                                       MethodInterceptor cache,
+                                       MethodInterceptor rateLimit,
+                                       MethodInterceptor concurrency,
+                                       MethodInterceptor retry) {
+        return List.of(
+                new ProxyStageAdvisor(audit, plans, p -> p.audit() != null),
+                new ProxyStageAdvisor(idempotency, plans, p -> p.idempotent() != null),
+                new ProxyStageAdvisor(cache, plans, p -> p.cache() != null && !p.returnsVoid()),
+                new ProxyStageAdvisor(rateLimit, plans, p -> p.rateLimit() != null),
+                new ProxyStageAdvisor(concurrency, plans, p -> p.concurrencyLimit() != null),
+                new ProxyStageAdvisor(retry, plans, p -> p.retry() != null)
+        );
+    }
 
-        // If already proxied (e.g., @Transactional), add advice to existing proxy
+    static Object attach(Object bean, List<Advisor> advisors) {
+        // If already proxied (e.g., @Transactional), add advisors to existing proxy
         if (bean instanceof Advised advised) {
             // add at index 0 in reverse order to preserve final outer->inner chain
-            advised.addAdvice(0, retry);
-            advised.addAdvice(0, rateLimit);
-            advised.addAdvice(0, cache);
-            advised.addAdvice(0, idem);
-            advised.addAdvice(0, audit);
+            for (int i = advisors.size() - 1; i >= 0; i--) {
+                advised.addAdvisor(0, advisors.get(i));
+            }
             return bean;
         }
 
         ProxyFactory pf = new ProxyFactory(bean);
         // allow class-based proxying for beans without interfaces
         pf.setProxyTargetClass(true);
-
-        pf.addAdvice(audit);
-        pf.addAdvice(idem);
-        pf.addAdvice(cache);
-        pf.addAdvice(rateLimit);
-        pf.addAdvice(retry);
+        advisors.forEach(pf::addAdvisor);
+        // frozen: CGLIB routes methods without advisors directly to the target instead of through the chain
+        pf.setFrozen(true);
 
         return pf.getProxy();
     }
 
     private boolean needsProxy(Class<?> targetClass) {
+        return switch (index.lookup(targetClass)) {
+            case CANDIDATE -> true;
+            case SKIP -> false;
+            // not covered by the build-time index
+            case UNINDEXED -> scanAnnotations(targetClass);
+        };
+    }
+
+    private static boolean scanAnnotations(Class<?> targetClass) {
         if (hasAnyProxyAnnotation(targetClass)) return true;
         for (Method m : targetClass.getMethods()) {
             if (hasAnyProxyAnnotation(m)) return true;
         }
         return false;
     }
-
-    private boolean isExcluded(Class<?> targetClass) {
-        String name = targetClass.getName();
-
-        if (name.startsWith("org.springframework.") || name.startsWith("jakarta.") || name.startsWith("java.") || name.startsWith("kotlin.") || name.startsWith("com.zaxxer.")) {
-            return true;
-        }
-
-        if (props.getExcludePackages() == null || props.getExcludePackages().isEmpty()) return false;
-
-        for (String p : props.getExcludePackages()) {
-            if (p == null || p.isBlank()) continue;
-            String prefix = p.endsWith(".") ? p : p + ".";
-            if (name.startsWith(prefix)) return true;
-        }
-        return false;
-    }
 }
@@ -0,0 +1,43 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyL1Cache;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.TokenBucketRateLimiter;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetrySpecRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/proxytoolkit}: sizes of the application-wide registries behind the shared interceptors.
+ *
+ * <p>All of them are shared by every proxied bean; bounded ones report their configured maximum.
+ */
+@Component
+@Endpoint(id = "proxytoolkit")
+@RequiredArgsConstructor
+public class ProxyToolkitEndpoint {
+
+    public record Plans(int classes, int methods) {}
+
+    public record Bounded(long size, long max) {}
+
+    public record Registries(Plans plans, Bounded rateLimitBuckets, Bounded retrySpecs, Bounded idempotencyL1) {}
+
+    private final ProxyToolkitProperties props;
+    private final MethodPlanRegistry planRegistry;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final RetrySpecRegistry retrySpecs;
+    private final IdempotencyL1Cache idempotencyL1;
+
+    @ReadOperation
+    public Registries registries() {
+        return new Registries(
+                new Plans(planRegistry.classCount(), planRegistry.methodCount()),
+                new Bounded(rateLimiter.estimatedSize(), props.getRateLimit().getMaxBuckets()),
+                new Bounded(retrySpecs.size(), retrySpecs.maxSize()),
+                new Bounded(idempotencyL1.estimatedSize(),
+                        idempotencyL1.enabled() ? props.getIdempotency().getL1MaxEntries() : 0));
+    }
+}
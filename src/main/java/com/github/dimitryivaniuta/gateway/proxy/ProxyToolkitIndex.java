@@ -0,0 +1,152 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Build-time index of proxy candidates ({@code META-INF/proxy-toolkit.idx}, written by the
+ * {@code proxy-toolkit-index} annotation processor), merged over all index files on the classpath.
+ *
+ * <p>The index lists the packages compiled with the processor and the types carrying a toolkit annotation.
+ * A bean is a candidate when any type of its hierarchy is listed, and is skipped when every type of its
+ * hierarchy lives in an indexed package (or in a framework package that cannot carry toolkit annotations)
+ * without being listed. A package only counts as indexed for classes loaded from the classpath root (directory
+ * or jar) of the index file that lists it, so a split package from an unindexed jar is not skipped. Anything
+ * else - no index, a type from an unindexed jar, a JDK proxy - is {@link Lookup#UNINDEXED} and is checked
+ * reflectively.
+ */
+@Slf4j
+final class ProxyToolkitIndex {
+
+    static final String LOCATION = "META-INF/proxy-toolkit.idx";
+
+    static final ProxyToolkitIndex EMPTY = new ProxyToolkitIndex(Map.of(), Set.of(), false);
+
+    // library types implemented or extended by beans; none of them can declare toolkit annotations
+    private static final String[] FRAMEWORK_PREFIXES = {
+            "java.", "javax.", "jakarta.", "kotlin.", "org.springframework.", "org.aopalliance."
+    };
+
+    enum Lookup { CANDIDATE, SKIP, UNINDEXED }
+
+    // package -> classpath roots whose index lists it
+    private final Map<String, Set<String>> packages;
+    private final Set<String> types;
+    private final boolean present;
+
+    private ProxyToolkitIndex(Map<String, Set<String>> packages, Set<String> types, boolean present) {
+        this.packages = packages;
+        this.types = types;
+        this.present = present;
+    }
+
+    static ProxyToolkitIndex load(ClassLoader classLoader) {
+        Map<String, Set<String>> packages = new HashMap<>();
+        Set<String> types = new HashSet<>();
+        int files = 0;
+        try {
+            Enumeration<URL> urls = (classLoader != null)
+                    ? classLoader.getResources(LOCATION)
+                    : ClassLoader.getSystemResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                read(urls.nextElement(), packages, types);
+                files++;
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("proxy-toolkit index could not be read, checking beans reflectively: {}", ex.toString());
+            return EMPTY;
+        }
+        if (files == 0) {
+            log.debug("No {} on the classpath, checking beans reflectively", LOCATION);
+            return EMPTY;
+        }
+        log.debug("proxy-toolkit index: {} file(s), {} packages, {} candidate types", files, packages.size(), types.size());
+        Map<String, Set<String>> roots = new HashMap<>();
+        packages.forEach((pkg, locations) -> roots.put(pkg, Set.copyOf(locations)));
+        return new ProxyToolkitIndex(Map.copyOf(roots), Set.copyOf(types), true);
+    }
+
+    private static void read(URL url, Map<String, Set<String>> packages, Set<String> types) throws IOException {
+        String resource = url.toString();
+        String root = root(resource.endsWith(LOCATION)
+                ? resource.substring(0, resource.length() - LOCATION.length())
+                : resource);
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int sp = line.indexOf(' ');
+                if (sp < 0) continue;
+                String kind = line.substring(0, sp);
+                String value = line.substring(sp + 1).strip();
+                switch (kind) {
+                    case "package" -> packages.computeIfAbsent(value, k -> new HashSet<>()).add(root);
+                    case "type" -> types.add(value);
+                    default -> {
+                        // "method" lines and future entries are informational here
+                    }
+                }
+            }
+        }
+    }
+
+    Lookup lookup(Class<?> targetClass) {
+        if (!present) return Lookup.UNINDEXED;
+
+        boolean covered = true;
+        for (Class<?> c = targetClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            Lookup own = lookupType(c);
+            if (own == Lookup.CANDIDATE) return own;
+            if (own == Lookup.UNINDEXED) covered = false;
+        }
+        for (Class<?> i : ClassUtils.getAllInterfacesForClassAsSet(targetClass)) {
+            Lookup own = lookupType(i);
+            if (own == Lookup.CANDIDATE) return own;
+            if (own == Lookup.UNINDEXED) covered = false;
+        }
+        return covered ? Lookup.SKIP : Lookup.UNINDEXED;
+    }
+
+    private Lookup lookupType(Class<?> type) {
+        String name = type.getName();
+        if (types.contains(name)) return Lookup.CANDIDATE;
+        if (isFramework(name)) return Lookup.SKIP;
+
+        Set<String> roots = packages.get(type.getPackageName());
+        if (roots == null) return Lookup.UNINDEXED;
+        CodeSource source = type.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) return Lookup.UNINDEXED;
+        return roots.contains(root(source.getLocation().toString())) ? Lookup.SKIP : Lookup.UNINDEXED;
+    }
+
+    /**
+     * Common form of an index file's root and a class's code source: {@code jar:file:/a.jar!/} and
+     * {@code file:/a.jar} both become {@code file:/a.jar}, {@code file:/classes/} becomes {@code file:/classes}.
+     */
+    static String root(String location) {
+        String s = location;
+        while (s.startsWith("jar:")) s = s.substring(4);
+        while (s.endsWith("/") || s.endsWith("!")) s = s.substring(0, s.length() - 1);
+        return s;
+    }
+
+    private static boolean isFramework(String name) {
+        for (String prefix : FRAMEWORK_PREFIXES) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+}
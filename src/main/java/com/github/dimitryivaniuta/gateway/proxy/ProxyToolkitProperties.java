@@ -1,9 +1,11 @@
 package com.github.dimitryivaniuta.gateway.proxy;
 
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
 import java.util.List;
 
 @Getter
@@ -21,4 +23,186 @@ public class ProxyToolkitProperties {
             "kotlin",
             "com.zaxxer"
     );
+
+    // decide proxy candidates from META-INF/proxy-toolkit.idx (proxy-toolkit-index processor) where it covers the
+    // bean's classes; false = always scan annotations reflectively
+    private boolean useIndex = true;
+
+    private RateLimit rateLimit = new RateLimit();
+    private Audit audit = new Audit();
+    private Metrics metrics = new Metrics();
+    private Idempotency idempotency = new Idempotency();
+    private Retry retry = new Retry();
+    private Policy policy = new Policy();
+    private Cache cache = new Cache();
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+        // upper bound of live (method, subject) token buckets; LRU-ish eviction beyond it
+        private long maxBuckets = 1_000_000;
+        // buckets untouched for this long are dropped (they would be full again anyway)
+        private Duration idleTimeout = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Audit {
+        // audit writer; false => every audited call writes its row synchronously (REQUIRES_NEW), as before
+        private boolean async = true;
+        private int queueCapacity = 8192;
+        private int batchSize = 256;
+        // max time a row waits in the queue when traffic is too low to fill a batch
+        private Duration flushInterval = Duration.ofMillis(200);
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+        // BLOCK: longest a business thread waits for queue space before the row is dropped
+        private Duration blockTimeout = Duration.ofMillis(50);
+        // SAMPLE: once the queue is 3/4 full keep 1 in N successful rows (errors are always kept)
+        private int sampleRate = 10;
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+        // audit_call_log partitions (by created_at, UTC): always kept partitionsAhead periods ahead of now;
+        // partitionManagement=false only stops dropping the ones past retention
+        private boolean partitionManagement = true;
+        private PartitionInterval partitionInterval = PartitionInterval.MONTHLY;
+        private int partitionsAhead = 2;
+        private String partitionCron = "0 5 * * * *";
+        // partitions entirely older than this are dropped; zero keeps everything
+        private Duration retention = Duration.ofDays(90);
+        private Sampling sampling = new Sampling();
+        private Adaptive adaptive = new Adaptive();
+        private Stacktrace stacktrace = new Stacktrace();
+
+        public enum OverflowPolicy { DROP, BLOCK, SAMPLE }
+
+        public enum PartitionInterval { DAILY, MONTHLY }
+
+        public enum StackCapture { FULL, COMPACT }
+
+        /**
+         * Defaults for {@code @ProxyAudit(sampling = DEFAULT)} and the other -1 attributes.
+         */
+        @Getter
+        @Setter
+        public static class Sampling {
+            private ProxyAudit.Sampling mode = ProxyAudit.Sampling.ALL;
+            private double rate = 0.1;
+            private int perSubjectPerSecond = 5;
+            // calls at least this slow are always written; zero disables
+            private Duration slowThreshold = Duration.ZERO;
+            private boolean keepErrors = true;
+        }
+
+        /**
+         * Degrades capture level when the writer falls behind: FULL -> METADATA (no args / result / stacktrace)
+         * -> SAMPLED (metadata, and only sampledRate of the calls that sampling would write; errors still kept).
+         */
+        @Getter
+        @Setter
+        public static class Adaptive {
+            private boolean enabled = true;
+            // queue fill ratio (0..1) / smoothed batch write latency at which each level starts
+            private double metadataQueueRatio = 0.5;
+            private double sampledQueueRatio = 0.8;
+            private Duration metadataFlushLatency = Duration.ofMillis(250);
+            private Duration sampledFlushLatency = Duration.ofSeconds(1);
+            private double sampledRate = 0.01;
+        }
+
+        /**
+         * FULL: printStackTrace text in error_stack of every row. COMPACT: rows only carry stack_fingerprint; the
+         * frame-limited trace is stored once per fingerprint and dedupWindow in audit_stack_fingerprint.
+         */
+        @Getter
+        @Setter
+        public static class Stacktrace {
+            private StackCapture mode = StackCapture.COMPACT;
+            // frames rendered (and hashed) per throwable / causes followed
+            private int maxFrames = 32;
+            private int maxCauses = 8;
+            private Duration dedupWindow = Duration.ofMinutes(10);
+            // distinct fingerprints remembered for dedup
+            private int maxTracked = 10_000;
+            // occurrence counters are upserted this often
+            private Duration flushInterval = Duration.ofSeconds(5);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        // concurrent misses wait this long for the caller loading the key, then call the method themselves
+        private Duration loadWait = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+        // cardinality guard: distinct method / cache tag values beyond these are reported as "other"
+        private int maxMethodTags = 2000;
+        private int maxCacheTags = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        // in-process tier: replays COMPLETED records and spots same-node in-flight duplicates without the DB
+        private boolean l1Enabled = true;
+        private long l1MaxEntries = 100_000;
+        // upper bound on how long an entry is trusted (records are also never served past expires_at)
+        private Duration l1MaxTtl = Duration.ofMinutes(10);
+        // larger (encoded) responses are replayed from the DB only
+        private int l1MaxResponseBytes = 16_384;
+        // stored responses: Jackson format + deflate from this many encoded bytes (0 = never); see IdempotencyResponseCodec
+        private ResponseFormat responseFormat = ResponseFormat.SMILE;
+        private int responseCompressThreshold = 2_048;
+        // how long a duplicate waits for the in-flight original before answering 409
+        private Duration inFlightWaitMax = Duration.ofSeconds(2);
+        // waiters are woken by completion signals; this is only the safety re-check period
+        private Duration inFlightRecheckInterval = Duration.ofMillis(500);
+        // LISTEN on idempotency_record for completions on other nodes
+        private boolean listenEnabled = true;
+        private Duration listenReconnectDelay = Duration.ofSeconds(5);
+        // expiry cleanup: deletes at most cleanupBatchSize rows per transaction, pausing between chunks
+        private String cleanupCron = "0 */10 * * * *";
+        private int cleanupBatchSize = 5_000;
+        private Duration cleanupPause = Duration.ofMillis(100);
+        // a run stops after this long; the remainder is picked up by the next run
+        private Duration cleanupMaxRunTime = Duration.ofMinutes(2);
+
+        public enum ResponseFormat { JSON, SMILE, CBOR }
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+        // CompletableFuture / CompletionStage methods: failed attempts are re-run after the backoff on a virtual
+        // thread and the caller gets the future right away; false => all methods back off in the calling thread
+        private boolean asyncBackoff = true;
+        // synchronous methods: CALLER => attempts and backoff run in the calling thread; VIRTUAL => the attempt loop
+        // runs on a virtual thread the caller joins (independent of spring.threads.virtual.enabled)
+        private Execution execution = Execution.CALLER;
+        // per-method retry budget: retries in the window < budgetRatio x successful calls + a per-second floor
+        private boolean budgetEnabled = true;
+        private double budgetRatio = 0.2;
+        private int budgetMinRetriesPerSecond = 10;
+        private Duration budgetWindow = Duration.ofSeconds(10);
+        // upper bound of shared retry schedules (one per distinct @ProxyRetry settings + effective backoff)
+        private long maxSpecs = 10_000;
+
+        public enum Execution { CALLER, VIRTUAL }
+    }
+
+    @Getter
+    @Setter
+    public static class Policy {
+        // api_client_policy is served from memory; incremental refresh fetches rows with a newer updated_at
+        private Duration refreshInterval = Duration.ofSeconds(30);
+        // re-read window before the watermark (updated_at is the writing transaction's start time)
+        private Duration refreshOverlap = Duration.ofMinutes(1);
+        // full reload, the only one that drops deleted rows when their notification was missed
+        private Duration fullReloadInterval = Duration.ofMinutes(10);
+        // LISTEN on api_client_policy to refresh right after a change
+        private boolean listenEnabled = true;
+        private Duration listenReconnectDelay = Duration.ofSeconds(5);
+    }
 }
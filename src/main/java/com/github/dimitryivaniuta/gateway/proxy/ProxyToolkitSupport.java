@@ -14,6 +14,7 @@ public final class ProxyToolkitSupport {
                 || AnnotatedElementUtils.hasAnnotation(el, ProxyIdempotent.class)
                 || AnnotatedElementUtils.hasAnnotation(el, ProxyCache.class)
                 || AnnotatedElementUtils.hasAnnotation(el, ProxyRateLimit.class)
+                || AnnotatedElementUtils.hasAnnotation(el, ProxyConcurrencyLimit.class)
                 || AnnotatedElementUtils.hasAnnotation(el, ProxyRetry.class);
     }
 }
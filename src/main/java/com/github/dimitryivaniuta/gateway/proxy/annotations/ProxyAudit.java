@@ -50,4 +50,48 @@ public @interface ProxyAudit {
      * -1 means "use global toolkit configuration".
      */
     int maxPayloadChars() default -1;
+
+    /**
+     * Which calls are written. DEFAULT means "use proxy-toolkit.audit.sampling.mode".
+     * Errors are written in every mode unless proxy-toolkit.audit.sampling.keep-errors=false.
+     */
+    Sampling sampling() default Sampling.DEFAULT;
+
+    /**
+     * RATE: fraction of calls written (0..1).
+     * Negative means "use global toolkit configuration".
+     */
+    double sampleRate() default -1;
+
+    /**
+     * PER_SUBJECT: rows written per second per resolved subject (API key / user / IP).
+     * -1 means "use global toolkit configuration".
+     */
+    int perSubjectPerSecond() default -1;
+
+    /**
+     * Calls taking at least this long are always written (tail-based); 0 disables.
+     * -1 means "use global toolkit configuration".
+     */
+    long slowThresholdMs() default -1;
+
+    enum Sampling {
+        DEFAULT,
+        /**
+         * Every call.
+         */
+        ALL,
+        /**
+         * A fixed random fraction of calls ({@link #sampleRate()}).
+         */
+        RATE,
+        /**
+         * At most {@link #perSubjectPerSecond()} calls per subject per second, so one noisy client cannot flood audit.
+         */
+        PER_SUBJECT,
+        /**
+         * Only errors and calls slower than {@link #slowThresholdMs()}.
+         */
+        TAIL
+    }
 }
@@ -7,6 +7,7 @@ import java.lang.annotation.*;
  *
  * - Intended for read/pure methods.
  * - Policy overrides may disable caching or override TTL per client+method.
+ * - Concurrent misses for the same key run the method once (single-flight); the other callers wait for it.
  */
 @Documented
 @Inherited
@@ -32,6 +33,12 @@ public @interface ProxyCache {
      */
     CacheScope scope() default CacheScope.SUBJECT;
 
+    /**
+     * Refresh-ahead: once this percentage of the TTL has elapsed, the next hit still returns the cached value
+     * but reloads it in the background. 0 (default) disables; valid range 1..99.
+     */
+    int refreshAheadPercent() default 0;
+
     /**
      * Allows disabling caching on a method even if enabled on class.
      */
@@ -0,0 +1,35 @@
+package com.github.dimitryivaniuta.gateway.proxy.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Adaptive concurrency limit for a method (AIMD), applied between rate limiting and retry.
+ *
+ * <p>Calls beyond the current limit fail fast with {@code ConcurrencyLimitExceededException} (503).
+ * The limit grows by about one per limit-worth of successful calls while it is in use, and shrinks by 10%
+ * on every failed call (after retries) or call slower than {@code latencyThresholdMs}, so a degrading backend
+ * quickly gets fewer concurrent calls - and fewer retries - instead of a retry storm.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ProxyConcurrencyLimit {
+
+    boolean enabled() default true;
+
+    int initialLimit() default 20;
+
+    int minLimit() default 1;
+
+    int maxLimit() default 200;
+
+    /**
+     * Calls slower than this count as overload signals like failures; 0 = only failures.
+     */
+    long latencyThresholdMs() default 0;
+
+    /**
+     * Failures of these types (e.g. validation errors) do not shrink the limit.
+     */
+    Class<? extends Throwable>[] ignoreOn() default {};
+}
@@ -0,0 +1,23 @@
+package com.github.dimitryivaniuta.gateway.proxy.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Selects what takes part in the request fingerprint of a {@link ProxyIdempotent} method.
+ *
+ * - On parameters: once any parameter is marked (without exclude), only marked parameters count;
+ *   {@code exclude = true} drops a parameter (e.g. a trace id or a client timestamp).
+ * - On fields / getters / record components of argument types: same rules per class, by property.
+ *
+ * Only the fingerprint is affected; the method still receives every argument.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PARAMETER, ElementType.FIELD, ElementType.METHOD})
+public @interface ProxyFingerprint {
+
+    /**
+     * If true, the annotated parameter / property is left out instead of selected.
+     */
+    boolean exclude() default false;
+}
@@ -11,6 +11,9 @@ import java.lang.annotation.*;
  * (e.g., X-Idempotency-Key) or other request context (MDC).
  *
  * Policy overrides may disable idempotency or override TTL per client+method.
+ *
+ * The request fingerprint compared on key reuse covers all arguments, or the subset selected
+ * with {@link ProxyFingerprint}.
  */
 @Documented
 @Inherited
@@ -45,4 +48,22 @@ public @interface ProxyIdempotent {
      * (interceptor may wait/poll briefly or return conflict).
      */
     boolean rejectInFlight() default true;
+
+    /**
+     * Hash used for the request fingerprint (conflictOnDifferentRequest).
+     * Changing it while records are live makes their retries conflict until the records expire.
+     */
+    Fingerprint fingerprint() default Fingerprint.SHA256;
+
+    enum Fingerprint {
+        /**
+         * SHA-256 (64 hex chars); same fingerprints as before this option existed.
+         */
+        SHA256,
+        /**
+         * MurmurHash3 x64 128-bit (32 hex chars): much cheaper on large payloads, but a caller can craft
+         * two payloads with the same fingerprint. Use only where that gains nothing over reusing a key.
+         */
+        FAST128
+    }
 }
@@ -9,13 +9,13 @@ import java.lang.annotation.*;
  * <ul>
  *   <li>Primary rate limiting should be enforced at the API Gateway.</li>
  *   <li>This annotation is intended for additional protection of expensive endpoints/methods.</li>
- *   <li>This project uses Resilience4j RateLimiter under the hood (fixed refresh period).</li>
+ *   <li>Each subject (API key / user / IP) gets its own token bucket per method.</li>
  * </ul>
  *
  * <p>Semantics:
  * <ul>
- *   <li>{@code permitsPerSecond} defines the allowed operations per second (minimum 1).</li>
- *   <li>{@code burst} is treated as an approximation by increasing the per-second limit (Resilience4j is not a token bucket).</li>
+ *   <li>{@code permitsPerSecond} is the bucket refill rate (minimum 1).</li>
+ *   <li>{@code burst} is the bucket capacity, i.e. how many calls may arrive back-to-back (0 = permitsPerSecond).</li>
  *   <li>{@code key} is optional: for future extensibility (not used by the current resolver-based keying).</li>
  * </ul>
  */
@@ -30,7 +30,7 @@ public @interface ProxyRateLimit {
     int permitsPerSecond();
 
     /**
-     * Optional "burst" approximation. If > 0, backend limiter uses max(permitsPerSecond, burst) as limitForPeriod.
+     * Optional bucket capacity. If > 0, up to {@code burst} calls pass at once, then calls are paced at permitsPerSecond.
      */
     int burst() default 0;
 
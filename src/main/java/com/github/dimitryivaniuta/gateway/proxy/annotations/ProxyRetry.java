@@ -48,4 +48,10 @@ public @interface ProxyRetry {
      * Explicit deny-list; if matched, never retry even if retryOn matches.
      */
     Class<? extends Throwable>[] ignoreOn() default {};
+
+    /**
+     * Retries allowed per successful call over the budget window (e.g. 0.2 = at most 20% extra load);
+     * -1 = {@code proxy-toolkit.retry.budget-ratio}.
+     */
+    double budgetRatio() default -1;
 }
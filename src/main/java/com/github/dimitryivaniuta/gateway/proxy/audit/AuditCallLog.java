@@ -62,6 +62,10 @@ public class AuditCallLog {
     @Column(name = "error_stack", columnDefinition = "text")
     private String errorStack;
 
+    // audit_stack_fingerprint.fingerprint when the stack was captured in COMPACT mode
+    @Column(name = "stack_fingerprint")
+    private Long stackFingerprint;
+
     @PrePersist
     void prePersist() {
         if (createdAt == null) {
@@ -1,10 +1,16 @@
 package com.github.dimitryivaniuta.gateway.proxy.audit;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+
 /**
  * Persists audit logs in an isolated transaction so business flows are not affected
  * by audit storage latency/failures.
@@ -13,10 +19,42 @@ import org.springframework.transaction.annotation.Transactional;
 @RequiredArgsConstructor
 public class AuditCallLogService {
 
+    private static final String INSERT_SQL = """
+            insert into audit_call_log (
+                created_at, correlation_id, trace_id, bean_name, target_class, method_signature,
+                args, result, status, duration_ms, error_message, error_stack, stack_fingerprint
+            ) values (?, ?, ?, ?, ?, ?, cast(? as jsonb), cast(? as jsonb), ?, ?, ?, ?, ?)
+            """;
+
     private final AuditCallLogRepository repo;
+    private final JdbcTemplate jdbc;
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void save(AuditCallLog log) {
         repo.save(log);
     }
+
+    /**
+     * Writes a batch of rows with one JDBC batch (one round trip with reWriteBatchedInserts) and one commit.
+     * Used by {@link AuditWriter}; bypasses JPA so there is no identity fetch per row.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void insertBatch(List<AuditCallLog> rows) {
+        jdbc.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, r) -> {
+            Instant createdAt = (r.getCreatedAt() != null) ? r.getCreatedAt() : Instant.now();
+            ps.setTimestamp(1, Timestamp.from(createdAt));
+            ps.setString(2, r.getCorrelationId());
+            ps.setString(3, r.getTraceId());
+            ps.setString(4, r.getBeanName());
+            ps.setString(5, r.getTargetClass());
+            ps.setString(6, r.getMethodSignature());
+            ps.setString(7, r.getArgsJson());
+            ps.setString(8, r.getResultJson());
+            ps.setString(9, r.getStatus());
+            ps.setLong(10, r.getDurationMs());
+            ps.setString(11, r.getErrorMessage());
+            ps.setString(12, r.getErrorStack());
+            ps.setObject(13, r.getStackFingerprint(), Types.BIGINT);
+        });
+    }
 }
@@ -1,66 +1,78 @@
 package com.github.dimitryivaniuta.gateway.proxy.audit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
 import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
-import com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContext;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
 import lombok.RequiredArgsConstructor;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.springframework.aop.support.AopUtils;
-import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.lang.reflect.Method;
 import java.time.Instant;
 
-import static com.github.dimitryivaniuta.gateway.web.RequestContextKeys.CORRELATION_ID_MDC_KEY;
-
+@Component
 @RequiredArgsConstructor
 public final class AuditMethodInterceptor implements MethodInterceptor {
 
     private static final Logger log = LoggerFactory.getLogger(AuditMethodInterceptor.class);
 
-    private final AuditCallLogService auditService;
+    private final AuditWriter auditWriter;
+    private final AuditSampler sampler;
+    private final AuditStackTraces stackTraces;
     private final ObjectMapper mapper;
     private final ProxyToolkitProperties props;
+    private final MethodPlanRegistry plans;
+    private final ProxyCallContexts contexts;
 
     @Override
     public Object invoke(MethodInvocation inv) throws Throwable {
-        ProxyAudit ann = find(inv.getThis().getClass(), inv.getMethod());
-        if (ann == null || !ann.enabled()) {
+        MethodPlan plan = plans.plan(inv);
+        ProxyAudit ann = plan.audit();
+        if (ann == null) {
             return inv.proceed();
         }
 
-        Class<?> targetClass = resolveTargetClass(inv);
-        if (isExcluded(targetClass)) {
-            return inv.proceed();
-        }
+        // outermost stage: opens the call context shared with the inner stages
+        final ProxyCallContext ctx = contexts.get(inv, plan);
+        final Class<?> targetClass = plan.targetClass();
 
         final long startNs = System.nanoTime();
 
-        final String correlationId = MDC.get(CORRELATION_ID_MDC_KEY);
+        final String correlationId = ctx.correlationId();
         final String traceId = MDC.get("traceId"); // optional; safe even if absent
-        final String beanName = resolveBeanName(inv);
+        final String beanName = resolveBeanName(plan);
 
-        final String methodSignature = MethodKeySupport.signature(targetClass, inv.getMethod());
+        final String methodSignature = plan.fullMethodKey();
         final int maxChars = resolveMaxPayloadChars(ann);
 
-        final String argsJson = ann.captureArgs()
-                ? truncateJsonSafe(safeWrite(inv.getArguments()), maxChars)
+        final AuditSampler.CaptureLevel level = sampler.level();
+        final boolean full = level == AuditSampler.CaptureLevel.FULL;
+        final boolean admitted = sampler.admit(ann, level, () -> ctx.client().subjectKey());
+
+        // admitted calls capture args before the call; calls kept only as error / slow capture them afterwards
+        final String argsJson = (full && admitted && ann.captureArgs())
+                ? AuditPayloads.capture(mapper, inv.getArguments(), maxChars)
                 : null;
 
         try {
             Object result = inv.proceed();
             long durationMs = (System.nanoTime() - startNs) / 1_000_000L;
 
-            final String resultJson = (ann.captureResult() && inv.getMethod().getReturnType() != void.class)
-                    ? truncateJsonSafe(safeWrite(result), maxChars)
+            if (!sampler.keep(ann, admitted, false, durationMs)) {
+                return result;
+            }
+
+            final String resultJson = (full && ann.captureResult() && !plan.returnsVoid())
+                    ? AuditPayloads.capture(mapper, result, maxChars)
                     : null;
 
             persistSafe(AuditCallLog.builder()
@@ -69,7 +81,7 @@ public final class AuditMethodInterceptor implements MethodInterceptor {
                     .beanName(beanName)
                     .targetClass(targetClass.getName())
                     .methodSignature(methodSignature)
-                    .argsJson(argsJson)
+                    .argsJson(lateArgs(inv, ann, full, admitted, argsJson, maxChars))
                     .resultJson(resultJson)
                     .status(AuditCallLog.STATUS_OK)
                     .durationMs(durationMs)
@@ -81,9 +93,19 @@ public final class AuditMethodInterceptor implements MethodInterceptor {
         } catch (Throwable ex) {
             long durationMs = (System.nanoTime() - startNs) / 1_000_000L;
 
-            final String errorStack = ann.captureStacktrace()
-                    ? truncatePlain(stacktrace(ex), maxChars)
-                    : null;
+            if (!sampler.keep(ann, admitted, true, durationMs)) {
+                throw ex;
+            }
+
+            String errorStack = null;
+            Long stackFingerprint = null;
+            if (full && ann.captureStacktrace()) {
+                if (stackTraces.compact()) {
+                    stackFingerprint = stackTraces.record(ex, maxChars);
+                } else {
+                    errorStack = truncatePlain(stacktrace(ex), maxChars);
+                }
+            }
 
             persistSafe(AuditCallLog.builder()
                     .correlationId(correlationId)
@@ -91,12 +113,13 @@ public final class AuditMethodInterceptor implements MethodInterceptor {
                     .beanName(beanName)
                     .targetClass(targetClass.getName())
                     .methodSignature(methodSignature)
-                    .argsJson(argsJson)
+                    .argsJson(lateArgs(inv, ann, full, admitted, argsJson, maxChars))
                     .resultJson(null)
                     .status(AuditCallLog.STATUS_ERROR)
                     .durationMs(durationMs)
                     .errorMessage(truncatePlain(ex.getMessage(), maxChars))
                     .errorStack(errorStack)
+                    .stackFingerprint(stackFingerprint)
                     .createdAt(Instant.now())
                     .build());
 
@@ -104,39 +127,25 @@ public final class AuditMethodInterceptor implements MethodInterceptor {
         }
     }
 
-    private static Class<?> resolveTargetClass(MethodInvocation inv) {
-        Object target = inv.getThis();
-        Class<?> c = (target != null) ? AopUtils.getTargetClass(target) : null;
-        return (c != null) ? c : inv.getMethod().getDeclaringClass();
+    private String lateArgs(MethodInvocation inv, ProxyAudit ann, boolean full, boolean admitted,
+                            String argsJson, int maxChars) {
+        if (admitted || !full || !ann.captureArgs()) return argsJson;
+        return AuditPayloads.capture(mapper, inv.getArguments(), maxChars);
     }
 
-    private boolean isExcluded(Class<?> targetClass) {
-        if (targetClass == null) return false;
-        String name = targetClass.getName();
-
-        if (props == null || props.getExcludePackages() == null) return false;
-
-        for (String prefix : props.getExcludePackages()) {
-            if (prefix != null && !prefix.isBlank() && name.startsWith(prefix)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private String resolveBeanName(MethodInvocation inv) {
+    private static String resolveBeanName(MethodPlan plan) {
         // Best-effort: if you set it elsewhere into MDC.
         String fromMdc = MDC.get("beanName");
         if (fromMdc != null && !fromMdc.isBlank()) return fromMdc;
 
         // Fallback: target simple name
-        Class<?> targetClass = resolveTargetClass(inv);
-        return (targetClass != null) ? targetClass.getSimpleName() : "unknown";
+        return plan.targetClass().getSimpleName();
     }
 
     private void persistSafe(AuditCallLog row) {
         try {
-            auditService.save(row);
+            // enqueued for the background batch writer; overflow handling lives in AuditWriter
+            auditWriter.submit(row);
         } catch (Exception auditEx) {
             // Never break business flow due to audit persistence issues.
             log.warn("Audit persistence failed for methodSignature={}, reason={}",
@@ -150,43 +159,6 @@ public final class AuditMethodInterceptor implements MethodInterceptor {
         return 20_000;
     }
 
-    private ProxyAudit find(Class<?> cls, Method m) {
-        ProxyAudit onMethod = AnnotatedElementUtils.findMergedAnnotation(m, ProxyAudit.class);
-        return (onMethod != null) ? onMethod : AnnotatedElementUtils.findMergedAnnotation(cls, ProxyAudit.class);
-    }
-
-    private String safeWrite(Object v) {
-        try {
-            return mapper.writeValueAsString(v);
-        } catch (Exception e) {
-            // must be valid jsonb → store json string
-            return "\"<json-serialization-error>\"";
-        }
-    }
-
-    /**
-     * Ensures output is valid JSON for jsonb columns even when truncated.
-     */
-    private String truncateJsonSafe(String json, int maxChars) {
-        if (json == null) return null;
-        if (maxChars <= 0 || json.length() <= maxChars) return json;
-
-        int previewLen = Math.min(maxChars, Math.min(json.length(), 10_000));
-        String preview = json.substring(0, previewLen);
-
-        ObjectNode node = mapper.createObjectNode();
-        node.put("_truncated", true);
-        node.put("_originalLength", json.length());
-        node.put("_preview", preview);
-
-        try {
-            return mapper.writeValueAsString(node);
-        } catch (Exception e) {
-            // fallback: json string
-            return "\"<truncated>\"";
-        }
-    }
-
     private static String truncatePlain(String s, int maxChars) {
         if (s == null) return null;
         if (maxChars <= 0 || s.length() <= maxChars) return s;
@@ -0,0 +1,28 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * DOWN when no {@code audit_call_log} partition covers the next period: without a default partition, audit rows
+ * fail to insert once the clock gets there (partition maintenance disabled or failing).
+ */
+@Component("auditPartitionsHealthIndicator")
+public class AuditPartitionHealthIndicator implements HealthIndicator {
+
+    private final AuditPartitionManager partitions;
+
+    public AuditPartitionHealthIndicator(AuditPartitionManager partitions) {
+        this.partitions = partitions;
+    }
+
+    @Override
+    public Health health() {
+        Instant now = Instant.now();
+        Health.Builder health = partitions.coversNextPeriod(now) ? Health.up() : Health.down();
+        return health.withDetail("requiredUntil", partitions.next(now).toString()).build();
+    }
+}
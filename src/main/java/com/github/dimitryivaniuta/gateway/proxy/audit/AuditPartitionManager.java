@@ -0,0 +1,189 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps {@code audit_call_log} partitions (range on created_at, UTC, see V7 migration) ahead of the clock and
+ * drops the ones past retention.
+ *
+ * <p>Runs at startup and on {@code proxy-toolkit.audit.partition-cron}. There is no default partition, so future
+ * partitions are always created ({@code partition-management=false} only keeps expired ones) and
+ * {@link AuditPartitionHealthIndicator} reports DOWN once the next period is not covered. New partitions continue
+ * from the highest
+ * existing upper bound, so the interval can be switched between DAILY and MONTHLY at any time. Expired partitions
+ * are detached with {@code DETACH PARTITION ... CONCURRENTLY}, so inserts and queries on the parent are not blocked,
+ * and then dropped: no row-by-row delete, no dead tuples. Safe to run on several nodes at once
+ * (CREATE ... IF NOT EXISTS / DROP ... IF EXISTS; a lost race is logged and retried on the next run).
+ */
+@Component
+public class AuditPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditPartitionManager.class);
+
+    static final String TABLE = "audit_call_log";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private static final String IS_PARTITIONED_SQL = """
+            select exists (select 1 from pg_partitioned_table where partrelid = to_regclass('audit_call_log'))
+            """;
+
+    // bounds are null for MINVALUE (legacy partition) and for a default partition
+    private static final String PARTITIONS_SQL = """
+            select c.relname as name, i.inhdetachpending as detach_pending,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz as from_bound,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz as to_bound
+            from pg_inherits i
+            join pg_class c on c.oid = i.inhrelid
+            where i.inhparent = to_regclass('audit_call_log')
+            """;
+
+    record Partition(String name, Instant from, Instant to, boolean detachPending) {}
+
+    private final JdbcTemplate jdbc;
+    private final ProxyToolkitProperties.Audit cfg;
+
+    public AuditPartitionManager(JdbcTemplate jdbc, ProxyToolkitProperties props) {
+        this.jdbc = jdbc;
+        this.cfg = props.getAudit();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${proxy-toolkit.audit.partition-cron:0 5 * * * *}")
+    public void maintain() {
+        Instant now = Instant.now();
+        try {
+            maintain(now);
+        } catch (DataAccessException ex) {
+            log.warn("Audit partition maintenance failed: {}", ex.toString());
+        }
+        try {
+            if (!coversNextPeriod(now)) {
+                log.error("No {} partition covers {}: audit rows will fail to insert", TABLE, next(now));
+            }
+        } catch (DataAccessException ex) {
+            log.error("Audit partition coverage check failed: {}", ex.toString());
+        }
+    }
+
+    synchronized void maintain(Instant now) {
+        if (!isPartitioned()) {
+            log.debug("{} is not partitioned, skipping partition maintenance", TABLE);
+            return;
+        }
+        List<Partition> partitions = partitions();
+        createAhead(partitions, now);
+        if (cfg.isPartitionManagement()) dropExpired(partitions, now);
+    }
+
+    boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbc.queryForObject(IS_PARTITIONED_SQL, Boolean.class));
+    }
+
+    /**
+     * Whether a partition takes rows at the start of the period after the one containing {@code now}, i.e. inserts
+     * keep working for at least one more interval.
+     */
+    boolean coversNextPeriod(Instant now) {
+        if (!isPartitioned()) return true;
+        Instant t = next(now);
+        return partitions().stream().anyMatch(p -> p.to() != null && p.to().isAfter(t)
+                && (p.from() == null || !p.from().isAfter(t)));
+    }
+
+    List<Partition> partitions() {
+        return jdbc.query(PARTITIONS_SQL, (rs, i) -> new Partition(
+                rs.getString("name"), instant(rs.getTimestamp("from_bound")), instant(rs.getTimestamp("to_bound")),
+                rs.getBoolean("detach_pending")));
+    }
+
+    private void createAhead(List<Partition> partitions, Instant now) {
+        Instant horizon = next(now);
+        for (int i = 0; i < cfg.getPartitionsAhead(); i++) horizon = next(horizon);
+
+        Instant from = partitions.stream()
+                .map(Partition::to)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElseGet(() -> startOfDay(now));
+
+        while (from.isBefore(horizon)) {
+            Instant to = next(from);
+            String name = TABLE + "_p" + SUFFIX.format(from);
+            try {
+                jdbc.execute("create table if not exists " + name + " partition of " + TABLE
+                        + " for values from ('" + from + "') to ('" + to + "')");
+                log.info("Created audit partition {} [{}, {})", name, from, to);
+            } catch (DataAccessException ex) {
+                // typically a partition created by hand overlaps the range
+                log.warn("Could not create audit partition {} [{}, {}): {}", name, from, to, ex.getMessage());
+            }
+            from = to;
+        }
+    }
+
+    private void dropExpired(List<Partition> partitions, Instant now) {
+        Duration retention = cfg.getRetention();
+        if (retention == null || retention.isZero() || retention.isNegative()) return;
+        Instant cutoff = now.minus(retention);
+
+        for (Partition p : partitions) {
+            if (p.to() == null || p.to().isAfter(cutoff)) continue;
+            String name = "\"" + p.name().replace("\"", "\"\"") + "\"";
+            try {
+                // CONCURRENTLY has to run outside a transaction (JdbcTemplate auto-commits here); FINALIZE completes
+                // a concurrent detach that was interrupted on an earlier run
+                jdbc.execute("alter table " + TABLE + " detach partition " + name
+                        + (p.detachPending() ? " finalize" : " concurrently"));
+            } catch (DataAccessException ex) {
+                log.warn("Could not detach audit partition {}: {}", p.name(), ex.getMessage());
+                continue;
+            }
+            try {
+                jdbc.execute("drop table if exists " + name);
+                log.info("Dropped audit partition {} (rows before {}, retention {})", p.name(), p.to(), retention);
+            } catch (DataAccessException ex) {
+                // detached already: no longer listed on the next run, has to be dropped by hand
+                log.warn("Detached audit partition {} but could not drop it: {}", p.name(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * End of the period that contains {@code t} (start of the next day / month, UTC).
+     */
+    Instant next(Instant t) {
+        LocalDate day = t.atOffset(ZoneOffset.UTC).toLocalDate();
+        LocalDate next = switch (cfg.getPartitionInterval()) {
+            case DAILY -> day.plusDays(1);
+            case MONTHLY -> day.withDayOfMonth(1).plusMonths(1);
+        };
+        return next.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Instant startOfDay(Instant t) {
+        return t.atOffset(ZoneOffset.UTC).toLocalDate().atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Instant instant(Timestamp ts) {
+        return (ts != null) ? ts.toInstant() : null;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Size-bounded JSON capture for audit args / results.
+ *
+ * <p>Serializes through a {@link JsonGenerator} into a buffer of at most {@code maxChars} characters and aborts
+ * serialization once the buffer is full, so a huge result is never materialized just to be cut. Jackson buffers
+ * output internally, so the value is walked for at most {@code maxChars} plus one generator buffer (~8K chars).
+ * The output is always valid JSON for the jsonb columns: either the complete value, or
+ * {@code {"_truncated":true,"_maxChars":n,"_preview":"<first chars>"}}.
+ */
+final class AuditPayloads {
+
+    static final int MAX_PREVIEW_CHARS = 10_000;
+
+    private static final String SERIALIZATION_ERROR = "\"<json-serialization-error>\"";
+
+    private AuditPayloads() {
+    }
+
+    static String capture(ObjectMapper mapper, Object value, int maxChars) {
+        if (maxChars <= 0) {
+            try {
+                return mapper.writeValueAsString(value);
+            } catch (Exception e) {
+                return SERIALIZATION_ERROR;
+            }
+        }
+
+        BoundedWriter out = new BoundedWriter(maxChars);
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            mapper.writeValue(gen, value);
+        } catch (Exception e) {
+            if (!out.limitReached) {
+                // must be valid jsonb → store json string
+                return SERIALIZATION_ERROR;
+            }
+        }
+        return out.limitReached ? truncated(mapper, out.buf, maxChars) : out.buf.toString();
+    }
+
+    private static String truncated(ObjectMapper mapper, CharSequence prefix, int maxChars) {
+        int previewLen = Math.min(prefix.length(), Math.min(maxChars, MAX_PREVIEW_CHARS));
+        StringWriter sw = new StringWriter(previewLen + 64);
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(sw)) {
+            gen.writeStartObject();
+            gen.writeBooleanField("_truncated", true);
+            gen.writeNumberField("_maxChars", maxChars);
+            gen.writeStringField("_preview", prefix.subSequence(0, previewLen).toString());
+            gen.writeEndObject();
+        } catch (IOException e) {
+            return "\"<truncated>\"";
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Keeps the first {@code max} chars and fails every write after that, which unwinds the serializer.
+     */
+    private static final class BoundedWriter extends Writer {
+        private final StringBuilder buf;
+        private final int max;
+        private boolean limitReached;
+
+        BoundedWriter(int max) {
+            this.max = max;
+            this.buf = new StringBuilder(Math.min(max, 1024));
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int room = max - buf.length();
+            if (len <= room) {
+                buf.append(cbuf, off, len);
+                return;
+            }
+            buf.append(cbuf, off, Math.max(room, 0));
+            limitReached = true;
+            throw new LimitReached();
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int room = max - buf.length();
+            if (len <= room) {
+                buf.append(str, off, off + len);
+                return;
+            }
+            buf.append(str, off, off + Math.max(room, 0));
+            limitReached = true;
+            throw new LimitReached();
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            write(new char[]{(char) c}, 0, 1);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Control-flow signal, no stack trace (not shared: closing the generator may attach suppressed exceptions).
+     */
+    private static final class LimitReached extends IOException {
+        LimitReached() {
+            super("audit payload limit reached");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
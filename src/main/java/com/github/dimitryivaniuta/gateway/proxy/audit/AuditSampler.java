@@ -0,0 +1,132 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Decides which audited calls are written and how much of them is captured.
+ *
+ * <p>Sampling ({@link ProxyAudit.Sampling}) is decided in two steps. Before the call, {@link #admit} makes the head
+ * decision (ALL / RATE / PER_SUBJECT); only admitted calls serialize their args up front. After the call,
+ * {@link #keep} also lets through errors ({@code keep-errors}) and calls slower than {@code slow-threshold}
+ * (tail-based), whose args are then captured late.
+ *
+ * <p>The adaptive {@link #level} looks at the audit writer's queue fill and smoothed write latency and degrades
+ * capture when either crosses its threshold, which bounds audit cost during traffic spikes.
+ */
+@Component
+public class AuditSampler {
+
+    public enum CaptureLevel {
+        /** args / result / stacktrace as configured per method */
+        FULL,
+        /** status, duration, error message; no payloads */
+        METADATA,
+        /** METADATA, and only {@code adaptive.sampled-rate} of the calls sampling admits */
+        SAMPLED
+    }
+
+    // per-subject windows: slot = hash(subject), value = (epochSecond << COUNT_BITS) | count; colliding subjects share
+    private static final int SLOTS = 4096;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long CLOCK_ORIGIN = System.nanoTime();
+
+    private final AuditWriter writer;
+    private final ProxyToolkitProperties.Audit.Sampling sampling;
+    private final ProxyToolkitProperties.Audit.Adaptive adaptive;
+    private final Counter sampledOut;
+    private final AtomicLongArray windows = new AtomicLongArray(SLOTS);
+
+    public AuditSampler(AuditWriter writer, ProxyToolkitProperties props, ProxyToolkitMetrics metrics) {
+        this.writer = writer;
+        this.sampling = props.getAudit().getSampling();
+        this.adaptive = props.getAudit().getAdaptive();
+        this.sampledOut = metrics.auditSamplerMeters(() -> level().ordinal()).sampledOut();
+    }
+
+    public CaptureLevel level() {
+        if (!adaptive.isEnabled()) return CaptureLevel.FULL;
+        double fill = (double) writer.queueDepth() / writer.queueCapacity();
+        long latency = writer.writeLatencyNanos();
+        if (fill >= adaptive.getSampledQueueRatio() || latency >= adaptive.getSampledFlushLatency().toNanos()) {
+            return CaptureLevel.SAMPLED;
+        }
+        if (fill >= adaptive.getMetadataQueueRatio() || latency >= adaptive.getMetadataFlushLatency().toNanos()) {
+            return CaptureLevel.METADATA;
+        }
+        return CaptureLevel.FULL;
+    }
+
+    /**
+     * Head decision, before the call.
+     *
+     * @param subjectKey resolved subject; only read in PER_SUBJECT mode
+     */
+    public boolean admit(ProxyAudit ann, CaptureLevel level, Supplier<String> subjectKey) {
+        boolean admitted = switch (mode(ann)) {
+            case ALL, DEFAULT -> true;
+            case RATE -> ThreadLocalRandom.current().nextDouble() < rate(ann);
+            case PER_SUBJECT -> tryAcquire(subjectKey.get(), perSubjectPerSecond(ann));
+            case TAIL -> false;
+        };
+        if (admitted && level == CaptureLevel.SAMPLED) {
+            admitted = ThreadLocalRandom.current().nextDouble() < adaptive.getSampledRate();
+        }
+        return admitted;
+    }
+
+    /**
+     * Tail decision, after the call. Counts the call as sampled out when it is not kept.
+     */
+    public boolean keep(ProxyAudit ann, boolean admitted, boolean error, long durationMs) {
+        if (admitted) return true;
+        if (error && sampling.isKeepErrors()) return true;
+        long slowMs = slowThresholdMs(ann);
+        if (slowMs > 0 && durationMs >= slowMs) return true;
+        sampledOut.increment();
+        return false;
+    }
+
+    boolean tryAcquire(String subjectKey, int perSecond) {
+        if (perSecond <= 0) return false;
+        int h = (subjectKey != null) ? subjectKey.hashCode() : 0;
+        int slot = (h ^ (h >>> 16)) & (SLOTS - 1);
+        long second = (System.nanoTime() - CLOCK_ORIGIN) / 1_000_000_000L;
+        while (true) {
+            long cur = windows.get(slot);
+            long next;
+            if ((cur >>> COUNT_BITS) != second) {
+                next = (second << COUNT_BITS) | 1;
+            } else if ((cur & COUNT_MASK) >= Math.min(perSecond, COUNT_MASK)) {
+                return false;
+            } else {
+                next = cur + 1;
+            }
+            if (windows.compareAndSet(slot, cur, next)) return true;
+        }
+    }
+
+    private ProxyAudit.Sampling mode(ProxyAudit ann) {
+        return (ann.sampling() != ProxyAudit.Sampling.DEFAULT) ? ann.sampling() : sampling.getMode();
+    }
+
+    private double rate(ProxyAudit ann) {
+        return (ann.sampleRate() >= 0) ? ann.sampleRate() : sampling.getRate();
+    }
+
+    private int perSubjectPerSecond(ProxyAudit ann) {
+        return (ann.perSubjectPerSecond() >= 0) ? ann.perSubjectPerSecond() : sampling.getPerSubjectPerSecond();
+    }
+
+    private long slowThresholdMs(ProxyAudit ann) {
+        return (ann.slowThresholdMs() >= 0) ? ann.slowThresholdMs() : sampling.getSlowThreshold().toMillis();
+    }
+}
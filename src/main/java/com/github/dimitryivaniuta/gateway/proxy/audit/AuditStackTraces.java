@@ -0,0 +1,197 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact stack trace capture for audited failures ({@code proxy-toolkit.audit.stacktrace.mode=COMPACT}).
+ *
+ * <p>Every failure gets a 64-bit fingerprint of its exception classes and top frames (cause chain included, message
+ * excluded). Only the first failure per fingerprint and {@code dedup-window} renders its trace - at most
+ * {@code max-frames} frames per throwable, straight into a StringBuilder - and the trace is stored once in
+ * {@code audit_stack_fingerprint} together with an occurrence counter. The audit row only carries
+ * {@code stack_fingerprint}. During an error storm of one failure the per-call cost is the fingerprint, not
+ * {@code printStackTrace}.
+ *
+ * <p>Occurrences are aggregated in memory and upserted every {@code flush-interval}; a crash loses at most one
+ * interval of counts, never audit rows.
+ */
+@Component
+public class AuditStackTraces {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditStackTraces.class);
+
+    private static final String UPSERT_SQL = """
+            insert into audit_stack_fingerprint as f
+                (fingerprint, exception_class, stack, occurrences, first_seen, last_seen, stack_captured_at)
+            values (?, ?, ?, ?, ?, ?, ?)
+            on conflict (fingerprint) do update set
+                occurrences = f.occurrences + excluded.occurrences,
+                last_seen = greatest(f.last_seen, excluded.last_seen),
+                stack = coalesce(excluded.stack, f.stack),
+                stack_captured_at = coalesce(excluded.stack_captured_at, f.stack_captured_at)
+            """;
+
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final JdbcTemplate jdbc;
+    private final ProxyToolkitProperties.Audit.Stacktrace cfg;
+    private final ProxyToolkitMetrics.AuditStackMeters meters;
+    // fingerprints whose trace was rendered in the current window
+    private final Cache<Long, Boolean> rendered;
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    public AuditStackTraces(JdbcTemplate jdbc, ProxyToolkitProperties props, ProxyToolkitMetrics metrics) {
+        this.jdbc = jdbc;
+        this.cfg = props.getAudit().getStacktrace();
+        this.meters = metrics.auditStackMeters(pending::size);
+        this.rendered = Caffeine.newBuilder()
+                .expireAfterWrite(cfg.getDedupWindow())
+                .maximumSize(cfg.getMaxTracked())
+                .build();
+    }
+
+    public boolean compact() {
+        return cfg.getMode() == ProxyToolkitProperties.Audit.StackCapture.COMPACT;
+    }
+
+    /**
+     * Counts one occurrence of {@code ex}, rendering its trace if it is the first of its fingerprint in the window.
+     *
+     * @return fingerprint for {@code audit_call_log.stack_fingerprint}
+     */
+    public long record(Throwable ex, int maxChars) {
+        long fp = fingerprint(ex, cfg.getMaxFrames(), cfg.getMaxCauses());
+        String stack = null;
+        if (rendered.asMap().putIfAbsent(fp, Boolean.TRUE) == null) {
+            stack = render(ex, cfg.getMaxFrames(), cfg.getMaxCauses(), maxChars);
+            meters.rendered().increment();
+        } else {
+            meters.deduplicated().increment();
+        }
+
+        final String firstStack = stack;
+        final long now = System.currentTimeMillis();
+        // mutated under the bin lock only; flush() takes entries out with remove(), which uses the same lock
+        pending.compute(fp, (k, p) -> {
+            if (p == null) p = new Pending(ex.getClass().getName(), now);
+            p.occurrences++;
+            p.lastSeen = now;
+            if (firstStack != null) p.stack = firstStack;
+            return p;
+        });
+        return fp;
+    }
+
+    @Scheduled(fixedDelayString = "${proxy-toolkit.audit.stacktrace.flush-interval:5s}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(pending.size());
+        for (Long fp : pending.keySet()) {
+            Pending p = pending.remove(fp);
+            if (p == null) continue;
+            rows.add(new Object[]{
+                    fp, truncate(p.exceptionClass, 512), p.stack, p.occurrences,
+                    new Timestamp(p.firstSeen), new Timestamp(p.lastSeen),
+                    (p.stack != null) ? new Timestamp(p.firstSeen) : null
+            });
+        }
+        try {
+            jdbc.batchUpdate(UPSERT_SQL, rows);
+        } catch (DataAccessException ex) {
+            // counts of this interval are lost; the traces are rendered again in the next window
+            rendered.invalidateAll();
+            log.warn("Audit stack fingerprint flush failed ({} fingerprints): {}", rows.size(), ex.toString());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * Hash of the exception class and the top {@code maxFrames} frames (class, method, line) of each throwable in
+     * the cause chain. Messages are left out on purpose: they usually carry ids.
+     */
+    static long fingerprint(Throwable ex, int maxFrames, int maxCauses) {
+        long h = 1;
+        Throwable t = ex;
+        for (int depth = 0; t != null && depth <= maxCauses; depth++) {
+            h = mix(h, t.getClass().getName().hashCode());
+            StackTraceElement[] frames = t.getStackTrace();
+            int n = Math.min(frames.length, maxFrames);
+            for (int i = 0; i < n; i++) {
+                StackTraceElement f = frames[i];
+                h = mix(h, f.getClassName().hashCode());
+                h = mix(h, f.getMethodName().hashCode());
+                h = mix(h, f.getLineNumber());
+            }
+            t = cause(t);
+        }
+        return h;
+    }
+
+    /**
+     * printStackTrace-like text, at most {@code maxFrames} frames per throwable and {@code maxChars} chars in total.
+     * Suppressed exceptions are left out.
+     */
+    static String render(Throwable ex, int maxFrames, int maxCauses, int maxChars) {
+        StringBuilder sb = new StringBuilder(1024);
+        Throwable t = ex;
+        for (int depth = 0; t != null && depth <= maxCauses; depth++) {
+            if (depth > 0) sb.append("Caused by: ");
+            sb.append(t).append('\n');
+            StackTraceElement[] frames = t.getStackTrace();
+            int n = Math.min(frames.length, maxFrames);
+            for (int i = 0; i < n; i++) {
+                sb.append("\tat ").append(frames[i]).append('\n');
+            }
+            if (frames.length > n) sb.append("\t... ").append(frames.length - n).append(" more\n");
+            if (maxChars > 0 && sb.length() >= maxChars) break;
+            t = cause(t);
+        }
+        return truncate(sb.toString(), maxChars);
+    }
+
+    private static Throwable cause(Throwable t) {
+        Throwable c = t.getCause();
+        return (c == t) ? null : c;
+    }
+
+    private static long mix(long h, int v) {
+        return (h ^ v) * MIX;
+    }
+
+    private static String truncate(String s, int maxChars) {
+        return (maxChars > 0 && s.length() > maxChars) ? s.substring(0, maxChars) : s;
+    }
+
+    private static final class Pending {
+        final String exceptionClass;
+        final long firstSeen;
+        long lastSeen;
+        long occurrences;
+        String stack;
+
+        Pending(String exceptionClass, long firstSeen) {
+            this.exceptionClass = exceptionClass;
+            this.firstSeen = firstSeen;
+        }
+    }
+}
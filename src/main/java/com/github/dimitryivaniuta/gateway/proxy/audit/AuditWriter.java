@@ -0,0 +1,229 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties.Audit.OverflowPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.support.MpscRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes audit rows off the business thread.
+ *
+ * <p>Interceptors {@link #submit} rows into a bounded MPSC ring buffer; one background writer drains it
+ * in JDBC batches ({@link AuditCallLogService#insertBatch}). A batch goes out as soon as it is full or
+ * after {@code flushInterval}, whichever comes first. When the buffer is full the configured
+ * {@link OverflowPolicy} applies:
+ * <ul>
+ *   <li>DROP: discard the row (business latency never depends on the DB)</li>
+ *   <li>BLOCK: wait up to {@code blockTimeout} for space, then discard</li>
+ *   <li>SAMPLE: from 3/4 full keep 1 in {@code sampleRate} successful rows; errors are kept until full</li>
+ * </ul>
+ * With {@code async=false} rows are saved synchronously, as before.
+ */
+@Component
+public class AuditWriter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditWriter.class);
+
+    private final AuditCallLogService auditService;
+    private final ProxyToolkitProperties.Audit cfg;
+
+    private final MpscRingBuffer<AuditCallLog> queue;
+    private final ProxyToolkitMetrics.AuditWriterMeters meters;
+    private final int sampleThreshold;
+
+    private volatile Thread writerThread;
+    private volatile boolean running;
+    // submit() calls past the running check; stop() waits for them before its final drain
+    private final AtomicInteger submitters = new AtomicInteger();
+    // smoothed write latency (EWMA, alpha 1/8) of batches, or of single rows when synchronous
+    private volatile long writeLatencyNanos;
+
+    public AuditWriter(AuditCallLogService auditService, ProxyToolkitProperties props, ProxyToolkitMetrics metrics) {
+        this.auditService = auditService;
+        this.cfg = props.getAudit();
+        this.queue = new MpscRingBuffer<>(Math.max(2, cfg.getQueueCapacity()));
+        this.sampleThreshold = queue.capacity() - queue.capacity() / 4;
+        this.meters = metrics.auditWriterMeters(queue::size);
+    }
+
+    /**
+     * Never throws; never blocks longer than {@code blockTimeout}.
+     */
+    public void submit(AuditCallLog row) {
+        if (!cfg.isAsync() || !running) {
+            saveNow(row);
+            return;
+        }
+
+        submitters.incrementAndGet();
+        try {
+            // re-checked after registering: a stop() that began in between either sees this submitter and
+            // waits for it, or has already cleared running and the row is saved here
+            if (!running) {
+                saveNow(row);
+                return;
+            }
+            enqueue(row);
+        } finally {
+            submitters.decrementAndGet();
+        }
+    }
+
+    private void enqueue(AuditCallLog row) {
+        OverflowPolicy policy = cfg.getOverflowPolicy();
+        if (policy == OverflowPolicy.SAMPLE && shouldSampleOut(row)) {
+            meters.droppedSampled().increment();
+            return;
+        }
+
+        if (queue.offer(row)) {
+            if (queue.size() >= cfg.getBatchSize()) wakeWriter();
+            return;
+        }
+
+        if (policy == OverflowPolicy.BLOCK && offerBlocking(row)) return;
+
+        meters.droppedOverflow().increment();
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public int queueCapacity() {
+        return queue.capacity();
+    }
+
+    public long writeLatencyNanos() {
+        return writeLatencyNanos;
+    }
+
+    private void recordWriteLatency(long nanos) {
+        // racy read-modify-write is fine for a smoothed signal
+        long prev = writeLatencyNanos;
+        writeLatencyNanos = prev + ((nanos - prev) >> 3);
+    }
+
+    private boolean shouldSampleOut(AuditCallLog row) {
+        if (queue.size() < sampleThreshold) return false;
+        if (AuditCallLog.STATUS_ERROR.equals(row.getStatus())) return false;
+        int rate = Math.max(1, cfg.getSampleRate());
+        return ThreadLocalRandom.current().nextInt(rate) != 0;
+    }
+
+    private boolean offerBlocking(AuditCallLog row) {
+        long deadline = System.nanoTime() + cfg.getBlockTimeout().toNanos();
+        while (System.nanoTime() < deadline) {
+            wakeWriter();
+            LockSupport.parkNanos(50_000L);
+            if (queue.offer(row)) return true;
+        }
+        return false;
+    }
+
+    private void saveNow(AuditCallLog row) {
+        long start = System.nanoTime();
+        try {
+            auditService.save(row);
+            recordWriteLatency(System.nanoTime() - start);
+        } catch (Exception ex) {
+            // Never break business flow due to audit persistence issues.
+            log.warn("Audit persistence failed for methodSignature={}, reason={}", row.getMethodSignature(), ex.toString());
+        }
+    }
+
+    private void wakeWriter() {
+        Thread t = writerThread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    // ---- writer thread ----
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, cfg.getBatchSize());
+        long flushIntervalNanos = cfg.getFlushInterval().toNanos();
+        List<AuditCallLog> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            int n = queue.drainTo(batch, batchSize);
+            if (n > 0) flush(batch);
+            // partial batch => nothing else queued right now; wait for more rows or the interval
+            if (n < batchSize) LockSupport.parkNanos(this, flushIntervalNanos);
+        }
+
+        // shutdown: write out whatever is left
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<AuditCallLog> batch) {
+        long start = System.nanoTime();
+        try {
+            auditService.insertBatch(batch);
+            meters.written().increment(batch.size());
+        } catch (Exception ex) {
+            meters.droppedWriteError().increment(batch.size());
+            log.warn("Audit batch write failed, dropped {} rows, reason={}", batch.size(), ex.toString());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            meters.flush().record(elapsed, TimeUnit.NANOSECONDS);
+            recordWriteLatency(elapsed);
+            batch.clear();
+        }
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public synchronized void start() {
+        if (running || !cfg.isAsync()) return;
+        running = true;
+        writerThread = Thread.ofPlatform()
+                .name("proxy-toolkit-audit-writer")
+                .daemon(true)
+                .start(this::drainLoop);
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread t = writerThread;
+        if (t == null) return;
+        running = false; // later submits are written synchronously
+        LockSupport.unpark(t);
+        long deadline = System.nanoTime() + cfg.getShutdownTimeout().toNanos();
+        // submits that saw running == true may still be offering; their rows must be in the queue before the last drain
+        while (submitters.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(50_000L);
+        }
+        try {
+            t.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (t.isAlive()) {
+            log.warn("Audit writer did not finish within {}, {} rows may be lost", cfg.getShutdownTimeout(), queue.size());
+        } else {
+            // rows that raced with shutdown; the writer is gone, so this thread is now the only consumer
+            List<AuditCallLog> rest = new ArrayList<>();
+            while (queue.drainTo(rest, Math.max(1, cfg.getBatchSize())) > 0) flush(rest);
+        }
+        writerThread = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.dimitryivaniuta.gateway.proxy.cache;
+
+import com.github.dimitryivaniuta.gateway.proxy.support.SipHash;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Canonical binary form of argument lists for {@link CacheKey}.
+ *
+ * <p>Two argument lists encode to the same bytes iff they are equal under {@code equals}
+ * for the supported types: null, boxed primitives, String, enums, UUID, BigDecimal / BigInteger,
+ * {@code java.time} values, primitive arrays, Object[] and (RandomAccess) Lists of those.
+ * Every value is prefixed with a type tag so e.g. {@code 1} and {@code 1L} differ, as with {@code equals}.
+ * Returns null for anything else (the caller falls back to holding the arguments).
+ */
+final class ArgsEncoder {
+
+    private static final byte NULL = 0, TRUE = 1, FALSE = 2, BYTE = 3, SHORT = 4, CHAR = 5, INT = 6, LONG = 7,
+            FLOAT = 8, DOUBLE = 9, STRING = 10, ENUM = 11, UUID_T = 12, BIG_DECIMAL = 13, BIG_INTEGER = 14,
+            TIME = 15, BYTES = 16, INTS = 17, LONGS = 18, ARRAY = 19, LIST = 20;
+
+    private static final int MAX_DEPTH = 8;
+
+    // fixed keys: the 128-bit hash is stable across JVMs (equality never relies on it alone)
+    private static final long K0 = 0x0706050403020100L, K1 = 0x0f0e0d0c0b0a0908L;
+    private static final long K2 = 0x9e3779b97f4a7c15L, K3 = 0xc2b2ae3d27d4eb4fL;
+
+    private byte[] buf = new byte[64];
+    private int len;
+
+    private ArgsEncoder() {}
+
+    static byte[] encode(Object[] args) {
+        ArgsEncoder e = new ArgsEncoder();
+        e.putInt(args.length);
+        for (Object a : args) {
+            if (!e.value(a, 0)) return null;
+        }
+        return Arrays.copyOf(e.buf, e.len);
+    }
+
+    /**
+     * @param half 0 => low 64 bits, 1 => high 64 bits
+     */
+    static long hash128(byte[] bytes, int half) {
+        return (half == 0)
+                ? SipHash.hash24(K0, K1, bytes, 0, bytes.length)
+                : SipHash.hash24(K2, K3, bytes, 0, bytes.length);
+    }
+
+    private boolean value(Object v, int depth) {
+        if (depth > MAX_DEPTH) return false;
+
+        if (v == null) { put(NULL); return true; }
+        if (v instanceof String s) { put(STRING); putString(s); return true; }
+        if (v instanceof Long l) { put(LONG); putLong(l); return true; }
+        if (v instanceof Integer i) { put(INT); putInt(i); return true; }
+        if (v instanceof Boolean b) { put(b ? TRUE : FALSE); return true; }
+        if (v instanceof Short s) { put(SHORT); putInt(s); return true; }
+        if (v instanceof Byte b) { put(BYTE); put(b); return true; }
+        if (v instanceof Character c) { put(CHAR); putInt(c); return true; }
+        // same NaN / -0.0 semantics as Double.equals / Float.equals
+        if (v instanceof Double d) { put(DOUBLE); putLong(Double.doubleToLongBits(d)); return true; }
+        if (v instanceof Float f) { put(FLOAT); putInt(Float.floatToIntBits(f)); return true; }
+        if (v instanceof Enum<?> en) { put(ENUM); putString(en.getDeclaringClass().getName()); putString(en.name()); return true; }
+        if (v instanceof UUID u) { put(UUID_T); putLong(u.getMostSignificantBits()); putLong(u.getLeastSignificantBits()); return true; }
+        // toString keeps the scale, like BigDecimal.equals
+        if (v instanceof BigDecimal bd) { put(BIG_DECIMAL); putString(bd.toString()); return true; }
+        if (v instanceof BigInteger bi) { put(BIG_INTEGER); putBytes(bi.toByteArray()); return true; }
+        if ("java.time".equals(v.getClass().getPackageName())) {
+            // java.time value types: toString is lossless and equals-consistent (incl. zone / offset)
+            put(TIME);
+            putString(v.getClass().getName());
+            putString(v.toString());
+            return true;
+        }
+        if (v instanceof byte[] a) { put(BYTES); putBytes(a); return true; }
+        if (v instanceof int[] a) { put(INTS); putInt(a.length); for (int x : a) putInt(x); return true; }
+        if (v instanceof long[] a) { put(LONGS); putInt(a.length); for (long x : a) putLong(x); return true; }
+        if (v instanceof Object[] a) {
+            put(ARRAY);
+            putInt(a.length);
+            for (Object x : a) if (!value(x, depth + 1)) return false;
+            return true;
+        }
+        if (v instanceof List<?> list && list instanceof RandomAccess) {
+            put(LIST);
+            putInt(list.size());
+            for (int i = 0; i < list.size(); i++) if (!value(list.get(i), depth + 1)) return false;
+            return true;
+        }
+        return false;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    private void putInt(int v) {
+        ensure(4);
+        buf[len++] = (byte) (v >>> 24);
+        buf[len++] = (byte) (v >>> 16);
+        buf[len++] = (byte) (v >>> 8);
+        buf[len++] = (byte) v;
+    }
+
+    private void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+
+    private void putString(String s) {
+        int n = s.length();
+        putInt(n);
+        ensure(n * 2);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            buf[len++] = (byte) (c >>> 8);
+            buf[len++] = (byte) c;
+        }
+    }
+
+    private void putBytes(byte[] a) {
+        putInt(a.length);
+        ensure(a.length);
+        System.arraycopy(a, 0, buf, len, a.length);
+        len += a.length;
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.dimitryivaniuta.gateway.proxy.cache;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Compact, equality-correct cache key for (method, subject, arguments).
+ *
+ * <p>Equality is always structural; the hash only speeds lookups, so colliding hashes never return
+ * another caller's value. Argument lists are stored in the smallest form that keeps equality exact:
+ * <ul>
+ *   <li>no arguments: nothing extra</li>
+ *   <li>up to two integral / boolean / char arguments: raw longs plus a per-argument type tag</li>
+ *   <li>one String: the String itself</li>
+ *   <li>values with a canonical binary form (strings, numbers, enums, UUID, java.time, arrays, lists):
+ *       encoded bytes plus their stable 128-bit hash</li>
+ *   <li>anything else: a copy of the argument array, compared with {@link Arrays#deepEquals}</li>
+ * </ul>
+ * The method is an interned int ({@link com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan#methodId()})
+ * packed together with the encoding shape; {@code subject} is null for {@code CacheScope.GLOBAL}.
+ */
+public abstract sealed class CacheKey
+        permits CacheKey.NoArgs, CacheKey.OneLong, CacheKey.TwoLongs, CacheKey.OneString, CacheKey.Encoded, CacheKey.ObjectArgs {
+
+    static final int SHAPE_BITS = 9;
+    static final int MAX_METHOD_ID = (1 << (31 - SHAPE_BITS)) - 1;
+
+    // shape = kind | tag(arg0) << 3 | tag(arg1) << 6
+    static final int KIND_NONE = 0, KIND_ONE_LONG = 1, KIND_TWO_LONGS = 2, KIND_STRING = 3, KIND_ENCODED = 4, KIND_OBJECTS = 5;
+    static final int TAG_NULL = 1, TAG_BOOLEAN = 2, TAG_BYTE = 3, TAG_SHORT = 4, TAG_CHAR = 5, TAG_INT = 6, TAG_LONG = 7;
+
+    private final int idShape;
+    private final int hash;
+    private final String subject;
+
+    CacheKey(int methodId, int shape, String subject, int payloadHash) {
+        this.idShape = (methodId << SHAPE_BITS) | shape;
+        this.subject = subject;
+        this.hash = mix(31 * (31 * idShape + Objects.hashCode(subject)) + payloadHash);
+    }
+
+    /**
+     * @param methodId interned method id (0..{@value #MAX_METHOD_ID})
+     * @param subject  resolved subject key for SUBJECT scope, null for GLOBAL scope
+     * @param args     invocation arguments (not retained unless they have no canonical form)
+     */
+    public static CacheKey of(int methodId, String subject, Object[] args) {
+        if (methodId < 0 || methodId > MAX_METHOD_ID) {
+            throw new IllegalArgumentException("methodId out of range: " + methodId);
+        }
+        int n = (args == null) ? 0 : args.length;
+        if (n == 0) return new NoArgs(methodId, subject);
+
+        if (n <= 2) {
+            int t0 = longTag(args[0]);
+            int t1 = (n == 2) ? longTag(args[1]) : TAG_NULL;
+            if (t0 != 0 && t1 != 0) {
+                long a0 = asLong(args[0]);
+                if (n == 1) return new OneLong(methodId, KIND_ONE_LONG | t0 << 3, subject, a0);
+                return new TwoLongs(methodId, KIND_TWO_LONGS | t0 << 3 | t1 << 6, subject, a0, asLong(args[1]));
+            }
+            if (n == 1 && args[0] instanceof String s) {
+                return new OneString(methodId, subject, s);
+            }
+        }
+
+        byte[] encoded = ArgsEncoder.encode(args);
+        if (encoded != null) return new Encoded(methodId, subject, encoded);
+
+        return new ObjectArgs(methodId, subject, args.clone());
+    }
+
+    int methodId() {
+        return idShape >>> SHAPE_BITS;
+    }
+
+    String subject() {
+        return subject;
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheKey k) || k.getClass() != getClass()) return false;
+        return idShape == k.idShape
+                && hash == k.hash
+                && Objects.equals(subject, k.subject)
+                && samePayload(k);
+    }
+
+    abstract boolean samePayload(CacheKey other);
+
+    private static int longTag(Object v) {
+        if (v == null) return TAG_NULL;
+        if (v instanceof Long) return TAG_LONG;
+        if (v instanceof Integer) return TAG_INT;
+        if (v instanceof Boolean) return TAG_BOOLEAN;
+        if (v instanceof Short) return TAG_SHORT;
+        if (v instanceof Byte) return TAG_BYTE;
+        if (v instanceof Character) return TAG_CHAR;
+        return 0;
+    }
+
+    private static long asLong(Object v) {
+        if (v == null) return 0L;
+        if (v instanceof Number num) return num.longValue(); // Long / Integer / Short / Byte only (see longTag)
+        if (v instanceof Boolean b) return b ? 1L : 0L;
+        return (Character) v;
+    }
+
+    private static int mix(int h) {
+        // murmur3 fmix32
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static final class NoArgs extends CacheKey {
+        NoArgs(int methodId, String subject) {
+            super(methodId, KIND_NONE, subject, 0);
+        }
+
+        @Override
+        boolean samePayload(CacheKey other) {
+            return true;
+        }
+    }
+
+    static final class OneLong extends CacheKey {
+        private final long a0;
+
+        OneLong(int methodId, int shape, String subject, long a0) {
+            super(methodId, shape, subject, Long.hashCode(a0));
+            this.a0 = a0;
+        }
+
+        @Override
+        boolean samePayload(CacheKey other) {
+            return a0 == ((OneLong) other).a0;
+        }
+    }
+
+    static final class TwoLongs extends CacheKey {
+        private final long a0;
+        private final long a1;
+
+        TwoLongs(int methodId, int shape, String subject, long a0, long a1) {
+            super(methodId, shape, subject, 31 * Long.hashCode(a0) + Long.hashCode(a1));
+            this.a0 = a0;
+            this.a1 = a1;
+        }
+
+        @Override
+        boolean samePayload(CacheKey other) {
+            TwoLongs o = (TwoLongs) other;
+            return a0 == o.a0 && a1 == o.a1;
+        }
+    }
+
+    static final class OneString extends CacheKey {
+        private final String value;
+
+        OneString(int methodId, String subject, String value) {
+            super(methodId, KIND_STRING, subject, value.hashCode());
+            this.value = value;
+        }
+
+        @Override
+        boolean samePayload(CacheKey other) {
+            return value.equals(((OneString) other).value);
+        }
+    }
+
+    static final class Encoded extends CacheKey {
+        private final long h0;
+        private final long h1;
+        private final byte[] bytes;
+
+        Encoded(int methodId, String subject, byte[] bytes) {
+            this(methodId, subject, bytes, ArgsEncoder.hash128(bytes, 0), ArgsEncoder.hash128(bytes, 1));
+        }
+
+        private Encoded(int methodId, String subject, byte[] bytes, long h0, long h1) {
+            super(methodId, KIND_ENCODED, subject, (int) (h0 ^ (h0 >>> 32)));
+            this.h0 = h0;
+            this.h1 = h1;
+            this.bytes = bytes;
+        }
+
+        @Override
+        boolean samePayload(CacheKey other) {
+            Encoded o = (Encoded) other;
+            // 128-bit hash rejects mismatches cheaply; bytes decide
+            return h0 == o.h0 && h1 == o.h1 && Arrays.equals(bytes, o.bytes);
+        }
+    }
+
+    static final class ObjectArgs extends CacheKey {
+        private final Object[] args;
+
+        ObjectArgs(int methodId, String subject, Object[] args) {
+            super(methodId, KIND_OBJECTS, subject, Arrays.deepHashCode(args));
+            this.args = args;
+        }
+
+        @Override
+        boolean samePayload(CacheKey other) {
+            return Arrays.deepEquals(args, ((ObjectArgs) other).args);
+        }
+    }
+}
@@ -1,46 +1,82 @@
 package com.github.dimitryivaniuta.gateway.proxy.cache;
 
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
 import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContext;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
 import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
 import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
-import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
 import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
 import com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
-import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.ProxyMethodInvocation;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.cache.support.NullValue;
+import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-@RequiredArgsConstructor
+/**
+ * {@code @ProxyCache} stage. Values are stored as they are (the same entries {@code @Cacheable} or
+ * {@link Cache#get} users of the cache name see); refresh-ahead reads the entry's age from Caffeine's expiry
+ * policy and tracks running refreshes on the side.
+ */
+@Component
 @Slf4j
 public class CacheMethodInterceptor implements MethodInterceptor {
 
+    // background reloads block on I/O; virtual threads keep them off the request pool
+    private static final Executor REFRESH_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("proxy-cache-refresh-", 0).factory());
+
     private final CacheManager cacheManager;
-    private final RateLimitKeyResolver keyResolver;
-    private final ApiClientPolicyService policyService;
-    private final ProxyToolkitMetrics metrics;
+    private final MethodPlanRegistry plans;
+    private final ProxyCallContexts contexts;
+    private final long loadWaitNanos;
+
+    // misses being loaded right now; the load itself runs outside any cache lock
+    private final ConcurrentHashMap<FlightKey, Load> inFlight = new ConcurrentHashMap<>();
+    // entries with a refresh-ahead running (one per entry)
+    private final Set<FlightKey> refreshing = ConcurrentHashMap.newKeySet();
+
+    public CacheMethodInterceptor(CacheManager cacheManager,
+                                  MethodPlanRegistry plans,
+                                  ProxyCallContexts contexts,
+                                  ProxyToolkitProperties props) {
+        this.cacheManager = cacheManager;
+        this.plans = plans;
+        this.contexts = contexts;
+        this.loadWaitNanos = props.getCache().getLoadWait().toNanos();
+    }
 
     @Override
     public Object invoke(MethodInvocation inv) throws Throwable {
-        ProxyCache ann = find(inv.getThis().getClass(), inv.getMethod());
-        if (ann == null || !ann.enabled()) return inv.proceed();
-        if (inv.getMethod().getReturnType() == void.class) return inv.proceed();
+        MethodPlan plan = plans.plan(inv);
+        ProxyCache ann = plan.cache();
+        if (ann == null) return inv.proceed();
+        if (plan.returnsVoid()) return inv.proceed();
 
-        final Class<?> targetClass = resolveTargetClass(inv);
-        final String fullMethodKey = MethodKeySupport.signature(targetClass, inv.getMethod());
-        final String metricMethodKey = MethodKeySupport.metricMethodKey(targetClass, inv.getMethod());
+        final String metricMethodKey = plan.metricMethodKey();
+        final ProxyCallContext ctx = contexts.get(inv, plan);
 
         // Resolve subject (may be null depending on your resolver impl)
         RateLimitKeyResolver.ResolvedClient client;
         try {
-            client = keyResolver.resolve();
+            client = ctx.client();
         } catch (Exception ex) {
             // defense: never break business path due to cache infra
             log.debug("Cache skipped (keyResolver failed) for {}: {}", metricMethodKey, ex.toString());
@@ -55,7 +91,7 @@ public class CacheMethodInterceptor implements MethodInterceptor {
         ApiClientPolicy policy = null;
         try {
             if (client != null && client.subjectKey() != null && !client.subjectKey().isBlank()) {
-                policy = policyService.find(client.subjectKey(), fullMethodKey).orElse(null);
+                policy = ctx.policy();
             }
         } catch (Exception ex) {
             log.debug("Cache policy lookup skipped for {}: {}", metricMethodKey, ex.toString());
@@ -66,11 +102,12 @@ public class CacheMethodInterceptor implements MethodInterceptor {
         Integer ttlOverride = (policy != null) ? policy.getCacheTtlSeconds() : null;
         if (ttlOverride != null && ttlOverride <= 0) return inv.proceed(); // disabled by policy
 
-        long ttl = (ttlOverride != null)
+        final long ttlSeconds = (ttlOverride != null)
                 ? MethodKeySupport.clampInt(ttlOverride, (int) ann.ttlSeconds(), 1, 3600)
-                : ann.ttlSeconds();
-
-        final String cacheName = ann.cacheName() + ":ttl=" + ttl;
+                : Math.max(1, ann.ttlSeconds());
+        final String cacheName = (ttlOverride != null)
+                ? ann.cacheName() + ":ttl=" + ttlSeconds
+                : plan.defaultCacheName();
 
         Cache cache;
         try {
@@ -81,41 +118,210 @@ public class CacheMethodInterceptor implements MethodInterceptor {
         }
         if (cache == null) return inv.proceed();
 
-        CacheKey key = new CacheKey(fullMethodKey, Arrays.deepHashCode(inv.getArguments()), subjectKey);
+        // GLOBAL scope shares entries across subjects; SUBJECT (default) partitions them
+        CacheKey key = CacheKey.of(plan.methodId(),
+                ann.scope() == ProxyCache.CacheScope.GLOBAL ? null : subjectKey,
+                inv.getArguments());
+        ProxyToolkitMetrics.CacheNameMeters meters = plan.cacheMeters().forCache(cacheName);
 
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            @SuppressWarnings("unchecked")
+            var caffeine = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache;
+            return singleFlight(inv, caffeine, key, meters, metricMethodKey, ann.refreshAheadPercent());
+        }
+
+        return getOrProceed(inv, cache, key, meters, metricMethodKey);
+    }
+
+    /**
+     * Caffeine path. Concurrent misses for the same key are coalesced: the first caller registers a load in
+     * {@link #inFlight} and runs the rest of the chain outside any cache lock, the others wait on its future.
+     * Null results are shared the same way (just not stored). If the load fails nothing is cached and the
+     * waiters retry one at a time, not all at once. A waiter gives up after {@code proxy-toolkit.cache.load-wait}
+     * (or when interrupted) and calls the method itself, so a hung load does not hold every caller of the key.
+     */
+    private Object singleFlight(MethodInvocation inv,
+                                com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                CacheKey key,
+                                ProxyToolkitMetrics.CacheNameMeters meters,
+                                String metricMethodKey,
+                                int refreshAheadPercent) throws Throwable {
+        Object hit;
         try {
-            Cache.ValueWrapper hit = cache.get(key);
+            hit = cache.getIfPresent(key);
+        } catch (Exception ex) {
+            log.debug("Cache skipped (get failed) for {}: {}", metricMethodKey, ex.toString());
+            return inv.proceed();
+        }
+        FlightKey flightKey = new FlightKey(cache, key);
+        if (hit != null) {
+            meters.hits().increment();
+            maybeRefreshAhead(inv, cache, key, flightKey, hit, meters, metricMethodKey, refreshAheadPercent);
+            return fromStore(hit);
+        }
+
+        while (true) {
+            Load mine = new Load(new CompletableFuture<>(), Thread.currentThread());
+            Load running = inFlight.putIfAbsent(flightKey, mine);
+            if (running == null) {
+                return load(inv, cache, key, flightKey, mine, meters, metricMethodKey);
+            }
+            // the same key re-entered from its own load: waiting would never end
+            if (running.owner() == Thread.currentThread()) return inv.proceed();
+
+            try {
+                Object shared = running.result().get(loadWaitNanos, TimeUnit.NANOSECONDS);
+                meters.coalesced().increment();
+                return shared;
+            } catch (ExecutionException failedLoad) {
+                // the loader's caller got the exception; nothing cached, next waiter becomes the loader
+            } catch (TimeoutException slowLoad) {
+                log.debug("Cache load for {} still running after {} ms, calling through",
+                        metricMethodKey, TimeUnit.NANOSECONDS.toMillis(loadWaitNanos));
+                meters.misses().increment();
+                return inv.proceed();
+            } catch (InterruptedException interrupted) {
+                // keep the interrupt for the method, which decides how to react to it
+                Thread.currentThread().interrupt();
+                meters.misses().increment();
+                return inv.proceed();
+            }
+
+            try {
+                hit = cache.getIfPresent(key);
+            } catch (Exception ex) {
+                hit = null;
+            }
             if (hit != null) {
-                metrics.cacheHit(cacheName, metricMethodKey);
-                return hit.get();
+                meters.hits().increment();
+                return fromStore(hit);
             }
+        }
+    }
 
-            metrics.cacheMiss(cacheName, metricMethodKey);
-            Object result = inv.proceed();
+    private Object load(MethodInvocation inv,
+                        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                        CacheKey key,
+                        FlightKey flightKey,
+                        Load mine,
+                        ProxyToolkitMetrics.CacheNameMeters meters,
+                        String metricMethodKey) throws Throwable {
+        meters.misses().increment();
+        Object result;
+        try {
+            result = inv.proceed();
+        } catch (Throwable t) {
+            inFlight.remove(flightKey, mine);
+            mine.result().completeExceptionally(t);
+            throw t;
+        }
 
-            // usually avoid caching nulls
-            if (result != null) {
+        // usually avoid caching nulls (null => nothing stored, still shared with the waiters)
+        if (result != null) {
+            try {
                 cache.put(key, result);
+            } catch (Exception ex) {
+                log.debug("Cache put failed for {}: {}", metricMethodKey, ex.toString());
             }
-            return result;
+        }
+        // stored before the flight ends: later callers see either the entry or this load
+        inFlight.remove(flightKey, mine);
+        mine.result().complete(result);
+        return result;
+    }
+
+    // Spring's CaffeineCache stores a null from @Cacheable as NullValue
+    private static Object fromStore(Object stored) {
+        return (stored instanceof NullValue) ? null : stored;
+    }
+
+    /**
+     * Serves the current value and reloads it in the background once {@code refreshAheadPercent} of the
+     * cache's expire-after-write has passed (entry age from Caffeine's policy), so hot keys never expire under
+     * traffic. The reload re-enters the chain just below
+     * this stage through an invocable clone that shares this call's ProxyCallContext (same client/policy).
+     */
+    private void maybeRefreshAhead(MethodInvocation inv,
+                                   com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                   CacheKey key,
+                                   FlightKey flightKey,
+                                   Object current,
+                                   ProxyToolkitMetrics.CacheNameMeters meters,
+                                   String metricMethodKey,
+                                   int refreshAheadPercent) {
+        if (refreshAheadPercent <= 0 || refreshAheadPercent >= 100) return;
+        if (!(inv instanceof ProxyMethodInvocation pmi)) return;
+        Optional<Policy.FixedExpiration<Object, Object>> expiry = cache.policy().expireAfterWrite();
+        if (expiry.isEmpty()) return;
+        long ttlNanos = expiry.get().getExpiresAfter(TimeUnit.NANOSECONDS);
+        long ageNanos = expiry.get().ageOf(key, TimeUnit.NANOSECONDS).orElse(0L);
+        if (ageNanos < ttlNanos / 100 * refreshAheadPercent) return;
+        if (!refreshing.add(flightKey)) return; // one refresh per entry
+
+        MethodInvocation clone = pmi.invocableClone();
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    Object fresh = clone.proceed();
+                    if (fresh != null) {
+                        // only if nobody replaced / evicted it meanwhile
+                        cache.asMap().replace(key, current, fresh);
+                    } else {
+                        cache.asMap().remove(key, current);
+                    }
+                    meters.refreshed().increment();
+                } catch (Throwable ex) {
+                    // keep serving the stale value; next hit retries
+                    log.debug("Cache refresh-ahead failed for {}: {}", metricMethodKey, ex.toString());
+                } finally {
+                    refreshing.remove(flightKey);
+                }
+            });
+        } catch (Exception ex) {
+            refreshing.remove(flightKey);
+            log.debug("Cache refresh-ahead not scheduled for {}: {}", metricMethodKey, ex.toString());
+        }
+    }
 
+    /**
+     * Non-Caffeine caches: plain get / proceed / put (no coalescing).
+     */
+    private Object getOrProceed(MethodInvocation inv, Cache cache, CacheKey key,
+                                ProxyToolkitMetrics.CacheNameMeters meters, String metricMethodKey) throws Throwable {
+        Cache.ValueWrapper hit;
+        try {
+            hit = cache.get(key);
         } catch (Exception ex) {
             // NEVER turn caching into 500
-            log.debug("Cache skipped (get/put failed) for {}: {}", metricMethodKey, ex.toString());
+            log.debug("Cache skipped (get failed) for {}: {}", metricMethodKey, ex.toString());
             return inv.proceed();
         }
-    }
+        if (hit != null) {
+            meters.hits().increment();
+            return hit.get();
+        }
 
-    private static ProxyCache find(Class<?> cls, Method m) {
-        ProxyCache onMethod = AnnotatedElementUtils.findMergedAnnotation(m, ProxyCache.class);
-        return onMethod != null ? onMethod : AnnotatedElementUtils.findMergedAnnotation(cls, ProxyCache.class);
-    }
+        meters.misses().increment();
+        Object result = inv.proceed();
 
-    private static Class<?> resolveTargetClass(MethodInvocation inv) {
-        Object t = inv.getThis();
-        Class<?> c = (t != null) ? AopUtils.getTargetClass(t) : null;
-        return (c != null) ? c : inv.getMethod().getDeclaringClass();
+        // usually avoid caching nulls
+        if (result != null) {
+            try {
+                cache.put(key, result);
+            } catch (Exception ex) {
+                log.debug("Cache put failed for {}: {}", metricMethodKey, ex.toString());
+            }
+        }
+        return result;
     }
 
-    public record CacheKey(String methodKey, int argsHash, String clientKey) {}
+    /**
+     * One in-flight load per physical cache and key; caches are compared by identity.
+     */
+    private record FlightKey(Object cache, CacheKey key) {}
+
+    /**
+     * Result of a running load (value, or the method's exception) and the thread running it.
+     */
+    private record Load(CompletableFuture<Object> result, Thread owner) {}
 }
@@ -1,32 +1,131 @@
 package com.github.dimitryivaniuta.gateway.proxy.client;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Answers "is this API key hash an active credential?" from an in-memory {@link ApiKeyIndex}.
+ *
+ * <p>All active hashes (credential and client enabled) are loaded at startup and every
+ * {@code security.api-key.index.full-reload-interval}; in between, rows whose credential or client
+ * {@code updated_at} moved past the watermark are applied every {@code refresh-interval} (enabled / disabled
+ * toggles; the V10 triggers bump {@code updated_at} on every update). Deleted credentials stay known until the
+ * next full reload, which by default matches the 60s staleness of the former lookup cache.
+ *
+ * <p>Unknown keys - e.g. a client spraying random {@code X-Api-Key} values - never reach the DB and take no
+ * memory.
+ */
 @Service
-@RequiredArgsConstructor
 public class ApiClientCredentialLookupService {
 
-    private static final String CACHE = "apiKeyLookup:ttl=60"; // 60s cache (hits + misses)
+    private static final Logger log = LoggerFactory.getLogger(ApiClientCredentialLookupService.class);
 
+    private static final String SELECT_SQL = """
+            select c.api_key_hash,
+                   c.enabled and cl.enabled as active,
+                   greatest(c.updated_at, cl.updated_at) as updated_at
+            from api_client_credential c
+            join api_client cl on cl.id = c.api_client_id
+            """;
+
+    private record Row(String hash, boolean active, Instant updatedAt) {}
+
+    private final JdbcTemplate jdbc;
     private final ApiClientCredentialRepository repo;
-    private final CacheManager cacheManager;
+    private final Duration refreshOverlap;
+
+    private volatile ApiKeyIndex index = ApiKeyIndex.EMPTY;
+    private volatile Instant watermark;
 
-    @SuppressWarnings("unchecked")
+    public ApiClientCredentialLookupService(
+            JdbcTemplate jdbc,
+            ApiClientCredentialRepository repo,
+            @Value("${security.api-key.index.refresh-overlap:1m}") Duration refreshOverlap
+    ) {
+        this.jdbc = jdbc;
+        this.repo = repo;
+        this.refreshOverlap = refreshOverlap;
+    }
+
+    /** Hot path: no DB access, no allocation. */
+    public boolean isActive(String apiKeyHash) {
+        return index.contains(apiKeyHash);
+    }
+
+    /** Loads the credential entity; the DB is only queried for hashes the index knows. */
     public Optional<ApiClientCredential> findActiveByHash(String apiKeyHash) {
-        Cache cache = cacheManager.getCache(CACHE);
-        if (cache != null) {
-            Optional<ApiClientCredential> cached = cache.get(apiKeyHash, Optional.class);
-            if (cached != null) return cached;
+        return isActive(apiKeyHash) ? repo.findActiveByApiKeyHash(apiKeyHash) : Optional.empty();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            reload();
+        } catch (DataAccessException ex) {
+            // every key counts as unknown until the next refresh succeeds
+            log.warn("Initial API key index load failed: {}", ex.toString());
         }
+    }
+
+    /** Rebuilds the index from all active credentials; the only load that drops deleted ones. */
+    @Scheduled(fixedDelayString = "${security.api-key.index.full-reload-interval:1m}",
+            initialDelayString = "${security.api-key.index.full-reload-interval:1m}")
+    public synchronized void reload() {
+        List<Row> rows = jdbc.query(SELECT_SQL + " where c.enabled and cl.enabled", this::mapRow);
+        index = ApiKeyIndex.of(rows.stream().map(Row::hash).toList());
+        watermark = maxUpdatedAt(rows, null);
+        log.debug("Loaded {} active API key hashes", index.size());
+    }
+
+    @Scheduled(fixedDelayString = "${security.api-key.index.refresh-interval:5s}")
+    public synchronized void refresh() {
+        Instant since = watermark;
+        if (since == null) {
+            reload();
+            return;
+        }
+        Timestamp ts = Timestamp.from(since.minus(refreshOverlap));
+        List<Row> rows = jdbc.query(SELECT_SQL + " where c.updated_at >= ? or cl.updated_at >= ?", this::mapRow, ts, ts);
+        watermark = maxUpdatedAt(rows, since);
 
-        Optional<ApiClientCredential> loaded = repo.findActiveByApiKeyHash(apiKeyHash);
+        // rows inside the overlap come back on every refresh; only real changes copy the index
+        ApiKeyIndex current = index;
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Row r : rows) {
+            if (r.active() != current.contains(r.hash())) (r.active() ? added : removed).add(r.hash());
+        }
+        index = current.withChanges(added, removed);
+    }
 
-        if (cache != null) cache.put(apiKeyHash, loaded);
-        return loaded;
+    private Row mapRow(ResultSet rs, int n) throws SQLException {
+        return new Row(rs.getString("api_key_hash"), rs.getBoolean("active"), rs.getTimestamp("updated_at").toInstant());
+    }
+
+    private static Instant maxUpdatedAt(List<Row> rows, Instant floor) {
+        Instant max = floor;
+        for (Row r : rows) {
+            if (max == null || r.updatedAt().isAfter(max)) max = r.updatedAt();
+        }
+        return max;
     }
 }
@@ -0,0 +1,177 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.proxy.support.SipHash;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hot-path engine behind {@link ApiKeyHashService#hash(String)}: hex(digest(raw + ":" + pepper)).
+ *
+ * <ul>
+ *   <li>Pooled {@link MessageDigest} and scratch buffers (no {@code getInstance}, no input String concat). The pool
+ *       is a small slot array rather than a ThreadLocal, so it also stays warm when every request runs on a
+ *       fresh virtual thread.</li>
+ *   <li>Table-driven hex encoding (the only allocation of a cold call is the result String).</li>
+ *   <li>Bounded memo raw-key -> hash so repeat callers skip the digest. The memo is keyed by a 128-bit
+ *       SipHash MAC of the raw key under random per-process keys, so raw keys are never retained and
+ *       outsiders cannot craft colliding entries.</li>
+ * </ul>
+ *
+ * Scratch bytes holding the raw key are wiped after every call.
+ */
+final class ApiKeyHashEngine {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // keys longer than this are hashed with a one-off buffer instead of growing the pooled one
+    private static final int MAX_SCRATCH_BYTES = 1024;
+
+    // pooled scratch sets (power of two >= 2 x cores); beyond this many concurrent hashes extra ones are
+    // created and dropped
+    static final int POOL_SIZE =
+            Integer.highestOneBit(Math.max(4, Runtime.getRuntime().availableProcessors() * 2) - 1) << 1;
+
+    private final String algorithm;
+    private final byte[] pepperSuffix; // ":" + pepper, UTF-8
+    private final AtomicReferenceArray<Scratch> pool = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private final Cache<MemoKey, String> memo; // null => memo disabled
+    private final long k0, k1, k2, k3;
+
+    ApiKeyHashEngine(String algorithm, String pepper, int memoSize, Duration memoTtl) {
+        this.algorithm = algorithm;
+        this.pepperSuffix = (":" + pepper).getBytes(StandardCharsets.UTF_8);
+
+        newDigest(); // fail fast on unknown algorithm
+
+        SecureRandom rnd = new SecureRandom();
+        this.k0 = rnd.nextLong();
+        this.k1 = rnd.nextLong();
+        this.k2 = rnd.nextLong();
+        this.k3 = rnd.nextLong();
+
+        this.memo = (memoSize > 0)
+                ? Caffeine.newBuilder().maximumSize(memoSize).expireAfterWrite(memoTtl).build()
+                : null;
+    }
+
+    String hash(String rawApiKey) {
+        Scratch s = acquire();
+        int maxLen = rawApiKey.length() * 3 + pepperSuffix.length; // UTF-8 upper bound
+        byte[] buf = (maxLen <= MAX_SCRATCH_BYTES) ? s.in : new byte[maxLen];
+
+        int len = encode(rawApiKey, buf);
+        try {
+            MemoKey key = null;
+            if (memo != null) {
+                key = new MemoKey(SipHash.hash24(k0, k1, buf, 0, len), SipHash.hash24(k2, k3, buf, 0, len));
+                String hit = memo.getIfPresent(key);
+                if (hit != null) return hit;
+            }
+
+            System.arraycopy(pepperSuffix, 0, buf, len, pepperSuffix.length);
+            s.md.update(buf, 0, len + pepperSuffix.length);
+            int n = s.md.digest(s.out, 0, s.out.length);
+
+            String hex = toHex(s.out, n, s.hex);
+            if (memo != null) memo.put(key, hex);
+            return hex;
+        } catch (DigestException e) {
+            s.md.reset();
+            throw new IllegalStateException("Unable to hash API key", e);
+        } finally {
+            Arrays.fill(buf, 0, Math.min(buf.length, len + pepperSuffix.length), (byte) 0);
+            release(s);
+        }
+    }
+
+    // probes from a per-thread start slot so concurrent callers rarely contend on the same one
+    private Scratch acquire() {
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int slot = (start + i) & (POOL_SIZE - 1);
+            Scratch s = pool.getAndSet(slot, null);
+            if (s != null) return s;
+        }
+        return new Scratch(newDigest());
+    }
+
+    private void release(Scratch s) {
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (pool.compareAndSet((start + i) & (POOL_SIZE - 1), null, s)) return;
+        }
+    }
+
+    // input buffers of the scratch sets currently pooled (tests)
+    List<byte[]> pooledInputs() {
+        List<byte[]> inputs = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Scratch s = pool.get(i);
+            if (s != null) inputs.add(s.in);
+        }
+        return inputs;
+    }
+
+    /**
+     * UTF-8 encodes into {@code buf} (sized for the worst case); ASCII keys (base64url) skip the charset encoder.
+     */
+    private static int encode(String s, byte[] buf) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(utf8, 0, buf, 0, utf8.length);
+                Arrays.fill(utf8, (byte) 0);
+                return utf8.length;
+            }
+            buf[i] = (byte) c;
+        }
+        return n;
+    }
+
+    private static String toHex(byte[] b, int n, char[] out) {
+        for (int i = 0; i < n; i++) {
+            int v = b[i] & 0xff;
+            out[2 * i] = HEX[v >>> 4];
+            out[2 * i + 1] = HEX[v & 0x0f];
+        }
+        return new String(out, 0, 2 * n);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unsupported API key hash algorithm: " + algorithm, e);
+        }
+    }
+
+    private record MemoKey(long hi, long lo) {}
+
+    private static final class Scratch {
+        final MessageDigest md;
+        final byte[] in = new byte[MAX_SCRATCH_BYTES];
+        final byte[] out;
+        final char[] hex;
+
+        Scratch(MessageDigest md) {
+            this.md = md;
+            int len = Math.max(md.getDigestLength(), 1);
+            this.out = new byte[len];
+            this.hex = new char[len * 2];
+        }
+    }
+}
@@ -3,8 +3,8 @@ package com.github.dimitryivaniuta.gateway.proxy.client;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.Base64;
 
 @Service
@@ -12,15 +12,15 @@ public class ApiKeyHashService {
 
     private final SecureRandom secureRandom = new SecureRandom();
 
-    private final String pepper;
-    private final String algorithm;
+    private final ApiKeyHashEngine engine;
 
     public ApiKeyHashService(
             @Value("${security.api-key.pepper:}") String pepper,
-            @Value("${security.api-key.hash-algorithm:SHA-256}") String algorithm
+            @Value("${security.api-key.hash-algorithm:SHA-256}") String algorithm,
+            @Value("${security.api-key.hash-memo-size:10000}") int memoSize
     ) {
-        this.pepper = pepper == null ? "" : pepper;
-        this.algorithm = algorithm;
+        // memo entries live at most 10 minutes: bounds how long a revoked raw key stays "warm" in memory
+        this.engine = new ApiKeyHashEngine(algorithm, pepper == null ? "" : pepper, memoSize, Duration.ofMinutes(10));
     }
 
     /** Generates a strong random API key (base64url, no padding). Store ONLY hash in DB. */
@@ -35,20 +35,7 @@ public class ApiKeyHashService {
         if (rawApiKey == null || rawApiKey.isBlank()) {
             throw new IllegalArgumentException("rawApiKey must not be blank");
         }
-        try {
-            MessageDigest md = MessageDigest.getInstance(algorithm);
-            // Simple peppering: hash(raw + ":" + pepper). Pepper is not stored in DB.
-            byte[] input = (rawApiKey + ":" + pepper).getBytes(java.nio.charset.StandardCharsets.UTF_8);
-            byte[] digest = md.digest(input);
-            return toHex(digest);
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to hash API key", e);
-        }
-    }
-
-    private static String toHex(byte[] b) {
-        StringBuilder sb = new StringBuilder(b.length * 2);
-        for (byte x : b) sb.append(String.format("%02x", x));
-        return sb.toString();
+        // Simple peppering: hash(raw + ":" + pepper). Pepper is not stored in DB.
+        return engine.hash(rawApiKey);
     }
 }
@@ -0,0 +1,241 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable set of active API key digests, keyed by the binary digest instead of its hex string.
+ *
+ * <ul>
+ *   <li>Open addressing with linear probing over one flat {@code long[]}: a SHA-256 digest takes four longs
+ *       in place, no entry objects, no Strings. An all-zero slot is free.</li>
+ *   <li>A Bloom filter (~10 bits per key, 7 probes, ~1% false positives) sits in front of the table. Probes are
+ *       taken straight from the digest bits (digests are uniform and peppered, so no extra hashing is needed);
+ *       a sprayed unknown key is usually rejected after reading a few words of a small bit array.</li>
+ *   <li>{@link #contains} parses the hex digest word by word while probing and allocates nothing.</li>
+ * </ul>
+ *
+ * {@link #withChanges} copies the arrays (copy-on-write); removals use backward-shift deletion and rebuild the
+ * Bloom filter, which cannot forget keys.
+ */
+final class ApiKeyIndex {
+
+    static final ApiKeyIndex EMPTY = new ApiKeyIndex(0, new long[0], 0, new long[1], 0);
+
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_PROBES = 7;
+
+    // longs per digest; 0 until the first digest fixes the length
+    private final int words;
+    private final long[] slots;
+    private final int mask;
+    private final long[] bloom;
+    private final int size;
+
+    private ApiKeyIndex(int words, long[] slots, int mask, long[] bloom, int size) {
+        this.words = words;
+        this.slots = slots;
+        this.mask = mask;
+        this.bloom = bloom;
+        this.size = size;
+    }
+
+    static ApiKeyIndex of(Collection<String> hexDigests) {
+        return EMPTY.withChanges(hexDigests, List.of());
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(String hex) {
+        if (size == 0 || hex == null || hex.length() != words * 16 || !isHex(hex)) return false;
+
+        long w0 = word(hex, 0);
+        if (!mightContain(w0, (words > 1) ? word(hex, 1) : w0)) return false;
+
+        for (int i = home(w0); ; i = (i + 1) & mask) {
+            int base = i * words;
+            long s0 = slots[base];
+            if (s0 == w0 && matchesTail(hex, base)) return true;
+            if (s0 == 0 && isFree(slots, base, words)) return false;
+        }
+    }
+
+    /**
+     * New index with {@code added} inserted and {@code removed} deleted; {@code this} when nothing changes.
+     * Digests whose length differs from the indexed ones are ignored.
+     */
+    ApiKeyIndex withChanges(Collection<String> added, Collection<String> removed) {
+        if (added.isEmpty() && removed.isEmpty()) return this;
+
+        int w = words;
+        if (w == 0) {
+            String first = added.stream().filter(ApiKeyIndex::isDigest).findFirst().orElse(null);
+            if (first == null) return this;
+            w = first.length() / 16;
+        }
+
+        int capacity = tableCapacity(size + added.size(), slots.length / Math.max(w, 1));
+        long[] table = (capacity * w == slots.length) ? slots.clone() : rehash(slots, words, new long[capacity * w]);
+        int newSize = size;
+
+        long[] digest = new long[w];
+        for (String hex : removed) {
+            if (parse(hex, w, digest) && delete(table, capacity - 1, w, digest)) newSize--;
+        }
+        for (String hex : added) {
+            if (parse(hex, w, digest) && insert(table, capacity - 1, w, digest)) newSize++;
+        }
+
+        long[] newBloom;
+        if (removed.isEmpty() && table.length == slots.length && bloomCapacity(newSize) == bloom.length) {
+            newBloom = bloom.clone();
+            for (String hex : added) {
+                if (parse(hex, w, digest)) addToBloom(newBloom, digest[0], (w > 1) ? digest[1] : digest[0]);
+            }
+        } else {
+            newBloom = new long[bloomCapacity(newSize)];
+            for (int base = 0; base < table.length; base += w) {
+                if (!isFree(table, base, w)) addToBloom(newBloom, table[base], (w > 1) ? table[base + 1] : table[base]);
+            }
+        }
+        return new ApiKeyIndex(w, table, capacity - 1, newBloom, newSize);
+    }
+
+    // ---- table ----
+
+    private static boolean insert(long[] table, int mask, int w, long[] digest) {
+        if (isZero(digest)) return false; // not representable, and not a realistic digest
+        for (int i = home(digest[0], mask); ; i = (i + 1) & mask) {
+            int base = i * w;
+            if (isFree(table, base, w)) {
+                System.arraycopy(digest, 0, table, base, w);
+                return true;
+            }
+            if (Arrays.equals(table, base, base + w, digest, 0, w)) return false;
+        }
+    }
+
+    private static boolean delete(long[] table, int mask, int w, long[] digest) {
+        int i = home(digest[0], mask);
+        while (true) {
+            int base = i * w;
+            if (isFree(table, base, w)) return false;
+            if (Arrays.equals(table, base, base + w, digest, 0, w)) break;
+            i = (i + 1) & mask;
+        }
+        // backward-shift: pull later entries of the probe run into the hole
+        int hole = i;
+        for (int j = (hole + 1) & mask; !isFree(table, j * w, w); j = (j + 1) & mask) {
+            int k = home(table[j * w], mask);
+            boolean stays = (hole <= j) ? (hole < k && k <= j) : (hole < k || k <= j);
+            if (stays) continue;
+            System.arraycopy(table, j * w, table, hole * w, w);
+            hole = j;
+        }
+        Arrays.fill(table, hole * w, hole * w + w, 0L);
+        return true;
+    }
+
+    private static long[] rehash(long[] from, int fromWords, long[] to) {
+        if (fromWords == 0) return to;
+        int mask = to.length / fromWords - 1;
+        long[] digest = new long[fromWords];
+        for (int base = 0; base < from.length; base += fromWords) {
+            if (isFree(from, base, fromWords)) continue;
+            System.arraycopy(from, base, digest, 0, fromWords);
+            insert(to, mask, fromWords, digest);
+        }
+        return to;
+    }
+
+    private static int tableCapacity(int expectedSize, int current) {
+        // load factor <= 0.5 keeps probe runs short for misses
+        int needed = Integer.highestOneBit(Math.max(expectedSize * 2, 16) - 1) << 1;
+        return Math.max(needed, current);
+    }
+
+    private int home(long w0) {
+        return home(w0, mask);
+    }
+
+    private static int home(long w0, int mask) {
+        return (int) (w0 ^ (w0 >>> 32)) & mask;
+    }
+
+    private boolean matchesTail(String hex, int base) {
+        for (int i = 1; i < words; i++) {
+            if (slots[base + i] != word(hex, i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isFree(long[] table, int base, int w) {
+        for (int i = 0; i < w; i++) {
+            if (table[base + i] != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean isZero(long[] digest) {
+        for (long v : digest) {
+            if (v != 0) return false;
+        }
+        return true;
+    }
+
+    // ---- bloom ----
+
+    private static int bloomCapacity(int size) {
+        // in longs, power of two
+        long bits = Math.max((long) size * BLOOM_BITS_PER_KEY, 64);
+        return (int) Math.min(Long.highestOneBit(bits - 1) << 1, 1L << 30) >>> 6;
+    }
+
+    private boolean mightContain(long h1, long h2) {
+        long bitMask = ((long) bloom.length << 6) - 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private static void addToBloom(long[] bloom, long h1, long h2) {
+        long bitMask = ((long) bloom.length << 6) - 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    // ---- hex ----
+
+    private static boolean isDigest(String hex) {
+        return hex != null && !hex.isEmpty() && hex.length() % 16 == 0 && isHex(hex);
+    }
+
+    private static boolean parse(String hex, int w, long[] out) {
+        if (hex == null || hex.length() != w * 16 || !isHex(hex)) return false;
+        for (int i = 0; i < w; i++) out[i] = word(hex, i);
+        return true;
+    }
+
+    private static long word(String hex, int i) {
+        long v = 0;
+        for (int c = i * 16, end = c + 16; c < end; c++) {
+            v = (v << 4) | Character.digit(hex.charAt(c), 16);
+        }
+        return v;
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) return false;
+        }
+        return true;
+    }
+}
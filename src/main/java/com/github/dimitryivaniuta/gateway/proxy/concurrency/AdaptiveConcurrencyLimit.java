@@ -0,0 +1,78 @@
+package com.github.dimitryivaniuta.gateway.proxy.concurrency;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-method AIMD concurrency limit (see {@link ProxyConcurrencyLimit}).
+ *
+ * <p>In-flight count and limit are CAS-updated atomics (the limit as double bits), no locks on the call path.
+ * The limit only grows while at least half of it is in use, so an idle method does not drift to maxLimit.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final ProxyToolkitMetrics.ConcurrencyLimitMeters meters;
+
+    public AdaptiveConcurrencyLimit(ProxyConcurrencyLimit cfg, ProxyToolkitMetrics metrics, String methodKey) {
+        this.minLimit = Math.max(1, cfg.minLimit());
+        this.maxLimit = Math.max(minLimit, cfg.maxLimit());
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cfg.latencyThresholdMs()));
+        double initial = Math.min(maxLimit, Math.max(minLimit, cfg.initialLimit()));
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initial));
+        this.meters = metrics.concurrencyLimitMeters(methodKey, this::limit, inFlight::get);
+    }
+
+    public int limit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return false when the limit is reached (counted as rejected); otherwise {@link #release} must follow
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int cur = inFlight.get();
+            if (cur >= limit()) {
+                meters.rejected().increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(cur, cur + 1)) return true;
+        }
+    }
+
+    /**
+     * @param overloaded the call failed or was slower than the latency threshold
+     */
+    public void release(long durationNanos, boolean overloaded) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        boolean drop = overloaded || (latencyThresholdNanos > 0 && durationNanos > latencyThresholdNanos);
+        while (true) {
+            long bits = limitBits.get();
+            double cur = Double.longBitsToDouble(bits);
+            double next;
+            if (drop) {
+                next = Math.max(minLimit, cur * BACKOFF_RATIO);
+            } else if (inFlightBefore * 2 >= cur) {
+                next = Math.min(maxLimit, cur + 1.0 / cur);
+            } else {
+                return;
+            }
+            if (next == cur || limitBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) return;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.dimitryivaniuta.gateway.proxy.concurrency;
+
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String message, int limit) {
+        super(message);
+        this.limit = limit;
+    }
+
+    /** Concurrency limit at the time of rejection. */
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.dimitryivaniuta.gateway.proxy.concurrency;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import lombok.RequiredArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Adaptive concurrency stage, between rate limiting and retry: one permit covers a call with all its retries,
+ * and the outcome after retries drives the limit. Future-returning methods hold the permit until the future
+ * completes.
+ */
+@Component
+@RequiredArgsConstructor
+public final class ConcurrencyLimitMethodInterceptor implements MethodInterceptor {
+
+    private final MethodPlanRegistry plans;
+    private final ProxyCallContexts contexts;
+
+    @Override
+    public Object invoke(MethodInvocation inv) throws Throwable {
+        MethodPlan plan = plans.plan(inv);
+        ProxyConcurrencyLimit cfg = plan.concurrencyLimit();
+        if (cfg == null) return inv.proceed();
+
+        ApiClientPolicy policy = contexts.get(inv, plan).policy();
+        if (policy != null && !policy.isEnabled()) {
+            return inv.proceed();
+        }
+
+        AdaptiveConcurrencyLimit limiter = plan.concurrencyLimiter();
+        if (!limiter.tryAcquire()) {
+            throw new ConcurrencyLimitExceededException("Concurrency limit exceeded", limiter.limit());
+        }
+
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = inv.proceed();
+        } catch (Throwable ex) {
+            limiter.release(System.nanoTime() - start, !ignored(cfg, ex));
+            throw ex;
+        }
+
+        if (plan.returnsFuture() && result instanceof CompletionStage<?> stage) {
+            stage.whenComplete((value, failure) ->
+                    limiter.release(System.nanoTime() - start, failure != null && !ignored(cfg, unwrap(failure))));
+        } else {
+            limiter.release(System.nanoTime() - start, false);
+        }
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+    }
+
+    private static boolean ignored(ProxyConcurrencyLimit cfg, Throwable ex) {
+        return Arrays.stream(cfg.ignoreOn()).anyMatch(c -> c.isInstance(ex));
+    }
+}
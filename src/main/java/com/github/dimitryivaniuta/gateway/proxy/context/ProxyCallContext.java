@@ -0,0 +1,61 @@
+package com.github.dimitryivaniuta.gateway.proxy.context;
+
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+
+/**
+ * State shared by all interceptors of ONE proxied invocation.
+ *
+ * <p>Created by the outermost stage and passed down the chain as a user attribute of the
+ * {@link org.springframework.aop.ProxyMethodInvocation}. The client (API key hash + credential lookup)
+ * and the policy are resolved lazily on first use and then memoized, so a call through all five stages
+ * costs one resolution and one policy lookup.
+ *
+ * <p>Not thread-safe: an invocation runs on one thread at a time.
+ */
+public final class ProxyCallContext {
+
+    private final MethodPlan plan;
+    private final String correlationId;
+    private final ProxyCallContexts resolvers;
+
+    private RateLimitKeyResolver.ResolvedClient client;
+    private ApiClientPolicy policy;
+    private boolean policyResolved;
+
+    ProxyCallContext(MethodPlan plan, String correlationId, ProxyCallContexts resolvers) {
+        this.plan = plan;
+        this.correlationId = correlationId;
+        this.resolvers = resolvers;
+    }
+
+    public MethodPlan plan() {
+        return plan;
+    }
+
+    /**
+     * Correlation id captured from MDC when the invocation entered the proxy (may be null).
+     */
+    public String correlationId() {
+        return correlationId;
+    }
+
+    public RateLimitKeyResolver.ResolvedClient client() {
+        if (client == null) {
+            client = resolvers.resolveClient();
+        }
+        return client;
+    }
+
+    /**
+     * Policy for (client subjectKey, plan fullMethodKey), or null when none is configured.
+     */
+    public ApiClientPolicy policy() {
+        if (!policyResolved) {
+            policy = resolvers.findPolicy(client().subjectKey(), plan.fullMethodKey());
+            policyResolved = true;
+        }
+        return policy;
+    }
+}
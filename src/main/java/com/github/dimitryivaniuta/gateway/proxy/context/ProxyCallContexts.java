@@ -0,0 +1,57 @@
+package com.github.dimitryivaniuta.gateway.proxy.context;
+
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import lombok.RequiredArgsConstructor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.MDC;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.stereotype.Component;
+
+import static com.github.dimitryivaniuta.gateway.web.RequestContextKeys.CORRELATION_ID_MDC_KEY;
+
+/**
+ * Opens / looks up the {@link ProxyCallContext} of a proxied invocation.
+ *
+ * <p>The first interceptor in the chain creates the context; inner interceptors get the same instance
+ * from the invocation's user attributes (Spring's {@code ReflectiveMethodInvocation} keeps one
+ * invocation object for the whole chain, including retried {@code proceed()} calls).
+ */
+@Component
+@RequiredArgsConstructor
+public class ProxyCallContexts {
+
+    private static final String ATTRIBUTE = ProxyCallContext.class.getName();
+
+    private final RateLimitKeyResolver keyResolver;
+    private final ApiClientPolicyService policyService;
+
+    public ProxyCallContext get(MethodInvocation inv, MethodPlan plan) {
+        if (!(inv instanceof ProxyMethodInvocation pmi)) {
+            // foreign invocation type: nothing to share it through
+            return open(plan);
+        }
+
+        if (pmi.getUserAttribute(ATTRIBUTE) instanceof ProxyCallContext ctx && ctx.plan() == plan) {
+            return ctx;
+        }
+
+        ProxyCallContext ctx = open(plan);
+        pmi.setUserAttribute(ATTRIBUTE, ctx);
+        return ctx;
+    }
+
+    private ProxyCallContext open(MethodPlan plan) {
+        return new ProxyCallContext(plan, MDC.get(CORRELATION_ID_MDC_KEY), this);
+    }
+
+    RateLimitKeyResolver.ResolvedClient resolveClient() {
+        return keyResolver.resolve();
+    }
+
+    ApiClientPolicy findPolicy(String subjectKey, String methodKey) {
+        return policyService.find(subjectKey, methodKey).orElse(null);
+    }
+}
@@ -1,30 +1,85 @@
 package com.github.dimitryivaniuta.gateway.proxy.idempotency;
 
-import lombok.RequiredArgsConstructor;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Periodically deletes expired idempotency records (expires_at < now).
  *
+ * <p>Rows are deleted in chunks of {@code cleanup-batch-size}, each in its own short transaction, with
+ * {@code cleanup-pause} between chunks so row locks, WAL and dead tuples are spread out instead of one
+ * statement rewriting every expired row. A run stops after {@code cleanup-max-run-time}; the next run continues.
+ *
  * IMPORTANT:
  * Ensure scheduling is enabled in your app (e.g., add @EnableScheduling on your main application class).
  */
 @Component
-@RequiredArgsConstructor
 public class IdempotencyCleanupJob {
 
     private static final Logger log = LoggerFactory.getLogger(IdempotencyCleanupJob.class);
 
     private final IdempotencyService service;
+    private final ProxyToolkitProperties.Idempotency cfg;
+    private final ProxyToolkitMetrics.IdempotencyCleanupMeters meters;
 
-    @Scheduled(cron = "0 */10 * * * *") // every 10 minutes
+    private volatile double lastRowsPerSecond;
+
+    public IdempotencyCleanupJob(IdempotencyService service, ProxyToolkitProperties props, ProxyToolkitMetrics metrics) {
+        this.service = service;
+        this.cfg = props.getIdempotency();
+        this.meters = metrics.idempotencyCleanupMeters(() -> lastRowsPerSecond);
+    }
+
+    @Scheduled(cron = "${proxy-toolkit.idempotency.cleanup-cron:0 */10 * * * *}")
     public void cleanupExpired() {
-        int deleted = service.deleteExpiredNow();
+        long deleted = deleteExpired();
         if (deleted > 0) {
-            log.info("Idempotency cleanup deleted {} expired records", deleted);
+            log.info("Idempotency cleanup deleted {} expired records ({} rows/s)", deleted, Math.round(lastRowsPerSecond));
+        }
+    }
+
+    /**
+     * @return rows deleted by this run
+     */
+    long deleteExpired() {
+        // fixed cutoff: rows expiring during the run are left to the next one, so the loop always ends
+        Instant cutoff = Instant.now();
+        int batchSize = Math.max(1, cfg.getCleanupBatchSize());
+        long start = System.nanoTime();
+        long deadline = start + cfg.getCleanupMaxRunTime().toNanos();
+        long total = 0;
+
+        while (true) {
+            int n = service.deleteExpiredChunk(cutoff, batchSize);
+            total += n;
+            meters.deleted().increment(n);
+            // a short chunk means nothing (unlocked) is left
+            if (n < batchSize || System.nanoTime() - deadline >= 0) break;
+            if (!pause()) break;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        meters.run().record(elapsed, TimeUnit.NANOSECONDS);
+        lastRowsPerSecond = (elapsed > 0) ? total * 1e9 / elapsed : 0;
+        return total;
+    }
+
+    private boolean pause() {
+        long millis = cfg.getCleanupPause().toMillis();
+        if (millis <= 0) return true;
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 }
@@ -0,0 +1,46 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wake-up registry for requests waiting on an in-flight idempotency key.
+ *
+ * <p>Waiters {@link #subscribe} and then re-check the record (L1 / DB), so a completion that lands in between
+ * is never missed. The owner signals after {@code markCompleted} / {@code markFailed} on this node;
+ * {@link IdempotencyNotificationListener} signals for completions on other nodes (PostgreSQL NOTIFY).
+ * A signal carries no outcome, it only tells waiters to look again.
+ */
+@Component
+public class IdempotencyCompletions {
+
+    private record Key(String idempotencyKey, String methodKey) {}
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * @return future completed on the next signal for this key (shared by all current waiters)
+     */
+    public CompletableFuture<Void> subscribe(String idempotencyKey, String methodKey) {
+        return waiters.computeIfAbsent(new Key(idempotencyKey, methodKey), k -> new CompletableFuture<>());
+    }
+
+    /**
+     * Drops a waiter's subscription (timeout). Remaining waiters re-subscribe on their next re-check.
+     */
+    public void unsubscribe(String idempotencyKey, String methodKey, CompletableFuture<Void> signal) {
+        waiters.remove(new Key(idempotencyKey, methodKey), signal);
+    }
+
+    public void signal(String idempotencyKey, String methodKey) {
+        if (waiters.isEmpty()) return;
+        CompletableFuture<Void> f = waiters.remove(new Key(idempotencyKey, methodKey));
+        if (f != null) f.complete(null);
+    }
+
+    public int waiting() {
+        return waiters.size();
+    }
+}
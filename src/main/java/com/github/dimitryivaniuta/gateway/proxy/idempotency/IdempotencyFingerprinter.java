@@ -0,0 +1,221 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.annotation.JsonIncludeProperties;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyFingerprint;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.support.Murmur3x128;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedMethod;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request fingerprint of an idempotent call: a hash over the JSON form of its arguments.
+ *
+ * <p>Jackson writes straight into the hash through an {@link OutputStream}, in chunks of its own buffer, so no
+ * String or byte[] of the whole payload is built. With no {@link ProxyFingerprint} selection and
+ * {@link ProxyIdempotent.Fingerprint#SHA256} the result equals the former {@code sha256(writeValueAsString(args))},
+ * so records written before stay comparable.
+ *
+ * <p>Selected argument positions are resolved once per method.
+ */
+@Component
+public class IdempotencyFingerprinter {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final byte[] EMPTY_ARGS = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectWriter writer;
+    private final MessageDigest sha256;
+    // argument positions taking part, per method
+    private final ConcurrentHashMap<Method, int[]> selections = new ConcurrentHashMap<>();
+
+    public IdempotencyFingerprinter(ObjectMapper mapper) {
+        ObjectMapper copy = mapper.copy();
+        copy.setAnnotationIntrospector(AnnotationIntrospector.pair(
+                new FingerprintIntrospector(), copy.getSerializationConfig().getAnnotationIntrospector()));
+        this.writer = copy.writer();
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String fingerprint(MethodPlan plan, Object[] args) {
+        Sink sink = sink(plan.idempotent().fingerprint());
+        try {
+            writer.writeValue(sink, selected(plan.method(), args));
+        } catch (Exception e) {
+            // as before: an unserializable payload fingerprints like no arguments
+            sink = sink(plan.idempotent().fingerprint());
+            sink.write(EMPTY_ARGS, 0, EMPTY_ARGS.length);
+        }
+        return sink.hex();
+    }
+
+    private Sink sink(ProxyIdempotent.Fingerprint mode) {
+        return (mode == ProxyIdempotent.Fingerprint.FAST128) ? new Murmur3Sink() : new Sha256Sink(newSha256());
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return (MessageDigest) sha256.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 not available", ex);
+            }
+        }
+    }
+
+    private Object[] selected(Method method, Object[] args) {
+        int[] positions = selections.computeIfAbsent(method, IdempotencyFingerprinter::selection);
+        if (positions.length == args.length) return args;
+        Object[] out = new Object[positions.length];
+        for (int i = 0; i < positions.length; i++) out[i] = args[positions[i]];
+        return out;
+    }
+
+    // also finds parameter annotations declared on interface methods
+    private static int[] selection(Method method) {
+        MethodParameter[] params = new AnnotatedMethod(method).getMethodParameters();
+        boolean anySelected = false;
+        for (MethodParameter p : params) {
+            ProxyFingerprint ann = p.getParameterAnnotation(ProxyFingerprint.class);
+            if (ann != null && !ann.exclude()) anySelected = true;
+        }
+        int[] out = new int[params.length];
+        int n = 0;
+        for (int i = 0; i < params.length; i++) {
+            ProxyFingerprint ann = params[i].getParameterAnnotation(ProxyFingerprint.class);
+            boolean counts = anySelected ? (ann != null && !ann.exclude()) : (ann == null || !ann.exclude());
+            if (counts) out[n++] = i;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // ---- sinks ----
+
+    private abstract static class Sink extends OutputStream {
+        @Override
+        public abstract void write(byte[] b, int off, int len);
+
+        abstract String hex();
+    }
+
+    private static final class Sha256Sink extends Sink {
+        private final MessageDigest md;
+
+        Sha256Sink(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public void write(int b) {
+            md.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            md.update(b, off, len);
+        }
+
+        @Override
+        String hex() {
+            return HEX.formatHex(md.digest());
+        }
+    }
+
+    private static final class Murmur3Sink extends Sink {
+        private final Murmur3x128 hash = new Murmur3x128();
+
+        @Override
+        public void write(int b) {
+            hash.update(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            hash.update(b, off, len);
+        }
+
+        @Override
+        String hex() {
+            hash.finish();
+            return HEX.toHexDigits(hash.h1()) + HEX.toHexDigits(hash.h2());
+        }
+    }
+
+    // ---- property selection ----
+
+    /**
+     * {@link ProxyFingerprint} on argument types: {@code exclude} ignores the property; selected properties
+     * become the only ones of their class (as with {@code @JsonIncludeProperties}).
+     */
+    private static final class FingerprintIntrospector extends NopAnnotationIntrospector {
+
+        @Override
+        public boolean hasIgnoreMarker(AnnotatedMember m) {
+            ProxyFingerprint ann = _findAnnotation(m, ProxyFingerprint.class);
+            return ann != null && ann.exclude();
+        }
+
+        @Override
+        public JsonIncludeProperties.Value findPropertyInclusionByName(MapperConfig<?> config, Annotated a) {
+            if (!(a instanceof AnnotatedClass ac)) return JsonIncludeProperties.Value.all();
+            Set<String> names = selectedProperties(ac.getRawType());
+            if (names.isEmpty()) return JsonIncludeProperties.Value.all();
+            // the constructor is protected; from() only takes the annotation itself
+            return new JsonIncludeProperties.Value(names) {};
+        }
+
+        // record components carry the annotation on their field as well
+        private static Set<String> selectedProperties(Class<?> type) {
+            Set<String> names = new HashSet<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (isSelected(f.getAnnotation(ProxyFingerprint.class))) names.add(f.getName());
+                }
+                for (Method m : c.getDeclaredMethods()) {
+                    if (m.getParameterCount() == 0 && isSelected(m.getAnnotation(ProxyFingerprint.class))) {
+                        names.add(propertyName(m.getName()));
+                    }
+                }
+            }
+            return names;
+        }
+
+        private static boolean isSelected(ProxyFingerprint ann) {
+            return ann != null && !ann.exclude();
+        }
+
+        private static String propertyName(String getter) {
+            String base = getter.startsWith("get") && getter.length() > 3 ? getter.substring(3)
+                    : getter.startsWith("is") && getter.length() > 2 ? getter.substring(2)
+                    : getter;
+            return Character.toLowerCase(base.charAt(0)) + base.substring(1);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * In-process (L1) idempotency tier in front of {@link IdempotencyService}.
+ *
+ * <p>Holds three kinds of entries per (idempotency key, method key):
+ * <ul>
+ *   <li>{@code IN_FLIGHT}: a request on this node is executing; same-node duplicates see it without a DB read</li>
+ *   <li>{@code COMPLETED}: stored response, replayed without touching the DB until the record expires</li>
+ *   <li>{@code FAILED}: previous attempt failed (409 until expiry, as with the DB record)</li>
+ * </ul>
+ * The DB stays the source of truth: entries are only written after the DB row was read or updated, a miss
+ * always falls through to the DB, and entries never outlive the record ({@code expires_at}) or
+ * {@code proxy-toolkit.idempotency.l1-max-ttl}, whichever comes first.
+ */
+@Component
+public class IdempotencyL1Cache {
+
+    public enum State { IN_FLIGHT, COMPLETED, FAILED }
+
+    /**
+     * @param response encoded by {@link IdempotencyResponseCodec}
+     */
+    public record Entry(State state, String requestHash, String lockOwner, byte[] response, long expiresAtNanos) {}
+
+    private record Key(String idempotencyKey, String methodKey) {}
+
+    private final Cache<Key, Entry> cache; // null => L1 disabled
+    private final long maxTtlNanos;
+    private final int maxResponseBytes;
+
+    public IdempotencyL1Cache(ProxyToolkitProperties props, ProxyToolkitMetrics metrics) {
+        ProxyToolkitProperties.Idempotency cfg = props.getIdempotency();
+        this.maxTtlNanos = cfg.getL1MaxTtl().toNanos();
+        this.maxResponseBytes = cfg.getL1MaxResponseBytes();
+        this.cache = cfg.isL1Enabled()
+                ? Caffeine.newBuilder()
+                    .maximumSize(cfg.getL1MaxEntries())
+                    .expireAfter(new EntryExpiry())
+                    .build()
+                : null;
+        metrics.idempotencyL1Gauge(this::estimatedSize);
+    }
+
+    public boolean enabled() {
+        return cache != null;
+    }
+
+    public Entry get(String idempotencyKey, String methodKey) {
+        if (cache == null) return null;
+        Entry e = cache.getIfPresent(new Key(idempotencyKey, methodKey));
+        return (e != null && e.expiresAtNanos() - System.nanoTime() > 0) ? e : null;
+    }
+
+    /**
+     * Marks the key in flight on this node unless an entry exists.
+     *
+     * @return the existing entry (another caller got there first), or null when this caller now holds the claim
+     *         (or L1 is disabled)
+     */
+    public Entry claim(String idempotencyKey, String methodKey, String requestHash, String lockOwner, Duration ttl) {
+        if (cache == null) return null;
+        Entry mine = new Entry(State.IN_FLIGHT, requestHash, lockOwner, null, deadline(ttl.toNanos()));
+        Entry[] existing = {null};
+        cache.asMap().compute(new Key(idempotencyKey, methodKey), (k, cur) -> {
+            if (cur != null && cur.expiresAtNanos() - System.nanoTime() > 0) {
+                existing[0] = cur;
+                return cur;
+            }
+            return mine;
+        });
+        return existing[0];
+    }
+
+    /**
+     * Drops this caller's in-flight claim; completed / failed entries (and other owners' claims) are kept.
+     */
+    public void release(String idempotencyKey, String methodKey, String lockOwner) {
+        if (cache == null) return;
+        cache.asMap().computeIfPresent(new Key(idempotencyKey, methodKey), (k, cur) ->
+                (cur.state() == State.IN_FLIGHT && cur.lockOwner().equals(lockOwner)) ? null : cur);
+    }
+
+    public void completed(String idempotencyKey, String methodKey, String requestHash, byte[] response, Instant expiresAt) {
+        if (cache == null) return;
+        Key key = new Key(idempotencyKey, methodKey);
+        if (response != null && response.length > maxResponseBytes) {
+            // large responses are replayed from the DB only
+            cache.invalidate(key);
+            return;
+        }
+        cache.put(key, new Entry(State.COMPLETED, requestHash, null, response, deadline(expiresAt)));
+    }
+
+    public void failed(String idempotencyKey, String methodKey, String requestHash, Instant expiresAt) {
+        if (cache == null) return;
+        cache.put(new Key(idempotencyKey, methodKey), new Entry(State.FAILED, requestHash, null, null, deadline(expiresAt)));
+    }
+
+    public long estimatedSize() {
+        return (cache == null) ? 0 : cache.estimatedSize();
+    }
+
+    private long deadline(Instant expiresAt) {
+        long remaining = (expiresAt == null) ? maxTtlNanos : Duration.between(Instant.now(), expiresAt).toNanos();
+        return deadline(remaining);
+    }
+
+    private long deadline(long remainingNanos) {
+        return System.nanoTime() + Math.max(0, Math.min(remainingNanos, maxTtlNanos));
+    }
+
+    private static final class EntryExpiry implements Expiry<Key, Entry> {
+        @Override
+        public long expireAfterCreate(Key key, Entry value, long currentTime) {
+            return Math.max(0, value.expiresAtNanos() - currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, Entry value, long currentTime, long currentDuration) {
+            return Math.max(0, value.expiresAtNanos() - currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,50 +1,48 @@
 package com.github.dimitryivaniuta.gateway.proxy.idempotency;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
 import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContext;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
 import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
 import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
-import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
-import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
 import com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport;
-import com.github.dimitryivaniuta.gateway.web.CorrelationIdFilter;
 import com.github.dimitryivaniuta.gateway.web.IdempotencyKeyFilter;
 import lombok.RequiredArgsConstructor;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.slf4j.MDC;
-import org.springframework.aop.support.AopUtils;
-import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+@Component
 @RequiredArgsConstructor
 public class IdempotencyMethodInterceptor implements MethodInterceptor {
 
     private final IdempotencyService service;
-    private final ObjectMapper mapper;
-    private final RateLimitKeyResolver keyResolver;
-    private final ApiClientPolicyService policyService;
-    private final ProxyToolkitMetrics metrics;
-
-    // short poll to wait for another in-flight owner to finish
-    private final Duration inFlightWaitMax = Duration.ofSeconds(2);
-    private final Duration inFlightWaitStep = Duration.ofMillis(200);
+    private final IdempotencyL1Cache l1;
+    private final IdempotencyCompletions completions;
+    private final IdempotencyResponseCodec codec;
+    private final IdempotencyFingerprinter fingerprinter;
+    private final ProxyToolkitProperties props;
+    private final MethodPlanRegistry plans;
+    private final ProxyCallContexts contexts;
 
     @Override
     public Object invoke(MethodInvocation inv) throws Throwable {
-        Class<?> targetClass = resolveTargetClass(inv);
-        Method specificMethod = AopUtils.getMostSpecificMethod(inv.getMethod(), targetClass);
-
-        ProxyIdempotent ann = find(targetClass, specificMethod);
-        if (ann == null || !ann.enabled()) return inv.proceed();
+        MethodPlan plan = plans.plan(inv);
+        ProxyIdempotent ann = plan.idempotent();
+        if (ann == null) return inv.proceed();
 
         // must come from IdempotencyKeyFilter (X-Idempotency-Key)
         String idemKey = MDC.get(IdempotencyKeyFilter.MDC_KEY);
@@ -55,12 +53,12 @@ public class IdempotencyMethodInterceptor implements MethodInterceptor {
             return inv.proceed();
         }
 
-        String fullMethodKey = MethodKeySupport.signature(targetClass, specificMethod);
-        String metricMethodKey = MethodKeySupport.metricMethodKey(targetClass, specificMethod);
+        String fullMethodKey = plan.fullMethodKey();
+        ProxyToolkitMetrics.IdempotencyMeters meters = plan.idempotencyMeters();
 
-        // Policy lookup by subjectKey (apiKey:<hash> / user:<name> / ip:<addr>)
-        RateLimitKeyResolver.ResolvedClient client = keyResolver.resolve();
-        ApiClientPolicy policy = policyService.find(client.subjectKey(), fullMethodKey).orElse(null);
+        // Policy lookup by subjectKey (apiKey:<hash> / user:<name> / ip:<addr>), shared with inner stages
+        ProxyCallContext ctx = contexts.get(inv, plan);
+        ApiClientPolicy policy = ctx.policy();
 
         // If policy disables for this client+method => skip idempotency
         if (policy != null && !policy.isEnabled()) return inv.proceed();
@@ -73,10 +71,53 @@ public class IdempotencyMethodInterceptor implements MethodInterceptor {
                 : Duration.ofSeconds(ann.ttlSeconds());
 
         // Request hash must be stable; store minimal but deterministic hash
-        String requestHash = sha256(safeArgsJson(inv.getArguments()));
+        String requestHash = fingerprinter.fingerprint(plan, inv.getArguments());
 
         // lock owner should be correlation id (not idempotency key)
-        String lockOwner = Optional.ofNullable(MDC.get(CorrelationIdFilter.MDC_KEY)).orElse("no-correlation");
+        String lockOwner = Optional.ofNullable(ctx.correlationId()).orElse("no-correlation");
+
+        // L1: same-node replays / failures / in-flight duplicates are answered without the DB
+        IdempotencyL1Cache.Entry local = l1.claim(idemKey, fullMethodKey, requestHash, lockOwner, ttl);
+        if (local != null && !lockOwner.equals(local.lockOwner())) {
+            meters.l1Hit().increment();
+
+            if (ann.conflictOnDifferentRequest() && !requestHash.equals(local.requestHash())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Idempotency key reused with different request payload");
+            }
+            if (local.state() == IdempotencyL1Cache.State.COMPLETED) {
+                meters.served().increment();
+                return readStoredResult(plan, local.response());
+            }
+            if (local.state() == IdempotencyL1Cache.State.FAILED) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Previous attempt failed for this idempotency key");
+            }
+            if (ann.rejectInFlight()) {
+                return awaitInFlight(plan, idemKey, fullMethodKey, meters);
+            }
+            // in flight but concurrent execution allowed: the DB decides, as before
+        } else if (l1.enabled()) {
+            meters.l1Miss().increment();
+        }
+
+        try {
+            return acquireAndExecute(inv, plan, ann, meters, idemKey, requestHash, ttl, lockOwner);
+        } finally {
+            // no-op once the claim was replaced by a COMPLETED / FAILED entry
+            l1.release(idemKey, fullMethodKey, lockOwner);
+            // same-node waiters re-check now (completed, failed, or the claim moved to the DB)
+            completions.signal(idemKey, fullMethodKey);
+        }
+    }
+
+    private Object acquireAndExecute(MethodInvocation inv,
+                                     MethodPlan plan,
+                                     ProxyIdempotent ann,
+                                     ProxyToolkitMetrics.IdempotencyMeters meters,
+                                     String idemKey,
+                                     String requestHash,
+                                     Duration ttl,
+                                     String lockOwner) throws Throwable {
+        String fullMethodKey = plan.fullMethodKey();
 
         IdempotencyRecord rec = service.acquireOrGet(idemKey, fullMethodKey, requestHash, ttl, lockOwner);
 
@@ -87,103 +128,119 @@ public class IdempotencyMethodInterceptor implements MethodInterceptor {
 
         // Completed => serve stored response
         if (IdempotencyService.STATUS_COMPLETED.equals(rec.getStatus())) {
-            metrics.idempotencyServed(metricMethodKey);
-            return readStoredResult(inv, rec);
+            byte[] response = storedResponse(rec);
+            l1.completed(idemKey, fullMethodKey, rec.getRequestHash(), response, rec.getExpiresAt());
+            meters.served().increment();
+            return readStoredResult(plan, response);
         }
 
         // Failed => conflict (caller can choose a new key)
         if (IdempotencyService.STATUS_FAILED.equals(rec.getStatus())) {
+            l1.failed(idemKey, fullMethodKey, rec.getRequestHash(), rec.getExpiresAt());
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Previous attempt failed for this idempotency key");
         }
 
-        // Pending: if someone else owns lock and rejectInFlight => short wait then conflict
+        // Pending: if someone else (another node) owns lock and rejectInFlight => short wait then conflict
         if (IdempotencyService.STATUS_PENDING.equals(rec.getStatus())
                 && ann.rejectInFlight()
                 && rec.getLockedBy() != null
                 && !lockOwner.equals(rec.getLockedBy())) {
-
-            long deadline = System.nanoTime() + inFlightWaitMax.toNanos();
-            while (System.nanoTime() < deadline) {
-                Thread.sleep(inFlightWaitStep.toMillis());
-                var updated = service.read(idemKey, fullMethodKey).orElse(null);
-                if (updated == null) break;
-
-                if (IdempotencyService.STATUS_COMPLETED.equals(updated.getStatus())) {
-                    metrics.idempotencyServed(metricMethodKey);
-                    return readStoredResult(inv, updated);
-                }
-                if (IdempotencyService.STATUS_FAILED.equals(updated.getStatus())) {
-                    throw new ResponseStatusException(HttpStatus.CONFLICT, "Previous attempt failed for this idempotency key");
-                }
-            }
-
-            metrics.idempotencyInFlightConflict(metricMethodKey);
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Request with this idempotency key is already in progress");
+            // not ours: let same-node duplicates go to the DB as well
+            l1.release(idemKey, fullMethodKey, lockOwner);
+            completions.signal(idemKey, fullMethodKey);
+            return awaitInFlight(plan, idemKey, fullMethodKey, meters);
         }
 
-        metrics.idempotencyExecuted(metricMethodKey);
+        meters.executed().increment();
 
         try {
             Object result = inv.proceed();
-            String responseJson = (specificMethod.getReturnType() == void.class) ? null : safeResultJson(result);
-            service.markCompleted(idemKey, fullMethodKey, requestHash, responseJson);
+            byte[] response = plan.returnsVoid() ? null : codec.encode(result);
+            service.markCompleted(idemKey, fullMethodKey, requestHash, response);
+            l1.completed(idemKey, fullMethodKey, requestHash, response, rec.getExpiresAt());
             return result;
         } catch (Throwable ex) {
             service.markFailed(idemKey, fullMethodKey, requestHash, ex.getMessage());
+            l1.failed(idemKey, fullMethodKey, requestHash, rec.getExpiresAt());
             throw ex;
         }
     }
 
-    private ProxyIdempotent find(Class<?> cls, Method m) {
-        ProxyIdempotent onMethod = AnnotatedElementUtils.findMergedAnnotation(m, ProxyIdempotent.class);
-        return onMethod != null ? onMethod : AnnotatedElementUtils.findMergedAnnotation(cls, ProxyIdempotent.class);
-    }
-
-    private Object readStoredResult(MethodInvocation inv, IdempotencyRecord rec) {
-        if (inv.getMethod().getReturnType() == void.class) return null;
-        String json = rec.getResponseJson();
-        if (json == null || json.isBlank()) return null;
-
+    /**
+     * Waits for the owner of an in-flight key without polling: the waiter parks on a completion signal
+     * ({@link IdempotencyCompletions}) raised by a same-node owner or by a NOTIFY from another node, and re-checks
+     * L1 / DB when woken (or every {@code in-flight-recheck-interval} as a safety net). A same-node owner is
+     * watched through L1 only; without a local entry the DB record is read.
+     */
+    private Object awaitInFlight(MethodPlan plan,
+                                 String idemKey,
+                                 String fullMethodKey,
+                                 ProxyToolkitMetrics.IdempotencyMeters meters) throws InterruptedException {
+        ProxyToolkitProperties.Idempotency cfg = props.getIdempotency();
+        long recheckNanos = Math.max(1, cfg.getInFlightRecheckInterval().toNanos());
+        long deadline = System.nanoTime() + cfg.getInFlightWaitMax().toNanos();
+
+        CompletableFuture<Void> signal = null;
         try {
-            JavaType type = mapper.getTypeFactory().constructType(inv.getMethod().getGenericReturnType());
-            return mapper.readValue(json, type);
-        } catch (Exception e) {
-            // if cannot deserialize, fall back to executing (or raise)
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Stored idempotent response cannot be deserialized");
-        }
-    }
+            while (true) {
+                // subscribe before checking, so a completion in between still wakes us
+                signal = completions.subscribe(idemKey, fullMethodKey);
+
+                IdempotencyL1Cache.Entry local = l1.get(idemKey, fullMethodKey);
+                if (local != null && local.state() == IdempotencyL1Cache.State.COMPLETED) {
+                    meters.served().increment();
+                    return readStoredResult(plan, local.response());
+                }
+                if (local != null && local.state() == IdempotencyL1Cache.State.FAILED) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "Previous attempt failed for this idempotency key");
+                }
+                if (local == null) {
+                    var updated = service.read(idemKey, fullMethodKey).orElse(null);
+                    if (updated == null) break;
+
+                    if (IdempotencyService.STATUS_COMPLETED.equals(updated.getStatus())) {
+                        meters.served().increment();
+                        return readStoredResult(plan, storedResponse(updated));
+                    }
+                    if (IdempotencyService.STATUS_FAILED.equals(updated.getStatus())) {
+                        throw new ResponseStatusException(HttpStatus.CONFLICT, "Previous attempt failed for this idempotency key");
+                    }
+                }
 
-    private String safeArgsJson(Object[] args) {
-        try {
-            return mapper.writeValueAsString(args);
-        } catch (Exception e) {
-            return "[]";
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+                try {
+                    signal.get(Math.min(remaining, recheckNanos), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException | ExecutionException ignored) {
+                    // re-check
+                }
+            }
+        } finally {
+            if (signal != null && !signal.isDone()) completions.unsubscribe(idemKey, fullMethodKey, signal);
         }
+
+        meters.inFlightConflict().increment();
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Request with this idempotency key is already in progress");
     }
 
-    private String safeResultJson(Object result) {
-        try {
-            return mapper.writeValueAsString(result);
-        } catch (Exception e) {
-            return "\"<json-serialization-error>\"";
-        }
+    /**
+     * Encoded response of a completed record; rows completed before V11 only have JSON text, which is re-encoded
+     * so L1 and replay deal with one representation.
+     */
+    private byte[] storedResponse(IdempotencyRecord rec) {
+        if (rec.getResponseBody() != null || rec.getResponseJson() == null) return rec.getResponseBody();
+        return IdempotencyResponseCodec.legacyJson(rec.getResponseJson());
     }
 
-    private static String sha256(String in) {
+    private Object readStoredResult(MethodPlan plan, byte[] response) {
+        if (plan.returnsVoid()) return null;
+        if (response == null) return null;
+
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] dig = md.digest(in.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(dig.length * 2);
-            for (byte b : dig) sb.append(String.format("%02x", b));
-            return sb.toString();
+            return codec.decode(plan, response);
         } catch (Exception e) {
-            return "sha256-error";
+            // if cannot deserialize, fall back to executing (or raise)
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Stored idempotent response cannot be deserialized");
         }
     }
-
-    private static Class<?> resolveTargetClass(MethodInvocation inv) {
-        Object t = inv.getThis();
-        Class<?> c = (t != null) ? AopUtils.getTargetClass(t) : null;
-        return (c != null) ? c : inv.getMethod().getDeclaringClass();
-    }
 }
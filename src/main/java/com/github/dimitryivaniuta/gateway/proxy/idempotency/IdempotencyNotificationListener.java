@@ -0,0 +1,66 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.support.PgListenLoop;
+import org.postgresql.PGNotification;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Cross-node wake-up for in-flight idempotency waiters.
+ *
+ * <p>{@link IdempotencyService} sends {@code pg_notify('idempotency_record', key \n methodKey)} in the same
+ * transaction that completes / fails a record, so the notification is delivered on commit. This listener
+ * keeps one connection (outside the pool, see {@link PgListenLoop}) on {@code LISTEN idempotency_record} and
+ * turns notifications into {@link IdempotencyCompletions#signal} calls. Notifications lost while reconnecting are covered by the
+ * waiters' periodic re-check ({@code proxy-toolkit.idempotency.in-flight-recheck-interval}).
+ */
+@Component
+public class IdempotencyNotificationListener implements SmartLifecycle {
+
+    public static final String CHANNEL = "idempotency_record";
+
+    private final IdempotencyCompletions completions;
+    private final ProxyToolkitProperties.Idempotency cfg;
+    private final PgListenLoop loop;
+
+    public IdempotencyNotificationListener(DataSource dataSource,
+                                           IdempotencyCompletions completions,
+                                           ProxyToolkitProperties props) {
+        this.completions = completions;
+        this.cfg = props.getIdempotency();
+        this.loop = new PgListenLoop("idempotency", CHANNEL, dataSource, cfg.getListenReconnectDelay(), batch -> {
+            for (PGNotification n : batch) onNotification(n.getParameter());
+        });
+    }
+
+    static String payload(String idempotencyKey, String methodKey) {
+        // header values cannot contain line breaks, method keys never do
+        return idempotencyKey + '\n' + methodKey;
+    }
+
+    void onNotification(String payload) {
+        int sep = (payload != null) ? payload.indexOf('\n') : -1;
+        if (sep < 0) return;
+        completions.signal(payload.substring(0, sep), payload.substring(sep + 1));
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public void start() {
+        if (cfg.isListenEnabled()) loop.start();
+    }
+
+    @Override
+    public void stop() {
+        loop.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return loop.isRunning();
+    }
+}
@@ -36,10 +36,19 @@ public class IdempotencyRecord {
     @Column(name = "status", nullable = false, length = 16)
     private String status;
 
+    /**
+     * Response of records completed before V11; newer records use {@link #responseBody}.
+     */
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "response_json", columnDefinition = "jsonb")
     private String responseJson;
 
+    /**
+     * Response encoded by {@link IdempotencyResponseCodec} (format header + Smile / CBOR / JSON, maybe deflated).
+     */
+    @Column(name = "response_body")
+    private byte[] responseBody;
+
     @Column(name = "error_message")
     private String errorMessage;
 
@@ -0,0 +1,131 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties.Idempotency.ResponseFormat;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes idempotent responses for {@code idempotency_record.response_body} (bytea) and the L1 tier.
+ *
+ * <p>Layout: one header byte, then the payload. The header names the Jackson format ({@code response-format}:
+ * JSON, SMILE or CBOR, all sharing the application ObjectMapper's modules and settings) and whether the payload
+ * is deflated; payloads of at least {@code response-compress-threshold} bytes are deflated when that makes them
+ * smaller. Records are self-describing, so changing the format only affects new records. Rows written before
+ * V11 ({@code response_json} jsonb) are still read, through {@link #legacyJson}.
+ *
+ * <p>Readers for the declared return type are built once per method.
+ */
+@Component
+public class IdempotencyResponseCodec {
+
+    private static final int DEFLATED = 0x80;
+    private static final int FORMAT_MASK = 0x0f;
+
+    private static final byte[] SERIALIZATION_ERROR = "\"<json-serialization-error>\"".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper[] mappers = new ObjectMapper[ResponseFormat.values().length];
+    private final ResponseFormat format;
+    private final int compressThreshold;
+    private final ConcurrentHashMap<Method, ObjectReader[]> readers = new ConcurrentHashMap<>();
+
+    public IdempotencyResponseCodec(ObjectMapper mapper, ProxyToolkitProperties props) {
+        this.mappers[ResponseFormat.JSON.ordinal()] = mapper;
+        this.mappers[ResponseFormat.SMILE.ordinal()] = mapper.copyWith(new SmileFactory());
+        this.mappers[ResponseFormat.CBOR.ordinal()] = mapper.copyWith(new CBORFactory());
+        this.format = props.getIdempotency().getResponseFormat();
+        this.compressThreshold = props.getIdempotency().getResponseCompressThreshold();
+    }
+
+    public byte[] encode(Object value) {
+        byte[] payload;
+        ResponseFormat used = format;
+        try {
+            payload = mappers[used.ordinal()].writeValueAsBytes(value);
+        } catch (Exception e) {
+            // stored like before (a JSON string); replaying it as the return type fails with 500
+            payload = SERIALIZATION_ERROR;
+            used = ResponseFormat.JSON;
+        }
+
+        int header = used.ordinal() + 1;
+        if (compressThreshold > 0 && payload.length >= compressThreshold) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) return withHeader(header | DEFLATED, deflated);
+        }
+        return withHeader(header, payload);
+    }
+
+    public Object decode(MethodPlan plan, byte[] stored) throws IOException {
+        if (stored == null || stored.length < 2) return null;
+        int header = stored[0] & 0xff;
+        int formatIndex = (header & FORMAT_MASK) - 1;
+        if (formatIndex < 0 || formatIndex >= mappers.length) {
+            throw new IOException("Unknown idempotent response header: " + header);
+        }
+        ObjectReader reader = readers(plan)[formatIndex];
+        if ((header & DEFLATED) == 0) {
+            return reader.readValue(stored, 1, stored.length - 1);
+        }
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(stored, 1, stored.length - 1))) {
+            return reader.readValue(in);
+        }
+    }
+
+    /** Wraps the JSON text of a record completed before V11 ({@code response_json}) in the stored layout. */
+    public static byte[] legacyJson(String json) {
+        return withHeader(ResponseFormat.JSON.ordinal() + 1, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ObjectReader[] readers(MethodPlan plan) {
+        ObjectReader[] r = readers.get(plan.method());
+        if (r != null) return r;
+        return readers.computeIfAbsent(plan.method(), m -> {
+            ObjectReader[] created = new ObjectReader[mappers.length];
+            for (int i = 0; i < mappers.length; i++) {
+                created[i] = mappers[i].readerFor(mappers[i].getTypeFactory().constructType(m.getGenericReturnType()));
+            }
+            return created;
+        });
+    }
+
+    private static byte[] withHeader(int header, byte[] payload) {
+        byte[] out = new byte[payload.length + 1];
+        out[0] = (byte) header;
+        System.arraycopy(payload, 0, out, 1, payload.length);
+        return out;
+    }
+
+    private static byte[] deflate(byte[] in) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(in);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, in.length / 4));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+                // no gain: stop early, the caller keeps the plain payload
+                if (out.size() >= in.length) return in;
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.github.dimitryivaniuta.gateway.proxy.idempotency;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.*;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 @Service
@@ -16,7 +24,92 @@ public class IdempotencyService {
     public static final String STATUS_COMPLETED = "COMPLETED";
     public static final String STATUS_FAILED = "FAILED";
 
+    /**
+     * Insert, or claim an expired / unlocked PENDING row. RETURNING yields nothing when the existing row is not
+     * claimable, in which case the trailing select returns it as is.
+     */
+    private static final String ACQUIRE_SQL = """
+            with claimed as (
+                insert into idempotency_record as r (
+                    idempotency_key, method_key, request_hash, status, expires_at, locked_at, locked_by,
+                    created_at, updated_at
+                ) values (?, ?, ?, 'PENDING', ?, ?, ?, ?, ?)
+                on conflict (idempotency_key, method_key) do update set
+                    request_hash  = case when r.expires_at < ? then excluded.request_hash else r.request_hash end,
+                    response_json = case when r.expires_at < ? then null else r.response_json end,
+                    response_body = case when r.expires_at < ? then null else r.response_body end,
+                    error_message = case when r.expires_at < ? then null else r.error_message end,
+                    expires_at    = case when r.expires_at < ? then excluded.expires_at else r.expires_at end,
+                    status        = 'PENDING',
+                    locked_at     = excluded.locked_at,
+                    locked_by     = excluded.locked_by,
+                    updated_at    = excluded.updated_at
+                where r.expires_at < ?
+                   or (r.status = 'PENDING' and (r.locked_by is null or r.locked_by = ''))
+                returning r.*
+            )
+            select * from claimed
+            union all
+            select * from idempotency_record
+            where idempotency_key = ? and method_key = ? and not exists (select 1 from claimed)
+            """;
+
+    private static final String SELECT_SQL = """
+            select * from idempotency_record where idempotency_key = ? and method_key = ?
+            """;
+
+    private static final String COMPLETE_SQL = """
+            with done as (
+                update idempotency_record set
+                    request_hash = ?, status = 'COMPLETED', response_body = ?, response_json = null, error_message = null,
+                    locked_at = null, locked_by = null, updated_at = ?
+                where idempotency_key = ? and method_key = ?
+                returning id
+            )
+            select pg_notify(?, ?) from done
+            """;
+
+    private static final String FAIL_SQL = """
+            with done as (
+                update idempotency_record set
+                    request_hash = ?, status = 'FAILED', error_message = ?,
+                    locked_at = null, locked_by = null, updated_at = ?
+                where idempotency_key = ? and method_key = ?
+                returning id
+            )
+            select pg_notify(?, ?) from done
+            """;
+
+    // ctid: the subquery picks physical rows through ix_idempotency_record_expires_at, the delete needs no re-lookup
+    private static final String DELETE_EXPIRED_CHUNK_SQL = """
+            delete from idempotency_record
+            where ctid in (
+                select ctid from idempotency_record
+                where expires_at < ?
+                limit ?
+                for update skip locked
+            )
+            and expires_at < ?
+            """;
+
+    private static final RowMapper<IdempotencyRecord> ROW_MAPPER = (rs, i) -> IdempotencyRecord.builder()
+            .id(rs.getLong("id"))
+            .idempotencyKey(rs.getString("idempotency_key"))
+            .methodKey(rs.getString("method_key"))
+            .requestHash(rs.getString("request_hash"))
+            .status(rs.getString("status"))
+            .responseJson(rs.getString("response_json"))
+            .responseBody(rs.getBytes("response_body"))
+            .errorMessage(rs.getString("error_message"))
+            .expiresAt(instant(rs, "expires_at"))
+            .lockedAt(instant(rs, "locked_at"))
+            .lockedBy(rs.getString("locked_by"))
+            .createdAt(instant(rs, "created_at"))
+            .updatedAt(instant(rs, "updated_at"))
+            .build();
+
     private final IdempotencyRecordRepository repo;
+    private final JdbcTemplate jdbc;
 
     @Transactional(readOnly = true)
     public Optional<IdempotencyRecord> read(String key, String methodKey) {
@@ -24,12 +117,15 @@ public class IdempotencyService {
     }
 
     /**
-     * Acquire record for this key+method:
+     * Acquire record for this key+method in one statement:
      * - creates new PENDING if absent
      * - if expired, resets to PENDING
+     * - if PENDING and unlocked, takes the lock
+     * - otherwise returns the record untouched (owned by someone else, COMPLETED or FAILED)
      * - validates requestHash consistency (handled by interceptor based on annotation flags)
      *
-     * Uses PESSIMISTIC_WRITE to safely coordinate concurrent requests.
+     * The row lock taken by ON CONFLICT DO UPDATE only lives for this statement; concurrent acquirers of the
+     * same key serialize on it and the loser sees the winner's lock owner.
      */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public IdempotencyRecord acquireOrGet(String key,
@@ -38,71 +134,55 @@ public class IdempotencyService {
                                           Duration ttl,
                                           String lockOwner) {
 
-        Instant now = Instant.now();
-
-        var existing = repo.findForUpdate(key, methodKey);
-        if (existing.isEmpty()) {
-            IdempotencyRecord created = IdempotencyRecord.builder()
-                    .idempotencyKey(key)
-                    .methodKey(methodKey)
-                    .requestHash(requestHash)
-                    .status(STATUS_PENDING)
-                    .expiresAt(now.plus(ttl))
-                    .lockedAt(now)
-                    .lockedBy(lockOwner)
-                    .build();
-            return repo.save(created);
-        }
-
-        IdempotencyRecord rec = existing.get();
-
-        // Expired → reuse slot
-        if (rec.isExpired(now)) {
-            rec.setRequestHash(requestHash);
-            rec.setStatus(STATUS_PENDING);
-            rec.setResponseJson(null);
-            rec.setErrorMessage(null);
-            rec.setExpiresAt(now.plus(ttl));
-            rec.setLockedAt(now);
-            rec.setLockedBy(lockOwner);
-            return repo.save(rec);
-        }
+        Timestamp now = Timestamp.from(Instant.now());
+        Timestamp expiresAt = Timestamp.from(now.toInstant().plus(ttl));
 
-        // If currently PENDING and unlocked, take lock
-        if (STATUS_PENDING.equals(rec.getStatus()) && (rec.getLockedBy() == null || rec.getLockedBy().isBlank())) {
-            rec.setLockedAt(now);
-            rec.setLockedBy(lockOwner);
-            return repo.save(rec);
-        }
+        List<IdempotencyRecord> rows = jdbc.query(ACQUIRE_SQL, ROW_MAPPER,
+                key, methodKey, requestHash, expiresAt, now, lockOwner, now, now,
+                now, now, now, now, now,
+                now,
+                key, methodKey);
+        if (!rows.isEmpty()) return rows.get(0);
 
-        return rec;
+        // the conflicting row was committed after this statement's snapshot: read it with a fresh one
+        return jdbc.query(SELECT_SQL, ROW_MAPPER, key, methodKey).stream().findFirst().orElseThrow();
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markCompleted(String key, String methodKey, String requestHash, String responseJson) {
-        IdempotencyRecord rec = repo.findForUpdate(key, methodKey).orElseThrow();
-        rec.setRequestHash(requestHash);
-        rec.setStatus(STATUS_COMPLETED);
-        rec.setResponseJson(responseJson);
-        rec.setErrorMessage(null);
-        rec.setLockedAt(null);
-        rec.setLockedBy(null);
-        repo.save(rec);
+    public void markCompleted(String key, String methodKey, String requestHash, byte[] responseBody) {
+        finish(COMPLETE_SQL, requestHash, responseBody, key, methodKey);
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void markFailed(String key, String methodKey, String requestHash, String errorMessage) {
-        IdempotencyRecord rec = repo.findForUpdate(key, methodKey).orElseThrow();
-        rec.setRequestHash(requestHash);
-        rec.setStatus(STATUS_FAILED);
-        rec.setErrorMessage(errorMessage);
-        rec.setLockedAt(null);
-        rec.setLockedBy(null);
-        repo.save(rec);
+        finish(FAIL_SQL, requestHash, errorMessage, key, methodKey);
     }
 
+    /**
+     * Deletes up to {@code limit} records that expired before {@code cutoff} in one short transaction
+     * (see {@link IdempotencyCleanupJob}). Rows locked by a concurrent acquirer are skipped.
+     */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public int deleteExpiredNow() {
-        return repo.deleteExpired(Instant.now());
+    public int deleteExpiredChunk(Instant cutoff, int limit) {
+        Timestamp ts = Timestamp.from(cutoff);
+        return jdbc.update(DELETE_EXPIRED_CHUNK_SQL, ts, limit, ts);
+    }
+
+    /**
+     * Updates the record and wakes waiters on other nodes (see {@link IdempotencyNotificationListener}) in one
+     * statement; the notification is only sent if the row exists and is delivered on commit.
+     */
+    private void finish(String sql, String requestHash, Object outcome, String key, String methodKey) {
+        Boolean updated = jdbc.query(sql, (ResultSetExtractor<Boolean>) ResultSet::next,
+                requestHash, outcome, Timestamp.from(Instant.now()), key, methodKey,
+                IdempotencyNotificationListener.CHANNEL, IdempotencyNotificationListener.payload(key, methodKey));
+        if (!Boolean.TRUE.equals(updated)) {
+            throw new NoSuchElementException("No idempotency record for key " + key + " and " + methodKey);
+        }
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp ts = rs.getTimestamp(column);
+        return (ts != null) ? ts.toInstant() : null;
     }
 }
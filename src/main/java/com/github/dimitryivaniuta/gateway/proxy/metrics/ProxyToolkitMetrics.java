@@ -1,104 +1,286 @@
 package com.github.dimitryivaniuta.gateway.proxy.metrics;
 
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver.SubjectType;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
 
+/**
+ * Toolkit meters.
+ *
+ * <p>Per-method meters are resolved into handles held by the {@code MethodPlan} (registered at proxy creation,
+ * or once on first use for subject-type / policy-TTL variants), so the per-call cost is a plain
+ * {@code increment()} instead of a builder + registry lookup.
+ *
+ * <p>Cardinality guard: at most {@code proxy-toolkit.metrics.max-method-tags} distinct {@code method} and
+ * {@code max-cache-tags} distinct {@code cache} tag values are registered; later values are reported
+ * as {@value #OVERFLOW_TAG}. Counters and timers add up under that tag; per-method gauges are not registered
+ * for it, since a gauge keeps only the first method's value.
+ */
 @Component
 public class ProxyToolkitMetrics {
 
+    public static final String OVERFLOW_TAG = "other";
+
     private final MeterRegistry registry;
+    private final TagGuard methodTags;
+    private final TagGuard cacheTags;
 
     public ProxyToolkitMetrics(MeterRegistry registry) {
+        this(registry, new ProxyToolkitProperties());
+    }
+
+    @Autowired
+    public ProxyToolkitMetrics(MeterRegistry registry, ProxyToolkitProperties props) {
         this.registry = registry;
+        this.methodTags = new TagGuard(props.getMetrics().getMaxMethodTags());
+        this.cacheTags = new TagGuard(props.getMetrics().getMaxCacheTags());
     }
 
     // ---- Rate limiting ----
-    public void rateLimitRejected(String methodKey, String subjectType) {
-        Counter.builder("proxy_toolkit_ratelimit_rejected_total")
-                .tag("method", methodKey)
-                .tag("subject", subjectType) // apiKey | user | ip | unknown
-                .register(registry)
-                .increment();
+    public RateLimitMeters rateLimitMeters(String methodKey) {
+        return new RateLimitMeters(registry, methodTags.admit(methodKey));
     }
 
-    public void rateLimitAllowed(String methodKey, String subjectType) {
-        Counter.builder("proxy_toolkit_ratelimit_allowed_total")
-                .tag("method", methodKey)
-                .tag("subject", subjectType)
-                .register(registry)
-                .increment();
+    // ---- Retry ----
+    public RetryMeters retryMeters(String methodKey) {
+        methodKey = methodTags.admit(methodKey);
+        return new RetryMeters(
+                Counter.builder("proxy_toolkit_retry_calls_total").tag("method", methodKey).register(registry),
+                Counter.builder("proxy_toolkit_retry_attempts_total").tag("method", methodKey).register(registry),
+                Counter.builder("proxy_toolkit_retry_exhausted_total").tag("method", methodKey).register(registry),
+                // retries skipped because the method's retry budget was used up
+                Counter.builder("proxy_toolkit_retry_budget_exhausted_total").tag("method", methodKey).register(registry),
+                Timer.builder("proxy_toolkit_retry_duration_seconds").tag("method", methodKey).register(registry)
+        );
     }
 
-    // ---- Retry ----
-    public void retryCall(String methodKey) {
-        Counter.builder("proxy_toolkit_retry_calls_total")
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    // ---- Concurrency limit ----
+    public ConcurrencyLimitMeters concurrencyLimitMeters(String methodKey, Supplier<Number> limit,
+                                                         Supplier<Number> inFlight) {
+        methodKey = methodTags.admit(methodKey);
+        // gauges do not aggregate: under the overflow tag only the first method's limit would be reported
+        if (!OVERFLOW_TAG.equals(methodKey)) {
+            Gauge.builder("proxy_toolkit_concurrency_limit", limit).tag("method", methodKey).register(registry);
+            Gauge.builder("proxy_toolkit_concurrency_in_flight", inFlight).tag("method", methodKey).register(registry);
+        }
+        return new ConcurrencyLimitMeters(
+                Counter.builder("proxy_toolkit_concurrency_rejected_total").tag("method", methodKey).register(registry));
     }
 
-    public void retryAttempt(String methodKey) {
-        Counter.builder("proxy_toolkit_retry_attempts_total")
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    // ---- Cache ----
+    /**
+     * @param defaultCacheName physical cache name for the annotation TTL; its meters are registered eagerly
+     */
+    public CacheMeters cacheMeters(String methodKey, String defaultCacheName) {
+        return new CacheMeters(this, methodTags.admit(methodKey), defaultCacheName);
     }
 
-    public void retryExhausted(String methodKey) {
-        Counter.builder("proxy_toolkit_retry_exhausted_total")
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    CacheNameMeters cacheNameMeters(String methodTag, String cacheName) {
+        String cacheTag = cacheTags.admit(cacheName);
+        return new CacheNameMeters(
+                Counter.builder("proxy_toolkit_cache_hits_total").tag("cache", cacheTag).tag("method", methodTag).register(registry),
+                Counter.builder("proxy_toolkit_cache_misses_total").tag("cache", cacheTag).tag("method", methodTag).register(registry),
+                // caller that found the key missing but got the value loaded by a concurrent caller (single-flight)
+                Counter.builder("proxy_toolkit_cache_coalesced_total").tag("cache", cacheTag).tag("method", methodTag).register(registry),
+                Counter.builder("proxy_toolkit_cache_refresh_ahead_total").tag("cache", cacheTag).tag("method", methodTag).register(registry)
+        );
     }
 
-    // ---- Cache ----
-    public void cacheHit(String cacheName, String methodKey) {
-        Counter.builder("proxy_toolkit_cache_hits_total")
-                .tag("cache", cacheName)
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    // ---- Idempotency ----
+    public IdempotencyMeters idempotencyMeters(String methodKey) {
+        methodKey = methodTags.admit(methodKey);
+        return new IdempotencyMeters(
+                Counter.builder("proxy_toolkit_idempotency_served_total").tag("method", methodKey).register(registry),
+                Counter.builder("proxy_toolkit_idempotency_executed_total").tag("method", methodKey).register(registry),
+                Counter.builder("proxy_toolkit_idempotency_inflight_conflict_total").tag("method", methodKey).register(registry),
+                // L1 hit ratio = hit / (hit + miss)
+                Counter.builder("proxy_toolkit_idempotency_l1_total").tag("method", methodKey).tag("result", "hit").register(registry),
+                Counter.builder("proxy_toolkit_idempotency_l1_total").tag("method", methodKey).tag("result", "miss").register(registry)
+        );
     }
 
-    public void cacheMiss(String cacheName, String methodKey) {
-        Counter.builder("proxy_toolkit_cache_misses_total")
-                .tag("cache", cacheName)
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    public void idempotencyL1Gauge(Supplier<Number> size) {
+        Gauge.builder("proxy_toolkit_idempotency_l1_size", size).register(registry);
     }
 
-    // ---- Idempotency ----
-    public void idempotencyServed(String methodKey) {
-        Counter.builder("proxy_toolkit_idempotency_served_total")
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    public IdempotencyCleanupMeters idempotencyCleanupMeters(Supplier<Number> lastRunRowsPerSecond) {
+        Gauge.builder("proxy_toolkit_idempotency_cleanup_rows_per_second", lastRunRowsPerSecond).register(registry);
+        return new IdempotencyCleanupMeters(
+                Counter.builder("proxy_toolkit_idempotency_expired_deleted_total").register(registry),
+                Timer.builder("proxy_toolkit_idempotency_cleanup_duration_seconds").register(registry)
+        );
+    }
+
+    // ---- Audit writer ----
+    public AuditSamplerMeters auditSamplerMeters(Supplier<Number> captureLevel) {
+        Gauge.builder("proxy_toolkit_audit_capture_level", captureLevel).register(registry);
+        return new AuditSamplerMeters(Counter.builder("proxy_toolkit_audit_sampled_out_total").register(registry));
+    }
+
+    public AuditStackMeters auditStackMeters(Supplier<Number> pendingFingerprints) {
+        Gauge.builder("proxy_toolkit_audit_stack_pending", pendingFingerprints).register(registry);
+        return new AuditStackMeters(
+                Counter.builder("proxy_toolkit_audit_stacks_total").tag("result", "rendered").register(registry),
+                Counter.builder("proxy_toolkit_audit_stacks_total").tag("result", "deduplicated").register(registry)
+        );
+    }
+
+    public AuditWriterMeters auditWriterMeters(Supplier<Number> queueDepth) {
+        Gauge.builder("proxy_toolkit_audit_queue_depth", queueDepth).register(registry);
+        return new AuditWriterMeters(
+                Counter.builder("proxy_toolkit_audit_written_total").register(registry),
+                Counter.builder("proxy_toolkit_audit_dropped_total").tag("reason", "overflow").register(registry),
+                Counter.builder("proxy_toolkit_audit_dropped_total").tag("reason", "sampled").register(registry),
+                Counter.builder("proxy_toolkit_audit_dropped_total").tag("reason", "write_error").register(registry),
+                Timer.builder("proxy_toolkit_audit_flush_duration_seconds").register(registry)
+        );
+    }
+
+    /**
+     * Per-method retry meters, registered once at proxy creation (see MethodPlanRegistry).
+     */
+    public record RetryMeters(Counter calls, Counter attempts, Counter exhausted, Counter budgetExhausted,
+                              Timer duration) {
+        public void recordDuration(long nanos) {
+            duration.record(nanos, TimeUnit.NANOSECONDS);
+        }
     }
 
-    public void idempotencyExecuted(String methodKey) {
-        Counter.builder("proxy_toolkit_idempotency_executed_total")
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    /**
+     * Per-method concurrency limit meters (limit and in-flight gauges are registered alongside, except for
+     * methods over the tag cap).
+     */
+    public record ConcurrencyLimitMeters(Counter rejected) {}
+
+    /**
+     * Per-method idempotency meters, registered once at proxy creation (see MethodPlanRegistry).
+     */
+    public record IdempotencyMeters(Counter served, Counter executed, Counter inFlightConflict,
+                                    Counter l1Hit, Counter l1Miss) {}
+
+    /**
+     * Audit sampling meters (capture level gauge, 0 = FULL / 1 = METADATA / 2 = SAMPLED, is registered alongside).
+     */
+    public record AuditSamplerMeters(Counter sampledOut) {}
+
+    /**
+     * Compact stack capture meters (fingerprints waiting for the next upsert are registered alongside as a gauge).
+     */
+    public record AuditStackMeters(Counter rendered, Counter deduplicated) {}
+
+    /**
+     * Expiry cleanup meters (rows/sec of the last run is registered alongside as a gauge).
+     */
+    public record IdempotencyCleanupMeters(Counter deleted, Timer run) {}
+
+    /**
+     * Audit writer meters (queue depth gauge is registered alongside).
+     */
+    public record AuditWriterMeters(Counter written, Counter droppedOverflow, Counter droppedSampled,
+                                    Counter droppedWriteError, Timer flush) {}
+
+    /**
+     * Per-method rate limit counters, one slot per subject type, registered on first use of that type.
+     */
+    public static final class RateLimitMeters {
+        private static final SubjectType[] TYPES = SubjectType.values();
+
+        private final MeterRegistry registry;
+        private final String methodTag;
+        private final AtomicReferenceArray<Counter> allowed = new AtomicReferenceArray<>(TYPES.length);
+        private final AtomicReferenceArray<Counter> rejected = new AtomicReferenceArray<>(TYPES.length);
+
+        RateLimitMeters(MeterRegistry registry, String methodTag) {
+            this.registry = registry;
+            this.methodTag = methodTag;
+        }
+
+        public Counter allowed(SubjectType type) {
+            return slot(allowed, "proxy_toolkit_ratelimit_allowed_total", type);
+        }
+
+        public Counter rejected(SubjectType type) {
+            return slot(rejected, "proxy_toolkit_ratelimit_rejected_total", type);
+        }
+
+        private Counter slot(AtomicReferenceArray<Counter> slots, String name, SubjectType type) {
+            Counter c = slots.get(type.ordinal());
+            if (c != null) return c;
+            // registration is idempotent: a racing thread gets the same meter back
+            c = Counter.builder(name)
+                    .tag("method", methodTag)
+                    .tag("subject", type.tag()) // apiKey | user | ip | unknown
+                    .register(registry);
+            slots.set(type.ordinal(), c);
+            return c;
+        }
     }
 
-    public void idempotencyInFlightConflict(String methodKey) {
-        Counter.builder("proxy_toolkit_idempotency_inflight_conflict_total")
-                .tag("method", methodKey)
-                .register(registry)
-                .increment();
+    /**
+     * Per-method cache meters. The annotation's cache name is resolved up front; policy TTL overrides
+     * ("name:ttl=N") are resolved once per name into a small bounded map.
+     */
+    public static final class CacheMeters {
+        private static final int MAX_OVERRIDE_NAMES = 64;
+
+        private final ProxyToolkitMetrics metrics;
+        private final String methodTag;
+        private final String defaultCacheName;
+        private final CacheNameMeters defaults;
+        private final ConcurrentHashMap<String, CacheNameMeters> overrides = new ConcurrentHashMap<>();
+        private volatile CacheNameMeters overflow;
+
+        CacheMeters(ProxyToolkitMetrics metrics, String methodTag, String defaultCacheName) {
+            this.metrics = metrics;
+            this.methodTag = methodTag;
+            this.defaultCacheName = defaultCacheName;
+            this.defaults = metrics.cacheNameMeters(methodTag, defaultCacheName);
+        }
+
+        public CacheNameMeters forCache(String cacheName) {
+            if (cacheName.equals(defaultCacheName)) return defaults;
+            CacheNameMeters m = overrides.get(cacheName);
+            if (m != null) return m;
+            if (overrides.size() < MAX_OVERRIDE_NAMES) {
+                return overrides.computeIfAbsent(cacheName, n -> metrics.cacheNameMeters(methodTag, n));
+            }
+            CacheNameMeters o = overflow;
+            if (o == null) overflow = o = metrics.cacheNameMeters(methodTag, OVERFLOW_TAG);
+            return o;
+        }
     }
 
-    // ---- Duration ----
-    public void recordDuration(String metricName, String methodKey, long nanos) {
-        Timer.builder(metricName)
-                .tag("method", methodKey)
-                .register(registry)
-                .record(nanos, TimeUnit.NANOSECONDS);
+    public record CacheNameMeters(Counter hits, Counter misses, Counter coalesced, Counter refreshed) {}
+
+    /**
+     * Admits up to {@code max} distinct tag values; the rest collapse into {@value #OVERFLOW_TAG}.
+     * The size check is not atomic with the insert, so the cap may be exceeded by a few concurrent first uses.
+     */
+    private static final class TagGuard {
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        private final int max;
+
+        TagGuard(int max) {
+            this.max = max;
+        }
+
+        String admit(String value) {
+            if (value == null) return OVERFLOW_TAG;
+            if (seen.contains(value)) return value;
+            if (seen.size() >= max) return OVERFLOW_TAG;
+            seen.add(value);
+            return value;
+        }
     }
 }
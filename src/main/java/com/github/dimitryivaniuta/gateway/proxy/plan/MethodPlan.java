@@ -0,0 +1,59 @@
+package com.github.dimitryivaniuta.gateway.proxy.plan;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.AdaptiveConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryBudget;
+
+import java.lang.reflect.Method;
+
+/**
+ * Everything the interceptor chain needs to know about one (target class, method) pair,
+ * resolved once when the proxy is created instead of on every call.
+ *
+ * <p>Annotation fields are the merged, effective annotations: {@code null} means the stage
+ * is absent or disabled ({@code enabled=false}) for this method, so interceptors only need a null check.
+ *
+ * @param targetClass      user class of the proxied bean
+ * @param method           most specific method on {@code targetClass}
+ * @param fullMethodKey    {@link com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport#signature} (policy / idempotency key)
+ * @param methodId         small int interned per fullMethodKey (compact cache keys)
+ * @param metricMethodKey  short key used as metrics tag
+ * @param returnsVoid      true when the method returns {@code void}
+ * @param returnsFuture    true when the method returns {@code CompletableFuture} / {@code CompletionStage}
+ * @param defaultCacheName physical cache name for the annotation TTL ("name:ttl=60"), null without cache stage
+ * @param retryMeters      pre-registered retry meters, null without retry stage
+ * @param idempotencyMeters pre-registered idempotency meters, null without idempotency stage
+ * @param cacheMeters      cache meter handles (annotation cache name pre-registered), null without cache stage
+ * @param rateLimitMeters  rate limit meter handles per subject type, null without rate limit stage
+ * @param retryBudget      per-method retry budget, null without retry stage or with budgets disabled
+ * @param concurrencyLimiter per-method adaptive limit, null without concurrency limit stage
+ */
+public record MethodPlan(
+        Class<?> targetClass,
+        Method method,
+        String fullMethodKey,
+        int methodId,
+        String metricMethodKey,
+        boolean returnsVoid,
+        boolean returnsFuture,
+        ProxyAudit audit,
+        ProxyIdempotent idempotent,
+        ProxyCache cache,
+        ProxyRateLimit rateLimit,
+        ProxyConcurrencyLimit concurrencyLimit,
+        ProxyRetry retry,
+        String defaultCacheName,
+        ProxyToolkitMetrics.RetryMeters retryMeters,
+        ProxyToolkitMetrics.IdempotencyMeters idempotencyMeters,
+        ProxyToolkitMetrics.CacheMeters cacheMeters,
+        ProxyToolkitMetrics.RateLimitMeters rateLimitMeters,
+        RetryBudget retryBudget,
+        AdaptiveConcurrencyLimit concurrencyLimiter
+) {
+}
@@ -0,0 +1,173 @@
+package com.github.dimitryivaniuta.gateway.proxy.plan;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.AdaptiveConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryBudget;
+import com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds and holds {@link MethodPlans} per proxied target class.
+ *
+ * <p>All annotation scanning, method-key building and meter registration happens here, at proxy
+ * creation time. Interceptors only look the plan up.
+ */
+@Component
+public class MethodPlanRegistry {
+
+    // never wrapped, on top of proxy-toolkit.exclude-packages
+    private static final List<String> INFRASTRUCTURE_PACKAGES =
+            List.of("org.springframework", "jakarta", "java", "kotlin", "com.zaxxer");
+
+    private final ProxyToolkitProperties props;
+    private final ProxyToolkitMetrics metrics;
+    private final String[] excludedPrefixes;
+
+    private final ConcurrentHashMap<Class<?>, MethodPlans> byClass = new ConcurrentHashMap<>();
+
+    // fullMethodKey -> small int, so per-entry cache keys carry an int instead of a signature reference
+    private final ConcurrentHashMap<String, Integer> methodIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextMethodId = new AtomicInteger();
+
+    public MethodPlanRegistry(ProxyToolkitProperties props, ProxyToolkitMetrics metrics) {
+        this.props = props;
+        this.metrics = metrics;
+        this.excludedPrefixes = excludedPrefixes(props.getExcludePackages());
+    }
+
+    public MethodPlans forClass(Class<?> targetClass) {
+        MethodPlans plans = byClass.get(targetClass);
+        return (plans != null) ? plans : byClass.computeIfAbsent(targetClass, c -> new MethodPlans(c, this::compile));
+    }
+
+    /**
+     * Plan of a proxied invocation, for interceptors shared by all proxied beans.
+     */
+    public MethodPlan plan(MethodInvocation inv) {
+        Object target = inv.getThis();
+        Class<?> targetClass = (target != null) ? ClassUtils.getUserClass(target) : inv.getMethod().getDeclaringClass();
+        return forClass(targetClass).get(inv.getMethod());
+    }
+
+    /**
+     * Whether {@code targetClass} lies in an infrastructure package or in {@code proxy-toolkit.exclude-packages}:
+     * such classes are never proxied, and their {@link ProxyAudit} is ignored.
+     */
+    public boolean isExcluded(Class<?> targetClass) {
+        String name = targetClass.getName();
+        for (String prefix : excludedPrefixes) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    public int classCount() {
+        return byClass.size();
+    }
+
+    public int methodCount() {
+        int n = 0;
+        for (MethodPlans plans : byClass.values()) n += plans.size();
+        return n;
+    }
+
+    MethodPlan compile(Class<?> targetClass, Method method) {
+        Method specific = AopUtils.getMostSpecificMethod(method, targetClass);
+
+        ProxyAudit audit = find(targetClass, specific, ProxyAudit.class);
+        if (audit != null && (!audit.enabled() || isExcluded(targetClass))) audit = null;
+
+        ProxyIdempotent idempotent = find(targetClass, specific, ProxyIdempotent.class);
+        if (idempotent != null && !idempotent.enabled()) idempotent = null;
+
+        ProxyCache cache = find(targetClass, specific, ProxyCache.class);
+        if (cache != null && !cache.enabled()) cache = null;
+
+        ProxyRateLimit rateLimit = find(targetClass, specific, ProxyRateLimit.class);
+
+        ProxyConcurrencyLimit concurrencyLimit = find(targetClass, specific, ProxyConcurrencyLimit.class);
+        if (concurrencyLimit != null && !concurrencyLimit.enabled()) concurrencyLimit = null;
+
+        ProxyRetry retry = find(targetClass, specific, ProxyRetry.class);
+        if (retry != null && !retry.enabled()) retry = null;
+
+        String fullMethodKey = MethodKeySupport.signature(targetClass, specific);
+        String metricMethodKey = MethodKeySupport.metricMethodKey(targetClass, specific);
+        String defaultCacheName = (cache != null) ? cache.cacheName() + ":ttl=" + cache.ttlSeconds() : null;
+
+        return new MethodPlan(
+                targetClass,
+                specific,
+                fullMethodKey,
+                methodIds.computeIfAbsent(fullMethodKey, k -> nextMethodId.getAndIncrement()),
+                metricMethodKey,
+                specific.getReturnType() == void.class,
+                isFuture(specific.getReturnType()),
+                audit,
+                idempotent,
+                cache,
+                rateLimit,
+                concurrencyLimit,
+                retry,
+                defaultCacheName,
+                (retry != null) ? metrics.retryMeters(metricMethodKey) : null,
+                (idempotent != null) ? metrics.idempotencyMeters(metricMethodKey) : null,
+                (cache != null) ? metrics.cacheMeters(metricMethodKey, defaultCacheName) : null,
+                (rateLimit != null) ? metrics.rateLimitMeters(metricMethodKey) : null,
+                (retry != null) ? retryBudget(retry) : null,
+                (concurrencyLimit != null) ? new AdaptiveConcurrencyLimit(concurrencyLimit, metrics, metricMethodKey) : null
+        );
+    }
+
+    private RetryBudget retryBudget(ProxyRetry retry) {
+        ProxyToolkitProperties.Retry cfg = props.getRetry();
+        double ratio = (retry.budgetRatio() >= 0) ? retry.budgetRatio() : cfg.getBudgetRatio();
+        if (!cfg.isBudgetEnabled() || ratio < 0) return null;
+        return new RetryBudget(ratio, cfg.getBudgetMinRetriesPerSecond(), cfg.getBudgetWindow(), System::nanoTime);
+    }
+
+    // exactly the types a CompletableFuture can stand in for
+    private static boolean isFuture(Class<?> returnType) {
+        return CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+
+    private static <A extends Annotation> A find(Class<?> cls, Method m, Class<A> type) {
+        A onMethod = AnnotatedElementUtils.findMergedAnnotation(m, type);
+        return (onMethod != null) ? onMethod : AnnotatedElementUtils.findMergedAnnotation(cls, type);
+    }
+
+    // package names as "pkg." prefixes, resolved once instead of per bean
+    private static String[] excludedPrefixes(List<String> excludePackages) {
+        Set<String> prefixes = new LinkedHashSet<>();
+        List<String> configured = (excludePackages != null) ? excludePackages : List.of();
+        for (List<String> packages : List.of(INFRASTRUCTURE_PACKAGES, configured)) {
+            for (String p : packages) {
+                if (p == null || p.isBlank()) continue;
+                String trimmed = p.strip();
+                prefixes.add(trimmed.endsWith(".") ? trimmed : trimmed + ".");
+            }
+        }
+        return prefixes.toArray(String[]::new);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.dimitryivaniuta.gateway.proxy.plan;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Precompiled {@link MethodPlan}s of a single target class.
+ *
+ * <p>All public methods are compiled eagerly when the proxy is created. Methods first seen at call
+ * time (e.g. interface methods of JDK proxies) are compiled once and memoized.
+ *
+ * <p>Keyed by {@link Method#equals}: reflection hands out a fresh {@code Method} copy per lookup, so the
+ * instance passed by the proxy is never identical to the one seen at compile time. {@code Method.hashCode}
+ * only combines two cached String hashes, so a hit costs no allocation.
+ */
+public final class MethodPlans {
+
+    private final Class<?> targetClass;
+    private final BiFunction<Class<?>, Method, MethodPlan> compiler;
+    private final ConcurrentHashMap<Method, MethodPlan> plans = new ConcurrentHashMap<>();
+
+    MethodPlans(Class<?> targetClass, BiFunction<Class<?>, Method, MethodPlan> compiler) {
+        this.targetClass = targetClass;
+        this.compiler = compiler;
+
+        for (Method m : targetClass.getMethods()) {
+            if (m.getDeclaringClass() == Object.class) continue;
+            plans.put(m, compiler.apply(targetClass, m));
+        }
+    }
+
+    public Class<?> targetClass() {
+        return targetClass;
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    public MethodPlan get(Method method) {
+        MethodPlan plan = plans.get(method);
+        return (plan != null) ? plan : plans.computeIfAbsent(method, m -> compiler.apply(targetClass, m));
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.dimitryivaniuta.gateway.proxy.policy;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.support.PgListenLoop;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Refreshes the policy snapshot as soon as {@code api_client_policy} changes.
+ *
+ * <p>Statement-level triggers (V9) send {@code pg_notify('api_client_policy', TG_OP)} on commit. A batch of
+ * INSERT / UPDATE notifications becomes one incremental {@link ApiClientPolicyService#refresh()}; DELETE and
+ * TRUNCATE, which leave no {@code updated_at} behind, become a full {@link ApiClientPolicyService#reload()}.
+ * The connection is owned by a {@link PgListenLoop} (outside the pool); changes missed while reconnecting are
+ * picked up by the scheduled refresh.
+ */
+@Component
+public class ApiClientPolicyNotificationListener implements SmartLifecycle {
+
+    public static final String CHANNEL = "api_client_policy";
+
+    private static final Logger log = LoggerFactory.getLogger(ApiClientPolicyNotificationListener.class);
+
+    private final ApiClientPolicyService policies;
+    private final ProxyToolkitProperties.Policy cfg;
+    private final PgListenLoop loop;
+
+    public ApiClientPolicyNotificationListener(DataSource dataSource,
+                                               ApiClientPolicyService policies,
+                                               ProxyToolkitProperties props) {
+        this.policies = policies;
+        this.cfg = props.getPolicy();
+        this.loop = new PgListenLoop("policy", CHANNEL, dataSource, cfg.getListenReconnectDelay(), this::onNotifications);
+    }
+
+    void onNotifications(PGNotification[] batch) {
+        boolean removed = false;
+        for (PGNotification n : batch) {
+            String op = n.getParameter();
+            removed |= "DELETE".equals(op) || "TRUNCATE".equals(op);
+        }
+        try {
+            if (removed) {
+                policies.reload();
+            } else {
+                policies.refresh();
+            }
+        } catch (DataAccessException ex) {
+            log.warn("API client policy refresh failed: {}", ex.toString());
+        }
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public void start() {
+        if (cfg.isListenEnabled()) loop.start();
+    }
+
+    @Override
+    public void stop() {
+        loop.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return loop.isRunning();
+    }
+}
@@ -1,38 +1,103 @@
 package com.github.dimitryivaniuta.gateway.proxy.policy;
 
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Per client + method policy overrides, served from an in-memory {@link ApiClientPolicySnapshot}.
+ *
+ * <p>The whole table is loaded at startup and reloaded every {@code proxy-toolkit.policy.full-reload-interval};
+ * in between only rows with a newer {@code updated_at} are fetched ({@link #refresh()}), triggered by
+ * {@link ApiClientPolicyNotificationListener} on every change and every {@code refresh-interval} as a fallback.
+ * Each load builds a new snapshot and swaps it in, so {@link #find} never touches the DB and an unknown
+ * client + method costs two map lookups and no cache entry.
+ */
 @Service
 @RequiredArgsConstructor
 public class ApiClientPolicyService {
 
-    private static final String CACHE_NAME = "apiClientPolicy:ttl=30"; // 30s is enough; cache hits+misses
+    private static final Logger log = LoggerFactory.getLogger(ApiClientPolicyService.class);
 
-    private final ApiClientPolicyRepository repo;
-    private final CacheManager cacheManager;
+    private static final String SELECT_SQL = """
+            select client_key, method_key, enabled, rl_permits_per_sec, rl_burst, retry_max_attempts,
+                   retry_backoff_ms, cache_ttl_seconds, idempotency_ttl_seconds, created_at, updated_at
+            from api_client_policy
+            """;
+
+    private static final RowMapper<ApiClientPolicy> ROW_MAPPER = (rs, n) -> ApiClientPolicy.builder()
+            .id(new ApiClientPolicyId(rs.getString("client_key"), rs.getString("method_key")))
+            .enabled(rs.getBoolean("enabled"))
+            .rlPermitsPerSec(rs.getObject("rl_permits_per_sec", Integer.class))
+            .rlBurst(rs.getObject("rl_burst", Integer.class))
+            .retryMaxAttempts(rs.getObject("retry_max_attempts", Integer.class))
+            .retryBackoffMs(rs.getObject("retry_backoff_ms", Integer.class))
+            .cacheTtlSeconds(rs.getObject("cache_ttl_seconds", Integer.class))
+            .idempotencyTtlSeconds(rs.getObject("idempotency_ttl_seconds", Integer.class))
+            .createdAt(rs.getTimestamp("created_at").toInstant())
+            .updatedAt(rs.getTimestamp("updated_at").toInstant())
+            .build();
+
+    private final JdbcTemplate jdbc;
+    private final ProxyToolkitProperties props;
+
+    private volatile ApiClientPolicySnapshot snapshot = ApiClientPolicySnapshot.EMPTY;
+    private volatile boolean loaded;
 
-    @SuppressWarnings("unchecked")
     public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
-        ApiClientPolicyId id = new ApiClientPolicyId(clientKey, methodKey);
-
-        Cache cache = cacheManager.getCache(CACHE_NAME);
-        if (cache != null) {
-            Optional<ApiClientPolicy> cached = cache.get(id, Optional.class);
-            if (cached != null) {
-                return cached;
-            }
+        return Optional.ofNullable(snapshot.find(clientKey, methodKey));
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            reload();
+        } catch (DataAccessException ex) {
+            // calls run without overrides until the next refresh succeeds
+            log.warn("Initial API client policy load failed: {}", ex.toString());
         }
+    }
 
-        Optional<ApiClientPolicy> loaded = repo.findById(id);
+    /**
+     * Replaces the snapshot with the full table; the only load that drops deleted rows.
+     */
+    @Scheduled(fixedDelayString = "${proxy-toolkit.policy.full-reload-interval:10m}",
+            initialDelayString = "${proxy-toolkit.policy.full-reload-interval:10m}")
+    public synchronized void reload() {
+        List<ApiClientPolicy> rows = jdbc.query(SELECT_SQL, ROW_MAPPER);
+        snapshot = ApiClientPolicySnapshot.of(rows);
+        loaded = true;
+        log.debug("Loaded {} API client policies", rows.size());
+    }
 
-        if (cache != null) {
-            cache.put(id, loaded); // caches empty Optional too (prevents DB storms)
+    /**
+     * Applies rows updated since the snapshot's watermark (minus {@code refresh-overlap}, which covers
+     * transactions that committed after a later one: {@code updated_at} is the transaction start time).
+     */
+    @Scheduled(fixedDelayString = "${proxy-toolkit.policy.refresh-interval:30s}")
+    public synchronized void refresh() {
+        ApiClientPolicySnapshot current = snapshot;
+        if (!loaded || current.watermark() == null) {
+            reload();
+            return;
         }
-        return loaded;
+        Timestamp since = Timestamp.from(current.watermark().minus(props.getPolicy().getRefreshOverlap()));
+        List<ApiClientPolicy> rows = jdbc.query(SELECT_SQL + " where updated_at >= ?", ROW_MAPPER, since);
+        snapshot = current.withChanges(rows);
     }
 }
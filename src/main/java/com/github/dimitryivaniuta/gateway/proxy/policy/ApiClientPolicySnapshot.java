@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.gateway.proxy.policy;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of {@code api_client_policy}: methodKey → clientKey → policy.
+ *
+ * <p>Method keys come first because a method has few overridden clients while the client dimension (API keys,
+ * users, IPs) is open-ended; a call to a method without overrides ends after one lookup. The maps are never
+ * mutated after construction and are published through a volatile field, so readers need no locking.
+ * {@link #withChanges} copies only the outer map and the inner maps of the changed methods.
+ */
+final class ApiClientPolicySnapshot {
+
+    static final ApiClientPolicySnapshot EMPTY = new ApiClientPolicySnapshot(Map.of(), 0, null);
+
+    private final Map<String, Map<String, ApiClientPolicy>> byMethod;
+    private final int size;
+    // highest updated_at seen; incremental refresh continues from here
+    private final Instant watermark;
+
+    private ApiClientPolicySnapshot(Map<String, Map<String, ApiClientPolicy>> byMethod, int size, Instant watermark) {
+        this.byMethod = byMethod;
+        this.size = size;
+        this.watermark = watermark;
+    }
+
+    static ApiClientPolicySnapshot of(Collection<ApiClientPolicy> policies) {
+        return EMPTY.withChanges(policies);
+    }
+
+    ApiClientPolicy find(String clientKey, String methodKey) {
+        if (clientKey == null || methodKey == null) return null;
+        Map<String, ApiClientPolicy> byClient = byMethod.get(methodKey);
+        return (byClient != null) ? byClient.get(clientKey) : null;
+    }
+
+    /**
+     * New snapshot with {@code changed} rows inserted or replaced; {@code this} when nothing changed.
+     */
+    ApiClientPolicySnapshot withChanges(Collection<ApiClientPolicy> changed) {
+        if (changed.isEmpty()) return this;
+
+        Map<String, Map<String, ApiClientPolicy>> methods = new HashMap<>(byMethod);
+        Map<String, Map<String, ApiClientPolicy>> copied = new HashMap<>();
+        int newSize = size;
+        Instant newWatermark = watermark;
+
+        for (ApiClientPolicy p : changed) {
+            String methodKey = p.getId().getMethodKey();
+            Map<String, ApiClientPolicy> byClient = copied.computeIfAbsent(methodKey, k -> {
+                Map<String, ApiClientPolicy> copy = new HashMap<>(byMethod.getOrDefault(k, Map.of()));
+                methods.put(k, copy);
+                return copy;
+            });
+            if (byClient.put(p.getId().getClientKey(), p) == null) newSize++;
+            if (newWatermark == null || (p.getUpdatedAt() != null && p.getUpdatedAt().isAfter(newWatermark))) {
+                newWatermark = p.getUpdatedAt();
+            }
+        }
+        return new ApiClientPolicySnapshot(methods, newSize, newWatermark);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Instant watermark() {
+        return watermark;
+    }
+}
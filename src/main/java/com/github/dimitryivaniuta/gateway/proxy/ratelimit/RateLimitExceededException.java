@@ -2,13 +2,25 @@ package com.github.dimitryivaniuta.gateway.proxy.ratelimit;
 
 public class RateLimitExceededException extends RuntimeException {
     private final long retryAfterSeconds;
+    private final long retryAfterMillis;
 
     public RateLimitExceededException(String message, long retryAfterSeconds) {
+        this(message, retryAfterSeconds, retryAfterSeconds * 1000L);
+    }
+
+    public RateLimitExceededException(String message, long retryAfterSeconds, long retryAfterMillis) {
         super(message);
         this.retryAfterSeconds = retryAfterSeconds;
+        this.retryAfterMillis = retryAfterMillis;
     }
 
+    /** Whole seconds, rounded up (Retry-After header value). */
     public long getRetryAfterSeconds() {
         return retryAfterSeconds;
     }
+
+    /** Exact time until the next permit, in milliseconds. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
 }
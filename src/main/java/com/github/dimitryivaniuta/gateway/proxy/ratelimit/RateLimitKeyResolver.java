@@ -53,7 +53,7 @@ public final class RateLimitKeyResolver {
         String rawApiKey = header(req, "X-Api-Key");
         if (rawApiKey != null && !rawApiKey.isBlank()) {
             String hash = hashService.hash(rawApiKey);
-            boolean known = credentialLookup.findActiveByHash(hash).isPresent();
+            boolean known = credentialLookup.isActive(hash);
             return new ResolvedClient(SubjectType.API_KEY, "apiKey:" + hash, known);
         }
 
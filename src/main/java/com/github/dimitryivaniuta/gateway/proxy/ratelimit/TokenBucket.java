@@ -0,0 +1,111 @@
+package com.github.dimitryivaniuta.gateway.proxy.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket: refills {@code permitsPerSecond} tokens per second up to {@code capacity}.
+ *
+ * <p>State is one packed long updated by CAS:
+ * <pre>
+ *   [ 27 bits: tokens in milli-tokens ][ 37 bits: last refill, ms since limiter origin ]
+ * </pre>
+ * Milli-tokens make refill exact at millisecond resolution: {@code elapsedMs * permitsPerSecond}
+ * milli-tokens. 27 bits hold 100_000 tokens.
+ *
+ * <p>37 bits of milliseconds wrap every ~4.3 years of uptime, so only the low 37 bits of the clock are kept and
+ * elapsed time is their difference modulo 2^37, read as signed: exact while refills are less than ~2.2 years
+ * apart (idle buckets are evicted long before), and a clock slightly behind the stored stamp still counts as
+ * "no time passed" rather than a wrap.
+ */
+final class TokenBucket {
+
+    static final int MAX_CAPACITY = 100_000;
+
+    private static final int TIME_BITS = 37;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long ONE_TOKEN = 1_000L;
+
+    private final int permitsPerSecond;
+    private final int capacity;
+    private final long capacityMilli;
+
+    private final AtomicLong state;
+
+    TokenBucket(int permitsPerSecond, int capacity, long nowMs) {
+        if (permitsPerSecond < 1 || permitsPerSecond > MAX_CAPACITY) {
+            throw new IllegalArgumentException("permitsPerSecond must be in [1, " + MAX_CAPACITY + "]");
+        }
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be in [1, " + MAX_CAPACITY + "]");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = capacity;
+        this.capacityMilli = capacity * ONE_TOKEN;
+        this.state = new AtomicLong(pack(capacityMilli, nowMs)); // starts full
+    }
+
+    /**
+     * Takes one token.
+     *
+     * @return 0 when granted, otherwise milliseconds until the next token is available (always >= 1)
+     */
+    long tryAcquire(long nowMs) {
+        while (true) {
+            long s = state.get();
+            long tokens = tokensOf(s);
+            long last = timeOf(s);
+
+            long elapsed = elapsed(nowMs, last);
+            long refilled = tokens;
+            long stamp = last;
+            if (elapsed > 0) {
+                // clamp before multiplying so long idle periods cannot overflow
+                long add = (elapsed >= capacityMilli) ? capacityMilli : elapsed * permitsPerSecond;
+                refilled = Math.min(capacityMilli, tokens + add);
+                stamp = nowMs;
+            }
+
+            if (refilled < ONE_TOKEN) {
+                // deficit / rate, rounded up to the next millisecond
+                return Math.max(1L, ceilDiv(ONE_TOKEN - refilled, permitsPerSecond));
+            }
+
+            if (state.compareAndSet(s, pack(refilled - ONE_TOKEN, stamp))) {
+                return 0L;
+            }
+        }
+    }
+
+    boolean matches(int permitsPerSecond, int capacity) {
+        return this.permitsPerSecond == permitsPerSecond && this.capacity == capacity;
+    }
+
+    /** Available whole tokens at {@code nowMs} (diagnostics / tests). */
+    long availableTokens(long nowMs) {
+        long s = state.get();
+        long elapsed = Math.max(0, elapsed(nowMs, timeOf(s)));
+        long add = (elapsed >= capacityMilli) ? capacityMilli : elapsed * permitsPerSecond;
+        return Math.min(capacityMilli, tokensOf(s) + add) / ONE_TOKEN;
+    }
+
+    // (now - last) mod 2^37, sign-extended from 37 bits
+    private static long elapsed(long nowMs, long last) {
+        return ((nowMs - last) << (Long.SIZE - TIME_BITS)) >> (Long.SIZE - TIME_BITS);
+    }
+
+    private static long pack(long tokensMilli, long timeMs) {
+        return (tokensMilli << TIME_BITS) | (timeMs & TIME_MASK);
+    }
+
+    private static long tokensOf(long s) {
+        return s >>> TIME_BITS;
+    }
+
+    private static long timeOf(long s) {
+        return s & TIME_MASK;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+}
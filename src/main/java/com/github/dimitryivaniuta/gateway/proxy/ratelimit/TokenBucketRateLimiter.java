@@ -0,0 +1,72 @@
+package com.github.dimitryivaniuta.gateway.proxy.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Shared token-bucket store keyed by (method, subjectKey).
+ *
+ * <p>Buckets live in a bounded Caffeine cache with idle eviction, so memory stays flat even when
+ * millions of distinct IPs hit a limited method. An evicted bucket is recreated full; that is
+ * harmless because an idle bucket refills to capacity anyway once idle time exceeds capacity / rate.
+ */
+@Component
+public class TokenBucketRateLimiter {
+
+    public record Decision(boolean allowed, long retryAfterMillis) {
+        private static final Decision ALLOWED = new Decision(true, 0L);
+
+        public long retryAfterSeconds() {
+            // Retry-After is whole seconds; round up so clients never retry too early
+            return Math.max(1L, (retryAfterMillis + 999) / 1000);
+        }
+    }
+
+    private record BucketKey(String methodKey, String subjectKey) {}
+
+    private final Cache<BucketKey, TokenBucket> buckets;
+    private final LongSupplier nanoClock;
+    private final long originNanos;
+
+    @Autowired
+    public TokenBucketRateLimiter(ProxyToolkitProperties props) {
+        this(props.getRateLimit().getMaxBuckets(), props.getRateLimit().getIdleTimeout(), System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(long maxBuckets, Duration idleTimeout, LongSupplier nanoClock) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.nanoClock = nanoClock;
+        this.originNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * @param capacity bucket size (max burst); refill rate is {@code permitsPerSecond}
+     */
+    public Decision tryAcquire(String methodKey, String subjectKey, int permitsPerSecond, int capacity) {
+        long nowMs = (nanoClock.getAsLong() - originNanos) / 1_000_000L;
+
+        BucketKey key = new BucketKey(methodKey, subjectKey);
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(permitsPerSecond, capacity, nowMs));
+        if (!bucket.matches(permitsPerSecond, capacity)) {
+            // policy changed: start over with the new shape
+            TokenBucket fresh = new TokenBucket(permitsPerSecond, capacity, nowMs);
+            bucket = buckets.asMap().merge(key, fresh, (old, n) -> old.matches(permitsPerSecond, capacity) ? old : n);
+        }
+
+        long waitMs = bucket.tryAcquire(nowMs);
+        return (waitMs == 0L) ? Decision.ALLOWED : new Decision(false, waitMs);
+    }
+
+    public long estimatedSize() {
+        return buckets.estimatedSize();
+    }
+}
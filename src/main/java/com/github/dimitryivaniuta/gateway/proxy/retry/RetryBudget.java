@@ -0,0 +1,100 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-method retry budget: a retry is allowed while the retries of the last {@code window} stay below
+ * {@code ratio} x successful calls of the same window, plus a floor of {@code minRetriesPerSecond} so that a quiet
+ * method can still retry. When the backend degrades, successes dry up and retries stop, so the load the toolkit
+ * adds on top of the callers' own traffic is bounded by the ratio instead of multiplied by {@code maxAttempts}.
+ *
+ * <p>Lock-free sliding window: {@value #BUCKETS} buckets, each one long packing (tick, successes, retries) and
+ * updated by CAS; a bucket left over from an older tick is reset by the first writer of the new one. The check and
+ * the record of a retry are two steps, so concurrent retries can overshoot the budget by a few.
+ */
+public final class RetryBudget {
+
+    private static final int BUCKETS = 10;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MAX = (1L << COUNT_BITS) - 1;
+    private static final long TICK_MASK = (1L << (Long.SIZE - 2 * COUNT_BITS)) - 1;
+
+    private final double ratio;
+    private final long minRetries;
+    private final long bucketNanos;
+    private final LongSupplier nanoClock;
+    private final long origin;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public RetryBudget(double ratio, int minRetriesPerSecond, Duration window, LongSupplier nanoClock) {
+        long windowNanos = Math.max(window.toNanos(), BUCKETS);
+        this.ratio = Math.max(0d, ratio);
+        this.minRetries = Math.max(0L, (long) Math.ceil(minRetriesPerSecond * (windowNanos / 1e9)));
+        this.bucketNanos = windowNanos / BUCKETS;
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    /**
+     * Records a call that eventually succeeded (with or without retries).
+     */
+    public void onSuccess() {
+        add(tick(), 1, 0);
+    }
+
+    /**
+     * Takes one retry from the budget.
+     *
+     * @return false when the budget is exhausted; the caller gives up and surfaces the last failure
+     */
+    public boolean tryAcquire() {
+        long tick = tick();
+        long successes = 0;
+        long retries = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long v = buckets.get(i);
+            if (((tick - tickOf(v)) & TICK_MASK) < BUCKETS) {
+                successes += successesOf(v);
+                retries += retriesOf(v);
+            }
+        }
+        if (retries >= minRetries + (long) (ratio * successes)) return false;
+        add(tick, 0, 1);
+        return true;
+    }
+
+    private long tick() {
+        return ((nanoClock.getAsLong() - origin) / bucketNanos) & TICK_MASK;
+    }
+
+    private void add(long tick, long successes, long retries) {
+        int i = (int) (tick % BUCKETS);
+        while (true) {
+            long cur = buckets.get(i);
+            long next = (tickOf(cur) == tick)
+                    ? pack(tick, successesOf(cur) + successes, retriesOf(cur) + retries)
+                    : pack(tick, successes, retries);
+            if (buckets.compareAndSet(i, cur, next)) return;
+        }
+    }
+
+    private static long pack(long tick, long successes, long retries) {
+        return (tick << (2 * COUNT_BITS))
+                | (Math.min(successes, COUNT_MAX) << COUNT_BITS)
+                | Math.min(retries, COUNT_MAX);
+    }
+
+    private static long tickOf(long v) {
+        return v >>> (2 * COUNT_BITS);
+    }
+
+    private static long successesOf(long v) {
+        return (v >>> COUNT_BITS) & COUNT_MAX;
+    }
+
+    private static long retriesOf(long v) {
+        return v & COUNT_MAX;
+    }
+}
@@ -1,54 +1,85 @@
 package com.github.dimitryivaniuta.gateway.proxy.retry;
 
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
 import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
 import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
 import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
-import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
-import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
 import com.github.dimitryivaniuta.gateway.proxy.support.MethodKeySupport;
-import io.github.resilience4j.core.IntervalFunction;
-import io.github.resilience4j.retry.Retry;
-import io.github.resilience4j.retry.RetryConfig;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
-import org.springframework.core.annotation.AnnotatedElementUtils;
-
-import java.lang.reflect.Method;
-import java.time.Duration;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.Predicate;
-
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries {@link ProxyRetry} methods with exponential backoff and jitter.
+ *
+ * <p>Synchronous methods back off in the calling thread by default ({@code proxy-toolkit.retry.execution=CALLER}); that
+ * thread is a Tomcat worker unless {@code spring.threads.virtual.enabled=true} makes request threads virtual app-wide.
+ * With {@code proxy-toolkit.retry.execution=VIRTUAL} the attempt loop of every synchronous {@link ProxyRetry} call runs
+ * on its own virtual thread and the caller joins it, without switching the rest of the application; exceptions are
+ * rethrown unwrapped and interrupting the caller interrupts the loop. As on the async path, thread-bound state of the
+ * caller (MDC, request attributes, transactions) is not visible to the attempts. Callers that already run on a
+ * virtual thread keep the loop in place.
+ *
+ * <p>Methods returning {@code CompletableFuture} / {@code CompletionStage} ({@code proxy-toolkit.retry.async-backoff})
+ * never wait in any thread: the caller gets a future immediately, a failed attempt schedules the next one after the
+ * backoff ({@link CompletableFuture#delayedExecutor}), and the re-attempt is started on a virtual thread. Both
+ * synchronous throws and failed futures count as failed attempts. Re-attempts do not run on the caller's thread,
+ * so thread-bound state (MDC, request attributes, transactions) is not visible to them.
+ *
+ * <p>Every retry is taken from the method's {@link RetryBudget}; once it is used up the last failure is surfaced
+ * right away instead of retrying (counted in {@code proxy_toolkit_retry_budget_exhausted_total}).
+ *
+ * <p>One instance serves all proxied beans; backoff schedules come from the shared {@link RetrySpecRegistry}.
+ */
+@Component
 public class RetryMethodInterceptor implements MethodInterceptor {
 
-    private static final double DEFAULT_JITTER_FACTOR = 0.20d; // +/-20%
-
-    private final ConcurrentHashMap<RetryKey, Retry> retryCache = new ConcurrentHashMap<>();
-
-    private final RateLimitKeyResolver keyResolver;
-    private final ApiClientPolicyService policyService;
-    private final ProxyToolkitMetrics metrics;
-
-    public RetryMethodInterceptor(RateLimitKeyResolver keyResolver,
-                                  ApiClientPolicyService policyService,
-                                  ProxyToolkitMetrics metrics) {
-        this.keyResolver = keyResolver;
-        this.policyService = policyService;
-        this.metrics = metrics;
+    // re-attempts of async methods; one cheap virtual thread per attempt, nothing to size or shut down
+    private static final ExecutorService REATTEMPTS =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("proxy-toolkit-retry-", 0).factory());
+    // attempt loops of synchronous methods with proxy-toolkit.retry.execution=VIRTUAL
+    private static final ThreadFactory LOOPS = Thread.ofVirtual().name("proxy-toolkit-retry-loop-", 0).factory();
+
+    private final boolean asyncBackoff;
+    private final boolean virtualExecution;
+    private final MethodPlanRegistry plans;
+    private final ProxyCallContexts contexts;
+    private final RetrySpecRegistry specs;
+
+    public RetryMethodInterceptor(ProxyToolkitProperties props,
+                                  MethodPlanRegistry plans,
+                                  ProxyCallContexts contexts,
+                                  RetrySpecRegistry specs) {
+        this.asyncBackoff = props.getRetry().isAsyncBackoff();
+        this.virtualExecution = props.getRetry().getExecution() == ProxyToolkitProperties.Retry.Execution.VIRTUAL;
+        this.plans = plans;
+        this.contexts = contexts;
+        this.specs = specs;
     }
 
     @Override
     public Object invoke(MethodInvocation inv) throws Throwable {
-        ProxyRetry ann = find(inv.getThis().getClass(), inv.getMethod());
+        MethodPlan plan = plans.plan(inv);
+        ProxyRetry ann = plan.retry();
         if (ann == null) return inv.proceed();
 
-        var client = keyResolver.resolve();
-        String fullMethodKey = MethodKeySupport.signature(inv.getThis().getClass(), inv.getMethod());
-        String metricMethodKey = MethodKeySupport.metricMethodKey(inv.getThis().getClass(), inv.getMethod());
+        ProxyToolkitMetrics.RetryMeters meters = plan.retryMeters();
 
-        ApiClientPolicy policy = policyService.find(client.subjectKey(), fullMethodKey).orElse(null);
+        ApiClientPolicy policy = contexts.get(inv, plan).policy();
         if (policy != null && !policy.isEnabled()) {
             return inv.proceed();
         }
@@ -61,103 +92,156 @@ public class RetryMethodInterceptor implements MethodInterceptor {
                 ? MethodKeySupport.clampInt(policy.getRetryBackoffMs(), (int) ann.backoffMs(), 0, 60_000)
                 : (int) ann.backoffMs();
 
-        RetryKey key = RetryKey.of(fullMethodKey, maxAttempts, backoffMs, ann.retryOn());
-
-        Retry retry = retryCache.computeIfAbsent(key, k -> buildRetry(k, ann, maxAttempts, backoffMs));
+        RetrySpecRegistry.RetrySpec spec = specs.get(ann, backoffMs);
 
-        metrics.retryCall(metricMethodKey);
+        meters.calls().increment();
         long start = System.nanoTime();
 
+        // later attempts proceed on clones taken before the first one: the original invocation is used up by then
+        MethodInvocation template = (inv instanceof ProxyMethodInvocation pmi) ? pmi.invocableClone() : inv;
+        Call call = new Call(inv, template, spec, maxAttempts, meters, plan.retryBudget());
+
+        if (asyncBackoff && plan.returnsFuture()) {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            result.whenComplete((value, failure) -> {
+                if (failure != null) meters.exhausted().increment();
+                meters.recordDuration(System.nanoTime() - start);
+            });
+            attemptAsync(call, 1, result);
+            return result;
+        }
+
         try {
-            return Retry.decorateCheckedSupplier(retry, () -> {
-                metrics.retryAttempt(metricMethodKey);
-                return inv.proceed();
-            }).get();
+            return (virtualExecution && !Thread.currentThread().isVirtual())
+                    ? invokeOnVirtualThread(call)
+                    : invokeBlocking(call);
         } catch (Throwable ex) {
-            metrics.retryExhausted(metricMethodKey);
+            meters.exhausted().increment();
             throw ex;
         } finally {
-            metrics.recordDuration("proxy_toolkit_retry_duration_seconds", metricMethodKey, System.nanoTime() - start);
+            meters.recordDuration(System.nanoTime() - start);
         }
     }
 
-    private Retry buildRetry(RetryKey key, ProxyRetry ann, int maxAttempts, int backoffMs) {
-        Predicate<Throwable> retryOn = ex ->
-                Arrays.stream(ann.retryOn()).anyMatch(c -> c.isInstance(ex));
-
-        IntervalFunction interval;
-        if (backoffMs <= 0) {
-            interval = IntervalFunction.ofDefaults();
-        } else {
-            IntervalFunction base = IntervalFunction.ofExponentialBackoff(Duration.ofMillis(backoffMs), 2.0);
-            interval = withJitter(base, DEFAULT_JITTER_FACTOR);
+    private Object invokeBlocking(Call call) throws Throwable {
+        for (int attempt = 1; ; attempt++) {
+            call.meters().attempts().increment();
+            try {
+                Object result = call.invocation(attempt).proceed();
+                call.onSuccess();
+                return result;
+            } catch (Throwable ex) {
+                if (!call.mayRetry(attempt, ex)) throw ex;
+                try {
+                    Thread.sleep(call.backoffMs(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
         }
+    }
 
-        RetryConfig config = RetryConfig.custom()
-                .maxAttempts(maxAttempts)
-                .intervalFunction(interval)
-                .retryOnException(retryOn::test)
-                .failAfterMaxAttempts(true)
-                .build();
+    private Object invokeOnVirtualThread(Call call) throws Throwable {
+        Object[] outcome = new Object[1];
+        Throwable[] failure = new Throwable[1];
+        Thread loop = LOOPS.newThread(() -> {
+            try {
+                outcome[0] = invokeBlocking(call);
+            } catch (Throwable ex) {
+                failure[0] = ex;
+            }
+        });
+        loop.start();
+
+        // an interrupted caller interrupts the loop, which then surfaces the last failure instead of backing off
+        boolean interrupted = false;
+        while (true) {
+            try {
+                loop.join();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+                loop.interrupt();
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
 
-        return Retry.of("retry:" + key.methodKey, config);
+        // join() orders the loop's writes before these reads
+        if (failure[0] != null) throw failure[0];
+        return outcome[0];
     }
 
-    /**
-     * Adds random jitter to spread retry bursts: interval * U(1-factor, 1+factor).
-     * Keeps result >= 0.
-     */
-    private static IntervalFunction withJitter(IntervalFunction base, double factor) {
-        final double f = Math.max(0d, Math.min(1d, factor));
-
-        return attempt -> {
-            Long baseMsObj = base.apply(attempt);
-            long baseMs = (baseMsObj == null) ? 0L : baseMsObj;
-            if (baseMs <= 0L || f == 0d) return Math.max(0L, baseMs);
-
-            double mult = ThreadLocalRandom.current().nextDouble(1d - f, 1d + f);
-            long out = (long) Math.floor(baseMs * mult);
-            return Math.max(0L, out);
-        };
+    private void attemptAsync(Call call, int attempt, CompletableFuture<Object> result) {
+        call.meters().attempts().increment();
+
+        CompletionStage<?> stage;
+        try {
+            stage = (CompletionStage<?>) call.invocation(attempt).proceed();
+        } catch (Throwable ex) {
+            stage = CompletableFuture.failedFuture(ex);
+        }
+        if (stage == null) {
+            result.complete(null);
+            return;
+        }
+
+        stage.whenComplete((value, failure) -> {
+            if (failure == null) {
+                call.onSuccess();
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(failure);
+            if (!call.mayRetry(attempt, cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            Executor next = CompletableFuture.delayedExecutor(call.backoffMs(attempt), TimeUnit.MILLISECONDS, REATTEMPTS);
+            try {
+                next.execute(() -> attemptAsync(call, attempt + 1, result));
+            } catch (RuntimeException rejected) {
+                result.completeExceptionally(cause);
+            }
+        });
     }
 
-    private static ProxyRetry find(Class<?> cls, Method m) {
-        ProxyRetry onMethod = AnnotatedElementUtils.findMergedAnnotation(m, ProxyRetry.class);
-        return onMethod != null ? onMethod : AnnotatedElementUtils.findMergedAnnotation(cls, ProxyRetry.class);
+    private static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
     }
 
-    private static final class RetryKey {
-        final String methodKey;
-        final int maxAttempts;
-        final int backoffMs;
-        final String retryOnSig;
-
-        private RetryKey(String methodKey, int maxAttempts, int backoffMs, String retryOnSig) {
-            this.methodKey = methodKey;
-            this.maxAttempts = maxAttempts;
-            this.backoffMs = backoffMs;
-            this.retryOnSig = retryOnSig;
+    /**
+     * One retried call: attempt bookkeeping shared by the blocking and the async path.
+     */
+    private record Call(MethodInvocation inv, MethodInvocation template, RetrySpecRegistry.RetrySpec spec, int maxAttempts,
+                        ProxyToolkitMetrics.RetryMeters meters, RetryBudget budget) {
+
+        MethodInvocation invocation(int attempt) {
+            return (attempt > 1 && template instanceof ProxyMethodInvocation pmi) ? pmi.invocableClone() : inv;
         }
 
-        static RetryKey of(String methodKey, int maxAttempts, int backoffMs, Class<? extends Throwable>[] retryOn) {
-            String sig = Arrays.stream(retryOn)
-                    .map(Class::getName)
-                    .sorted()
-                    .reduce((a, b) -> a + "|" + b)
-                    .orElse("");
-            return new RetryKey(methodKey, maxAttempts, backoffMs, sig);
+        /**
+         * Decides whether a failed attempt is retried; a retry is taken from the budget only when one would happen.
+         */
+        boolean mayRetry(int attempt, Throwable ex) {
+            if (attempt >= maxAttempts || !spec.retryOn().test(ex)) return false;
+            if (budget != null && !budget.tryAcquire()) {
+                meters.budgetExhausted().increment();
+                return false;
+            }
+            return true;
         }
 
-        @Override public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof RetryKey k)) return false;
-            return maxAttempts == k.maxAttempts && backoffMs == k.backoffMs
-                    && Objects.equals(methodKey, k.methodKey)
-                    && Objects.equals(retryOnSig, k.retryOnSig);
+        long backoffMs(int attempt) {
+            Long ms = spec.interval().apply(attempt);
+            return (ms == null) ? 0L : Math.max(0L, ms);
         }
 
-        @Override public int hashCode() {
-            return Objects.hash(methodKey, maxAttempts, backoffMs, retryOnSig);
+        void onSuccess() {
+            if (budget != null) budget.onSuccess();
         }
     }
 }
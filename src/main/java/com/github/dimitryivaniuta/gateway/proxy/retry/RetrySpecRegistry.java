@@ -0,0 +1,90 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import io.github.resilience4j.core.IntervalFunction;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Application-wide store of retry schedules (backoff interval + retryOn predicate), shared by all proxied beans.
+ *
+ * <p>A spec only depends on the {@link ProxyRetry} attributes and the effective backoff (annotation or policy
+ * override), so methods with equal settings share one. The store is bounded
+ * ({@code proxy-toolkit.retry.max-specs}); an evicted spec is rebuilt on the next call.
+ */
+@Component
+public class RetrySpecRegistry {
+
+    private static final double DEFAULT_JITTER_FACTOR = 0.20d; // +/-20%
+
+    record RetrySpec(IntervalFunction interval, Predicate<Throwable> retryOn) {}
+
+    // annotation equality is by attribute values
+    private record SpecKey(ProxyRetry retry, int backoffMs) {}
+
+    private final Cache<SpecKey, RetrySpec> specs;
+    private final long maxSize;
+
+    public RetrySpecRegistry(ProxyToolkitProperties props) {
+        this.maxSize = props.getRetry().getMaxSpecs();
+        this.specs = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    RetrySpec get(ProxyRetry retry, int backoffMs) {
+        return specs.get(new SpecKey(retry, backoffMs), k -> build(k.retry(), k.backoffMs()));
+    }
+
+    public long size() {
+        return specs.estimatedSize();
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    // pending evictions run asynchronously; tests flush them
+    void cleanUp() {
+        specs.cleanUp();
+    }
+
+    private static RetrySpec build(ProxyRetry ann, int backoffMs) {
+        Class<? extends Throwable>[] types = ann.retryOn();
+        Predicate<Throwable> retryOn = ex ->
+                Arrays.stream(types).anyMatch(c -> c.isInstance(ex));
+
+        IntervalFunction interval;
+        if (backoffMs <= 0) {
+            interval = IntervalFunction.ofDefaults();
+        } else {
+            IntervalFunction base = IntervalFunction.ofExponentialBackoff(Duration.ofMillis(backoffMs), 2.0);
+            interval = withJitter(base, DEFAULT_JITTER_FACTOR);
+        }
+
+        return new RetrySpec(interval, retryOn);
+    }
+
+    /**
+     * Adds random jitter to spread retry bursts: interval * U(1-factor, 1+factor).
+     * Keeps result >= 0.
+     */
+    private static IntervalFunction withJitter(IntervalFunction base, double factor) {
+        final double f = Math.max(0d, Math.min(1d, factor));
+
+        return attempt -> {
+            Long baseMsObj = base.apply(attempt);
+            long baseMs = (baseMsObj == null) ? 0L : baseMsObj;
+            if (baseMs <= 0L || f == 0d) return Math.max(0L, baseMs);
+
+            double mult = ThreadLocalRandom.current().nextDouble(1d - f, 1d + f);
+            long out = (long) Math.floor(baseMs * mult);
+            return Math.max(0L, out);
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.dimitryivaniuta.gateway.proxy.support;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer / single-consumer ring buffer (Vyukov sequence-per-slot scheme).
+ *
+ * <p>Producers claim a slot with one CAS on the tail; the single consumer never contends with them.
+ * {@link #offer} fails instead of blocking when full, so callers decide the overflow policy.
+ * Only one thread may call {@link #poll} / {@link #drainTo}.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // written by the consumer only
+
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) throw new IllegalArgumentException("capacity must be >= 2");
+        int cap = Integer.highestOneBit(requestedCapacity - 1) << 1; // next power of two
+        if (cap <= 0) throw new IllegalArgumentException("capacity too large: " + requestedCapacity);
+
+        this.capacity = cap;
+        this.mask = cap - 1;
+        this.slots = new AtomicReferenceArray<>(cap);
+        this.sequences = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) sequences.set(i, i);
+    }
+
+    /**
+     * @return false when the buffer is full
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException("element");
+        while (true) {
+            long t = tail.get();
+            int i = (int) (t & mask);
+            long dif = sequences.get(i) - t;
+            if (dif == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    slots.lazySet(i, e);
+                    sequences.lazySet(i, t + 1); // publish
+                    return true;
+                }
+            } else if (dif < 0) {
+                return false; // consumer has not freed this slot yet
+            }
+            // else: another producer claimed t, retry with a fresh tail
+        }
+    }
+
+    /** Consumer only. */
+    public E poll() {
+        long h = head;
+        int i = (int) (h & mask);
+        if (sequences.get(i) != h + 1) return null; // empty, or producer has claimed but not published yet
+
+        E e = slots.get(i);
+        slots.lazySet(i, null);
+        sequences.lazySet(i, h + capacity); // hand the slot back to producers one lap later
+        head = h + 1;
+        return e;
+    }
+
+    /** Consumer only. */
+    public int drainTo(List<? super E> sink, int max) {
+        int n = 0;
+        E e;
+        while (n < max && (e = poll()) != null) {
+            sink.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /** Approximate number of queued elements (safe from any thread). */
+    public int size() {
+        long s = tail.get() - head;
+        return (int) Math.max(0, Math.min(capacity, s));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.dimitryivaniuta.gateway.proxy.support;
+
+/**
+ * Incremental MurmurHash3 x64 128-bit (Appleby), seed 0: same result as the one-shot reference
+ * implementation for any split of the input into {@link #update} calls.
+ *
+ * <p>Fast and well distributed, but not collision resistant: only for inputs where a crafted
+ * collision gains the sender nothing. Not thread-safe; one instance per hash.
+ */
+public final class Murmur3x128 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1, h2;
+    private long length;
+
+    // pending bytes of the current 16-byte block
+    private final byte[] tail = new byte[16];
+    private int tailLen;
+
+    public Murmur3x128 update(int b) {
+        tail[tailLen++] = (byte) b;
+        if (tailLen == 16) {
+            block(readLongLE(tail, 0), readLongLE(tail, 8));
+            tailLen = 0;
+        }
+        length++;
+        return this;
+    }
+
+    public Murmur3x128 update(byte[] data, int off, int len) {
+        length += len;
+        int end = off + len;
+
+        if (tailLen > 0) {
+            int n = Math.min(16 - tailLen, len);
+            System.arraycopy(data, off, tail, tailLen, n);
+            tailLen += n;
+            off += n;
+            if (tailLen < 16) return this;
+            block(readLongLE(tail, 0), readLongLE(tail, 8));
+            tailLen = 0;
+        }
+        for (; off + 16 <= end; off += 16) {
+            block(readLongLE(data, off), readLongLE(data, off + 8));
+        }
+        if (off < end) {
+            System.arraycopy(data, off, tail, 0, end - off);
+            tailLen = end - off;
+        }
+        return this;
+    }
+
+    /**
+     * Finishes the hash; {@link #h1()} / {@link #h2()} return the two halves afterwards.
+     */
+    public Murmur3x128 finish() {
+        long k1 = 0, k2 = 0;
+        for (int i = tailLen - 1; i >= 8; i--) k2 = (k2 << 8) | (tail[i] & 0xffL);
+        for (int i = Math.min(tailLen, 8) - 1; i >= 0; i--) k1 = (k1 << 8) | (tail[i] & 0xffL);
+        if (tailLen > 8) {
+            k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+        }
+        if (tailLen > 0) {
+            k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+        }
+        tailLen = 0;
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return this;
+    }
+
+    public long h1() {
+        return h1;
+    }
+
+    public long h2() {
+        return h2;
+    }
+
+    private void block(long k1, long k2) {
+        k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long readLongLE(byte[] b, int i) {
+        return (b[i] & 0xffL)
+                | (b[i + 1] & 0xffL) << 8
+                | (b[i + 2] & 0xffL) << 16
+                | (b[i + 3] & 0xffL) << 24
+                | (b[i + 4] & 0xffL) << 32
+                | (b[i + 5] & 0xffL) << 40
+                | (b[i + 6] & 0xffL) << 48
+                | (b[i + 7] & 0xffL) << 56;
+    }
+}
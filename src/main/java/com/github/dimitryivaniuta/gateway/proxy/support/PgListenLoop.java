@@ -0,0 +1,135 @@
+package com.github.dimitryivaniuta.gateway.proxy.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * {@code LISTEN <channel>} on a background thread, handing each batch of notifications to a callback and
+ * reconnecting after {@code reconnectDelay} when the connection or anything else in the loop fails.
+ *
+ * <p>The connection is opened through the JDBC driver with the pool's URL and credentials, not borrowed from the
+ * pool: a listener holds it for the application's lifetime and would otherwise permanently shrink the pool.
+ * Only a {@link DataSource} that is not a {@link HikariDataSource} with a {@code jdbcUrl} is borrowed from.
+ *
+ * <p>Notifications sent while reconnecting are lost; callers need their own periodic fallback.
+ */
+public final class PgListenLoop {
+
+    private static final Logger log = LoggerFactory.getLogger(PgListenLoop.class);
+    private static final int POLL_MILLIS = 500;
+
+    private final String name;
+    private final String channel;
+    private final DataSource dataSource;
+    private final Duration reconnectDelay;
+    private final Consumer<PGNotification[]> onNotifications;
+
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param name used for the thread name and log messages, e.g. {@code "policy"}
+     */
+    public PgListenLoop(String name,
+                        String channel,
+                        DataSource dataSource,
+                        Duration reconnectDelay,
+                        Consumer<PGNotification[]> onNotifications) {
+        this.name = name;
+        this.channel = channel;
+        this.dataSource = dataSource;
+        this.reconnectDelay = reconnectDelay;
+        this.onNotifications = onNotifications;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = Thread.ofPlatform()
+                .name("proxy-toolkit-" + name + "-listener")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    public synchronized void stop() {
+        Thread t = thread;
+        if (t == null) return;
+        running = false;
+        try {
+            t.join(POLL_MILLIS * 4L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            boolean pooled = !(dataSource instanceof HikariDataSource h) || h.getJdbcUrl() == null;
+            try (Connection c = pooled ? dataSource.getConnection() : connectDirectly((HikariDataSource) dataSource)) {
+                if (!c.isWrapperFor(PGConnection.class)) {
+                    log.info("{} LISTEN disabled: not a PostgreSQL connection", name);
+                    return;
+                }
+                listen(c, c.unwrap(PGConnection.class), pooled);
+            } catch (SQLException | RuntimeException ex) {
+                if (!running) return;
+                log.warn("{} LISTEN connection lost, reconnecting in {}: {}", name, reconnectDelay, ex.toString());
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void listen(Connection c, PGConnection pg, boolean pooled) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("LISTEN " + channel);
+        }
+        try {
+            while (running) {
+                PGNotification[] batch = pg.getNotifications(POLL_MILLIS);
+                if (batch == null || batch.length == 0) continue;
+                try {
+                    onNotifications.accept(batch);
+                } catch (RuntimeException ex) {
+                    // the connection is fine: keep listening
+                    log.warn("{} notification handling failed: {}", name, ex.toString());
+                }
+            }
+        } finally {
+            // a direct connection's session ends with it; a pooled one goes back to the pool
+            if (pooled) {
+                try (Statement st = c.createStatement()) {
+                    st.execute("UNLISTEN *");
+                }
+            }
+        }
+    }
+
+    private static Connection connectDirectly(HikariDataSource pool) throws SQLException {
+        Properties info = new Properties();
+        info.putAll(pool.getDataSourceProperties());
+        if (pool.getUsername() != null) info.setProperty("user", pool.getUsername());
+        if (pool.getPassword() != null) info.setProperty("password", pool.getPassword());
+        return DriverManager.getConnection(pool.getJdbcUrl(), info);
+    }
+}
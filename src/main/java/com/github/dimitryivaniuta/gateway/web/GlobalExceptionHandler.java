@@ -1,5 +1,6 @@
 package com.github.dimitryivaniuta.gateway.web;
 
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitExceededException;
 import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitExceededException;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +38,14 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, h, HttpStatus.TOO_MANY_REQUESTS);
     }
 
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<ApiError> handleConcurrencyLimit(ConcurrencyLimitExceededException ex, HttpServletRequest req) {
+        HttpHeaders h = new HttpHeaders();
+        h.set("Retry-After", "1"); // load shedding: the limit adapts within seconds
+        ApiError body = error(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), req);
+        return new ResponseEntity<>(body, h, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<ApiError> handleRse(ResponseStatusException ex, HttpServletRequest req) {
         HttpStatus status = HttpStatus.valueOf(ex.getStatusCode().value());
@@ -0,0 +1,23 @@
+-- In-memory API key index (ApiClientCredentialLookupService) refreshes incrementally by updated_at:
+--   * bump updated_at on every update of a credential or its client, also for writes that bypass JPA
+--   * index updated_at for the refresh query
+
+create or replace function touch_updated_at() returns trigger as $$
+begin
+    new.updated_at := now();
+    return new;
+end;
+$$ language plpgsql;
+
+drop trigger if exists trg_api_client_touch on api_client;
+create trigger trg_api_client_touch
+    before update on api_client
+    for each row execute function touch_updated_at();
+
+drop trigger if exists trg_api_client_credential_touch on api_client_credential;
+create trigger trg_api_client_credential_touch
+    before update on api_client_credential
+    for each row execute function touch_updated_at();
+
+create index if not exists ix_api_client_updated_at on api_client (updated_at desc);
+create index if not exists ix_api_client_credential_updated_at on api_client_credential (updated_at desc);
@@ -0,0 +1,7 @@
+-- Binary idempotent responses (IdempotencyResponseCodec): header byte + Smile / CBOR / JSON, deflated when large.
+-- response_json stays for records completed before this migration; new records leave it null.
+
+alter table idempotency_record add column if not exists response_body bytea;
+
+-- large payloads are compressed by the application already: store them out of line without pglz
+alter table idempotency_record alter column response_body set storage external;
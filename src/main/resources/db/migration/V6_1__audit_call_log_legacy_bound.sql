@@ -0,0 +1,10 @@
+-- First step of the partitioning in V7: a CHECK matching the bound of the future audit_call_log_legacy partition,
+-- so ATTACH PARTITION can skip its validation scan. NOT VALID: adding it only touches the catalog; the scan runs
+-- in V6_2 without blocking writes. V7 computes the same bound (or a later one, if the day changed in between).
+
+DO $$
+BEGIN
+  EXECUTE format(
+    'ALTER TABLE audit_call_log ADD CONSTRAINT ck_audit_call_log_legacy_bound CHECK (created_at < %L) NOT VALID',
+    (date_trunc('day', now() AT TIME ZONE 'UTC') + interval '1 day') AT TIME ZONE 'UTC');
+END$$;
@@ -0,0 +1,2 @@
+-- Own transaction: VALIDATE CONSTRAINT scans the table under SHARE UPDATE EXCLUSIVE, inserts keep going.
+ALTER TABLE audit_call_log VALIDATE CONSTRAINT ck_audit_call_log_legacy_bound;
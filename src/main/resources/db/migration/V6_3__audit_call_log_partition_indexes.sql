@@ -0,0 +1,11 @@
+-- Indexes the partitioned audit_call_log (V7) needs on the partition that takes over the existing rows, built
+-- here without blocking writes so ATTACH PARTITION reuses them instead of building them under its lock:
+--   * (id, created_at) becomes the partition's primary key
+--   * BRIN on created_at matches the parent's index
+-- CONCURRENTLY cannot run in a transaction: see the .conf next to this file.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ux_audit_call_log_legacy_id_created_at
+    ON audit_call_log (id, created_at);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_audit_call_log_legacy_created_at_brin
+    ON audit_call_log USING brin (created_at);
@@ -0,0 +1,72 @@
+-- Turns audit_call_log into a table range-partitioned by created_at.
+--   * existing rows become partition audit_call_log_legacy (everything before tomorrow, UTC)
+--   * the rest of the month and the two following months (MONTHLY, partitions-ahead = 2, the defaults) are created
+--     here, so inserts work before AuditPartitionManager first runs; it continues from the last bound
+--   * AuditPartitionManager creates the following partitions ahead of time and detaches / drops the ones past
+--     retention; there is no default partition, it would rule out DETACH PARTITION ... CONCURRENTLY
+--   * created_at is indexed with BRIN (rows arrive in time order, the index stays a few pages per partition)
+--
+-- Nothing here scans or indexes the existing rows: V6_1 / V6_2 added and validated the CHECK that lets ATTACH skip
+-- its scan, V6_3 built the indexes it reuses. The statements below only change the catalog, holding the table's
+-- ACCESS EXCLUSIVE lock for a moment.
+
+ALTER TABLE audit_call_log RENAME TO audit_call_log_legacy;
+
+-- a partitioned table's primary key must contain the partition key
+ALTER TABLE audit_call_log_legacy DROP CONSTRAINT IF EXISTS audit_call_log_pkey;
+ALTER TABLE audit_call_log_legacy
+    ADD CONSTRAINT audit_call_log_legacy_pkey PRIMARY KEY USING INDEX ux_audit_call_log_legacy_id_created_at;
+DROP INDEX IF EXISTS ix_audit_call_log_created_at;
+ALTER INDEX IF EXISTS ix_audit_call_log_corr RENAME TO ix_audit_call_log_legacy_corr;
+
+CREATE TABLE audit_call_log (
+    id bigint not null default nextval('audit_call_log_id_seq'),
+    created_at timestamptz not null default now(),
+
+    correlation_id varchar(64),
+    trace_id varchar(128),
+
+    bean_name varchar(255) not null,
+    target_class varchar(512) not null,
+    method_signature varchar(1024) not null,
+
+    args jsonb,
+    result jsonb,
+
+    status varchar(32) not null,
+    duration_ms bigint not null,
+
+    error_message text,
+    error_stack text,
+
+    primary key (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE audit_call_log_id_seq OWNED BY audit_call_log.id;
+
+CREATE INDEX ix_audit_call_log_created_at_brin ON audit_call_log USING brin (created_at);
+CREATE INDEX ix_audit_call_log_corr ON audit_call_log (correlation_id);
+
+DO $$
+BEGIN
+  EXECUTE format(
+    'ALTER TABLE audit_call_log ATTACH PARTITION audit_call_log_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+    (date_trunc('day', now() AT TIME ZONE 'UTC') + interval '1 day') AT TIME ZONE 'UTC');
+END$$;
+
+-- implied by the partition bound from now on
+ALTER TABLE audit_call_log_legacy DROP CONSTRAINT ck_audit_call_log_legacy_bound;
+
+-- named like AuditPartitionManager's partitions: audit_call_log_p<first day, yyyyMMdd>
+DO $$
+DECLARE
+  from_ts timestamptz := (date_trunc('day', now() AT TIME ZONE 'UTC') + interval '1 day') AT TIME ZONE 'UTC';
+  to_ts timestamptz;
+BEGIN
+  FOR i IN 1..3 LOOP
+    to_ts := (date_trunc('month', from_ts AT TIME ZONE 'UTC') + interval '1 month') AT TIME ZONE 'UTC';
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF audit_call_log FOR VALUES FROM (%L) TO (%L)',
+                   'audit_call_log_p' || to_char(from_ts AT TIME ZONE 'UTC', 'YYYYMMDD'), from_ts, to_ts);
+    from_ts := to_ts;
+  END LOOP;
+END$$;
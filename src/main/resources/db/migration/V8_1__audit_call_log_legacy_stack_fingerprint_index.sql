@@ -0,0 +1,6 @@
+-- Partition index for ix_audit_call_log_stack_fingerprint (V8_2) on the large legacy partition, built without
+-- blocking inserts. CONCURRENTLY cannot run in a transaction: see the .conf next to this file.
+
+create index concurrently if not exists ix_audit_call_log_legacy_stack_fingerprint
+    on audit_call_log_legacy (stack_fingerprint)
+    where stack_fingerprint is not null;
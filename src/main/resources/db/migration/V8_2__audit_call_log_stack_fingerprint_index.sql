@@ -0,0 +1,29 @@
+-- Partitioned index on audit_call_log.stack_fingerprint, assembled from per-partition indexes instead of one
+-- CREATE INDEX that would build them all (legacy included) under a SHARE lock:
+--   * ON ONLY creates the parent index alone (invalid until every partition has one attached)
+--   * the legacy partition's index was built concurrently in V8_1
+--   * the remaining partitions are the ones V7 created ahead of time and are still empty
+-- Partitions created later get the index from the parent.
+
+create index if not exists ix_audit_call_log_stack_fingerprint on only audit_call_log (stack_fingerprint)
+    where stack_fingerprint is not null;
+
+alter index ix_audit_call_log_stack_fingerprint attach partition ix_audit_call_log_legacy_stack_fingerprint;
+
+DO $$
+DECLARE
+  p record;
+BEGIN
+  FOR p IN
+    select c.relname
+    from pg_inherits i
+    join pg_class c on c.oid = i.inhrelid
+    where i.inhparent = 'audit_call_log'::regclass
+      and c.relname <> 'audit_call_log_legacy'
+  LOOP
+    EXECUTE format('create index if not exists %I on %I (stack_fingerprint) where stack_fingerprint is not null',
+                   'ix_' || p.relname || '_stack_fingerprint', p.relname);
+    EXECUTE format('alter index ix_audit_call_log_stack_fingerprint attach partition %I',
+                   'ix_' || p.relname || '_stack_fingerprint');
+  END LOOP;
+END$$;
@@ -0,0 +1,20 @@
+-- Compact stack capture (proxy-toolkit.audit.stacktrace.mode=COMPACT):
+--   * one row per stack fingerprint (exception classes + top frames), trace stored once per dedup window
+--   * audit_call_log rows reference it through stack_fingerprint instead of repeating error_stack
+
+create table if not exists audit_stack_fingerprint (
+    fingerprint bigint primary key,
+    exception_class varchar(512) not null,
+    stack text,
+    occurrences bigint not null default 0,
+    first_seen timestamptz not null default now(),
+    last_seen timestamptz not null default now(),
+    stack_captured_at timestamptz
+);
+
+create index if not exists ix_audit_stack_fingerprint_last_seen on audit_stack_fingerprint (last_seen desc);
+
+-- propagates to every partition; no default, so a catalog-only change
+alter table audit_call_log add column if not exists stack_fingerprint bigint;
+
+-- the index on it is built in V8_1 / V8_2 without blocking inserts into the legacy partition
@@ -0,0 +1,32 @@
+-- In-memory policy snapshot (ApiClientPolicyService):
+--   * updated_at is bumped on every update, also for writes that bypass JPA, so incremental refresh sees them
+--   * every change is announced on channel 'api_client_policy' (delivered on commit) to refresh nodes right away
+
+create or replace function api_client_policy_touch() returns trigger as $$
+begin
+    new.updated_at := now();
+    return new;
+end;
+$$ language plpgsql;
+
+drop trigger if exists trg_api_client_policy_touch on api_client_policy;
+create trigger trg_api_client_policy_touch
+    before update on api_client_policy
+    for each row execute function api_client_policy_touch();
+
+create or replace function api_client_policy_notify() returns trigger as $$
+begin
+    perform pg_notify('api_client_policy', tg_op);
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists trg_api_client_policy_notify on api_client_policy;
+create trigger trg_api_client_policy_notify
+    after insert or update or delete on api_client_policy
+    for each statement execute function api_client_policy_notify();
+
+drop trigger if exists trg_api_client_policy_notify_truncate on api_client_policy;
+create trigger trg_api_client_policy_notify_truncate
+    after truncate on api_client_policy
+    for each statement execute function api_client_policy_notify();
@@ -11,9 +11,11 @@ import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -78,10 +80,12 @@ class DemoEndpointsIT extends BaseIntegrationTest {
 
         assertThat(v2).isEqualTo(v1);
 
-        // sanity: audit logs should exist (if audit enabled on method)
-        Integer auditCount = jdbc.queryForObject("select count(*) from audit_call_log", Integer.class);
-        assertThat(auditCount).isNotNull();
-        assertThat(auditCount).isGreaterThan(0);
+        // sanity: audit logs should exist (if audit enabled on method); rows are written by the async batch writer
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            Integer auditCount = jdbc.queryForObject("select count(*) from audit_call_log", Integer.class);
+            assertThat(auditCount).isNotNull();
+            assertThat(auditCount).isGreaterThan(0);
+        });
     }
 
     @Test
@@ -186,6 +190,11 @@ class DemoEndpointsIT extends BaseIntegrationTest {
 
         mvc.perform(get("/actuator/prometheus"))
                 .andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/proxytoolkit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.plans.classes").isNumber())
+                .andExpect(jsonPath("$.retrySpecs.max").value(10000));
     }
 
     private String readStableValue(org.springframework.test.web.servlet.MvcResult r) throws Exception {
@@ -0,0 +1,130 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProxyStageAdvisorTest {
+
+    public static class MixedService {
+        @ProxyCache(cacheName = "c")
+        public String cached(int x) {
+            return "c" + x;
+        }
+
+        @ProxyCache(cacheName = "c")
+        public void cachedVoid() {
+        }
+
+        @ProxyAudit
+        @ProxyRetry
+        public String auditedAndRetried() {
+            return "ar";
+        }
+
+        public String plain() {
+            return "p";
+        }
+    }
+
+    public interface Greeter {
+        String greet(String name);
+
+        String plain();
+    }
+
+    public static class GreeterImpl implements Greeter {
+        @ProxyRetry
+        public String greet(String name) {
+            return "hi " + name;
+        }
+
+        public String plain() {
+            return "p";
+        }
+    }
+
+    private static final List<String> STAGES = List.of("audit", "idempotency", "cache", "rateLimit", "concurrency", "retry");
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    void methodsShouldRunOnlyTheirOwnStages() {
+        MixedService proxy = (MixedService) ProxyToolkitBeanPostProcessor.attach(new MixedService(), advisors());
+
+        assertThat(proxy.cached(1)).isEqualTo("c1");
+        assertThat(calls).containsExactly("cache");
+
+        calls.clear();
+        proxy.cachedVoid();
+        assertThat(calls).isEmpty();
+
+        calls.clear();
+        assertThat(proxy.auditedAndRetried()).isEqualTo("ar");
+        assertThat(calls).containsExactly("audit", "retry");
+
+        calls.clear();
+        assertThat(proxy.plain()).isEqualTo("p");
+        assertThat(calls).isEmpty();
+    }
+
+    @Test
+    void existingProxyShouldGetTheAdvisorsInChainOrder() {
+        ProxyFactory pf = new ProxyFactory(new GreeterImpl());
+        pf.addInterface(Greeter.class);
+        pf.addAdvice((MethodInterceptor) inv -> {
+            calls.add("tx");
+            return inv.proceed();
+        });
+        Greeter existing = (Greeter) pf.getProxy();
+
+        Greeter proxy = (Greeter) ProxyToolkitBeanPostProcessor.attach(existing, advisors());
+
+        assertThat(proxy).isSameAs(existing);
+        assertThat(((Advised) proxy).getAdvisors()).hasSize(7);
+        assertThat(proxy.greet("bob")).isEqualTo("hi bob");
+        assertThat(calls).containsExactly("retry", "tx");
+
+        calls.clear();
+        proxy.plain();
+        assertThat(calls).containsExactly("tx");
+    }
+
+    @Test
+    void beansOfOneClassShouldShareTheAdvisorsAndTheProxyClass() {
+        List<Advisor> advisors = advisors();
+
+        MixedService first = (MixedService) ProxyToolkitBeanPostProcessor.attach(new MixedService(), advisors);
+        MixedService second = (MixedService) ProxyToolkitBeanPostProcessor.attach(new MixedService(), advisors);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getClass()).isSameAs(first.getClass());
+        assertThat(((Advised) second).getAdvisors()).containsExactly(((Advised) first).getAdvisors());
+    }
+
+    private List<Advisor> advisors() {
+        var plans = new MethodPlanRegistry(new ProxyToolkitProperties(), new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        List<MethodInterceptor> stages = new ArrayList<>();
+        for (String name : STAGES) {
+            stages.add(inv -> {
+                calls.add(name);
+                return inv.proceed();
+            });
+        }
+        return ProxyToolkitBeanPostProcessor.stageAdvisors(plans, stages.get(0), stages.get(1), stages.get(2),
+                stages.get(3), stages.get(4), stages.get(5));
+    }
+}
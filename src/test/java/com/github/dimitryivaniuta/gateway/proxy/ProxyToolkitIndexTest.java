@@ -0,0 +1,174 @@
+package com.github.dimitryivaniuta.gateway.proxy;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitIndex.Lookup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProxyToolkitIndexTest {
+
+    private static final String PKG = ProxyToolkitIndexTest.class.getPackageName();
+
+    interface Api {
+        String get();
+    }
+
+    static class Plain implements Comparable<Plain> {
+        @Override
+        public int compareTo(Plain o) {
+            return 0;
+        }
+    }
+
+    static class Annotated {
+    }
+
+    static class AnnotatedChild extends Annotated {
+    }
+
+    static class ApiImpl implements Api {
+        @Override
+        public String get() {
+            return "";
+        }
+    }
+
+    // implements a library type from a package without index
+    static abstract class LibraryCallback implements Executable {
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void withoutIndexEverythingIsUnindexed() throws IOException {
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader());
+
+        assertThat(index.lookup(Plain.class)).isEqualTo(Lookup.UNINDEXED);
+        assertThat(index.lookup(Annotated.class)).isEqualTo(Lookup.UNINDEXED);
+    }
+
+    @Test
+    void listedTypesAnywhereInTheHierarchyShouldBeCandidates() throws IOException {
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader(
+                "package " + PKG,
+                "type " + Annotated.class.getName(),
+                "type " + Api.class.getName(),
+                "method " + Api.class.getName() + "#get"));
+
+        assertThat(index.lookup(Annotated.class)).isEqualTo(Lookup.CANDIDATE);
+        assertThat(index.lookup(AnnotatedChild.class)).isEqualTo(Lookup.CANDIDATE);
+        assertThat(index.lookup(ApiImpl.class)).isEqualTo(Lookup.CANDIDATE);
+    }
+
+    @Test
+    void unlistedTypesOfIndexedPackagesShouldBeSkipped() throws Exception {
+        Path root = indexDir("root", "package " + PKG);
+        copyClass(root, Plain.class);
+        var loader = new URLClassLoader(new URL[]{root.toUri().toURL()}, null);
+
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader);
+
+        // Comparable is a JDK type: cannot carry toolkit annotations
+        assertThat(index.lookup(Class.forName(Plain.class.getName(), false, loader))).isEqualTo(Lookup.SKIP);
+    }
+
+    @Test
+    void indexedPackageClassesFromAnotherLocationShouldBeUnindexed() throws IOException {
+        // split package: the index covers PKG in its own root only, Plain comes from the test classes
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader("package " + PKG));
+
+        assertThat(index.lookup(Plain.class)).isEqualTo(Lookup.UNINDEXED);
+    }
+
+    @Test
+    void indexInAJarShouldCoverTheClassesOfThatJar() throws Exception {
+        Path jar = dir.resolve("lib.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(ProxyToolkitIndex.LOCATION));
+            out.write(("package " + PKG + "\n").getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry(classFile(Plain.class)));
+            out.write(classBytes(Plain.class));
+        }
+        var loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null);
+
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader);
+
+        assertThat(index.lookup(Class.forName(Plain.class.getName(), false, loader))).isEqualTo(Lookup.SKIP);
+        assertThat(index.lookup(Plain.class)).isEqualTo(Lookup.UNINDEXED);
+    }
+
+    @Test
+    void typesOutsideTheIndexedPackagesShouldBeUnindexed() throws IOException {
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader("package " + PKG));
+
+        assertThat(index.lookup(LibraryCallback.class)).isEqualTo(Lookup.UNINDEXED);
+        assertThat(ProxyToolkitIndex.load(loader("package com.example")).lookup(Plain.class))
+                .isEqualTo(Lookup.UNINDEXED);
+    }
+
+    @Test
+    void indexFilesShouldBeMerged() throws Exception {
+        Path first = indexDir("first", "package com.example", "type com.example.Orders");
+        Path second = indexDir("second", "package " + PKG, "type " + Annotated.class.getName());
+        copyClass(second, Plain.class);
+        var loader = new URLClassLoader(new URL[]{first.toUri().toURL(), second.toUri().toURL()}, null);
+
+        ProxyToolkitIndex index = ProxyToolkitIndex.load(loader);
+
+        assertThat(index.lookup(Annotated.class)).isEqualTo(Lookup.CANDIDATE);
+        assertThat(index.lookup(Class.forName(Plain.class.getName(), false, loader))).isEqualTo(Lookup.SKIP);
+    }
+
+    @Test
+    void indexRootsAndCodeSourcesShouldShareOneForm() {
+        assertThat(ProxyToolkitIndex.root("jar:file:/app/lib/a.jar!/")).isEqualTo("file:/app/lib/a.jar");
+        assertThat(ProxyToolkitIndex.root("file:/app/lib/a.jar")).isEqualTo("file:/app/lib/a.jar");
+        assertThat(ProxyToolkitIndex.root("file:/app/classes/")).isEqualTo("file:/app/classes");
+        assertThat(ProxyToolkitIndex.root("jar:nested:/app.jar/!BOOT-INF/classes/!/"))
+                .isEqualTo("nested:/app.jar/!BOOT-INF/classes");
+    }
+
+    // isolated from the indexes of the build's own classpath
+    private ClassLoader loader(String... lines) throws IOException {
+        Path root = (lines.length == 0) ? Files.createDirectories(dir.resolve("empty")) : indexDir("root", lines);
+        return new URLClassLoader(new URL[]{root.toUri().toURL()}, null);
+    }
+
+    // a copy of the compiled class, so it is loaded from the same root as the index next to it
+    private static void copyClass(Path root, Class<?> type) throws IOException {
+        Path file = root.resolve(classFile(type));
+        Files.createDirectories(file.getParent());
+        Files.write(file, classBytes(type));
+    }
+
+    private static String classFile(Class<?> type) {
+        return type.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] classBytes(Class<?> type) throws IOException {
+        try (InputStream in = type.getClassLoader().getResourceAsStream(classFile(type))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private Path indexDir(String name, String... lines) throws IOException {
+        Path root = dir.resolve(name);
+        Path file = root.resolve(ProxyToolkitIndex.LOCATION);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "# test index\n" + String.join("\n", lines) + "\n");
+        return root;
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.infra.BaseIntegrationTest;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class AuditPartitionManagerIT extends BaseIntegrationTest {
+
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void startupShouldCreatePartitionsAheadOfTheClock() {
+        Instant inFortyDays = Instant.now().plus(Duration.ofDays(40));
+
+        assertThat(partitionFor(inFortyDays)).startsWith("audit_call_log_p");
+        assertThat(partitionFor(Instant.now())).isEqualTo("audit_call_log_legacy");
+    }
+
+    @Test
+    void partitionsPastRetentionShouldBeDropped() {
+        var props = new ProxyToolkitProperties();
+        props.getAudit().setPartitionInterval(ProxyToolkitProperties.Audit.PartitionInterval.DAILY);
+        props.getAudit().setRetention(Duration.ofDays(1));
+        var manager = new AuditPartitionManager(jdbc, props);
+        Instant later = Instant.now().plus(Duration.ofDays(70));
+
+        manager.maintain(later);
+
+        var partitions = manager.partitions();
+        assertThat(partitions).extracting(AuditPartitionManager.Partition::name)
+                .doesNotContain("audit_call_log_legacy");
+        assertThat(partitions).allMatch(p -> p.to().isAfter(later.minus(Duration.ofDays(1))));
+        assertThat(jdbc.queryForObject("select to_regclass('audit_call_log_legacy') is null", Boolean.class)).isTrue();
+        assertThat(partitionFor(later.plus(Duration.ofDays(2)))).startsWith("audit_call_log_p");
+    }
+
+    @Test
+    void coverageShouldBeReportedForTheNextPeriodOnly() {
+        var manager = new AuditPartitionManager(jdbc, new ProxyToolkitProperties());
+
+        assertThat(manager.coversNextPeriod(Instant.now())).isTrue();
+        assertThat(manager.coversNextPeriod(Instant.now().plus(Duration.ofDays(3650)))).isFalse();
+    }
+
+    /**
+     * Inserts a row at {@code createdAt} and returns the partition it landed in.
+     */
+    private String partitionFor(Instant createdAt) {
+        jdbc.update("""
+                insert into audit_call_log (created_at, bean_name, target_class, method_signature, status, duration_ms)
+                values (?, 'bean', 'Target', 'm()', 'OK', 1)
+                """, Timestamp.from(createdAt));
+        return jdbc.queryForObject(
+                "select tableoid::regclass::text from audit_call_log where created_at = ?", String.class, Timestamp.from(createdAt));
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditPayloadsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public record Item(int id, String name) {}
+
+    @Test
+    void smallValueShouldBeCapturedAsIs() throws Exception {
+        Object value = Map.of("id", 7, "tags", List.of("a", "b"));
+
+        assertThat(AuditPayloads.capture(mapper, value, 20_000)).isEqualTo(mapper.writeValueAsString(value));
+        assertThat(AuditPayloads.capture(mapper, value, 0)).isEqualTo(mapper.writeValueAsString(value));
+    }
+
+    @Test
+    void largeValueShouldStopSerializingAtTheLimitAndStayValidJson() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        // a million elements, materialized only as far as the serializer walks
+        List<Item> huge = new AbstractList<>() {
+            @Override
+            public Item get(int index) {
+                produced.incrementAndGet();
+                return new Item(index, "item-" + index);
+            }
+
+            @Override
+            public int size() {
+                return 1_000_000;
+            }
+        };
+
+        String json = AuditPayloads.capture(mapper, huge, 2_000);
+
+        JsonNode node = mapper.readTree(json);
+        assertThat(node.get("_truncated").asBoolean()).isTrue();
+        assertThat(node.get("_maxChars").asInt()).isEqualTo(2_000);
+        assertThat(node.get("_preview").asText()).hasSize(2_000).startsWith("[{\"id\":0,");
+        // limit + one generator buffer, nowhere near the full list
+        assertThat(produced.get()).isLessThan(1_000);
+    }
+
+    @Test
+    void previewShouldBeCappedForLargeLimits() throws Exception {
+        String big = "x".repeat(50_000);
+
+        JsonNode node = mapper.readTree(AuditPayloads.capture(mapper, big, 30_000));
+
+        assertThat(node.get("_preview").asText()).hasSize(AuditPayloads.MAX_PREVIEW_CHARS);
+    }
+
+    @Test
+    void serializationErrorShouldBeStoredAsJsonString() {
+        Object unserializable = new Object() {
+            public String getBoom() {
+                throw new IllegalStateException("boom");
+            }
+        };
+
+        assertThat(AuditPayloads.capture(mapper, unserializable, 2_000)).isEqualTo("\"<json-serialization-error>\"");
+    }
+}
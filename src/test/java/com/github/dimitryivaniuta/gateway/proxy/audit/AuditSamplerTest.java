@@ -0,0 +1,173 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static com.github.dimitryivaniuta.gateway.proxy.audit.AuditSampler.CaptureLevel.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuditSamplerTest {
+
+    public static class OrderService {
+        @ProxyAudit(sampling = ProxyAudit.Sampling.TAIL, slowThresholdMs = 10_000)
+        public String place(String sku, boolean fail) {
+            if (fail) throw new IllegalStateException("out of stock");
+            return "order-" + sku;
+        }
+
+        @ProxyAudit(sampling = ProxyAudit.Sampling.RATE, sampleRate = 0)
+        public String quote(String sku) {
+            return "quote-" + sku;
+        }
+
+        @ProxyAudit(sampling = ProxyAudit.Sampling.PER_SUBJECT, perSubjectPerSecond = 3)
+        public String browse(String sku) {
+            return sku;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+    private final List<AuditCallLog> saved = new CopyOnWriteArrayList<>();
+    private volatile long saveLatencyNanos;
+
+    private final AuditCallLogService service = new AuditCallLogService(null, null) {
+        @Override
+        public void save(AuditCallLog log) {
+            if (saveLatencyNanos > 0) LockSupport.parkNanos(saveLatencyNanos);
+            saved.add(log);
+        }
+    };
+
+    @Test
+    void tailSamplingShouldKeepErrorsWithLateArgsAndDropFastSuccesses() {
+        OrderService proxy = proxy(sampler(writer()));
+
+        proxy.place("sku-1", false);
+        assertThatThrownBy(() -> proxy.place("sku-2", true)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(saved).hasSize(1);
+        AuditCallLog row = saved.get(0);
+        assertThat(row.getStatus()).isEqualTo(AuditCallLog.STATUS_ERROR);
+        assertThat(row.getArgsJson()).isEqualTo("[\"sku-2\",true]");
+        assertThat(registry.get("proxy_toolkit_audit_sampled_out_total").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void slowCallsShouldBeKeptByTheTailThreshold() {
+        AuditSampler sampler = sampler(writer());
+        ProxyAudit ann = annotation("place");
+
+        assertThat(sampler.admit(ann, FULL, () -> "subject")).isFalse();
+        assertThat(sampler.keep(ann, false, false, 10_000)).isTrue();
+        assertThat(sampler.keep(ann, false, false, 9_999)).isFalse();
+    }
+
+    @Test
+    void rateZeroShouldWriteOnlyErrors() {
+        OrderService proxy = proxy(sampler(writer()));
+
+        IntStream.range(0, 50).forEach(i -> proxy.quote("sku-" + i));
+
+        assertThat(saved).isEmpty();
+        assertThat(registry.get("proxy_toolkit_audit_sampled_out_total").counter().count()).isEqualTo(50);
+    }
+
+    @Test
+    void perSubjectSamplingShouldCapEachSubjectPerSecond() {
+        AuditSampler sampler = sampler(writer());
+        ProxyAudit ann = annotation("browse");
+
+        long a = IntStream.range(0, 20).filter(i -> sampler.admit(ann, FULL, () -> "api:client-a")).count();
+        long b = IntStream.range(0, 20).filter(i -> sampler.admit(ann, FULL, () -> "api:client-b")).count();
+
+        // a window boundary may fall inside the loop: at most two windows' worth
+        assertThat(a).isBetween(3L, 6L);
+        assertThat(b).isBetween(3L, 6L);
+    }
+
+    @Test
+    void slowWritesShouldDegradeCaptureToMetadata() {
+        props.getAudit().setAsync(false);
+        props.getAudit().getAdaptive().setMetadataFlushLatency(Duration.ofMillis(1));
+        props.getAudit().getAdaptive().setSampledFlushLatency(Duration.ofHours(1));
+        AuditWriter writer = writer();
+        AuditSampler sampler = sampler(writer);
+        assertThat(sampler.level()).isEqualTo(FULL);
+
+        saveLatencyNanos = Duration.ofMillis(5).toNanos();
+        for (int i = 0; i < 20; i++) writer.submit(AuditCallLog.builder().status(AuditCallLog.STATUS_OK).build());
+
+        assertThat(sampler.level()).isEqualTo(METADATA);
+        assertThat(registry.get("proxy_toolkit_audit_capture_level").gauge().value()).isEqualTo(1);
+
+        // metadata level: errors are still written, without payloads
+        saved.clear();
+        saveLatencyNanos = 0;
+        assertThatThrownBy(() -> proxy(sampler).place("sku-3", true)).isInstanceOf(IllegalStateException.class);
+        assertThat(saved).singleElement().satisfies(row -> {
+            assertThat(row.getArgsJson()).isNull();
+            assertThat(row.getErrorStack()).isNull();
+            assertThat(row.getErrorMessage()).isEqualTo("out of stock");
+        });
+    }
+
+    private AuditWriter writer() {
+        // not started: rows are saved synchronously
+        return new AuditWriter(service, props, new ProxyToolkitMetrics(registry));
+    }
+
+    private AuditSampler sampler(AuditWriter writer) {
+        return new AuditSampler(writer, props, new ProxyToolkitMetrics(registry));
+    }
+
+    private static ProxyAudit annotation(String method) {
+        return Arrays.stream(OrderService.class.getMethods())
+                .filter(m -> m.getName().equals(method))
+                .findFirst().orElseThrow()
+                .getAnnotation(ProxyAudit.class);
+    }
+
+    private OrderService proxy(AuditSampler sampler) {
+        var metrics = new ProxyToolkitMetrics(registry);
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+        var interceptor = new AuditMethodInterceptor(
+                writer(),
+                sampler,
+                new AuditStackTraces(null, props, new ProxyToolkitMetrics(registry)),
+                new ObjectMapper(),
+                props,
+                new MethodPlanRegistry(props, metrics),
+                new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService)
+        );
+
+        ProxyFactory pf = new ProxyFactory(new OrderService());
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(interceptor);
+        return (OrderService) pf.getProxy();
+    }
+}
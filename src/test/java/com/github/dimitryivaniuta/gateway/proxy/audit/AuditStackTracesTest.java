@@ -0,0 +1,94 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditStackTracesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+    private final List<Object[]> upserts = new CopyOnWriteArrayList<>();
+
+    private final JdbcTemplate jdbc = new JdbcTemplate() {
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            upserts.addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+    };
+
+    @Test
+    void fingerprintShouldIgnoreMessagesButNotThrowSites() {
+        // same call site for both, the caller's line is part of the trace
+        List<Throwable> same = Stream.of("order 1", "order 2").map(AuditStackTracesTest::fail).toList();
+        Throwable other = failElsewhere("order 1");
+
+        long fp = AuditStackTraces.fingerprint(same.get(0), 32, 8);
+        assertThat(AuditStackTraces.fingerprint(same.get(1), 32, 8)).isEqualTo(fp);
+        assertThat(AuditStackTraces.fingerprint(other, 32, 8)).isNotEqualTo(fp);
+    }
+
+    @Test
+    void renderShouldLimitFramesAndKeepTheCauseChain() {
+        Throwable ex = new IllegalStateException("outer", deep(200));
+
+        String stack = AuditStackTraces.render(ex, 5, 8, 0);
+
+        assertThat(stack).startsWith("java.lang.IllegalStateException: outer\n\tat ");
+        assertThat(stack).contains("Caused by: java.lang.IllegalArgumentException: deep");
+        assertThat(stack.lines().filter(l -> l.startsWith("\tat ")).count()).isEqualTo(10);
+        assertThat(stack).containsPattern("\\t\\.\\.\\. \\d+ more");
+        assertThat(AuditStackTraces.render(ex, 5, 8, 100)).hasSize(100);
+    }
+
+    @Test
+    void repeatedFailureShouldRenderOnceAndCountOccurrences() {
+        AuditStackTraces stacks = new AuditStackTraces(jdbc, props, new ProxyToolkitMetrics(registry));
+
+        List<Long> fingerprints = new ArrayList<>();
+        // one call site: 100 failures, flush, then one more failure in the same window
+        for (int i = 0; i < 101; i++) {
+            if (i == 100) stacks.flush();
+            fingerprints.add(stacks.record(fail("order " + i), 20_000));
+        }
+        stacks.flush();
+
+        assertThat(fingerprints).containsOnly(fingerprints.get(0));
+        assertThat(registry.get("proxy_toolkit_audit_stacks_total").tag("result", "rendered").counter().count()).isEqualTo(1);
+        assertThat(registry.get("proxy_toolkit_audit_stacks_total").tag("result", "deduplicated").counter().count()).isEqualTo(100);
+        assertThat(upserts).hasSize(2);
+        assertThat(upserts.get(0)).satisfies(row -> {
+            assertThat(row[0]).isEqualTo(fingerprints.get(0));
+            assertThat(row[1]).isEqualTo(IllegalStateException.class.getName());
+            assertThat((String) row[2]).startsWith("java.lang.IllegalStateException: order 0");
+            assertThat(row[3]).isEqualTo(100L);
+        });
+        // trace already sent in this window: only the count
+        assertThat(upserts.get(1)).satisfies(row -> {
+            assertThat(row[2]).isNull();
+            assertThat(row[3]).isEqualTo(1L);
+        });
+    }
+
+    private static Throwable fail(String message) {
+        return new IllegalStateException(message);
+    }
+
+    private static Throwable failElsewhere(String message) {
+        return new IllegalStateException(message);
+    }
+
+    private static Throwable deep(int depth) {
+        return (depth == 0) ? new IllegalArgumentException("deep") : deep(depth - 1);
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.dimitryivaniuta.gateway.proxy.audit;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties.Audit.OverflowPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class AuditWriterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final List<AuditCallLog> syncSaves = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean holdWriter;
+
+    private final AuditCallLogService service = new AuditCallLogService(null, null) {
+        @Override
+        public void save(AuditCallLog log) {
+            syncSaves.add(log);
+        }
+
+        @Override
+        public void insertBatch(List<AuditCallLog> rows) {
+            if (holdWriter) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batchSizes.add(rows.size());
+        }
+    };
+
+    private AuditWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (writer != null) writer.stop();
+    }
+
+    @Test
+    void shouldWriteRowsInBatchesOffTheCallerThread() {
+        writer = writer(OverflowPolicy.DROP, 1024, 50);
+        writer.start();
+
+        for (int i = 0; i < 120; i++) writer.submit(row(AuditCallLog.STATUS_OK));
+
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(120));
+        assertThat(batchSizes).allSatisfy(n -> assertThat(n).isLessThanOrEqualTo(50));
+        assertThat(syncSaves).isEmpty();
+        assertThat(registry.get("proxy_toolkit_audit_written_total").counter().count()).isEqualTo(120);
+    }
+
+    @Test
+    void dropPolicyShouldCountOverflowInsteadOfBlocking() {
+        holdWriter = true;
+        writer = writer(OverflowPolicy.DROP, 8, 1);
+        writer.start();
+
+        writer.submit(row(AuditCallLog.STATUS_OK)); // taken by the (stuck) writer
+        await().atMost(Duration.ofSeconds(5)).until(() -> writer.queueDepth() == 0);
+
+        for (int i = 0; i < 20; i++) writer.submit(row(AuditCallLog.STATUS_OK));
+
+        assertThat(writer.queueDepth()).isEqualTo(8);
+        assertThat(registry.get("proxy_toolkit_audit_dropped_total").tag("reason", "overflow").counter().count())
+                .isEqualTo(12);
+    }
+
+    @Test
+    void samplePolicyShouldKeepErrorsAndThinOutSuccessesNearCapacity() {
+        holdWriter = true;
+        writer = writer(OverflowPolicy.SAMPLE, 16, 1);
+        props.getAudit().setSampleRate(1_000_000); // effectively drop every sampled success
+        writer.start();
+
+        writer.submit(row(AuditCallLog.STATUS_OK));
+        await().atMost(Duration.ofSeconds(5)).until(() -> writer.queueDepth() == 0);
+
+        for (int i = 0; i < 12; i++) writer.submit(row(AuditCallLog.STATUS_OK)); // up to the 3/4 mark
+        for (int i = 0; i < 10; i++) writer.submit(row(AuditCallLog.STATUS_OK)); // sampled out
+        for (int i = 0; i < 4; i++) writer.submit(row(AuditCallLog.STATUS_ERROR)); // kept
+
+        assertThat(writer.queueDepth()).isEqualTo(16);
+        assertThat(registry.get("proxy_toolkit_audit_dropped_total").tag("reason", "sampled").counter().count())
+                .isGreaterThanOrEqualTo(9);
+    }
+
+    @Test
+    void shouldWriteSynchronouslyWhenAsyncDisabled() {
+        writer = writer(OverflowPolicy.DROP, 8, 1);
+        props.getAudit().setAsync(false);
+        writer.start();
+
+        writer.submit(row(AuditCallLog.STATUS_OK));
+
+        assertThat(syncSaves).hasSize(1);
+        assertThat(batchSizes).isEmpty();
+    }
+
+    @Test
+    void rowsSubmittedWhileStoppingShouldNotBeLost() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            batchSizes.clear();
+            syncSaves.clear();
+            writer = writer(OverflowPolicy.DROP, 1 << 16, 64);
+            writer.start();
+
+            int threads = 8;
+            AtomicBoolean stopping = new AtomicBoolean();
+            AtomicInteger submitted = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(threads);
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                submitters.add(Thread.ofPlatform().start(() -> {
+                    started.countDown();
+                    // keep submitting across stop(), so some submits race its final drain
+                    for (int i = 0; !stopping.get() || i % 100 != 0; i++) {
+                        writer.submit(row(AuditCallLog.STATUS_OK));
+                        submitted.incrementAndGet();
+                    }
+                }));
+            }
+            started.await();
+            stopping.set(true);
+            writer.stop();
+            for (Thread t : submitters) t.join();
+
+            int written = batchSizes.stream().mapToInt(Integer::intValue).sum() + syncSaves.size();
+            assertThat(written).as("round %d", round).isEqualTo(submitted.get());
+            assertThat(registry.get("proxy_toolkit_audit_dropped_total").tag("reason", "overflow").counter().count())
+                    .isZero();
+        }
+    }
+
+    private AuditWriter writer(OverflowPolicy policy, int capacity, int batchSize) {
+        props.getAudit().setOverflowPolicy(policy);
+        props.getAudit().setQueueCapacity(capacity);
+        props.getAudit().setBatchSize(batchSize);
+        props.getAudit().setFlushInterval(Duration.ofMillis(10));
+        props.getAudit().setShutdownTimeout(Duration.ofSeconds(2));
+        return new AuditWriter(service, props, new ProxyToolkitMetrics(registry));
+    }
+
+    private static AuditCallLog row(String status) {
+        return AuditCallLog.builder()
+                .beanName("bean")
+                .targetClass("T")
+                .methodSignature("T#m()")
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.dimitryivaniuta.gateway.proxy.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheKeyTest {
+
+    /** equals differs, hashCode always collides */
+    record Colliding(String id) {
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+
+    @Test
+    void collidingLongHashesShouldStillBeDistinctKeys() {
+        // Long.hashCode(0) == Long.hashCode(0x1_0000_0001L) == 0
+        CacheKey a = CacheKey.of(1, "s", new Object[]{0L});
+        CacheKey b = CacheKey.of(1, "s", new Object[]{0x1_0000_0001L});
+
+        assertThat(Long.hashCode(0L)).isEqualTo(Long.hashCode(0x1_0000_0001L));
+        assertThat(a).isNotEqualTo(b);
+        assertThat(a).isInstanceOf(CacheKey.OneLong.class);
+        assertThat(CacheKey.of(1, "s", new Object[]{0L})).isEqualTo(a).hasSameHashCodeAs(a);
+    }
+
+    @Test
+    void collidingStringHashesShouldStillBeDistinctKeys() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(CacheKey.of(1, "s", new Object[]{"Aa"})).isNotEqualTo(CacheKey.of(1, "s", new Object[]{"BB"}));
+        assertThat(CacheKey.of(1, "s", new Object[]{List.of("Aa"), 1}))
+                .isInstanceOf(CacheKey.Encoded.class)
+                .isNotEqualTo(CacheKey.of(1, "s", new Object[]{List.of("BB"), 1}));
+    }
+
+    @Test
+    void customTypesShouldFallBackToEquals() {
+        CacheKey a = CacheKey.of(1, "s", new Object[]{new Colliding("a")});
+        CacheKey b = CacheKey.of(1, "s", new Object[]{new Colliding("b")});
+
+        assertThat(a).isInstanceOf(CacheKey.ObjectArgs.class).isNotEqualTo(b);
+        assertThat(CacheKey.of(1, "s", new Object[]{new Colliding("a")})).isEqualTo(a);
+    }
+
+    @Test
+    void argumentTypesShouldMatterLikeEquals() {
+        assertThat(CacheKey.of(1, "s", new Object[]{1})).isNotEqualTo(CacheKey.of(1, "s", new Object[]{1L}));
+        assertThat(CacheKey.of(1, "s", new Object[]{null, 0})).isNotEqualTo(CacheKey.of(1, "s", new Object[]{0, 0}));
+        assertThat(CacheKey.of(1, "s", new Object[]{new BigDecimal("1.0"), "x"}))
+                .isNotEqualTo(CacheKey.of(1, "s", new Object[]{new BigDecimal("1.00"), "x"}));
+    }
+
+    @Test
+    void equalArgumentsShouldProduceEqualKeys() {
+        UUID id = UUID.randomUUID();
+        Object[] args = {id, LocalDate.of(2024, 1, 31), new byte[]{1, 2}, List.of(1L, "x")};
+
+        CacheKey a = CacheKey.of(3, "s", args);
+        CacheKey b = CacheKey.of(3, "s", new Object[]{
+                UUID.fromString(id.toString()), LocalDate.parse("2024-01-31"), new byte[]{1, 2}, List.of(1L, "x")});
+
+        assertThat(a).isInstanceOf(CacheKey.Encoded.class).isEqualTo(b).hasSameHashCodeAs(b);
+    }
+
+    @Test
+    void methodAndScopeShouldPartitionKeys() {
+        assertThat(CacheKey.of(1, "s", new Object[]{5})).isNotEqualTo(CacheKey.of(2, "s", new Object[]{5}));
+        assertThat(CacheKey.of(1, "alice", new Object[]{5})).isNotEqualTo(CacheKey.of(1, "bob", new Object[]{5}));
+        // GLOBAL scope: no subject, shared across callers
+        assertThat(CacheKey.of(1, null, new Object[]{5})).isEqualTo(CacheKey.of(1, null, new Object[]{5}));
+        assertThat(CacheKey.of(1, null, new Object[0])).isEqualTo(CacheKey.of(1, null, null));
+    }
+}
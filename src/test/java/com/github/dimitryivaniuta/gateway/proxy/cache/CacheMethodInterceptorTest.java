@@ -0,0 +1,266 @@
+package com.github.dimitryivaniuta.gateway.proxy.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class CacheMethodInterceptorTest {
+
+    public static class SlowService {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @ProxyCache(cacheName = "slow", ttlSeconds = 60)
+        public String load(String id) throws InterruptedException {
+            int n = calls.incrementAndGet();
+            gate.await();
+            return id + "#" + n;
+        }
+
+        @ProxyCache(cacheName = "refresh", ttlSeconds = 1, refreshAheadPercent = 50)
+        public String refreshing(String id) {
+            return id + "#" + calls.incrementAndGet();
+        }
+
+        @ProxyCache(cacheName = "slow", ttlSeconds = 60)
+        public String missing(String id) throws InterruptedException {
+            calls.incrementAndGet();
+            gate.await();
+            return null;
+        }
+
+        // same physical cache as load(): the nested load must not run under the outer one's lock
+        @ProxyCache(cacheName = "slow", ttlSeconds = 60)
+        public String outer(String id) throws InterruptedException {
+            return "outer(" + self.load(id) + ")";
+        }
+
+        SlowService self;
+
+        @ProxyCache(cacheName = "failing", ttlSeconds = 60)
+        public String failing(String id) throws IOException {
+            calls.incrementAndGet();
+            throw new IOException("backend down");
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // cache clock, moved by the tests only
+    private final AtomicLong ticker = new AtomicLong();
+    private CacheManager cacheManager;
+    private SlowService target;
+    private SlowService proxy;
+
+    @BeforeEach
+    void setUp() {
+        setUp(new ProxyToolkitProperties());
+    }
+
+    private void setUp(ProxyToolkitProperties props) {
+        var metrics = new ProxyToolkitMetrics(registry);
+
+        // no request bound => subject "unknown", no hashing / credential lookup
+        var keyResolver = new RateLimitKeyResolver(null, null);
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+
+        target = new SlowService();
+        cacheManager = new TtlCaffeineCacheManager(() -> Caffeine.newBuilder().maximumSize(1_000).ticker(ticker::get));
+        var interceptor = new CacheMethodInterceptor(
+                cacheManager,
+                new MethodPlanRegistry(props, metrics),
+                new ProxyCallContexts(keyResolver, policyService),
+                props
+        );
+
+        ProxyFactory pf = new ProxyFactory(target);
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(interceptor);
+        proxy = (SlowService) pf.getProxy();
+        target.self = proxy;
+    }
+
+    @Test
+    void concurrentMissesShouldRunTheMethodOnce() throws Exception {
+        target.gate = new CountDownLatch(1);
+        int callers = 8;
+
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(callers, recording(threads));
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) results.add(pool.submit(() -> proxy.load("42")));
+
+            // every other caller is parked on the single loader before it finishes
+            await().atMost(Duration.ofSeconds(5)).until(() -> target.calls.get() == 1);
+            awaitWaiters(threads, callers - 1);
+            target.gate.countDown();
+
+            for (Future<String> f : results) assertThat(f.get()).isEqualTo("42#1");
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(target.calls.get()).isEqualTo(1);
+        // meters for every cached method are registered up front, so select this one by cache tag
+        double miss = registry.get("proxy_toolkit_cache_misses_total").tag("cache", "slow:ttl=60").counter().count();
+        double coalesced = registry.get("proxy_toolkit_cache_coalesced_total").tag("cache", "slow:ttl=60").counter().count();
+        double hits = registry.find("proxy_toolkit_cache_hits_total").counters().stream().mapToDouble(c -> c.count()).sum();
+        assertThat(miss).isEqualTo(1);
+        assertThat(coalesced).isEqualTo(callers - 1);
+        assertThat(hits).isZero();
+    }
+
+    @Test
+    void concurrentMissesReturningNullShouldShareTheNullResult() throws Exception {
+        target.gate = new CountDownLatch(1);
+        int callers = 8;
+
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(callers, recording(threads));
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) results.add(pool.submit(() -> proxy.missing("42")));
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> target.calls.get() == 1);
+            awaitWaiters(threads, callers - 1);
+            target.gate.countDown();
+
+            for (Future<String> f : results) assertThat(f.get()).isNull();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(target.calls.get()).isEqualTo(1);
+        assertThat(registry.get("proxy_toolkit_cache_coalesced_total").tag("cache", "slow:ttl=60").counter().count())
+                .isEqualTo(callers - 1);
+        // null is not stored: the next call loads again
+        assertThat(proxy.missing("42")).isNull();
+        assertThat(target.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void nestedCallIntoTheSameCacheShouldLoadBoth() throws Exception {
+        assertThat(proxy.outer("7")).isEqualTo("outer(7#1)");
+        assertThat(proxy.outer("7")).isEqualTo("outer(7#1)");
+        assertThat(proxy.load("7")).isEqualTo("7#1");
+
+        assertThat(target.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void valuesShouldBeStoredAsIsForOtherUsersOfTheCache() {
+        assertThat(proxy.load("7")).isEqualTo("7#1");
+
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache("slow:ttl=60").getNativeCache();
+        assertThat(nativeCache.asMap().values()).containsExactly("7#1");
+    }
+
+    @Test
+    void valuesStoredByOtherUsersOfTheCacheShouldBeServed() {
+        assertThat(proxy.load("7")).isEqualTo("7#1");
+        Cache cache = cacheManager.getCache("slow:ttl=60");
+        @SuppressWarnings("unchecked")
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+        Object key = nativeCache.asMap().keySet().iterator().next();
+
+        cache.put(key, "written elsewhere");
+        assertThat(proxy.load("7")).isEqualTo("written elsewhere");
+        cache.put(key, null); // NullValue in Spring's CaffeineCache
+        assertThat(proxy.load("7")).isNull();
+
+        assertThat(target.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void waitersShouldCallThroughWhenTheLoadTakesLongerThanLoadWait() throws Exception {
+        var props = new ProxyToolkitProperties();
+        props.getCache().setLoadWait(Duration.ofMillis(50));
+        setUp(props);
+        target.gate = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = pool.submit(() -> proxy.load("9"));
+            await().atMost(Duration.ofSeconds(5)).until(() -> target.calls.get() == 1);
+            Future<String> second = pool.submit(() -> proxy.load("9"));
+
+            // the second caller stops waiting and runs the method itself
+            await().atMost(Duration.ofSeconds(5)).until(() -> target.calls.get() == 2);
+            target.gate.countDown();
+
+            assertThat(first.get()).isEqualTo("9#1");
+            assertThat(second.get()).isEqualTo("9#2");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldServeStaleValueAndRefreshAheadInBackground() throws Exception {
+        assertThat(proxy.refreshing("a")).isEqualTo("a#1");
+
+        ticker.addAndGet(Duration.ofMillis(600).toNanos()); // past 50% of the 1s TTL, before expiry
+        assertThat(proxy.refreshing("a")).isEqualTo("a#1"); // stale value served immediately
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> target.calls.get() == 2);
+        await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> assertThat(proxy.refreshing("a")).isEqualTo("a#2"));
+        assertThat(registry.get("proxy_toolkit_cache_refresh_ahead_total").tag("cache", "refresh:ttl=1").counter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void failuresShouldPropagateUnwrappedAndNotBeCached() {
+        assertThatThrownBy(() -> proxy.failing("x")).isInstanceOf(IOException.class).hasMessage("backend down");
+        assertThatThrownBy(() -> proxy.failing("x")).isInstanceOf(IOException.class);
+
+        assertThat(target.calls.get()).isEqualTo(2);
+    }
+
+    private static ThreadFactory recording(List<Thread> threads) {
+        return r -> {
+            Thread t = new Thread(r);
+            threads.add(t);
+            return t;
+        };
+    }
+
+    // waiters park with a timeout (load-wait); the loader and idle pool threads wait without one
+    private static void awaitWaiters(List<Thread> threads, int waiters) {
+        await().atMost(Duration.ofSeconds(5)).until(() ->
+                threads.stream().filter(t -> t.getState() == Thread.State.TIMED_WAITING).count() == waiters);
+    }
+}
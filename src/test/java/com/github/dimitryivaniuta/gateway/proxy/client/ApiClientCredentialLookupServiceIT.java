@@ -0,0 +1,46 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import com.github.dimitryivaniuta.gateway.infra.BaseIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ApiClientCredentialLookupServiceIT extends BaseIntegrationTest {
+
+    @Autowired ApiClientCredentialLookupService lookup;
+    @Autowired ApiKeyHashService hashService;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void indexShouldFollowEnableDisableAndDelete() {
+        lookup.reload();
+        String hash = hashService.hash(hashService.generateRawApiKey());
+        Long clientId = jdbc.queryForObject(
+                "insert into api_client (client_name, client_code) values ('Acme', 'acme') returning id", Long.class);
+        jdbc.update("insert into api_client_credential (api_client_id, credential_name, api_key_hash) values (?, 'default', ?)",
+                clientId, hash);
+
+        assertThat(lookup.isActive(hash)).isFalse();
+        lookup.refresh();
+        assertThat(lookup.isActive(hash)).isTrue();
+        assertThat(lookup.findActiveByHash(hash)).isPresent();
+
+        // disabling the client deactivates its credentials (updated_at is bumped by the V10 trigger)
+        jdbc.update("update api_client set enabled = false where id = ?", clientId);
+        lookup.refresh();
+        assertThat(lookup.isActive(hash)).isFalse();
+
+        jdbc.update("update api_client set enabled = true where id = ?", clientId);
+        lookup.refresh();
+        assertThat(lookup.isActive(hash)).isTrue();
+
+        jdbc.update("delete from api_client_credential where api_key_hash = ?", hash);
+        lookup.reload();
+        assertThat(lookup.isActive(hash)).isFalse();
+        assertThat(lookup.findActiveByHash(hashService.hash("sprayed-key"))).isEmpty();
+    }
+}
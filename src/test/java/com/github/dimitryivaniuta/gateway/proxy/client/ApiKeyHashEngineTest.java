@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiKeyHashEngineTest {
+
+    @Test
+    void sequentialCallsShouldReuseOneScratchSet() {
+        var engine = new ApiKeyHashEngine("SHA-256", "pepper", 0, Duration.ZERO);
+
+        for (int i = 0; i < 100; i++) engine.hash("key-" + i);
+
+        assertThat(engine.pooledInputs()).hasSize(1);
+    }
+
+    @Test
+    void moreConcurrentCallersThanSlotsShouldHashCorrectlyAndKeepThePoolBounded() throws Exception {
+        var engine = new ApiKeyHashEngine("SHA-256", "pepper", 0, Duration.ZERO);
+        int callers = ApiKeyHashEngine.POOL_SIZE * 4;
+        var start = new CyclicBarrier(callers);
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < callers; t++) {
+                int caller = t;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 200; i++) {
+                        String raw = "caller-" + caller + "-key-" + i;
+                        if (!engine.hash(raw).equals(reference(raw, "pepper"))) return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> f : results) assertThat(f.get()).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // overflow scratch sets were dropped, pooled ones are reused
+        assertThat(engine.pooledInputs()).isNotEmpty().hasSizeLessThanOrEqualTo(ApiKeyHashEngine.POOL_SIZE);
+    }
+
+    @Test
+    void pooledBuffersShouldNotKeepRawKeyBytes() {
+        var engine = new ApiKeyHashEngine("SHA-256", "pepper", 100, Duration.ofMinutes(1));
+
+        engine.hash("secret-api-key");
+        engine.hash("secret-api-key"); // memo hit path
+
+        for (byte[] in : engine.pooledInputs()) {
+            for (byte b : in) assertThat(b).isZero();
+        }
+    }
+
+    private static String reference(String raw, String pepper) throws Exception {
+        byte[] d = MessageDigest.getInstance("SHA-256").digest((raw + ":" + pepper).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(d);
+    }
+}
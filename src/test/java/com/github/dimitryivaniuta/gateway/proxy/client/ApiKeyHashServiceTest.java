@@ -0,0 +1,50 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiKeyHashServiceTest {
+
+    @Test
+    void shouldMatchPlainPepperedSha256WithAndWithoutMemo() throws Exception {
+        ApiKeyHashService cold = new ApiKeyHashService("pepper", "SHA-256", 0);
+        ApiKeyHashService memo = new ApiKeyHashService("pepper", "SHA-256", 100);
+
+        for (String raw : new String[]{"abc", cold.generateRawApiKey(), "klucz-żółć", "x".repeat(5_000)}) {
+            String expected = reference(raw, "pepper");
+
+            assertThat(cold.hash(raw)).isEqualTo(expected);
+            assertThat(memo.hash(raw)).isEqualTo(expected);
+            assertThat(memo.hash(raw)).isEqualTo(expected); // memo hit
+        }
+    }
+
+    @Test
+    void memoShouldNotMixUpDifferentKeys() {
+        ApiKeyHashService memo = new ApiKeyHashService("pepper", "SHA-256", 100);
+
+        String a = memo.hash("key-a");
+        String b = memo.hash("key-b");
+
+        assertThat(a).isNotEqualTo(b);
+        assertThat(memo.hash("key-a")).isEqualTo(a);
+        assertThat(memo.hash("key-b")).isEqualTo(b);
+    }
+
+    @Test
+    void shouldFailFastOnUnknownAlgorithm() {
+        assertThatThrownBy(() -> new ApiKeyHashService("", "NOPE-256", 0))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static String reference(String raw, String pepper) throws Exception {
+        byte[] d = MessageDigest.getInstance("SHA-256").digest((raw + ":" + pepper).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(d);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.dimitryivaniuta.gateway.proxy.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiKeyIndexTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void shouldContainLoadedDigestsOnly() {
+        List<String> known = digests(1_000);
+        ApiKeyIndex index = ApiKeyIndex.of(known);
+
+        assertThat(index.size()).isEqualTo(1_000);
+        assertThat(known).allMatch(index::contains);
+        assertThat(index.contains(known.get(0).toUpperCase())).isTrue();
+
+        assertThat(digests(1_000)).noneMatch(index::contains);
+        assertThat(index.contains(null)).isFalse();
+        assertThat(index.contains("not-hex")).isFalse();
+        assertThat(index.contains(known.get(0).substring(2))).isFalse();
+        assertThat(index.contains("zz" + known.get(0).substring(2))).isFalse();
+    }
+
+    @Test
+    void shouldSurviveRemovalsInsideProbeRuns() {
+        // same first word => same home slot, one long probe run
+        String prefix = digest().substring(0, 16);
+        List<String> colliding = new ArrayList<>();
+        for (int i = 0; i < 20; i++) colliding.add(prefix + digest().substring(16));
+
+        ApiKeyIndex index = ApiKeyIndex.of(colliding);
+        ApiKeyIndex after = index.withChanges(List.of(), colliding.subList(0, 10));
+
+        assertThat(after.size()).isEqualTo(10);
+        assertThat(colliding.subList(0, 10)).noneMatch(after::contains);
+        assertThat(colliding.subList(10, 20)).allMatch(after::contains);
+        // copy-on-write: the previous index is unchanged
+        assertThat(colliding).allMatch(index::contains);
+    }
+
+    @Test
+    void shouldMatchReferenceSetUnderRandomChanges() {
+        List<String> pool = digests(2_000);
+        Set<String> reference = new HashSet<>();
+        ApiKeyIndex index = ApiKeyIndex.EMPTY;
+
+        for (int round = 0; round < 200; round++) {
+            List<String> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (int i = 0; i < 30; i++) added.add(pool.get(random.nextInt(pool.size())));
+            for (int i = 0; i < 30; i++) removed.add(pool.get(random.nextInt(pool.size())));
+            added.removeAll(removed);
+
+            index = index.withChanges(added, removed);
+            reference.removeAll(removed);
+            reference.addAll(added);
+
+            assertThat(index.size()).isEqualTo(reference.size());
+        }
+        ApiKeyIndex finalIndex = index;
+        assertThat(pool).allMatch(d -> finalIndex.contains(d) == reference.contains(d));
+    }
+
+    @Test
+    void emptyChangeSetShouldKeepIndex() {
+        ApiKeyIndex index = ApiKeyIndex.of(digests(3));
+        assertThat(index.withChanges(List.of(), List.of())).isSameAs(index);
+        assertThat(ApiKeyIndex.EMPTY.contains(digest())).isFalse();
+    }
+
+    private List<String> digests(int n) {
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(digest());
+        return out;
+    }
+
+    private String digest() {
+        byte[] b = new byte[32];
+        random.nextBytes(b);
+        return HexFormat.of().formatHex(b);
+    }
+}
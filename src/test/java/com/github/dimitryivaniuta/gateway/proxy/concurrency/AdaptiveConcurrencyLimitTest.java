@@ -0,0 +1,114 @@
+package com.github.dimitryivaniuta.gateway.proxy.concurrency;
+
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    static class Limits {
+        @ProxyConcurrencyLimit(initialLimit = 4, maxLimit = 6)
+        void growing() {}
+
+        @ProxyConcurrencyLimit(initialLimit = 20, minLimit = 2)
+        void shrinking() {}
+
+        @ProxyConcurrencyLimit(initialLimit = 10, latencyThresholdMs = 100)
+        void slow() {}
+
+        @ProxyConcurrencyLimit(initialLimit = 500, maxLimit = 50)
+        void aboveMax() {}
+
+        @ProxyConcurrencyLimit(initialLimit = 0, minLimit = 3)
+        void belowMin() {}
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void initialLimitShouldBeClampedToMinAndMax() throws Exception {
+        assertThat(limiter("aboveMax").limit()).isEqualTo(50);
+        assertThat(limiter("belowMin").limit()).isEqualTo(3);
+    }
+
+    @Test
+    void callsOverTheLimitShouldBeRejectedAndCounted() throws Exception {
+        AdaptiveConcurrencyLimit limiter = limiter("growing");
+
+        for (int i = 0; i < 4; i++) assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        assertThat(limiter.inFlight()).isEqualTo(4);
+        assertThat(registry.get("proxy_toolkit_concurrency_rejected_total").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void successesAtFullUseShouldGrowTheLimitAdditivelyUpToMax() throws Exception {
+        AdaptiveConcurrencyLimit limiter = limiter("growing");
+        for (int i = 0; i < 3; i++) limiter.tryAcquire(); // keep the limit in use
+
+        // +1/limit per success: 4 -> 5 takes four successes, 5 -> 6 five more
+        successes(limiter, 4);
+        assertThat(limiter.limit()).isEqualTo(4);
+        successes(limiter, 1);
+        assertThat(limiter.limit()).isEqualTo(5);
+
+        successes(limiter, 100);
+        assertThat(limiter.limit()).isEqualTo(6);
+    }
+
+    @Test
+    void successesWhileMostlyIdleShouldNotGrowTheLimit() throws Exception {
+        AdaptiveConcurrencyLimit limiter = limiter("growing");
+
+        successes(limiter, 100); // one call in flight at a time, below half of the limit
+
+        assertThat(limiter.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void failuresShouldShrinkTheLimitMultiplicativelyDownToMin() throws Exception {
+        AdaptiveConcurrencyLimit limiter = limiter("shrinking");
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        limiter.release(0, true);
+        assertThat(limiter.limit()).isEqualTo(18); // 20 x 0.9
+        assertThat(limiter.inFlight()).isZero();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(0, true);
+        }
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void callsSlowerThanTheThresholdShouldShrinkTheLimit() throws Exception {
+        AdaptiveConcurrencyLimit limiter = limiter("slow");
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(50), false);
+        assertThat(limiter.limit()).isEqualTo(10);
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(200), false);
+        assertThat(limiter.limit()).isEqualTo(9);
+    }
+
+    private static void successes(AdaptiveConcurrencyLimit limiter, int n) {
+        for (int i = 0; i < n; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.release(0, false);
+        }
+    }
+
+    private AdaptiveConcurrencyLimit limiter(String method) throws Exception {
+        ProxyConcurrencyLimit cfg = Limits.class.getDeclaredMethod(method).getAnnotation(ProxyConcurrencyLimit.class);
+        return new AdaptiveConcurrencyLimit(cfg, new ProxyToolkitMetrics(registry), "Limits#" + method);
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.dimitryivaniuta.gateway.proxy.concurrency;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import com.github.dimitryivaniuta.gateway.web.GlobalExceptionHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitMethodInterceptorTest {
+
+    public static class BackendService {
+        volatile CompletableFuture<String> pending;
+
+        @ProxyConcurrencyLimit(initialLimit = 1, maxLimit = 1)
+        public String call(CountDownLatch entered, CountDownLatch release) throws InterruptedException {
+            entered.countDown();
+            release.await();
+            return "ok";
+        }
+
+        @ProxyConcurrencyLimit(initialLimit = 10)
+        public String failing() {
+            throw new IllegalStateException("backend down");
+        }
+
+        @ProxyConcurrencyLimit(initialLimit = 10, ignoreOn = IllegalArgumentException.class)
+        public String invalid() {
+            throw new IllegalArgumentException("bad request");
+        }
+
+        @ProxyConcurrencyLimit(initialLimit = 1, maxLimit = 1)
+        public CompletableFuture<String> callAsync() {
+            pending = new CompletableFuture<>();
+            return pending;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MethodPlanRegistry plans;
+    private BackendService proxy;
+
+    @BeforeEach
+    void setUp() {
+        var props = new ProxyToolkitProperties();
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+        plans = new MethodPlanRegistry(props, new ProxyToolkitMetrics(registry));
+
+        ProxyFactory pf = new ProxyFactory(new BackendService());
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(new ConcurrencyLimitMethodInterceptor(
+                plans, new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService)));
+        proxy = (BackendService) pf.getProxy();
+    }
+
+    @Test
+    void callOverTheLimitShouldFailFastAndMapTo503WithRetryAfter() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> {
+            try {
+                proxy.call(entered, release);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        entered.await();
+
+        ConcurrencyLimitExceededException rejected = null;
+        try {
+            proxy.call(new CountDownLatch(1), new CountDownLatch(0));
+        } catch (ConcurrencyLimitExceededException ex) {
+            rejected = ex;
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        assertThat(rejected).isNotNull();
+        assertThat(rejected.getLimit()).isEqualTo(1);
+        var response = new GlobalExceptionHandler().handleConcurrencyLimit(rejected, new MockHttpServletRequest());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("1");
+
+        // the permit came back once the first call finished
+        assertThat(proxy.call(new CountDownLatch(1), new CountDownLatch(0))).isEqualTo("ok");
+    }
+
+    @Test
+    void exceptionShouldReleaseThePermitAndShrinkTheLimit() throws Exception {
+        assertThatThrownBy(proxy::failing).isInstanceOf(IllegalStateException.class);
+
+        AdaptiveConcurrencyLimit limiter = limiter("failing");
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.limit()).isEqualTo(9);
+    }
+
+    @Test
+    void ignoredExceptionShouldReleaseThePermitWithoutShrinkingTheLimit() throws Exception {
+        assertThatThrownBy(proxy::invalid).isInstanceOf(IllegalArgumentException.class);
+
+        AdaptiveConcurrencyLimit limiter = limiter("invalid");
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.limit()).isEqualTo(10);
+    }
+
+    @Test
+    void futureShouldHoldThePermitUntilItFails() throws Exception {
+        CompletableFuture<String> first = proxy.callAsync();
+        AdaptiveConcurrencyLimit limiter = limiter("callAsync");
+
+        assertThat(limiter.inFlight()).isEqualTo(1);
+        assertThatThrownBy(proxy::callAsync).isInstanceOf(ConcurrencyLimitExceededException.class);
+
+        first.completeExceptionally(new IllegalStateException("backend down"));
+
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(proxy.callAsync()).isNotDone();
+        assertThat(limiter.inFlight()).isEqualTo(1);
+    }
+
+    private AdaptiveConcurrencyLimit limiter(String method) throws Exception {
+        return plans.forClass(BackendService.class).get(BackendService.class.getMethod(method)).concurrencyLimiter();
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.dimitryivaniuta.gateway.proxy.context;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitBeanPostProcessor;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRateLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditCallLog;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditCallLogService;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditSampler;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditStackTraces;
+import com.github.dimitryivaniuta.gateway.proxy.audit.AuditWriter;
+import com.github.dimitryivaniuta.gateway.proxy.cache.CacheMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.cache.TtlCaffeineCacheManager;
+import com.github.dimitryivaniuta.gateway.proxy.client.ApiClientCredentialLookupService;
+import com.github.dimitryivaniuta.gateway.proxy.client.ApiKeyHashService;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyCompletions;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyFingerprinter;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyL1Cache;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyRecord;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyResponseCodec;
+import com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyService;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.TokenBucketRateLimiter;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetryMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.retry.RetrySpecRegistry;
+import com.github.dimitryivaniuta.gateway.web.IdempotencyKeyFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * One proxied call through all six stages resolves the client (API key hash) and the policy once, including the
+ * work done on other threads through invocable clones (refresh-ahead, async re-attempts).
+ */
+class ProxyCallContextsTest {
+
+    public static class QuoteService {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile int failures;
+
+        @ProxyAudit
+        @ProxyIdempotent
+        @ProxyCache(cacheName = "quotes", ttlSeconds = 10, refreshAheadPercent = 50)
+        @ProxyRateLimit(permitsPerSecond = 1_000)
+        @ProxyConcurrencyLimit
+        @ProxyRetry(maxAttempts = 3, backoffMs = 1)
+        public String quote(String id) {
+            int n = calls.incrementAndGet();
+            if (n <= failures) throw new IllegalStateException("backend down");
+            return id + "#" + n;
+        }
+
+        @ProxyAudit
+        @ProxyRateLimit(permitsPerSecond = 1_000)
+        @ProxyConcurrencyLimit
+        @ProxyRetry(maxAttempts = 3, backoffMs = 1)
+        public CompletableFuture<String> quoteAsync(String id) {
+            int n = calls.incrementAndGet();
+            if (n <= failures) return CompletableFuture.failedFuture(new IllegalStateException("backend down"));
+            return CompletableFuture.completedFuture(id + "#" + n);
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger hashes = new AtomicInteger();
+    private final AtomicInteger policyLookups = new AtomicInteger();
+    // cache clock, moved by the tests only
+    private final AtomicLong ticker = new AtomicLong();
+    private QuoteService target;
+    private QuoteService proxy;
+
+    @BeforeEach
+    void setUp() {
+        var hashService = new ApiKeyHashService("test-pepper", "SHA-256", 0) {
+            @Override
+            public String hash(String rawApiKey) {
+                hashes.incrementAndGet();
+                return super.hash(rawApiKey);
+            }
+        };
+        var credentialLookup = new ApiClientCredentialLookupService(null, null, Duration.ZERO) {
+            @Override
+            public boolean isActive(String apiKeyHash) {
+                return true;
+            }
+        };
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                policyLookups.incrementAndGet();
+                return Optional.empty();
+            }
+        };
+        var auditService = new AuditCallLogService(null, null) {
+            @Override
+            public void save(AuditCallLog log) {
+            }
+        };
+        var idempotencyService = new IdempotencyService(null, null) {
+            @Override
+            public IdempotencyRecord acquireOrGet(String key, String methodKey, String requestHash,
+                                                  Duration ttl, String lockOwner) {
+                return IdempotencyRecord.builder()
+                        .idempotencyKey(key)
+                        .methodKey(methodKey)
+                        .requestHash(requestHash)
+                        .status(STATUS_PENDING)
+                        .expiresAt(Instant.now().plus(ttl))
+                        .lockedBy(lockOwner)
+                        .build();
+            }
+
+            @Override
+            public void markCompleted(String key, String methodKey, String requestHash, byte[] responseBody) {
+            }
+
+            @Override
+            public void markFailed(String key, String methodKey, String requestHash, String errorMessage) {
+            }
+        };
+
+        var props = new ProxyToolkitProperties();
+        var metrics = new ProxyToolkitMetrics(registry);
+        var mapper = new ObjectMapper();
+        var plans = new MethodPlanRegistry(props, metrics);
+        var contexts = new ProxyCallContexts(new RateLimitKeyResolver(hashService, credentialLookup), policyService);
+        var auditWriter = new AuditWriter(auditService, props, metrics); // not started => synchronous stub save
+        var bpp = new ProxyToolkitBeanPostProcessor(
+                props,
+                plans,
+                new AuditMethodInterceptor(
+                        auditWriter,
+                        new AuditSampler(auditWriter, props, metrics),
+                        new AuditStackTraces(null, props, metrics),
+                        mapper, props, plans, contexts),
+                new IdempotencyMethodInterceptor(
+                        idempotencyService,
+                        new IdempotencyL1Cache(props, metrics),
+                        new IdempotencyCompletions(),
+                        new IdempotencyResponseCodec(mapper, props),
+                        new IdempotencyFingerprinter(mapper),
+                        props, plans, contexts),
+                new CacheMethodInterceptor(
+                        new TtlCaffeineCacheManager(() -> Caffeine.newBuilder().maximumSize(1_000).ticker(ticker::get)),
+                        plans, contexts, props),
+                new RateLimitMethodInterceptor(new TokenBucketRateLimiter(props), plans, contexts),
+                new ConcurrencyLimitMethodInterceptor(plans, contexts),
+                new RetryMethodInterceptor(props, plans, contexts, new RetrySpecRegistry(props))
+        );
+
+        target = new QuoteService();
+        proxy = (QuoteService) bpp.postProcessAfterInitialization(target, "quoteService");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Api-Key", "test-api-key");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        MDC.clear();
+    }
+
+    @Test
+    void callThroughAllStagesShouldResolveClientAndPolicyOnce() {
+        target.failures = 1; // the retry re-attempt proceeds on an invocable clone
+
+        MDC.put(IdempotencyKeyFilter.MDC_KEY, "key-1");
+        assertThat(proxy.quote("a")).isEqualTo("a#2");
+
+        assertThat(target.calls).hasValue(2);
+        assertThat(hashes).hasValue(1);
+        assertThat(policyLookups).hasValue(1);
+    }
+
+    @Test
+    void refreshAheadShouldReuseTheContextOfTheCallThatTriggeredIt() {
+        MDC.put(IdempotencyKeyFilter.MDC_KEY, "key-1");
+        assertThat(proxy.quote("a")).isEqualTo("a#1");
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(6)); // past 50% of the 10s TTL
+        MDC.put(IdempotencyKeyFilter.MDC_KEY, "key-2");
+        assertThat(proxy.quote("a")).isEqualTo("a#1"); // stale value served, reload runs in the background
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> registry.get("proxy_toolkit_cache_refresh_ahead_total")
+                .tag("cache", "quotes:ttl=10").counter().count() == 1);
+        assertThat(target.calls).hasValue(2);
+        // one resolution per proxied call; the reload (no request bound on its thread) added none
+        assertThat(hashes).hasValue(2);
+        assertThat(policyLookups).hasValue(2);
+    }
+
+    @Test
+    void asyncReattemptsShouldNotResolveAgain() throws Exception {
+        target.failures = 2; // two re-attempts on virtual threads
+
+        assertThat(proxy.quoteAsync("b").get(5, TimeUnit.SECONDS)).isEqualTo("b#3");
+
+        assertThat(target.calls).hasValue(3);
+        assertThat(hashes).hasValue(1);
+        assertThat(policyLookups).hasValue(1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCleanupJobTest {
+
+    /**
+     * Pretends {@code expired} rows are waiting; records every chunk request.
+     */
+    static class ChunkedService extends IdempotencyService {
+        final List<Integer> limits = new ArrayList<>();
+        final List<Instant> cutoffs = new ArrayList<>();
+        long expired;
+
+        ChunkedService(long expired) {
+            super(null, null);
+            this.expired = expired;
+        }
+
+        @Override
+        public int deleteExpiredChunk(Instant cutoff, int limit) {
+            limits.add(limit);
+            cutoffs.add(cutoff);
+            int n = (int) Math.min(limit, expired);
+            expired -= n;
+            return n;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+
+    @Test
+    void shouldDeleteInChunksUntilAShortChunk() {
+        props.getIdempotency().setCleanupBatchSize(100);
+        props.getIdempotency().setCleanupPause(Duration.ZERO);
+        ChunkedService service = new ChunkedService(250);
+
+        long deleted = job(service).deleteExpired();
+
+        assertThat(deleted).isEqualTo(250);
+        assertThat(service.limits).containsExactly(100, 100, 100);
+        // one cutoff for the whole run
+        assertThat(service.cutoffs).allMatch(c -> c.equals(service.cutoffs.get(0)));
+        assertThat(registry.get("proxy_toolkit_idempotency_expired_deleted_total").counter().count()).isEqualTo(250);
+        assertThat(registry.get("proxy_toolkit_idempotency_cleanup_duration_seconds").timer().count()).isEqualTo(1);
+        assertThat(registry.get("proxy_toolkit_idempotency_cleanup_rows_per_second").gauge().value()).isPositive();
+    }
+
+    @Test
+    void shouldStopAtMaxRunTimeAndLeaveTheRestForTheNextRun() {
+        props.getIdempotency().setCleanupBatchSize(10);
+        props.getIdempotency().setCleanupPause(Duration.ofMillis(20));
+        props.getIdempotency().setCleanupMaxRunTime(Duration.ofMillis(50));
+        ChunkedService service = new ChunkedService(1_000_000);
+
+        long deleted = job(service).deleteExpired();
+
+        assertThat(deleted).isLessThan(1_000_000).isEqualTo(service.limits.size() * 10L);
+        assertThat(service.expired).isPositive();
+    }
+
+    private IdempotencyCleanupJob job(IdempotencyService service) {
+        return new IdempotencyCleanupJob(service, props, new ProxyToolkitMetrics(registry));
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyFingerprint;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.support.Murmur3x128;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyFingerprinterTest {
+
+    public record Line(String sku, int qty) {}
+
+    public record Basket(String customer, List<Line> lines) {}
+
+    public record Order(String customer, List<Line> lines, @ProxyFingerprint(exclude = true) String traceId) {}
+
+    public static class Transfer {
+        @ProxyFingerprint
+        public String account;
+        @ProxyFingerprint
+        public long cents;
+        public String memo;
+
+        Transfer(String account, long cents, String memo) {
+            this.account = account;
+            this.cents = cents;
+            this.memo = memo;
+        }
+    }
+
+    public static class PaymentService {
+        @ProxyIdempotent
+        public String place(Basket basket, int priority) {
+            return "";
+        }
+
+        @ProxyIdempotent(fingerprint = ProxyIdempotent.Fingerprint.FAST128)
+        public String placeFast(Basket basket, int priority) {
+            return "";
+        }
+
+        @ProxyIdempotent
+        public String submit(Order order) {
+            return "";
+        }
+
+        @ProxyIdempotent
+        public String transfer(Transfer transfer) {
+            return "";
+        }
+
+        @ProxyIdempotent
+        public String pay(@ProxyFingerprint String account, @ProxyFingerprint long cents, String clientTimestamp) {
+            return "";
+        }
+
+        @ProxyIdempotent
+        public String refund(String account, @ProxyFingerprint(exclude = true) String traceId) {
+            return "";
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final IdempotencyFingerprinter fingerprinter = new IdempotencyFingerprinter(mapper);
+
+    @Test
+    void sha256ShouldEqualTheFormerArgsJsonHash() throws Exception {
+        Object[] args = {new Basket("c-1", lines(3)), 2};
+
+        String fp = fingerprinter.fingerprint(plan("place"), args);
+
+        assertThat(fp).isEqualTo(sha256Hex(mapper.writeValueAsBytes(args)));
+    }
+
+    @Test
+    void streamedHashesShouldMatchOneShotHashesBeyondTheGeneratorBuffer() throws Exception {
+        // ~100 KB: Jackson flushes into the hash many times
+        Object[] args = {new Basket("c-1", lines(4_000)), 1};
+        byte[] json = mapper.writeValueAsBytes(args);
+
+        Murmur3x128 oneShot = new Murmur3x128().update(json, 0, json.length).finish();
+
+        assertThat(fingerprinter.fingerprint(plan("place"), args)).isEqualTo(sha256Hex(json));
+        assertThat(fingerprinter.fingerprint(plan("placeFast"), args))
+                .isEqualTo(HexFormat.of().toHexDigits(oneShot.h1()) + HexFormat.of().toHexDigits(oneShot.h2()));
+    }
+
+    @Test
+    void fast128ShouldBeShortDeterministicAndPayloadSensitive() {
+        MethodPlan plan = plan("placeFast");
+        String a = fingerprinter.fingerprint(plan, new Object[]{new Basket("c-1", lines(2)), 1});
+
+        assertThat(a).hasSize(32);
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{new Basket("c-1", lines(2)), 1})).isEqualTo(a);
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{new Basket("c-1", lines(2)), 2})).isNotEqualTo(a);
+    }
+
+    @Test
+    void excludedPropertiesShouldNotTakePart() {
+        MethodPlan plan = plan("submit");
+
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{new Order("c-1", lines(1), "trace-1")}))
+                .isEqualTo(fingerprinter.fingerprint(plan, new Object[]{new Order("c-1", lines(1), "trace-2")}));
+    }
+
+    @Test
+    void selectedPropertiesShouldBeTheOnlyOnesOfTheirClass() {
+        MethodPlan plan = plan("transfer");
+        String fp = fingerprinter.fingerprint(plan, new Object[]{new Transfer("acc-1", 500, "rent")});
+
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{new Transfer("acc-1", 500, "rent, again")})).isEqualTo(fp);
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{new Transfer("acc-1", 501, "rent")})).isNotEqualTo(fp);
+    }
+
+    @Test
+    void selectedParametersShouldBeTheOnlyOnes() {
+        MethodPlan plan = plan("pay");
+        String fp = fingerprinter.fingerprint(plan, new Object[]{"acc-1", 500L, "2024-01-01T00:00:00Z"});
+
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{"acc-1", 500L, "2024-01-01T00:00:05Z"})).isEqualTo(fp);
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{"acc-1", 499L, "2024-01-01T00:00:00Z"})).isNotEqualTo(fp);
+    }
+
+    @Test
+    void excludedParametersShouldNotTakePart() throws Exception {
+        MethodPlan plan = plan("refund");
+
+        assertThat(fingerprinter.fingerprint(plan, new Object[]{"acc-1", "trace-1"}))
+                .isEqualTo(fingerprinter.fingerprint(plan, new Object[]{"acc-1", "trace-2"}))
+                .isEqualTo(sha256Hex(mapper.writeValueAsBytes(new Object[]{"acc-1"})));
+    }
+
+    private static List<Line> lines(int n) {
+        List<Line> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new Line("sku-" + i, i % 5 + 1));
+        return out;
+    }
+
+    private static MethodPlan plan(String name) {
+        var props = new ProxyToolkitProperties();
+        var plans = new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()))
+                .forClass(PaymentService.class);
+        for (var m : PaymentService.class.getMethods()) {
+            if (m.getName().equals(name)) return plans.get(m);
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static String sha256Hex(byte[] in) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(in));
+    }
+}
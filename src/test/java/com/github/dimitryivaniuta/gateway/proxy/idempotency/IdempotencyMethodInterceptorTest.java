@@ -0,0 +1,241 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import com.github.dimitryivaniuta.gateway.web.IdempotencyKeyFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.github.dimitryivaniuta.gateway.web.RequestContextKeys.CORRELATION_ID_MDC_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class IdempotencyMethodInterceptorTest {
+
+    public static class PaymentService {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @ProxyIdempotent
+        public String pay(int amount) throws InterruptedException {
+            int n = calls.incrementAndGet();
+            gate.await();
+            return "payment-" + amount + "-" + n;
+        }
+    }
+
+    /**
+     * In-memory stand-in for the DB-backed service; counts round trips.
+     */
+    static class InMemoryIdempotencyService extends IdempotencyService {
+        final AtomicInteger dbCalls = new AtomicInteger();
+        final Map<String, IdempotencyRecord> rows = new ConcurrentHashMap<>();
+        // stands in for pg_notify delivered to other nodes on commit
+        volatile Consumer<String> notifier = payload -> {};
+
+        InMemoryIdempotencyService() {
+            super(null, null);
+        }
+
+        @Override
+        public Optional<IdempotencyRecord> read(String key, String methodKey) {
+            dbCalls.incrementAndGet();
+            return Optional.ofNullable(rows.get(key + "|" + methodKey));
+        }
+
+        @Override
+        public synchronized IdempotencyRecord acquireOrGet(String key, String methodKey, String requestHash,
+                                                           Duration ttl, String lockOwner) {
+            dbCalls.incrementAndGet();
+            return rows.computeIfAbsent(key + "|" + methodKey, k -> IdempotencyRecord.builder()
+                    .idempotencyKey(key)
+                    .methodKey(methodKey)
+                    .requestHash(requestHash)
+                    .status(STATUS_PENDING)
+                    .expiresAt(Instant.now().plus(ttl))
+                    .lockedBy(lockOwner)
+                    .build());
+        }
+
+        @Override
+        public synchronized void markCompleted(String key, String methodKey, String requestHash, byte[] responseBody) {
+            dbCalls.incrementAndGet();
+            IdempotencyRecord rec = rows.get(key + "|" + methodKey);
+            rec.setStatus(STATUS_COMPLETED);
+            rec.setResponseBody(responseBody);
+            rec.setLockedBy(null);
+            notifier.accept(IdempotencyNotificationListener.payload(key, methodKey));
+        }
+
+        @Override
+        public synchronized void markFailed(String key, String methodKey, String requestHash, String errorMessage) {
+            dbCalls.incrementAndGet();
+            rows.get(key + "|" + methodKey).setStatus(STATUS_FAILED);
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+    private final InMemoryIdempotencyService service = new InMemoryIdempotencyService();
+    private final PaymentService target = new PaymentService();
+    private final IdempotencyCompletions completions = new IdempotencyCompletions();
+
+    @AfterEach
+    void clearMdc() {
+        MDC.clear();
+    }
+
+    @Test
+    void completedReplayShouldBeServedFromL1WithoutDbRoundTrip() throws Exception {
+        PaymentService proxy = proxy();
+
+        String first = call(proxy, "key-1", "corr-1", 100);
+        assertThat(service.dbCalls.get()).isEqualTo(2); // acquire + markCompleted
+
+        String replay = call(proxy, "key-1", "corr-2", 100);
+
+        assertThat(replay).isEqualTo(first);
+        assertThat(target.calls.get()).isEqualTo(1);
+        assertThat(service.dbCalls.get()).isEqualTo(2);
+        assertThat(registry.get("proxy_toolkit_idempotency_l1_total").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("proxy_toolkit_idempotency_l1_total").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sameNodeInFlightDuplicateShouldBeWokenByTheOwner() throws Exception {
+        // a re-check would only happen after 10s: the duplicate must be woken by the completion signal
+        props.getIdempotency().setInFlightRecheckInterval(Duration.ofSeconds(10));
+        props.getIdempotency().setInFlightWaitMax(Duration.ofSeconds(10));
+        PaymentService proxy = proxy(completions);
+        target.gate = new CountDownLatch(1);
+
+        CompletableFuture<String> original = CompletableFuture.supplyAsync(() -> callUnchecked(proxy, "key-2", "corr-1", 5));
+        await().atMost(Duration.ofSeconds(5)).until(() -> target.calls.get() == 1);
+
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> callUnchecked(proxy, "key-2", "corr-2", 5));
+        await().atMost(Duration.ofSeconds(5)).until(() -> completions.waiting() == 1);
+        target.gate.countDown();
+
+        assertThat(duplicate.get(2, TimeUnit.SECONDS)).isEqualTo(original.get(2, TimeUnit.SECONDS));
+        assertThat(target.calls.get()).isEqualTo(1);
+        assertThat(service.dbCalls.get()).isEqualTo(2); // the duplicate never touched the DB
+    }
+
+    @Test
+    void otherNodeWaiterShouldBeWokenByNotification() throws Exception {
+        props.getIdempotency().setInFlightRecheckInterval(Duration.ofSeconds(10));
+        props.getIdempotency().setInFlightWaitMax(Duration.ofSeconds(10));
+
+        // two "nodes": separate L1 + completion registries, shared DB
+        PaymentService nodeA = proxy(completions);
+        IdempotencyCompletions completionsB = new IdempotencyCompletions();
+        PaymentService nodeB = proxy(completionsB);
+        var listenerB = new IdempotencyNotificationListener(null, completionsB, props);
+        service.notifier = listenerB::onNotification;
+        target.gate = new CountDownLatch(1);
+
+        CompletableFuture<String> original = CompletableFuture.supplyAsync(() -> callUnchecked(nodeA, "key-5", "corr-1", 9));
+        await().atMost(Duration.ofSeconds(5)).until(() -> target.calls.get() == 1);
+
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> callUnchecked(nodeB, "key-5", "corr-2", 9));
+        await().atMost(Duration.ofSeconds(5)).until(() -> completionsB.waiting() == 1);
+        target.gate.countDown();
+
+        assertThat(duplicate.get(2, TimeUnit.SECONDS)).isEqualTo(original.get(2, TimeUnit.SECONDS));
+        assertThat(target.calls.get()).isEqualTo(1);
+        // A: acquire + complete; B: acquire + read before parking + read after the wake-up
+        assertThat(service.dbCalls.get()).isEqualTo(5);
+    }
+
+    @Test
+    void differentPayloadForCompletedKeyShouldConflictFromL1() throws Exception {
+        PaymentService proxy = proxy();
+        call(proxy, "key-3", "corr-1", 1);
+
+        assertThatThrownBy(() -> call(proxy, "key-3", "corr-2", 2))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("different request payload");
+        assertThat(service.dbCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void replayShouldGoToDbWhenL1Disabled() throws Exception {
+        props.getIdempotency().setL1Enabled(false);
+        PaymentService proxy = proxy();
+
+        String first = call(proxy, "key-4", "corr-1", 7);
+        assertThat(call(proxy, "key-4", "corr-2", 7)).isEqualTo(first);
+
+        assertThat(service.dbCalls.get()).isEqualTo(3);
+    }
+
+    private PaymentService proxy() {
+        return proxy(completions);
+    }
+
+    private PaymentService proxy(IdempotencyCompletions completions) {
+        var metrics = new ProxyToolkitMetrics(registry);
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+        var interceptor = new IdempotencyMethodInterceptor(
+                service,
+                new IdempotencyL1Cache(props, metrics),
+                completions,
+                new IdempotencyResponseCodec(new ObjectMapper(), props),
+                new IdempotencyFingerprinter(new ObjectMapper()),
+                props,
+                new MethodPlanRegistry(props, metrics),
+                new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService)
+        );
+
+        ProxyFactory pf = new ProxyFactory(target);
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(interceptor);
+        return (PaymentService) pf.getProxy();
+    }
+
+    private static String call(PaymentService proxy, String idemKey, String correlationId, int amount) throws Exception {
+        MDC.put(IdempotencyKeyFilter.MDC_KEY, idemKey);
+        MDC.put(CORRELATION_ID_MDC_KEY, correlationId);
+        try {
+            return proxy.pay(amount);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static String callUnchecked(PaymentService proxy, String idemKey, String correlationId, int amount) {
+        try {
+            return call(proxy, idemKey, correlationId, amount);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.github.dimitryivaniuta.gateway.infra.BaseIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class IdempotencyNotificationIT extends BaseIntegrationTest {
+
+    private static final String METHOD_KEY = "com.example.PaymentService#pay(int)";
+
+    @Autowired IdempotencyService service;
+    @Autowired IdempotencyCompletions completions;
+
+    @Test
+    void completionShouldWakeWaitersThroughListenNotify() {
+        service.acquireOrGet("notify-key", METHOD_KEY, "hash", Duration.ofMinutes(5), "owner-1");
+
+        // IdempotencyService never signals in-process: only the LISTEN connection can complete this future
+        CompletableFuture<Void> signal = completions.subscribe("notify-key", METHOD_KEY);
+
+        // repeat until the listener connection is up (it starts with the context)
+        await().atMost(Duration.ofSeconds(10)).pollInterval(Duration.ofMillis(500)).until(() -> {
+            service.markCompleted("notify-key", METHOD_KEY, "hash", IdempotencyResponseCodec.legacyJson("\"done\""));
+            return signal.isDone();
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties.Idempotency.ResponseFormat;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyIdempotent;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlan;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyResponseCodecTest {
+
+    public record Order(long id, String customer, List<String> lines) {}
+
+    public static class OrderService {
+        @ProxyIdempotent
+        public List<Order> orders(int n) {
+            return List.of();
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+
+    @ParameterizedTest
+    @EnumSource(ResponseFormat.class)
+    void shouldRoundTripGenericReturnTypeInEveryFormat(ResponseFormat format) throws Exception {
+        props.getIdempotency().setResponseFormat(format);
+        IdempotencyResponseCodec codec = new IdempotencyResponseCodec(mapper, props);
+        List<Order> orders = orders(3);
+
+        byte[] stored = codec.encode(orders);
+
+        assertThat(stored[0] & 0x0f).isEqualTo(format.ordinal() + 1);
+        assertThat(codec.decode(plan(), stored)).isEqualTo(orders);
+    }
+
+    @Test
+    void largeResponsesShouldBeDeflatedAndStillDecode() throws Exception {
+        props.getIdempotency().setResponseCompressThreshold(1_024);
+        IdempotencyResponseCodec codec = new IdempotencyResponseCodec(mapper, props);
+        List<Order> orders = orders(2_000);
+
+        byte[] stored = codec.encode(orders);
+
+        assertThat(stored[0] & 0x80).isEqualTo(0x80);
+        assertThat(stored.length).isLessThan(mapper.writeValueAsBytes(orders).length / 3);
+        assertThat(codec.decode(plan(), stored)).isEqualTo(orders);
+
+        // below the threshold: stored plain
+        assertThat(codec.encode(orders(1))[0] & 0x80).isZero();
+    }
+
+    @Test
+    void recordsShouldStayReadableAfterSwitchingFormat() throws Exception {
+        props.getIdempotency().setResponseFormat(ResponseFormat.SMILE);
+        byte[] smile = new IdempotencyResponseCodec(mapper, props).encode(orders(5));
+
+        props.getIdempotency().setResponseFormat(ResponseFormat.JSON);
+        IdempotencyResponseCodec jsonCodec = new IdempotencyResponseCodec(mapper, props);
+
+        assertThat(jsonCodec.decode(plan(), smile)).isEqualTo(orders(5));
+        // rows completed before V11 carry JSON text only
+        byte[] legacy = IdempotencyResponseCodec.legacyJson(mapper.writeValueAsString(orders(2)));
+        assertThat(jsonCodec.decode(plan(), legacy)).isEqualTo(orders(2));
+    }
+
+    private MethodPlan plan() throws NoSuchMethodException {
+        return new MethodPlanRegistry(props, new ProxyToolkitMetrics(new SimpleMeterRegistry()))
+                .forClass(OrderService.class)
+                .get(OrderService.class.getMethod("orders", int.class));
+    }
+
+    private static List<Order> orders(int n) {
+        List<Order> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new Order(i, "customer-" + i, List.of("sku-" + i, "sku-" + (i + 1))));
+        return out;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.dimitryivaniuta.gateway.proxy.idempotency;
+
+import com.github.dimitryivaniuta.gateway.infra.BaseIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.github.dimitryivaniuta.gateway.proxy.idempotency.IdempotencyService.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class IdempotencyServiceIT extends BaseIntegrationTest {
+
+    private static final String METHOD_KEY = "com.example.PaymentService#pay(int)";
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @Autowired IdempotencyService service;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void acquireShouldInsertThenReturnForeignLockUntouched() {
+        IdempotencyRecord first = service.acquireOrGet("k1", METHOD_KEY, "h1", TTL, "owner-1");
+        IdempotencyRecord second = service.acquireOrGet("k1", METHOD_KEY, "h2", TTL, "owner-2");
+
+        assertThat(first.getStatus()).isEqualTo(STATUS_PENDING);
+        assertThat(first.getLockedBy()).isEqualTo("owner-1");
+        assertThat(second.getId()).isEqualTo(first.getId());
+        assertThat(second.getLockedBy()).isEqualTo("owner-1");
+        assertThat(second.getRequestHash()).isEqualTo("h1");
+    }
+
+    @Test
+    void expiredRecordShouldBeReclaimed() {
+        service.acquireOrGet("k2", METHOD_KEY, "h1", TTL, "owner-1");
+        service.markCompleted("k2", METHOD_KEY, "h1", IdempotencyResponseCodec.legacyJson("\"old\""));
+        jdbc.update("update idempotency_record set expires_at = now() - interval '1 second' where idempotency_key = 'k2'");
+
+        IdempotencyRecord rec = service.acquireOrGet("k2", METHOD_KEY, "h2", TTL, "owner-2");
+
+        assertThat(rec.getStatus()).isEqualTo(STATUS_PENDING);
+        assertThat(rec.getLockedBy()).isEqualTo("owner-2");
+        assertThat(rec.getRequestHash()).isEqualTo("h2");
+        assertThat(rec.getResponseJson()).isNull();
+        assertThat(rec.getResponseBody()).isNull();
+        assertThat(rec.isExpired(Instant.now())).isFalse();
+    }
+
+    @Test
+    void completeAndFailShouldReleaseTheLock() {
+        service.acquireOrGet("k3", METHOD_KEY, "h", TTL, "owner-1");
+        service.markCompleted("k3", METHOD_KEY, "h", IdempotencyResponseCodec.legacyJson("{\"id\":42}"));
+
+        IdempotencyRecord completed = service.read("k3", METHOD_KEY).orElseThrow();
+        assertThat(completed.getStatus()).isEqualTo(STATUS_COMPLETED);
+        assertThat(new String(completed.getResponseBody(), StandardCharsets.UTF_8)).contains("42");
+        assertThat(completed.getLockedBy()).isNull();
+        // completed and not expired: never re-claimed
+        assertThat(service.acquireOrGet("k3", METHOD_KEY, "h", TTL, "owner-2").getStatus()).isEqualTo(STATUS_COMPLETED);
+
+        service.acquireOrGet("k4", METHOD_KEY, "h", TTL, "owner-1");
+        service.markFailed("k4", METHOD_KEY, "h", "boom");
+
+        IdempotencyRecord failed = service.read("k4", METHOD_KEY).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(STATUS_FAILED);
+        assertThat(failed.getErrorMessage()).isEqualTo("boom");
+        assertThat(failed.getLockedBy()).isNull();
+    }
+
+    @Test
+    void concurrentAcquirersShouldAgreeOnOneOwner() {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<IdempotencyRecord>> results = new ArrayList<>();
+        List<String> owners;
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                String owner = "owner-" + i;
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return service.acquireOrGet("k5", METHOD_KEY, "h", TTL, owner);
+                }, pool));
+            }
+            start.countDown();
+            owners = results.stream().map(CompletableFuture::join).map(IdempotencyRecord::getLockedBy).distinct().toList();
+        }
+
+        assertThat(owners).hasSize(1);
+        assertThat(jdbc.queryForObject("select count(*) from idempotency_record where idempotency_key = 'k5'", Integer.class))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void deleteExpiredChunkShouldOnlyTakeExpiredRowsUpToTheLimit() {
+        for (int i = 0; i < 5; i++) service.acquireOrGet("old-" + i, METHOD_KEY, "h", TTL, "owner");
+        service.acquireOrGet("live", METHOD_KEY, "h", TTL, "owner");
+        jdbc.update("update idempotency_record set expires_at = now() - interval '1 minute' where idempotency_key like 'old-%'");
+
+        assertThat(service.deleteExpiredChunk(Instant.now(), 3)).isEqualTo(3);
+        assertThat(service.deleteExpiredChunk(Instant.now(), 3)).isEqualTo(2);
+        assertThat(service.deleteExpiredChunk(Instant.now(), 3)).isZero();
+        assertThat(service.read("live", METHOD_KEY)).isPresent();
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.dimitryivaniuta.gateway.proxy.metrics;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver.SubjectType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProxyToolkitMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void rateLimitCountersShouldBeRegisteredOncePerSubjectType() {
+        var meters = new ProxyToolkitMetrics(registry).rateLimitMeters("Demo#get");
+
+        assertThat(registry.find("proxy_toolkit_ratelimit_allowed_total").counters()).isEmpty();
+
+        meters.allowed(SubjectType.API_KEY).increment();
+        meters.allowed(SubjectType.API_KEY).increment();
+        meters.rejected(SubjectType.IP).increment();
+
+        assertThat(meters.allowed(SubjectType.API_KEY)).isSameAs(meters.allowed(SubjectType.API_KEY));
+        assertThat(registry.get("proxy_toolkit_ratelimit_allowed_total")
+                .tags("method", "Demo#get", "subject", "apiKey").counter().count()).isEqualTo(2);
+        assertThat(registry.get("proxy_toolkit_ratelimit_rejected_total")
+                .tags("method", "Demo#get", "subject", "ip").counter().count()).isEqualTo(1);
+        assertThat(registry.find("proxy_toolkit_ratelimit_allowed_total").counters()).hasSize(1);
+    }
+
+    @Test
+    void cacheMetersShouldResolveDefaultAndOverrideNamesOnce() {
+        var meters = new ProxyToolkitMetrics(registry).cacheMeters("Demo#find", "demo:ttl=60");
+
+        // annotation cache name is registered up front
+        assertThat(registry.find("proxy_toolkit_cache_hits_total").tag("cache", "demo:ttl=60").counter()).isNotNull();
+
+        assertThat(meters.forCache("demo:ttl=60")).isSameAs(meters.forCache("demo:ttl=60"));
+        assertThat(meters.forCache("demo:ttl=5")).isSameAs(meters.forCache("demo:ttl=5"));
+
+        meters.forCache("demo:ttl=5").misses().increment();
+        assertThat(registry.get("proxy_toolkit_cache_misses_total")
+                .tags("cache", "demo:ttl=5", "method", "Demo#find").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void tagValuesBeyondTheCapShouldCollapseIntoOther() {
+        var props = new ProxyToolkitProperties();
+        props.getMetrics().setMaxMethodTags(2);
+        var metrics = new ProxyToolkitMetrics(registry, props);
+
+        metrics.retryMeters("A#a");
+        metrics.retryMeters("B#b");
+        metrics.retryMeters("C#c").calls().increment();
+        metrics.retryMeters("A#a"); // already admitted
+
+        assertThat(registry.find("proxy_toolkit_retry_calls_total").counters()).hasSize(3);
+        assertThat(registry.find("proxy_toolkit_retry_calls_total").tag("method", "C#c").counter()).isNull();
+        assertThat(registry.get("proxy_toolkit_retry_calls_total")
+                .tag("method", ProxyToolkitMetrics.OVERFLOW_TAG).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrencyGaugesShouldNotBeRegisteredForTheOverflowTag() {
+        var props = new ProxyToolkitProperties();
+        props.getMetrics().setMaxMethodTags(1);
+        var metrics = new ProxyToolkitMetrics(registry, props);
+
+        metrics.concurrencyLimitMeters("A#a", () -> 10, () -> 1);
+        metrics.concurrencyLimitMeters("B#b", () -> 20, () -> 2).rejected().increment();
+        metrics.concurrencyLimitMeters("C#c", () -> 30, () -> 3).rejected().increment();
+
+        assertThat(registry.get("proxy_toolkit_concurrency_limit").tag("method", "A#a").gauge().value()).isEqualTo(10);
+        assertThat(registry.find("proxy_toolkit_concurrency_limit").gauges()).hasSize(1);
+        assertThat(registry.find("proxy_toolkit_concurrency_in_flight").gauges()).hasSize(1);
+        assertThat(registry.get("proxy_toolkit_concurrency_rejected_total")
+                .tag("method", ProxyToolkitMetrics.OVERFLOW_TAG).counter().count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.dimitryivaniuta.gateway.proxy.plan;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyAudit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyCache;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MethodPlanRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MethodPlanRegistry registry =
+            new MethodPlanRegistry(new ProxyToolkitProperties(), new ProxyToolkitMetrics(meterRegistry));
+
+    @ProxyAudit
+    static class Sample {
+        @ProxyCache(cacheName = "sample", ttlSeconds = 30)
+        public String cached(Long id) { return "v" + id; }
+
+        @ProxyRetry(enabled = false)
+        public void noRetry() {}
+
+        @ProxyRetry
+        public int retried(int x) { return x; }
+    }
+
+    @Test
+    void shouldResolveMergedAnnotationsAndKeysOnce() throws Exception {
+        MethodPlans plans = registry.forClass(Sample.class);
+
+        // fresh Method copy, as handed over by the proxy
+        MethodPlan plan = plans.get(Sample.class.getMethod("cached", Long.class));
+
+        assertThat(plan.audit()).isNotNull(); // class-level
+        assertThat(plan.cache()).isNotNull();
+        assertThat(plan.retry()).isNull();
+        assertThat(plan.fullMethodKey()).isEqualTo(Sample.class.getName() + "#cached(Long)");
+        assertThat(plan.metricMethodKey()).isEqualTo("Sample#cached");
+        assertThat(plan.defaultCacheName()).isEqualTo("sample:ttl=30");
+        assertThat(plan.returnsVoid()).isFalse();
+
+        assertThat(plans.get(Sample.class.getMethod("cached", Long.class))).isSameAs(plan);
+        assertThat(registry.forClass(Sample.class)).isSameAs(plans);
+    }
+
+    @Test
+    void disabledStageShouldBeAbsentFromPlan() throws Exception {
+        MethodPlan plan = registry.forClass(Sample.class).get(Sample.class.getMethod("noRetry"));
+
+        assertThat(plan.retry()).isNull();
+        assertThat(plan.retryMeters()).isNull();
+        assertThat(plan.returnsVoid()).isTrue();
+    }
+
+    @Test
+    void shouldPreRegisterMetersForActiveStages() throws Exception {
+        MethodPlan plan = registry.forClass(Sample.class).get(Sample.class.getMethod("retried", int.class));
+
+        assertThat(plan.retryMeters()).isNotNull();
+        assertThat(meterRegistry.find("proxy_toolkit_retry_calls_total").tag("method", "Sample#retried").counter())
+                .isNotNull();
+    }
+
+    @Test
+    void shouldCompileMethodsNotSeenAtProxyCreationLazily() throws Exception {
+        Method toString = Object.class.getMethod("toString");
+
+        MethodPlan plan = registry.forClass(Sample.class).get(toString);
+
+        assertThat(plan).isNotNull();
+        assertThat(plan.cache()).isNull();
+    }
+
+    @Test
+    void auditExclusionShouldMatchWholePackagesOnly() throws Exception {
+        Method cached = Sample.class.getMethod("cached", Long.class);
+
+        var partial = new ProxyToolkitProperties();
+        partial.setExcludePackages(List.of("com.github.dimitryivaniuta.gateway.proxy.pl"));
+        var partialRegistry = new MethodPlanRegistry(partial, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        assertThat(partialRegistry.isExcluded(Sample.class)).isFalse();
+        assertThat(partialRegistry.forClass(Sample.class).get(cached).audit()).isNotNull();
+
+        var whole = new ProxyToolkitProperties();
+        whole.setExcludePackages(List.of(" com.github.dimitryivaniuta.gateway.proxy.plan "));
+        var wholeRegistry = new MethodPlanRegistry(whole, new ProxyToolkitMetrics(new SimpleMeterRegistry()));
+        assertThat(wholeRegistry.isExcluded(Sample.class)).isTrue();
+        assertThat(wholeRegistry.forClass(Sample.class).get(cached).audit()).isNull();
+
+        // infrastructure packages stay excluded when the configured list replaces the default one
+        assertThat(wholeRegistry.isExcluded(String.class)).isTrue();
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.dimitryivaniuta.gateway.proxy.policy;
+
+import com.github.dimitryivaniuta.gateway.infra.BaseIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ApiClientPolicyServiceIT extends BaseIntegrationTest {
+
+    private static final String METHOD_KEY = "com.example.OrderService#create(String)";
+
+    @Autowired ApiClientPolicyService policies;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void refreshShouldPickUpInsertsAndUpdates() {
+        jdbc.update("insert into api_client_policy (client_key, method_key, rl_permits_per_sec) values (?, ?, ?)",
+                "apiKey:a", METHOD_KEY, 5);
+        policies.refresh();
+        assertThat(policies.find("apiKey:a", METHOD_KEY)).hasValueSatisfying(p -> assertThat(p.getRlPermitsPerSec()).isEqualTo(5));
+
+        // updated_at is bumped by the trigger even though the statement does not set it
+        jdbc.update("update api_client_policy set rl_permits_per_sec = 7 where client_key = ?", "apiKey:a");
+        policies.refresh();
+        assertThat(policies.find("apiKey:a", METHOD_KEY)).hasValueSatisfying(p -> assertThat(p.getRlPermitsPerSec()).isEqualTo(7));
+
+        assertThat(policies.find("apiKey:unknown", METHOD_KEY)).isEmpty();
+    }
+
+    @Test
+    void changesShouldArriveThroughListenNotify() {
+        jdbc.update("insert into api_client_policy (client_key, method_key, enabled) values (?, ?, false)",
+                "apiKey:b", METHOD_KEY);
+        await().atMost(Duration.ofSeconds(10)).until(() -> policies.find("apiKey:b", METHOD_KEY).isPresent());
+
+        jdbc.update("delete from api_client_policy where client_key = ?", "apiKey:b");
+        await().atMost(Duration.ofSeconds(10)).until(() -> policies.find("apiKey:b", METHOD_KEY).isEmpty());
+    }
+}
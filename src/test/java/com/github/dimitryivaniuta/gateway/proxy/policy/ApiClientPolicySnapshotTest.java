@@ -0,0 +1,68 @@
+package com.github.dimitryivaniuta.gateway.proxy.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiClientPolicySnapshotTest {
+
+    private static final String CREATE = "com.example.OrderService#create(String)";
+    private static final String CANCEL = "com.example.OrderService#cancel(long)";
+
+    @Test
+    void findShouldResolveClientAndMethod() {
+        ApiClientPolicySnapshot snapshot = ApiClientPolicySnapshot.of(List.of(
+                policy("apiKey:a", CREATE, 10, Instant.parse("2026-01-01T00:00:00Z")),
+                policy("apiKey:b", CREATE, 20, Instant.parse("2026-01-02T00:00:00Z")),
+                policy("apiKey:a", CANCEL, 30, Instant.parse("2026-01-01T12:00:00Z"))));
+
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(snapshot.find("apiKey:b", CREATE).getRlPermitsPerSec()).isEqualTo(20);
+        assertThat(snapshot.find("apiKey:a", CANCEL).getRlPermitsPerSec()).isEqualTo(30);
+        assertThat(snapshot.find("apiKey:b", CANCEL)).isNull();
+        assertThat(snapshot.find("ip:10.0.0.1", "com.example.Other#x()")).isNull();
+        assertThat(snapshot.find(null, CREATE)).isNull();
+        assertThat(snapshot.watermark()).isEqualTo(Instant.parse("2026-01-02T00:00:00Z"));
+    }
+
+    @Test
+    void withChangesShouldCopyOnWrite() {
+        ApiClientPolicySnapshot before = ApiClientPolicySnapshot.of(List.of(
+                policy("apiKey:a", CREATE, 10, Instant.parse("2026-01-01T00:00:00Z"))));
+
+        ApiClientPolicySnapshot after = before.withChanges(List.of(
+                policy("apiKey:a", CREATE, 11, Instant.parse("2026-01-03T00:00:00Z")),
+                policy("apiKey:c", CANCEL, 5, Instant.parse("2026-01-02T00:00:00Z"))));
+
+        assertThat(after.find("apiKey:a", CREATE).getRlPermitsPerSec()).isEqualTo(11);
+        assertThat(after.find("apiKey:c", CANCEL)).isNotNull();
+        assertThat(after.size()).isEqualTo(2);
+        assertThat(after.watermark()).isEqualTo(Instant.parse("2026-01-03T00:00:00Z"));
+
+        // readers of the old snapshot are unaffected
+        assertThat(before.find("apiKey:a", CREATE).getRlPermitsPerSec()).isEqualTo(10);
+        assertThat(before.find("apiKey:c", CANCEL)).isNull();
+        assertThat(before.size()).isEqualTo(1);
+    }
+
+    @Test
+    void emptyChangeSetShouldKeepSnapshot() {
+        ApiClientPolicySnapshot snapshot = ApiClientPolicySnapshot.of(List.of(
+                policy("apiKey:a", CREATE, 10, Instant.parse("2026-01-01T00:00:00Z"))));
+
+        assertThat(snapshot.withChanges(List.of())).isSameAs(snapshot);
+    }
+
+    private static ApiClientPolicy policy(String clientKey, String methodKey, int permits, Instant updatedAt) {
+        return ApiClientPolicy.builder()
+                .id(new ApiClientPolicyId(clientKey, methodKey))
+                .enabled(true)
+                .rlPermitsPerSec(permits)
+                .createdAt(updatedAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
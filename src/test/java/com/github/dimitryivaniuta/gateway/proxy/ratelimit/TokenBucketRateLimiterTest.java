@@ -0,0 +1,135 @@
+package com.github.dimitryivaniuta.gateway.proxy.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    private final TokenBucketRateLimiter limiter =
+            new TokenBucketRateLimiter(1_000, Duration.ofMinutes(5), nanos::get);
+
+    @Test
+    void shouldAllowBurstThenPaceAtRate() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("m", "ip:1", 2, 5).allowed()).isTrue();
+        }
+
+        var rejected = limiter.tryAcquire("m", "ip:1", 2, 5);
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.retryAfterMillis()).isEqualTo(500); // 2 permits/s => next token in 500 ms
+        assertThat(rejected.retryAfterSeconds()).isEqualTo(1);
+
+        advanceMillis(499);
+        assertThat(limiter.tryAcquire("m", "ip:1", 2, 5).retryAfterMillis()).isEqualTo(1);
+
+        advanceMillis(1);
+        assertThat(limiter.tryAcquire("m", "ip:1", 2, 5).allowed()).isTrue();
+        assertThat(limiter.tryAcquire("m", "ip:1", 2, 5).allowed()).isFalse();
+    }
+
+    @Test
+    void shouldRoundRetryAfterUpToWholeSeconds() {
+        assertThat(limiter.tryAcquire("m", "user:a", 1, 1).allowed()).isTrue();
+
+        advanceMillis(100);
+        var d = limiter.tryAcquire("m", "user:a", 1, 1);
+        assertThat(d.retryAfterMillis()).isEqualTo(900);
+        assertThat(d.retryAfterSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepSeparateBucketsPerSubjectAndMethod() {
+        assertThat(limiter.tryAcquire("m", "apiKey:a", 1, 1).allowed()).isTrue();
+        assertThat(limiter.tryAcquire("m", "apiKey:a", 1, 1).allowed()).isFalse();
+
+        assertThat(limiter.tryAcquire("m", "apiKey:b", 1, 1).allowed()).isTrue();
+        assertThat(limiter.tryAcquire("other", "apiKey:a", 1, 1).allowed()).isTrue();
+    }
+
+    @Test
+    void shouldNotRefillPastCapacityAfterLongIdle() {
+        assertThat(limiter.tryAcquire("m", "ip:1", 10, 3).allowed()).isTrue();
+
+        advanceMillis(TimeUnit.DAYS.toMillis(30));
+
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            if (limiter.tryAcquire("m", "ip:1", 10, 3).allowed()) allowed++;
+        }
+        assertThat(allowed).isEqualTo(3);
+    }
+
+    @Test
+    void shouldKeepPacingAcrossTheBucketClockWrap() {
+        long wrapMs = 1L << 37; // the bucket keeps 37 bits of milliseconds (~4.3 years of uptime)
+        advanceMillis(wrapMs - 100);
+        assertThat(limiter.tryAcquire("m", "ip:1", 2, 1).allowed()).isTrue();
+
+        advanceMillis(600); // past the wrap: the stored stamp restarts near zero
+        assertThat(limiter.tryAcquire("m", "ip:1", 2, 1).allowed()).isTrue();
+
+        advanceMillis(100);
+        var d = limiter.tryAcquire("m", "ip:1", 2, 1);
+        assertThat(d.allowed()).isFalse();
+        assertThat(d.retryAfterMillis()).isEqualTo(400);
+    }
+
+    @Test
+    void shouldReshapeBucketWhenPolicyChanges() {
+        assertThat(limiter.tryAcquire("m", "ip:1", 1, 1).allowed()).isTrue();
+        assertThat(limiter.tryAcquire("m", "ip:1", 1, 1).allowed()).isFalse();
+
+        assertThat(limiter.tryAcquire("m", "ip:1", 100, 100).allowed()).isTrue();
+    }
+
+    @Test
+    void shouldStayBoundedWithManySubjects() {
+        for (int i = 0; i < 20_000; i++) {
+            limiter.tryAcquire("m", "ip:" + i, 1, 1);
+        }
+        // Caffeine evicts asynchronously; give it a moment to settle
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(limiter.estimatedSize()).isLessThanOrEqualTo(1_000));
+    }
+
+    @Test
+    void shouldNeverGrantMoreThanCapacityUnderContention() throws Exception {
+        int threads = 8;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1_000; i++) {
+                        if (limiter.tryAcquire("m", "hot", 1, 500).allowed()) granted.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+        // clock is frozen, so exactly the initial capacity is handed out
+        assertThat(granted.get()).isEqualTo(500);
+    }
+
+    private void advanceMillis(long ms) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+}
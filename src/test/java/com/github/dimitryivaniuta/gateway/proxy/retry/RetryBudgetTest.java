@@ -0,0 +1,48 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetTest {
+
+    private final AtomicLong nanos = new AtomicLong(5_000_000_000L);
+    // 10s window => floor of 10 retries per window
+    private final RetryBudget budget = new RetryBudget(0.2, 1, Duration.ofSeconds(10), nanos::get);
+
+    @Test
+    void floorShouldAllowSomeRetriesWithoutAnySuccess() {
+        assertThat(acquired(100)).isEqualTo(10);
+    }
+
+    @Test
+    void retriesShouldScaleWithSuccessfulCalls() {
+        for (int i = 0; i < 500; i++) budget.onSuccess();
+
+        assertThat(acquired(1_000)).isEqualTo(10 + 100);
+    }
+
+    @Test
+    void budgetShouldRefillAsTheWindowSlides() {
+        assertThat(acquired(100)).isEqualTo(10);
+
+        advanceMillis(5_000);
+        assertThat(acquired(100)).isZero(); // the spent retries are still in the window
+
+        advanceMillis(5_000);
+        assertThat(acquired(100)).isEqualTo(10);
+    }
+
+    private int acquired(int tries) {
+        int n = 0;
+        for (int i = 0; i < tries; i++) if (budget.tryAcquire()) n++;
+        return n;
+    }
+
+    private void advanceMillis(long ms) {
+        nanos.addAndGet(ms * 1_000_000L);
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryMethodInterceptorTest {
+
+    public static class FlakyService {
+        final AtomicInteger calls = new AtomicInteger();
+        final List<Thread> callers = new CopyOnWriteArrayList<>();
+        volatile int failures;
+
+        @ProxyRetry(maxAttempts = 3, backoffMs = 100)
+        public CompletableFuture<String> fetchAsync(String id) {
+            callers.add(Thread.currentThread());
+            if (calls.incrementAndGet() <= failures) {
+                return CompletableFuture.failedFuture(new IllegalStateException("backend down"));
+            }
+            return CompletableFuture.completedFuture(id);
+        }
+
+        @ProxyRetry(maxAttempts = 3, backoffMs = 10, retryOn = IllegalStateException.class)
+        public CompletableFuture<String> throwingAsync(String id) {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("bad id " + id);
+        }
+
+        @ProxyRetry(maxAttempts = 3, backoffMs = 10)
+        public String fetch(String id) {
+            callers.add(Thread.currentThread());
+            if (calls.incrementAndGet() <= failures) throw new IllegalStateException("backend down");
+            return id;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FlakyService target = new FlakyService();
+    private FlakyService proxy;
+
+    @BeforeEach
+    void setUp() {
+        proxy = proxy(new ProxyToolkitProperties());
+    }
+
+    private FlakyService proxy(ProxyToolkitProperties props) {
+        var metrics = new ProxyToolkitMetrics(registry);
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+        var interceptor = new RetryMethodInterceptor(
+                props,
+                new MethodPlanRegistry(props, metrics),
+                new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService),
+                new RetrySpecRegistry(props)
+        );
+
+        ProxyFactory pf = new ProxyFactory(target);
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(interceptor);
+        return (FlakyService) pf.getProxy();
+    }
+
+    @Test
+    void asyncMethodShouldReturnBeforeBackoffAndRetryOffTheCallerThread() throws Exception {
+        target.failures = 2;
+
+        long start = System.nanoTime();
+        CompletableFuture<String> future = proxy.fetchAsync("a");
+        long returnedAfterMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(returnedAfterMs).isLessThan(80); // first backoff is ~100ms (+/-20%)
+        assertThat(future).isNotDone();
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(target.calls).hasValue(3);
+        assertThat(target.callers.get(0)).isSameAs(Thread.currentThread());
+        assertThat(target.callers.subList(1, 3)).allSatisfy(t -> assertThat(t.isVirtual()).isTrue());
+        assertThat(registry.get("proxy_toolkit_retry_attempts_total").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void asyncMethodShouldFailWithTheLastErrorWhenAttemptsAreExhausted() {
+        target.failures = Integer.MAX_VALUE;
+
+        CompletableFuture<String> future = proxy.fetchAsync("a");
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("backend down");
+        assertThat(target.calls).hasValue(3);
+        assertThat(registry.get("proxy_toolkit_retry_exhausted_total").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void synchronousThrowOfNonRetryableErrorShouldFailTheFutureWithoutRetry() {
+        CompletableFuture<String> future = proxy.throwingAsync("x");
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(target.calls).hasValue(1);
+    }
+
+    @Test
+    void synchronousMethodShouldStillRetryInTheCallerThread() {
+        target.failures = 2;
+
+        assertThat(proxy.fetch("b")).isEqualTo("b");
+        assertThat(target.calls).hasValue(3);
+        assertThat(target.callers).containsOnly(Thread.currentThread());
+    }
+
+    @Test
+    void virtualExecutionShouldRunTheSynchronousAttemptLoopOnAVirtualThread() {
+        var props = new ProxyToolkitProperties();
+        props.getRetry().setExecution(ProxyToolkitProperties.Retry.Execution.VIRTUAL);
+        FlakyService virtual = proxy(props);
+        target.failures = 2;
+
+        assertThat(virtual.fetch("c")).isEqualTo("c");
+        assertThat(target.calls).hasValue(3);
+        assertThat(target.callers).hasSize(3).allSatisfy(t -> assertThat(t.isVirtual()).isTrue());
+        assertThat(Thread.currentThread().isVirtual()).isFalse();
+    }
+
+    @Test
+    void virtualExecutionShouldRethrowTheLastFailureUnwrapped() {
+        var props = new ProxyToolkitProperties();
+        props.getRetry().setExecution(ProxyToolkitProperties.Retry.Execution.VIRTUAL);
+        FlakyService virtual = proxy(props);
+        target.failures = Integer.MAX_VALUE;
+
+        assertThatThrownBy(() -> virtual.fetch("d"))
+                .isExactlyInstanceOf(IllegalStateException.class)
+                .hasMessage("backend down");
+        assertThat(target.calls).hasValue(3);
+        assertThat(registry.get("proxy_toolkit_retry_exhausted_total").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetrySpecRegistryTest {
+
+    static class FirstService {
+        @ProxyRetry(maxAttempts = 3, backoffMs = 50)
+        public void call() {
+        }
+    }
+
+    static class SecondService {
+        @ProxyRetry(maxAttempts = 3, backoffMs = 50)
+        public void call() {
+        }
+
+        @ProxyRetry(maxAttempts = 3, backoffMs = 50, retryOn = IOException.class)
+        public void io() {
+        }
+    }
+
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+
+    @Test
+    void equalSettingsShouldShareOneSpecAcrossBeans() throws Exception {
+        var registry = new RetrySpecRegistry(props);
+
+        var first = registry.get(retry(FirstService.class, "call"), 50);
+        var second = registry.get(retry(SecondService.class, "call"), 50);
+
+        assertThat(second).isSameAs(first);
+        assertThat(registry.size()).isEqualTo(1);
+    }
+
+    @Test
+    void differentSettingsOrBackoffShouldGetTheirOwnSpec() throws Exception {
+        var registry = new RetrySpecRegistry(props);
+        ProxyRetry call = retry(SecondService.class, "call");
+
+        var spec = registry.get(call, 50);
+
+        assertThat(registry.get(call, 200)).isNotSameAs(spec);
+        assertThat(registry.get(retry(SecondService.class, "io"), 50)).isNotSameAs(spec);
+        assertThat(registry.size()).isEqualTo(3);
+    }
+
+    @Test
+    void retryOnShouldMatchSubtypes() throws Exception {
+        var spec = new RetrySpecRegistry(props).get(retry(SecondService.class, "io"), 50);
+
+        assertThat(spec.retryOn().test(new UncheckedIOException(new IOException()))).isFalse();
+        assertThat(spec.retryOn().test(new NoSuchFileException("x"))).isTrue();
+    }
+
+    @Test
+    void registryShouldStayBounded() throws Exception {
+        props.getRetry().setMaxSpecs(10);
+        var registry = new RetrySpecRegistry(props);
+        ProxyRetry call = retry(FirstService.class, "call");
+
+        for (int backoff = 1; backoff <= 1_000; backoff++) registry.get(call, backoff);
+        registry.cleanUp();
+
+        assertThat(registry.size()).isLessThanOrEqualTo(10);
+        assertThat(registry.maxSize()).isEqualTo(10);
+    }
+
+    private static ProxyRetry retry(Class<?> type, String method) throws NoSuchMethodException {
+        return type.getMethod(method).getAnnotation(ProxyRetry.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.dimitryivaniuta.gateway.proxy.retry;
+
+import com.github.dimitryivaniuta.gateway.proxy.ProxyToolkitProperties;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyConcurrencyLimit;
+import com.github.dimitryivaniuta.gateway.proxy.annotations.ProxyRetry;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitExceededException;
+import com.github.dimitryivaniuta.gateway.proxy.concurrency.ConcurrencyLimitMethodInterceptor;
+import com.github.dimitryivaniuta.gateway.proxy.context.ProxyCallContexts;
+import com.github.dimitryivaniuta.gateway.proxy.metrics.ProxyToolkitMetrics;
+import com.github.dimitryivaniuta.gateway.proxy.plan.MethodPlanRegistry;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicy;
+import com.github.dimitryivaniuta.gateway.proxy.policy.ApiClientPolicyService;
+import com.github.dimitryivaniuta.gateway.proxy.ratelimit.RateLimitKeyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * A backend that goes down after a healthy phase, called through ConcurrencyLimit -> Retry.
+ */
+class RetryStormSimulationTest {
+
+    public static class Backend {
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile boolean down;
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @ProxyConcurrencyLimit(initialLimit = 20, minLimit = 2, maxLimit = 50)
+        @ProxyRetry(maxAttempts = 3, backoffMs = 1)
+        public String call(int id) throws InterruptedException {
+            attempts.incrementAndGet();
+            gate.await();
+            if (down) throw new IllegalStateException("backend unavailable");
+            return "ok-" + id;
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ProxyToolkitProperties props = new ProxyToolkitProperties();
+    private final Backend backend = new Backend();
+
+    @Test
+    void withoutBudgetEveryFailedCallIsAttemptedMaxAttemptsTimes() {
+        props.getRetry().setBudgetEnabled(false);
+        Backend proxy = proxy();
+
+        runOutage(proxy);
+
+        assertThat(backend.attempts).hasValue(100 + 200 * 3);
+    }
+
+    @Test
+    void budgetShouldCapRetriesDuringAnOutage() {
+        props.getRetry().setBudgetRatio(0.2);
+        props.getRetry().setBudgetMinRetriesPerSecond(1);
+        props.getRetry().setBudgetWindow(Duration.ofSeconds(30));
+        Backend proxy = proxy();
+
+        runOutage(proxy);
+
+        // 100 healthy + 200 first attempts + (30 floor + 0.2 x 100 successes) retries, taken by the first 25 calls
+        assertThat(backend.attempts).hasValue(100 + 200 + 50);
+        assertThat(counter("proxy_toolkit_retry_budget_exhausted_total")).isEqualTo(175);
+        assertThat(counter("proxy_toolkit_retry_exhausted_total")).isEqualTo(200);
+    }
+
+    @Test
+    void concurrencyLimitShouldShrinkOnFailuresAndShedExcessCalls() throws Exception {
+        Backend proxy = proxy();
+        runOutage(proxy);
+        assertThat(gauge("proxy_toolkit_concurrency_limit")).isEqualTo(2);
+
+        backend.down = false;
+        backend.gate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = pool.submit(() -> proxy.call(1));
+            Future<String> b = pool.submit(() -> proxy.call(2));
+            await().atMost(Duration.ofSeconds(5)).until(() -> gauge("proxy_toolkit_concurrency_in_flight") == 2);
+
+            assertThatThrownBy(() -> proxy.call(3)).isInstanceOf(ConcurrencyLimitExceededException.class);
+            assertThat(counter("proxy_toolkit_concurrency_rejected_total")).isEqualTo(1);
+
+            backend.gate.countDown();
+            assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("ok-1");
+            assertThat(b.get(5, TimeUnit.SECONDS)).isEqualTo("ok-2");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void runOutage(Backend proxy) {
+        for (int i = 0; i < 100; i++) {
+            try {
+                proxy.call(i);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+        backend.down = true;
+        for (int i = 0; i < 200; i++) {
+            int id = i;
+            assertThatThrownBy(() -> proxy.call(id)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private double counter(String name) {
+        return registry.get(name).counter().count();
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private Backend proxy() {
+        var metrics = new ProxyToolkitMetrics(registry);
+        var policyService = new ApiClientPolicyService(null, null) {
+            @Override
+            public Optional<ApiClientPolicy> find(String clientKey, String methodKey) {
+                return Optional.empty();
+            }
+        };
+        var contexts = new ProxyCallContexts(new RateLimitKeyResolver(null, null), policyService);
+        var plans = new MethodPlanRegistry(props, metrics);
+
+        ProxyFactory pf = new ProxyFactory(backend);
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(new ConcurrencyLimitMethodInterceptor(plans, contexts));
+        pf.addAdvice(new RetryMethodInterceptor(props, plans, contexts, new RetrySpecRegistry(props)));
+        return (Backend) pf.getProxy();
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.dimitryivaniuta.gateway.proxy.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpscRingBufferTest {
+
+    @Test
+    void shouldRoundCapacityUpAndRejectWhenFull() {
+        MpscRingBuffer<Integer> q = new MpscRingBuffer<>(5);
+        assertThat(q.capacity()).isEqualTo(8);
+
+        for (int i = 0; i < 8; i++) assertThat(q.offer(i)).isTrue();
+        assertThat(q.offer(8)).isFalse();
+        assertThat(q.size()).isEqualTo(8);
+
+        assertThat(q.poll()).isEqualTo(0);
+        assertThat(q.offer(8)).isTrue(); // slot reused one lap later
+
+        List<Integer> out = new ArrayList<>();
+        assertThat(q.drainTo(out, 100)).isEqualTo(8);
+        assertThat(out).containsExactly(1, 2, 3, 4, 5, 6, 7, 8);
+        assertThat(q.poll()).isNull();
+        assertThat(q.isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldDeliverEveryElementOnceWithConcurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        MpscRingBuffer<Long> q = new MpscRingBuffer<>(1024);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                long base = (long) p * perProducer;
+                pool.submit(() -> {
+                    start.await();
+                    for (long i = 0; i < perProducer; i++) {
+                        while (!q.offer(base + i)) Thread.yield();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+
+            boolean[] seen = new boolean[producers * perProducer];
+            long[] lastPerProducer = new long[producers];
+            Arrays.fill(lastPerProducer, -1);
+
+            int received = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (received < seen.length && System.nanoTime() < deadline) {
+                Long v = q.poll();
+                if (v == null) {
+                    Thread.yield();
+                    continue;
+                }
+                assertThat(seen[v.intValue()]).isFalse();
+                seen[v.intValue()] = true;
+
+                // FIFO per producer
+                int p = (int) (v / perProducer);
+                assertThat(v).isGreaterThan(lastPerProducer[p]);
+                lastPerProducer[p] = v;
+                received++;
+            }
+            assertThat(received).isEqualTo(seen.length);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.dimitryivaniuta.gateway.proxy.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Murmur3x128Test {
+
+    @Test
+    void shouldMatchReferenceVectors() {
+        assertHash("hello", 0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L);
+        assertHash("The quick brown fox jumps over the lazy dog", 0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L);
+    }
+
+    @Test
+    void anySplitOfTheInputShouldGiveTheSameHash() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 1_000; round++) {
+            byte[] data = new byte[rnd.nextInt(200)];
+            rnd.nextBytes(data);
+            Murmur3x128 oneShot = new Murmur3x128().update(data, 0, data.length).finish();
+
+            Murmur3x128 split = new Murmur3x128();
+            int off = 0;
+            while (off < data.length) {
+                if (rnd.nextInt(4) == 0) {
+                    split.update(data[off++]);
+                } else {
+                    int n = Math.min(data.length - off, rnd.nextInt(40));
+                    split.update(data, off, n);
+                    off += n;
+                }
+            }
+            split.finish();
+
+            assertThat(split.h1()).isEqualTo(oneShot.h1());
+            assertThat(split.h2()).isEqualTo(oneShot.h2());
+        }
+    }
+
+    private static void assertHash(String in, long h1, long h2) {
+        byte[] bytes = in.getBytes(StandardCharsets.UTF_8);
+        Murmur3x128 h = new Murmur3x128().update(bytes, 0, bytes.length).finish();
+        assertThat(h.h1()).isEqualTo(h1);
+        assertThat(h.h2()).isEqualTo(h2);
+    }
+}
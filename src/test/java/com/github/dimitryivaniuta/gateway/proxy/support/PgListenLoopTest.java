@@ -0,0 +1,98 @@
+package com.github.dimitryivaniuta.gateway.proxy.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PgListenLoopTest {
+
+    private PgListenLoop loop;
+
+    @AfterEach
+    void tearDown() {
+        if (loop != null) loop.stop();
+    }
+
+    @Test
+    void runtimeFailureWhileConnectingShouldReconnect() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch listening = new CountDownLatch(1);
+        DataSource dataSource = dataSource(() -> {
+            if (attempts.incrementAndGet() == 1) throw new IllegalStateException("pool shut down");
+            listening.countDown();
+            return pgConnection();
+        });
+
+        loop = new PgListenLoop("test", "channel", dataSource, Duration.ofMillis(10), batch -> { });
+        loop.start();
+
+        assertThat(listening.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void failingHandlerShouldNotStopTheLoop() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch secondBatch = new CountDownLatch(2);
+        loop = new PgListenLoop("test", "channel", dataSource(this::pgConnection), Duration.ofMillis(10), batch -> {
+            secondBatch.countDown();
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("handler bug");
+        });
+        loop.start();
+
+        assertThat(secondBatch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(loop.isRunning()).isTrue();
+    }
+
+    private interface ConnectionSource {
+        Connection get();
+    }
+
+    private static DataSource dataSource(ConnectionSource connections) {
+        return proxy(DataSource.class, (p, m, args) -> switch (m.getName()) {
+            case "getConnection" -> connections.get();
+            default -> null;
+        });
+    }
+
+    // a PostgreSQL connection that delivers one notification per poll
+    private Connection pgConnection() {
+        PGNotification notification = proxy(PGNotification.class, (p, m, args) -> switch (m.getName()) {
+            case "getName" -> "channel";
+            case "getParameter" -> "payload";
+            default -> 0;
+        });
+        PGConnection pg = proxy(PGConnection.class, (p, m, args) -> {
+            if (m.getName().equals("getNotifications")) {
+                Thread.sleep(5);
+                return new PGNotification[]{notification};
+            }
+            return null;
+        });
+        Statement statement = proxy(Statement.class, (p, m, args) -> m.getReturnType() == boolean.class ? false : null);
+        return proxy(Connection.class, (p, m, args) -> switch (m.getName()) {
+            case "isWrapperFor" -> true;
+            case "unwrap" -> pg;
+            case "createStatement" -> statement;
+            default -> m.getReturnType() == boolean.class ? false : null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(PgListenLoopTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}